@@ -0,0 +1,275 @@
+/////////////////////////////////////////// FILE  HEADER /////////////////////////////////////////////
+//
+// Title: Exceptional Bank Teller
+// Files: BankAccount.java, BankAccountTester.java, BankTeller.java, BankTellerTester.java,
+//        BankTellerBenchmark.java, TransactionLog.java, TransactionLoadResult.java,
+//        ConcurrentTransactionLog.java, ConcurrentBankAccount.java,
+//        ConcurrentBankAccountTester.java, ConcurrentBankTeller.java,
+//        ConcurrentBankTellerTester.java, TransactionStatus.java, TransactionListener.java,
+//        TransactionJournal.java, TransactionJournalTester.java, TransactionSnapshot.java,
+//        ColdAccountStore.java, TieredAccountMap.java, TieredBankTeller.java,
+//        TieredBankTellerTester.java, TransactionBatch.java, TransactionBatchResult.java,
+//        TransactionRecord.java, TransactionEvent.java, TransactionPipeline.java,
+//        TransactionPipelineTester.java, LatencyHistogram.java, TellerMetrics.java,
+//        TellerMetricsTester.java, TransactionFile.java, TransactionFileTester.java,
+//        HighPrecisionBankAccount.java, HighPrecisionBankAccountTester.java, AccountIndex.java,
+//        AccountIndexTester.java, ReconciliationReport.java, ReconciliationTask.java,
+//        TransactionIDCache.java, TransactionIDCacheTester.java, ShardTransport.java,
+//        LocalShardTransport.java, SocketShardTransport.java, ShardServer.java,
+//        ShardedBankTeller.java, ShardedBankTellerTester.java, TransactionParser.java,
+//        TransactionParserTester.java, TellerServer.java, TellerClient.java,
+//        TellerLoadGenerator.java, TellerServerTester.java, TransactionClock.java,
+//        TransactionTimeIndex.java, TransactionHistory.java, TransactionHistoryTester.java,
+//        TellerWorkload.java, TellerReplay.java, TellerReplayResult.java, TellerReplayTester.java
+// This File: AccountIndex.java
+// 
+// Name: Benjamin Tarmann
+// Email: btarmann@wisc.edu
+//
+///////////////////////////////////////// 100 COLUMNS WIDE /////////////////////////////////////////
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * This class models secondary indexes of bank accounts: one that orders the accounts by their
+ * balance and one that ranks them by their number of transactions. Both are concurrent skip lists,
+ * so a range of balances or the most active accounts are found in time proportional to the
+ * logarithm of the number of accounts plus the number of accounts returned, instead of scanning
+ * every account.
+ * 
+ * The index is the transaction listener of the accounts it holds, and moves an account to its new
+ * place after every deposit and withdrawal, before passing the transaction on to its own listener
+ * (the journal, for example). Each account is moved while holding a lock of its own, reading its
+ * balance and transaction count under that lock, so the index always ends with the latest values
+ * even when many threads update the same ConcurrentBankAccount. Queries can run at the same time as
+ * updates; an account that is being moved may be missing from their result.
+ * 
+ * Accounts are kept by their ID rather than as objects, so that the index does not keep dormant
+ * accounts of a TieredBankTeller on the heap. A HighPrecisionBankAccount whose balance does not
+ * fit into a long is ordered as if its balance were Long.MAX_VALUE.
+ * 
+ * @author Benjamin Tarmann
+ */
+public class AccountIndex implements TransactionListener {
+  // orders balances from the lowest, and equal balances by account ID
+  private static final Comparator<Key> BY_BALANCE =
+      Comparator.<Key>comparingLong(key -> key.value).thenComparing(key -> key.id);
+  // orders transaction counts from the highest, and equal counts by account ID
+  private static final Comparator<Key> BY_ACTIVITY =
+      Comparator.<Key>comparingLong(key -> -key.value).thenComparing(key -> key.id);
+
+  private final ConcurrentHashMap<String, Entry> entries; // place of every account in the indexes
+  private final ConcurrentSkipListSet<Key> byBalance;
+  private final ConcurrentSkipListSet<Key> byActivity;
+  private volatile TransactionListener listener; // told about every transaction, or null
+
+  /**
+   * An account ID and the value it is ordered by in one of the indexes
+   */
+  private static final class Key {
+    private final long value;
+    private final String id;
+
+    /**
+     * Creates a key of an index
+     * 
+     * @param value the balance or transaction count of the account
+     * @param id    the account ID
+     */
+    private Key(long value, String id) {
+      this.value = value;
+      this.id = id;
+    }
+  }
+
+  /**
+   * The keys an account currently has in both indexes, which is also the lock held while the
+   * account is moved
+   */
+  private static final class Entry {
+    private Key balance; // null until the account is first indexed
+    private Key activity; // null until the account is first indexed
+    private boolean removed; // true once the account left the index, so it is not put back
+  }
+
+  /**
+   * Creates an empty index
+   */
+  public AccountIndex() {
+    entries = new ConcurrentHashMap<String, Entry>();
+    byBalance = new ConcurrentSkipListSet<Key>(BY_BALANCE);
+    byActivity = new ConcurrentSkipListSet<Key>(BY_ACTIVITY);
+  }
+
+  /**
+   * Sets the listener that every transaction is passed on to once the index is updated
+   * 
+   * @param listener the new listener, or null to remove the current one
+   */
+  public void setTransactionListener(TransactionListener listener) {
+    this.listener = listener;
+  }
+
+  /**
+   * Adds an account to the index with its current balance and transaction count. The index only
+   * follows the account's later transactions if it is made the account's listener.
+   * 
+   * @param account the account to add
+   * @throws IllegalArgumentException if account is null
+   * @throws IllegalStateException    if an account with the same ID is already indexed
+   */
+  public void add(BankAccount account) {
+    // checks that account is not null
+    if (account == null) {
+      throw new IllegalArgumentException("Account is null.");
+    }
+
+    // checks that the account is not indexed yet
+    Entry entry = new Entry();
+    if (entries.putIfAbsent(account.getID(), entry) != null) {
+      throw new IllegalStateException("Account " + account.getID() + " is already indexed.");
+    }
+    update(entry, account);
+  }
+
+  /**
+   * Removes an account from the index. Does nothing if no account with this ID is indexed.
+   * 
+   * @param id the account ID
+   */
+  public void remove(String id) {
+    Entry entry = entries.remove(id);
+    if (entry != null) {
+      synchronized (entry) {
+        entry.removed = true;
+        if (entry.balance != null) {
+          byBalance.remove(entry.balance);
+          byActivity.remove(entry.activity);
+        }
+      }
+    }
+  }
+
+  /**
+   * Moves the account a transaction was applied to to its new place in the indexes, and passes the
+   * transaction on to the listener of this index. Accounts that are not indexed are only passed on.
+   * 
+   * @param account the account the transaction was applied to
+   * @param deposit true for a deposit, false for a withdrawal
+   * @param amount  the transaction amount
+   */
+  @Override
+  public void transactionApplied(BankAccount account, boolean deposit, int amount) {
+    Entry entry = entries.get(account.getID());
+    if (entry != null) {
+      update(entry, account);
+    }
+    TransactionListener currentListener = listener;
+    if (currentListener != null) {
+      currentListener.transactionApplied(account, deposit, amount);
+    }
+  }
+
+  /**
+   * Moves an account to the place of its current balance and transaction count in both indexes.
+   * Does nothing if the account was removed since its entry was found, so that a transaction that
+   * races with remove() cannot put the account back.
+   * 
+   * @param entry   the keys the account currently has
+   * @param account the account
+   */
+  private void update(Entry entry, BankAccount account) {
+    synchronized (entry) {
+      if (entry.removed) {
+        return;
+      }
+      long balance;
+      try {
+        balance = account.getBalance();
+      } catch (ArithmeticException e) {
+        balance = Long.MAX_VALUE; // the exact balance does not fit into a long
+      }
+      if (entry.balance == null || entry.balance.value != balance) {
+        if (entry.balance != null) {
+          byBalance.remove(entry.balance);
+        }
+        entry.balance = new Key(balance, account.getID());
+        byBalance.add(entry.balance);
+      }
+
+      int count = account.getTransactionsCount();
+      if (entry.activity == null || entry.activity.value != count) {
+        if (entry.activity != null) {
+          byActivity.remove(entry.activity);
+        }
+        entry.activity = new Key(count, account.getID());
+        byActivity.add(entry.activity);
+      }
+    }
+  }
+
+  /**
+   * Gets the IDs of the accounts whose balance is between minBalance and maxBalance, both
+   * included, from the lowest balance to the highest and by account ID for equal balances
+   * 
+   * @param minBalance lowest balance of the accounts returned
+   * @param maxBalance highest balance of the accounts returned
+   * @param limit      largest number of account IDs returned
+   * @return the account IDs, at most limit of them
+   * @throws IllegalArgumentException if limit is negative
+   */
+  public List<String> getIDsByBalance(long minBalance, long maxBalance, int limit) {
+    // checks that the limit is not negative
+    if (limit < 0) {
+      throw new IllegalArgumentException("Limit cannot be negative.");
+    }
+
+    ArrayList<String> ids = new ArrayList<String>(Math.min(limit, 64));
+    // "" orders before every other account ID, so the range starts at the first account with
+    // minBalance
+    Iterator<Key> keys = byBalance.tailSet(new Key(minBalance, "")).iterator();
+    while (ids.size() < limit && keys.hasNext()) {
+      Key key = keys.next();
+      if (key.value > maxBalance) {
+        break;
+      }
+      ids.add(key.id);
+    }
+    return ids;
+  }
+
+  /**
+   * Gets the IDs of the accounts with the most transactions, from the most active one, and by
+   * account ID for accounts with as many transactions
+   * 
+   * @param count largest number of account IDs returned
+   * @return the account IDs, at most count of them
+   * @throws IllegalArgumentException if count is negative
+   */
+  public List<String> getMostActiveIDs(int count) {
+    // checks that the count is not negative
+    if (count < 0) {
+      throw new IllegalArgumentException("Count cannot be negative.");
+    }
+
+    ArrayList<String> ids = new ArrayList<String>(Math.min(count, 64));
+    Iterator<Key> keys = byActivity.iterator();
+    while (ids.size() < count && keys.hasNext()) {
+      ids.add(keys.next().id);
+    }
+    return ids;
+  }
+
+  /**
+   * Gets the number of indexed accounts
+   * 
+   * @return the number of accounts
+   */
+  public int size() {
+    return entries.size();
+  }
+}
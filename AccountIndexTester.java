@@ -0,0 +1,400 @@
+/////////////////////////////////////////// FILE  HEADER /////////////////////////////////////////////
+//
+// Title: Exceptional Bank Teller
+// Files: BankAccount.java, BankAccountTester.java, BankTeller.java, BankTellerTester.java,
+//        BankTellerBenchmark.java, TransactionLog.java, TransactionLoadResult.java,
+//        ConcurrentTransactionLog.java, ConcurrentBankAccount.java,
+//        ConcurrentBankAccountTester.java, ConcurrentBankTeller.java,
+//        ConcurrentBankTellerTester.java, TransactionStatus.java, TransactionListener.java,
+//        TransactionJournal.java, TransactionJournalTester.java, TransactionSnapshot.java,
+//        ColdAccountStore.java, TieredAccountMap.java, TieredBankTeller.java,
+//        TieredBankTellerTester.java, TransactionBatch.java, TransactionBatchResult.java,
+//        TransactionRecord.java, TransactionEvent.java, TransactionPipeline.java,
+//        TransactionPipelineTester.java, LatencyHistogram.java, TellerMetrics.java,
+//        TellerMetricsTester.java, TransactionFile.java, TransactionFileTester.java,
+//        HighPrecisionBankAccount.java, HighPrecisionBankAccountTester.java, AccountIndex.java,
+//        AccountIndexTester.java, ReconciliationReport.java, ReconciliationTask.java,
+//        TransactionIDCache.java, TransactionIDCacheTester.java, ShardTransport.java,
+//        LocalShardTransport.java, SocketShardTransport.java, ShardServer.java,
+//        ShardedBankTeller.java, ShardedBankTellerTester.java, TransactionParser.java,
+//        TransactionParserTester.java, TellerServer.java, TellerClient.java,
+//        TellerLoadGenerator.java, TellerServerTester.java, TransactionClock.java,
+//        TransactionTimeIndex.java, TransactionHistory.java, TransactionHistoryTester.java,
+//        TellerWorkload.java, TellerReplay.java, TellerReplayResult.java, TellerReplayTester.java
+// This File: AccountIndexTester.java
+// 
+// Name: Benjamin Tarmann
+// Email: btarmann@wisc.edu
+//
+///////////////////////////////////////// 100 COLUMNS WIDE /////////////////////////////////////////
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+/**
+ * This class represents a tester for the AccountIndex class and the queries BankTeller makes with
+ * it
+ * 
+ * @author Benjamin Tarmann
+ */
+public class AccountIndexTester {
+
+  /**
+   * Gets the IDs of the accounts whose balance is in a range by sorting every account, which is
+   * what the index should return
+   * 
+   * @param accounts   the accounts
+   * @param minBalance lowest balance of the accounts returned
+   * @param maxBalance highest balance of the accounts returned
+   * @param limit      largest number of account IDs returned
+   * @return the expected account IDs
+   */
+  private static List<String> expectedByBalance(List<BankAccount> accounts, long minBalance,
+      long maxBalance, int limit) {
+    ArrayList<BankAccount> sorted = new ArrayList<BankAccount>(accounts);
+    sorted.sort(
+        Comparator.comparingLong(BankAccount::getBalance).thenComparing(BankAccount::getID));
+    ArrayList<String> ids = new ArrayList<String>();
+    for (BankAccount account : sorted) {
+      if (ids.size() < limit && account.getBalance() >= minBalance
+          && account.getBalance() <= maxBalance) {
+        ids.add(account.getID());
+      }
+    }
+    return ids;
+  }
+
+  /**
+   * Gets the IDs of the most active accounts by sorting every account, which is what the index
+   * should return
+   * 
+   * @param accounts the accounts
+   * @param count    largest number of account IDs returned
+   * @return the expected account IDs
+   */
+  private static List<String> expectedMostActive(List<BankAccount> accounts, int count) {
+    ArrayList<BankAccount> sorted = new ArrayList<BankAccount>(accounts);
+    sorted.sort(Comparator.comparingInt((BankAccount account) -> -account.getTransactionsCount())
+        .thenComparing(BankAccount::getID));
+    ArrayList<String> ids = new ArrayList<String>();
+    for (int i = 0; i < count && i < sorted.size(); i++) {
+      ids.add(sorted.get(i).getID());
+    }
+    return ids;
+  }
+
+  /**
+   * Checks whether the queries of a BankTeller return the same accounts as sorting every account
+   * 
+   * @param teller   the BankTeller with indexes
+   * @param accounts every account of the BankTeller
+   * @return true if every query matches
+   */
+  private static boolean matches(BankTeller teller, List<BankAccount> accounts) {
+    long[][] ranges = {{Long.MIN_VALUE, Long.MAX_VALUE}, {0, 9}, {100, 400}, {250, 250}, {5, 1}};
+    for (long[] range : ranges) {
+      for (int limit : new int[] {0, 3, 1000}) {
+        if (!teller.getAccountIDsByBalance(range[0], range[1], limit)
+            .equals(expectedByBalance(accounts, range[0], range[1], limit))) {
+          return false;
+        }
+      }
+    }
+    for (int count : new int[] {0, 1, 10, 1000}) {
+      if (!teller.getMostActiveAccountIDs(count).equals(expectedMostActive(accounts, count))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Applies random deposits and withdrawals to random accounts
+   * 
+   * @param random       the random number generator
+   * @param accounts     the accounts
+   * @param transactions number of transactions to try
+   */
+  private static void applyRandomTransactions(Random random, List<BankAccount> accounts,
+      int transactions) {
+    for (int i = 0; i < transactions; i++) {
+      BankAccount account = accounts.get(random.nextInt(accounts.size()));
+      int amount = 10 * random.nextInt(30);
+      if (random.nextBoolean()) {
+        account.tryDeposit(amount);
+      } else {
+        account.tryWithdraw(amount);
+      }
+    }
+  }
+
+  /**
+   * Creates indexes for a BankTeller that already has accounts, adds more accounts and applies
+   * random transactions. Checks after each step that range and top-K queries return the same
+   * accounts as sorting every account.
+   * 
+   * @return true when this test verifies a correct functionality, and false otherwise.
+   */
+  public static boolean testAccountIndexQueries() {
+    Random random = new Random(18);
+    BankTeller teller = new BankTeller();
+    ArrayList<BankAccount> accounts = new ArrayList<BankAccount>();
+    for (int i = 0; i < 50; i++) {
+      accounts.add(new BankAccount("A" + i, 10 + 10 * random.nextInt(30)));
+      teller.addBankAccount(accounts.get(i));
+    }
+    applyRandomTransactions(random, accounts, 500);
+
+    // indexes the existing accounts
+    teller.createIndexes();
+    if (!matches(teller, accounts)) {
+      return false;
+    }
+
+    // indexes accounts added afterwards, and follows the transactions of all of them
+    for (int i = 50; i < 100; i++) {
+      accounts.add(new BankAccount("A" + i, 10 + 10 * random.nextInt(30), i % 3));
+      teller.addBankAccount(accounts.get(i));
+    }
+    if (!matches(teller, accounts)) {
+      return false;
+    }
+    applyRandomTransactions(random, accounts, 5000);
+    return matches(teller, accounts);
+  }
+
+  /**
+   * Updates the index from 8 threads that apply transactions to the same ConcurrentBankAccounts of
+   * a ConcurrentBankTeller. Checks that once the threads are done the index holds the final
+   * balance and transaction count of every account.
+   * 
+   * @return true when this test verifies a correct functionality, and false otherwise.
+   */
+  public static boolean testAccountIndexConcurrent() {
+    ConcurrentBankTeller teller = new ConcurrentBankTeller();
+    teller.createIndexes();
+    ArrayList<BankAccount> accounts = new ArrayList<BankAccount>();
+    for (int i = 0; i < 4; i++) {
+      accounts.add(new ConcurrentBankAccount("C" + i, 1000));
+      teller.addBankAccount(accounts.get(i));
+    }
+
+    Thread[] threads = new Thread[8];
+    for (int t = 0; t < threads.length; t++) {
+      Random random = new Random(t);
+      threads[t] = new Thread(() -> applyRandomTransactions(random, accounts, 20_000));
+      threads[t].start();
+    }
+    try {
+      for (Thread thread : threads) {
+        thread.join();
+      }
+    } catch (InterruptedException e) {
+      return false;
+    }
+    return matches(teller, accounts);
+  }
+
+  /**
+   * Removes an indexed account from a ConcurrentBankTeller while another thread is depositing into
+   * it, and checks that the account is not put back into the indexes by a deposit that was
+   * applied while it was removed. Repeats the check 500 times, since the threads interleave
+   * differently every time.
+   * 
+   * @return true when this test verifies a correct functionality, and false otherwise.
+   */
+  public static boolean testAccountIndexRemoveWhileUpdating() {
+    ConcurrentBankTeller teller = new ConcurrentBankTeller();
+    teller.createIndexes();
+    teller.addBankAccount(new ConcurrentBankAccount("0000", 10)); // stays indexed
+    for (int round = 0; round < 500; round++) {
+      BankAccount account = new ConcurrentBankAccount("R" + round, 10);
+      teller.addBankAccount(account);
+      Thread depositor = new Thread(() -> {
+        for (int i = 0; i < 2_000; i++) {
+          account.tryDeposit(10);
+        }
+      });
+      depositor.start();
+      Thread.yield();
+      teller.removeBankAccount(account.getID());
+      try {
+        depositor.join();
+      } catch (InterruptedException e) {
+        return false;
+      }
+      if (!teller.getAccountIDsByBalance(0, Long.MAX_VALUE, 10).equals(Arrays.asList("0000"))
+          || !teller.getMostActiveAccountIDs(10).equals(Arrays.asList("0000"))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Checks whether a BankTeller with both indexes and a journal keeps journaling every transaction,
+   * including after the journal is closed and opened again, and whether the indexes of a
+   * BankTeller recovered from the journal hold the recovered accounts
+   * 
+   * @return true when this test verifies a correct functionality, and false otherwise.
+   */
+  public static boolean testAccountIndexWithJournal() {
+    try {
+      File file = File.createTempFile("journal", ".bin");
+      file.delete();
+      file.deleteOnExit();
+      Random random = new Random(19);
+      BankTeller original = new BankTeller();
+      original.createIndexes();
+      original.openJournal(file, 1, 0);
+      ArrayList<BankAccount> accounts = new ArrayList<BankAccount>();
+      for (int i = 0; i < 20; i++) {
+        accounts.add(new BankAccount("J" + i, 100));
+        original.addBankAccount(accounts.get(i));
+      }
+      applyRandomTransactions(random, accounts, 1000);
+      original.closeJournal();
+
+      // the indexes still follow transactions once the journal is closed
+      applyRandomTransactions(random, accounts, 1000);
+      if (!matches(original, accounts)) {
+        return false;
+      }
+
+      // a BankTeller recovered with indexes holds the journaled accounts in them
+      BankTeller recovered = new BankTeller();
+      recovered.createIndexes();
+      recovered.openJournal(file, 1, 0);
+      ArrayList<BankAccount> recoveredAccounts = new ArrayList<BankAccount>();
+      for (int i = 0; i < 20; i++) {
+        recoveredAccounts.add(recovered.findAccount("J" + i));
+      }
+      if (!matches(recovered, recoveredAccounts)) {
+        return false;
+      }
+      applyRandomTransactions(random, recoveredAccounts, 1000);
+      recovered.closeJournal();
+
+      // the transactions applied after recovering were journaled through the indexes
+      BankTeller recoveredAgain = new BankTeller();
+      recoveredAgain.openJournal(file, 1, 0);
+      recoveredAgain.closeJournal();
+      for (BankAccount account : recoveredAccounts) {
+        if (recoveredAgain.findAccount(account.getID()).getBalance() != account.getBalance()) {
+          return false;
+        }
+      }
+      return true;
+    } catch (IOException | NoSuchElementException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Checks whether the indexes of a TieredBankTeller hold the accounts that were moved out of the
+   * heap, and follow the transactions applied to them once they are found again
+   * 
+   * @return true when this test verifies a correct functionality, and false otherwise.
+   */
+  public static boolean testAccountIndexTiered() {
+    Random random = new Random(20);
+    TieredBankTeller teller = new TieredBankTeller(4);
+    for (int i = 0; i < 10; i++) {
+      teller.addBankAccount(new BankAccount("T" + i, 10 + 10 * i));
+    }
+    teller.createIndexes();
+    for (int i = 10; i < 20; i++) {
+      teller.addBankAccount(new BankAccount("T" + i, 10 + 10 * i));
+    }
+    for (int i = 0; i < 500; i++) {
+      BankAccount account = teller.findAccount("T" + random.nextInt(20));
+      account.tryDeposit(10 * random.nextInt(5));
+    }
+    if (teller.getColdAccountsCount() == 0) {
+      return false;
+    }
+
+    // reads the expected values without changing them
+    ArrayList<BankAccount> accounts = new ArrayList<BankAccount>();
+    for (int i = 0; i < 20; i++) {
+      accounts.add(teller.findAccount("T" + i));
+    }
+    return matches(teller, accounts);
+  }
+
+  /**
+   * Checks whether the queries throw an IllegalStateException without indexes and an
+   * IllegalArgumentException for a negative limit, and whether indexes cannot be created twice
+   * 
+   * @return true when this test verifies a correct functionality, and false otherwise.
+   */
+  public static boolean testAccountIndexInvalidArguments() {
+    BankTeller teller = new BankTeller();
+    try {
+      teller.getMostActiveAccountIDs(1);
+      return false;
+    } catch (IllegalStateException e) {
+      // expected: the BankTeller has no indexes
+    }
+    teller.createIndexes();
+    try {
+      teller.createIndexes();
+      return false;
+    } catch (IllegalStateException e) {
+      // expected: the BankTeller already has indexes
+    }
+    try {
+      teller.getAccountIDsByBalance(0, 10, -1);
+      return false;
+    } catch (IllegalArgumentException e) {
+      // expected: the limit is negative
+    }
+    AccountIndex index = new AccountIndex();
+    index.add(new BankAccount("0001", 10));
+    try {
+      index.add(new BankAccount("0001", 20));
+      return false;
+    } catch (IllegalStateException e) {
+      // expected: the account is already indexed
+    }
+    return index.size() == 1
+        && index.getIDsByBalance(10, 10, 5).equals(Arrays.asList("0001"));
+  }
+
+  /**
+   * Calls the test methods defined in this AccountIndexTester class
+   * 
+   * @param args
+   */
+  public static void main(String[] args) {
+    if (testAccountIndexQueries() == false) {
+      System.out.println("testAccountIndexQueries failed.");
+    }
+
+    if (testAccountIndexConcurrent() == false) {
+      System.out.println("testAccountIndexConcurrent failed.");
+    }
+
+    if (testAccountIndexRemoveWhileUpdating() == false) {
+      System.out.println("testAccountIndexRemoveWhileUpdating failed.");
+    }
+
+    if (testAccountIndexWithJournal() == false) {
+      System.out.println("testAccountIndexWithJournal failed.");
+    }
+
+    if (testAccountIndexTiered() == false) {
+      System.out.println("testAccountIndexTiered failed.");
+    }
+
+    if (testAccountIndexInvalidArguments() == false) {
+      System.out.println("testAccountIndexInvalidArguments failed.");
+    }
+  }
+
+}
@@ -1,7 +1,26 @@
 /////////////////////////////////////////// FILE  HEADER /////////////////////////////////////////////
 //
 // Title: Exceptional Bank Teller
-// Files: BankAccount.java, BankAccountTester.java, BankTeller.java, BankTellerTester.java
+// Files: BankAccount.java, BankAccountTester.java, BankTeller.java, BankTellerTester.java,
+//        BankTellerBenchmark.java, TransactionLog.java, TransactionLoadResult.java,
+//        ConcurrentTransactionLog.java, ConcurrentBankAccount.java,
+//        ConcurrentBankAccountTester.java, ConcurrentBankTeller.java,
+//        ConcurrentBankTellerTester.java, TransactionStatus.java, TransactionListener.java,
+//        TransactionJournal.java, TransactionJournalTester.java, TransactionSnapshot.java,
+//        ColdAccountStore.java, TieredAccountMap.java, TieredBankTeller.java,
+//        TieredBankTellerTester.java, TransactionBatch.java, TransactionBatchResult.java,
+//        TransactionRecord.java, TransactionEvent.java, TransactionPipeline.java,
+//        TransactionPipelineTester.java, LatencyHistogram.java, TellerMetrics.java,
+//        TellerMetricsTester.java, TransactionFile.java, TransactionFileTester.java,
+//        HighPrecisionBankAccount.java, HighPrecisionBankAccountTester.java, AccountIndex.java,
+//        AccountIndexTester.java, ReconciliationReport.java, ReconciliationTask.java,
+//        TransactionIDCache.java, TransactionIDCacheTester.java, ShardTransport.java,
+//        LocalShardTransport.java, SocketShardTransport.java, ShardServer.java,
+//        ShardedBankTeller.java, ShardedBankTellerTester.java, TransactionParser.java,
+//        TransactionParserTester.java, TellerServer.java, TellerClient.java,
+//        TellerLoadGenerator.java, TellerServerTester.java, TransactionClock.java,
+//        TransactionTimeIndex.java, TransactionHistory.java, TransactionHistoryTester.java,
+//        TellerWorkload.java, TellerReplay.java, TellerReplayResult.java, TellerReplayTester.java
 // This File: BankAccount.java
 // 
 // Name: Benjamin Tarmann
@@ -9,18 +28,23 @@
 //
 ///////////////////////////////////////// 100 COLUMNS WIDE /////////////////////////////////////////
 
-import java.util.ArrayList;
+import java.math.BigDecimal;
 import java.util.zip.DataFormatException;
 
 /**
  * This class models a very simple account at a bank.
  * 
+ * The balance is a long, so it never wraps around however large the amounts added up in it are. A
+ * deposit that would take the balance past Long.MAX_VALUE is rejected with BALANCE_OVERFLOW
+ * instead; accounts that must keep taking deposits beyond that use HighPrecisionBankAccount.
+ * 
  * @author Benjamin Tarmann
  */
 public class BankAccount {
   private String accountID;
-  private int balance;
-  private ArrayList<String> transactions;
+  private long balance;
+  private TransactionLog transactions;
+  private volatile TransactionListener listener; // told about every applied transaction, or null
 
   /**
    * Creates a new bank account with a given account ID and an initial balance. A deposit
@@ -31,6 +55,22 @@ public class BankAccount {
    * @throws IllegalArgumentException with error message if the initial balance is less than 10
    */
   public BankAccount(String accountID, int initialBalance) {
+    this(accountID, initialBalance, 0);
+  }
+
+  /**
+   * Creates a new bank account like BankAccount(String, int) does, which only keeps a given number
+   * of its most recent transactions. The memory used by its transactions then stays the same
+   * however many transactions are applied to it; the older transactions can no longer be read, but
+   * they are still counted by getTransactionsCount().
+   * 
+   * @param accountID      account's unique ID
+   * @param initialBalance account's initial balance
+   * @param recentWindow   number of most recent transactions kept, or 0 to keep all of them
+   * @throws IllegalArgumentException with error message if the initial balance is less than 10, or
+   *                                  if recentWindow is negative or larger than 2^30
+   */
+  public BankAccount(String accountID, int initialBalance, int recentWindow) {
     this.accountID = accountID;
 
     // checks that the initial balance is greater than or equal to 10
@@ -41,8 +81,35 @@ public class BankAccount {
     balance = initialBalance;
 
     // adds a deposit transaction with the initial balance
-    transactions = new ArrayList<String>();
-    transactions.add("1 " + Integer.toString(initialBalance));
+    transactions = new TransactionLog(0, recentWindow);
+    transactions.append(true, initialBalance);
+  }
+
+  /**
+   * Creates a bank account restored from a snapshot, with a given balance and a given number of
+   * older transactions that are not kept. No initial deposit is added and the balance is not
+   * checked; the most recent transactions are added afterwards with restoreTransaction().
+   * 
+   * @param accountID        account's unique ID
+   * @param balance          account's balance
+   * @param firstTransaction number of older transactions that are not kept
+   * @param recentWindow     number of most recent transactions kept, or 0 to keep all of them
+   */
+  BankAccount(String accountID, long balance, int firstTransaction, int recentWindow) {
+    this.accountID = accountID;
+    this.balance = balance;
+    transactions = new TransactionLog(firstTransaction, recentWindow);
+  }
+
+  /**
+   * Creates a new bank account with a given account ID and no balance or transactions of its own.
+   * This is used by subclasses that keep the balance and transactions themselves and override
+   * every method that uses them.
+   * 
+   * @param accountID account's unique ID
+   */
+  protected BankAccount(String accountID) {
+    this.accountID = accountID;
   }
 
   /**
@@ -54,15 +121,81 @@ public class BankAccount {
     return accountID;
   }
 
+  /**
+   * Sets the listener that is told about every deposit and withdrawal applied to this account from
+   * now on, replacing the previous one
+   * 
+   * @param listener the new listener, or null to remove the current one
+   */
+  public void setTransactionListener(TransactionListener listener) {
+    this.listener = listener;
+  }
+
+  /**
+   * Gets the listener that is told about every deposit and withdrawal applied to this account
+   * 
+   * @return the listener, or null if there is none
+   */
+  TransactionListener getTransactionListener() {
+    return listener;
+  }
+
+  /**
+   * Tells the listener of this account, if there is one, that a transaction was applied. Every
+   * method that applies a transaction, including the ones of subclasses, calls this afterwards,
+   * except ConcurrentBankAccount, which tells the listener itself under the lock of the account.
+   * 
+   * @param deposit true for a deposit, false for a withdrawal
+   * @param amount  the transaction amount
+   */
+  protected void transactionApplied(boolean deposit, int amount) {
+    TransactionListener currentListener = listener;
+    if (currentListener != null) {
+      currentListener.transactionApplied(this, deposit, amount);
+    }
+  }
+
+  /**
+   * Adds a transaction that was just applied to the end of this account's list of transactions.
+   * This is used by subclasses that keep their own balance but the same list of transactions.
+   * 
+   * @param deposit true for a deposit, false for a withdrawal
+   * @param amount  the transaction amount
+   */
+  protected void appendTransaction(boolean deposit, int amount) {
+    transactions.append(deposit, amount);
+  }
+
   /**
    * Gets the account balance
    * 
    * @return the account balance
    */
-  public int getBalance() {
+  public long getBalance() {
     return balance;
   }
 
+  /**
+   * Gets the account balance as a BigDecimal, which is exact even for a HighPrecisionBankAccount
+   * whose balance does not fit into a long
+   * 
+   * @return the account balance
+   */
+  public BigDecimal getExactBalance() {
+    return BigDecimal.valueOf(getBalance());
+  }
+
+  /**
+   * Checks whether an amount can be deposited to this account without its balance overflowing.
+   * Transfers check this before they withdraw the amount from the other account.
+   * 
+   * @param depositAmount amount that would be deposited, which is not negative
+   * @return true if the deposit would not overflow the balance, false otherwise
+   */
+  boolean canDeposit(int depositAmount) {
+    return getBalance() <= Long.MAX_VALUE - depositAmount;
+  }
+
   /**
    * Checks if an other bank account is equal to this one
    * 
@@ -83,16 +216,73 @@ public class BankAccount {
    * 
    * @param depositAmount amount deposited into the account
    * @throws IllegalArgumentException with error message if depositAmount is negative
+   * @throws ArithmeticException      if the deposit would make the balance too large
    */
   public void deposit(int depositAmount) {
+    TransactionStatus status = tryDeposit(depositAmount);
+    if (status == TransactionStatus.BALANCE_OVERFLOW) {
+      throw new ArithmeticException(status.getMessage());
+    } else if (status != TransactionStatus.APPLIED) {
+      throw new IllegalArgumentException(status.getMessage());
+    }
+  }
+
+  /**
+   * Deposits an amount to this bank account like deposit() does, but reports an incorrect amount
+   * with a status instead of throwing an exception
+   * 
+   * @param depositAmount amount deposited into the account
+   * @return APPLIED if the amount was deposited, NEGATIVE_DEPOSIT if depositAmount is negative, or
+   *         BALANCE_OVERFLOW if the deposit would make the balance too large
+   */
+  public TransactionStatus tryDeposit(int depositAmount) {
+    return tryDeposit(depositAmount, TellerMetrics.currentRecorder());
+  }
+
+  /**
+   * Does what tryDeposit(int) does, recording the metrics of the deposit with a recorder the caller
+   * already looked up, so that a teller applying many transactions looks it up only once
+   * 
+   * @param depositAmount amount deposited into the account
+   * @param recorder      the recorder of the calling thread, or null while metrics are disabled
+   * @return the status tryDeposit(int) returns
+   */
+  TransactionStatus tryDeposit(int depositAmount, TellerMetrics.Recorder recorder) {
+    if (recorder == null) {
+      return applyDeposit(depositAmount);
+    }
+    long start = recorder.startTimer();
+    TransactionStatus status = applyDeposit(depositAmount);
+    recorder.record(TellerMetrics.Operation.DEPOSIT, status, start);
+    return status;
+  }
+
+  /**
+   * Deposits an amount to this bank account for tryDeposit(), which records the metrics of the
+   * deposit around it. Subclasses that change how a deposit is applied override this method.
+   * 
+   * @param depositAmount amount deposited into the account
+   * @return APPLIED if the amount was deposited, NEGATIVE_DEPOSIT if depositAmount is negative, or
+   *         BALANCE_OVERFLOW if the deposit would make the balance too large
+   */
+  protected TransactionStatus applyDeposit(int depositAmount) {
     // checks that the deposit amount is positive
     if (depositAmount < 0) {
-      throw new IllegalArgumentException("Deposit amount must be positive.");
+      return TransactionStatus.NEGATIVE_DEPOSIT;
+    }
+
+    // checks for overflow like Math.addExact(), which for a positive amount only has to check
+    // whether the sum wrapped around below the old balance
+    long newBalance = balance + depositAmount;
+    if (newBalance < balance) {
+      return TransactionStatus.BALANCE_OVERFLOW;
     }
 
     // changes the balance and adds a transaction to the list of transactions
-    balance = balance + depositAmount;
-    transactions.add("1 " + Integer.toString(depositAmount));
+    balance = newBalance;
+    transactions.append(true, depositAmount);
+    transactionApplied(true, depositAmount);
+    return TransactionStatus.APPLIED;
   }
 
   /**
@@ -104,18 +294,69 @@ public class BankAccount {
    * @throws IllegalStateException if withdrawAmount is greater than the account balance
    */
   public void withdraw(int withdrawAmount) throws DataFormatException {
+    TransactionStatus status = tryWithdraw(withdrawAmount);
+    if (status == TransactionStatus.INVALID_WITHDRAW_AMOUNT) {
+      throw new DataFormatException(status.getMessage());
+    } else if (status == TransactionStatus.INSUFFICIENT_FUNDS) {
+      throw new IllegalStateException(status.getMessage());
+    }
+  }
+
+  /**
+   * Withdraws a specific amount of money like withdraw() does, but reports an incorrect amount with
+   * a status instead of throwing an exception
+   * 
+   * @param withdrawAmount amount withdrawn from the account
+   * @return APPLIED if the amount was withdrawn, INVALID_WITHDRAW_AMOUNT if withdrawAmount is
+   *         negative or not a multiple of 10, or INSUFFICIENT_FUNDS if withdrawAmount is greater
+   *         than the account balance
+   */
+  public TransactionStatus tryWithdraw(int withdrawAmount) {
+    return tryWithdraw(withdrawAmount, TellerMetrics.currentRecorder());
+  }
+
+  /**
+   * Does what tryWithdraw(int) does, recording the metrics of the withdrawal with a recorder the
+   * caller already looked up, so that a teller applying many transactions looks it up only once
+   * 
+   * @param withdrawAmount amount withdrawn from the account
+   * @param recorder       the recorder of the calling thread, or null while metrics are disabled
+   * @return the status tryWithdraw(int) returns
+   */
+  TransactionStatus tryWithdraw(int withdrawAmount, TellerMetrics.Recorder recorder) {
+    if (recorder == null) {
+      return applyWithdrawal(withdrawAmount);
+    }
+    long start = recorder.startTimer();
+    TransactionStatus status = applyWithdrawal(withdrawAmount);
+    recorder.record(TellerMetrics.Operation.WITHDRAW, status, start);
+    return status;
+  }
+
+  /**
+   * Withdraws an amount from this bank account for tryWithdraw(), which records the metrics of the
+   * withdrawal around it. Subclasses that change how a withdrawal is applied override this method.
+   * 
+   * @param withdrawAmount amount withdrawn from the account
+   * @return APPLIED if the amount was withdrawn, INVALID_WITHDRAW_AMOUNT if withdrawAmount is
+   *         negative or not a multiple of 10, or INSUFFICIENT_FUNDS if withdrawAmount is greater
+   *         than the account balance
+   */
+  protected TransactionStatus applyWithdrawal(int withdrawAmount) {
     // checks that the withdraw amount is positive and a multiple of 10
     if (withdrawAmount < 0 || withdrawAmount % 10 != 0) {
-      throw new DataFormatException("Withdraw amount must be positive and a multiple of 10.");
+      return TransactionStatus.INVALID_WITHDRAW_AMOUNT;
     }
 
     // checks that the withdraw amount is not larger than the account's balance
     if (withdrawAmount > balance) {
-      throw new IllegalStateException("Withdraw amount must be less than account balance.");
+      return TransactionStatus.INSUFFICIENT_FUNDS;
     }
 
     balance = balance - withdrawAmount;
-    transactions.add("0 " + Integer.toString(withdrawAmount));
+    transactions.append(false, withdrawAmount);
+    transactionApplied(false, withdrawAmount);
+    return TransactionStatus.APPLIED;
   }
 
   /**
@@ -131,27 +372,209 @@ public class BankAccount {
   public String[] getMostRecentTransactions() {
     String[] recentTransactions = new String[5];
     int numTransactions = getTransactionsCount();
+    int keptTransactions = numTransactions - transactions.getFirstIndex();
 
     for (int i = 0; i < recentTransactions.length; i++) {
-      if ((i + 1) > numTransactions) {
+      if ((i + 1) > keptTransactions) {
         recentTransactions[i] = null;
       } else {
-        recentTransactions[i] = transactions.get(transactions.size() - i - 1);
+        recentTransactions[i] = transactions.toString(numTransactions - i - 1);
       }
     }
 
     return recentTransactions;
   }
 
+  /**
+   * Copies the most recent transactions of this account into caller-supplied arrays, the most
+   * recent one first, without allocating anything. This gives the same transactions as
+   * getMostRecentTransactions() without rendering them as strings, and can copy more than five of
+   * them.
+   * 
+   * @param amounts  array the transaction amounts are copied into
+   * @param deposits array the deposit flags are copied into, true for a deposit and false for a
+   *                 withdrawal
+   * @return the number of transactions copied, which is the length of the shorter array or the
+   *         number of kept transactions, whichever is smaller
+   */
+  public int getMostRecentTransactions(int[] amounts, boolean[] deposits) {
+    return transactions.copyRecent(amounts, deposits);
+  }
+
+  /**
+   * Gets a cursor over the kept transactions of this account and the times they were applied at.
+   * The cursor reads the transactions a page at a time as it is advanced, so reading the history
+   * of an account never copies all of it at once. Transactions applied after the cursor is created
+   * are not included.
+   * 
+   * @param newestFirst true to read the most recent transaction first, false to read the oldest
+   *                    kept transaction first
+   * @return the cursor
+   */
+  public TransactionHistory getHistory(boolean newestFirst) {
+    int count = getTransactionsCount();
+    return new TransactionHistory(this, getFirstKeptTransaction(), count, newestFirst);
+  }
+
+  /**
+   * Gets a cursor over the kept transactions of this account that were applied in a range of
+   * time, like getHistory(boolean) does. The range is found with a binary search of the index of
+   * the transaction times, so the cost of a query depends on the number of transactions
+   * in the range, and not on the length of the history before and after it.
+   * 
+   * @param fromTime    start of the range, in milliseconds since the epoch, included
+   * @param toTime      end of the range, in milliseconds since the epoch, excluded
+   * @param newestFirst true to read the most recent transaction first, false to read the oldest
+   *                    one first
+   * @return the cursor
+   * @throws IllegalArgumentException if fromTime is after toTime
+   */
+  public TransactionHistory getHistory(long fromTime, long toTime, boolean newestFirst) {
+    // checks that the range is not reversed
+    if (fromTime > toTime) {
+      throw new IllegalArgumentException("Start of the time range cannot be after its end.");
+    }
+
+    int to = findTransaction(toTime);
+    return new TransactionHistory(this, Math.min(findTransaction(fromTime), to), to, newestFirst);
+  }
+
+  /**
+   * Gets the number of most recent transactions this account keeps
+   * 
+   * @return the number of kept transactions, or 0 if all of them are kept
+   */
+  public int getRecentWindow() {
+    return transactions.getWindow();
+  }
+
   /**
    * Gets the total number of transactions performed on this bank account, meaning the size of the
-   * ArrayList of transactions of this bank account
+   * transaction log of this bank account
    * 
    * @return the total number of transactions performed on this account
    */
   public int getTransactionsCount() {
     return transactions.size();
   }
-}
 
+  /**
+   * Adds a transaction that was applied at a given time to the end of this account's list of
+   * transactions without changing the balance or telling the listener. This is only used to
+   * restore the most recent transactions of an account restored from a snapshot or from the cold
+   * tier, with the times they were first applied at.
+   * 
+   * @param deposit true for a deposit, false for a withdrawal
+   * @param amount  the transaction amount
+   * @param time    the time the transaction was applied at, in milliseconds since the epoch
+   */
+  void restoreTransaction(boolean deposit, int amount, long time) {
+    transactions.append(deposit, amount, time);
+  }
 
+  /**
+   * Checks whether every transaction of this account is kept, which is not the case for an
+   * account restored from a snapshot or an account that only kept a window of its transactions
+   * 
+   * @return true if the transactions at indices 0 .. getTransactionsCount()-1 can all be read
+   */
+  boolean hasFullHistory() {
+    return getFirstKeptTransaction() == 0;
+  }
+
+  /**
+   * Gets the index of the oldest transaction of this account that is kept
+   * 
+   * @return the index of the oldest kept transaction, 0 if every transaction is kept
+   */
+  int getFirstKeptTransaction() {
+    return transactions.getFirstIndex();
+  }
+
+  /**
+   * Checks whether the transaction at the given index of this account's list of transactions is a
+   * deposit
+   * 
+   * @param index index of the transaction, 0 being the oldest one
+   * @return true if the transaction is a deposit, false if it is a withdrawal
+   * @throws IndexOutOfBoundsException if index is negative or not less than
+   *                                   getTransactionsCount(), or if the transaction is no longer
+   *                                   kept
+   */
+  boolean isDepositTransaction(int index) {
+    return transactions.isDeposit(index);
+  }
+
+  /**
+   * Gets the amount of the transaction at the given index of this account's list of transactions
+   * 
+   * @param index index of the transaction, 0 being the oldest one
+   * @return the transaction amount
+   * @throws IndexOutOfBoundsException if index is negative or not less than
+   *                                   getTransactionsCount(), or if the transaction is no longer
+   *                                   kept
+   */
+  int getTransactionAmount(int index) {
+    return transactions.getAmount(index);
+  }
+
+  /**
+   * Gets the time the transaction at the given index of this account's list of transactions was
+   * applied at
+   * 
+   * @param index index of the transaction, 0 being the oldest one
+   * @return the time of the transaction, in milliseconds since the epoch
+   * @throws IndexOutOfBoundsException if index is negative or not less than
+   *                                   getTransactionsCount(), or if the transaction is no longer
+   *                                   kept
+   */
+  long getTransactionTime(int index) {
+    return transactions.getTime(index);
+  }
+
+  /**
+   * Finds the first kept transaction of this account that was applied at or after a given time
+   * 
+   * @param time the time, in milliseconds since the epoch
+   * @return the index of the first such transaction, or getTransactionsCount() if every kept
+   *         transaction is older
+   */
+  int findTransaction(long time) {
+    return transactions.findIndex(time);
+  }
+
+  /**
+   * Copies a run of consecutive transactions of this account and their times into
+   * caller-supplied arrays, for TransactionHistory
+   * 
+   * @param start       index of the first transaction copied
+   * @param length      number of transactions copied, which must fit into every array
+   * @param newestFirst true to copy from start down to older transactions, false to copy from
+   *                    start up to newer ones
+   * @param amounts     array the transaction amounts are copied into
+   * @param deposits    array the deposit flags are copied into
+   * @param times       array the times are copied into
+   * @return the number of transactions copied, which is less than length only if the oldest of
+   *         them were dropped from a window of recent transactions while they were copied
+   * @throws IndexOutOfBoundsException if one of the transactions was not kept when the copy
+   *                                   started
+   */
+  int copyTransactions(int start, int length, boolean newestFirst, int[] amounts,
+      boolean[] deposits, long[] times) {
+    return transactions.copyRun(start, length, newestFirst, amounts, deposits, times);
+  }
+
+  /**
+   * Adds up the amounts of the deposits and of the withdrawals of this account from a given index
+   * of its list of transactions on, without rendering them as strings
+   * 
+   * @param fromIndex index of the first transaction added up
+   * @param sums      array whose element 0 the deposits are added to, and whose element 1 the
+   *                  withdrawals are added to
+   * @throws IndexOutOfBoundsException if fromIndex is less than getFirstKeptTransaction() or
+   *                                   greater than getTransactionsCount()
+   */
+  void sumTransactions(int fromIndex, long[] sums) {
+    transactions.sumAmounts(fromIndex, sums);
+  }
+}
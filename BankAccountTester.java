@@ -1,14 +1,35 @@
 /////////////////////////////////////////// FILE  HEADER /////////////////////////////////////////////
 //
 // Title: Exceptional Bank Teller
-// Files: BankAccount.java, BankAccountTester.java, BankTeller.java, BankTellerTester.java
+// Files: BankAccount.java, BankAccountTester.java, BankTeller.java, BankTellerTester.java,
+//        BankTellerBenchmark.java, TransactionLog.java, TransactionLoadResult.java,
+//        ConcurrentTransactionLog.java, ConcurrentBankAccount.java,
+//        ConcurrentBankAccountTester.java, ConcurrentBankTeller.java,
+//        ConcurrentBankTellerTester.java, TransactionStatus.java, TransactionListener.java,
+//        TransactionJournal.java, TransactionJournalTester.java, TransactionSnapshot.java,
+//        ColdAccountStore.java, TieredAccountMap.java, TieredBankTeller.java,
+//        TieredBankTellerTester.java, TransactionBatch.java, TransactionBatchResult.java,
+//        TransactionRecord.java, TransactionEvent.java, TransactionPipeline.java,
+//        TransactionPipelineTester.java, LatencyHistogram.java, TellerMetrics.java,
+//        TellerMetricsTester.java, TransactionFile.java, TransactionFileTester.java,
+//        HighPrecisionBankAccount.java, HighPrecisionBankAccountTester.java, AccountIndex.java,
+//        AccountIndexTester.java, ReconciliationReport.java, ReconciliationTask.java,
+//        TransactionIDCache.java, TransactionIDCacheTester.java, ShardTransport.java,
+//        LocalShardTransport.java, SocketShardTransport.java, ShardServer.java,
+//        ShardedBankTeller.java, ShardedBankTellerTester.java, TransactionParser.java,
+//        TransactionParserTester.java, TellerServer.java, TellerClient.java,
+//        TellerLoadGenerator.java, TellerServerTester.java, TransactionClock.java,
+//        TransactionTimeIndex.java, TransactionHistory.java, TransactionHistoryTester.java,
+//        TellerWorkload.java, TellerReplay.java, TellerReplayResult.java, TellerReplayTester.java
 // This File: BankAccountTester.java
 // 
 // Name: Benjamin Tarmann
 // Email: btarmann@wisc.edu
 //
 ///////////////////////////////////////// 100 COLUMNS WIDE /////////////////////////////////////////
+import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.zip.DataFormatException;
 
 /**
@@ -174,6 +195,152 @@ public class BankAccountTester {
                   // deposit amount
   }
 
+  /**
+   * Checks whether BankAccount.getMostRecentTransactions() returns the five most recent
+   * transactions, most recent first, once the account has enough transactions to fill several
+   * chunks of its transaction log. Also checks that getTransactionsCount() counts every one of
+   * them.
+   * 
+   * @return true when this test verifies a correct functionality, and false otherwise.
+   */
+  public static boolean testBankAccountMostRecentTransactions() {
+    BankAccount test = new BankAccount("0001", 100);
+
+    // alternates deposits of i and withdrawals of 10 so that the balance never runs out
+    try {
+      for (int i = 1; i <= 1000; i++) {
+        test.deposit(i);
+        test.withdraw(10);
+      }
+    } catch (DataFormatException e) {
+      return false; // test fails since every withdraw amount is valid
+    }
+
+    String[] recent = test.getMostRecentTransactions();
+    if (test.getTransactionsCount() != 2001 || recent.length != 5) {
+      return false;
+    }
+
+    // checks the five most recent transactions in order
+    String[] expected = {"0 10", "1 1000", "0 10", "1 999", "0 10"};
+    for (int i = 0; i < expected.length; i++) {
+      if (!expected[i].equals(recent[i])) {
+        return false;
+      }
+    }
+
+    // checks that a new account reports its initial deposit followed by null references
+    recent = new BankAccount("0002", 30).getMostRecentTransactions();
+    return recent[0].equals("1 30") && recent[1] == null && recent[4] == null;
+  }
+
+  /**
+   * Checks whether BankAccount.tryWithdraw() and BankAccount.tryDeposit() report incorrect amounts
+   * with the right status instead of throwing an exception, and leave the balance unchanged.
+   * 
+   * @return true when this test verifies a correct functionality, and false otherwise.
+   */
+  public static boolean testBankAccountTryWithdrawDeposit() {
+    BankAccount test = new BankAccount("0001", 20);
+
+    if (test.tryWithdraw(15) != TransactionStatus.INVALID_WITHDRAW_AMOUNT
+        || test.tryWithdraw(-10) != TransactionStatus.INVALID_WITHDRAW_AMOUNT
+        || test.tryWithdraw(30) != TransactionStatus.INSUFFICIENT_FUNDS
+        || test.tryDeposit(-1) != TransactionStatus.NEGATIVE_DEPOSIT || test.getBalance() != 20
+        || test.getTransactionsCount() != 1) {
+      return false;
+    }
+
+    // checks that correct amounts are applied
+    return test.tryWithdraw(20) == TransactionStatus.APPLIED
+        && test.tryDeposit(5) == TransactionStatus.APPLIED && test.getBalance() == 5
+        && test.getTransactionsCount() == 3;
+  }
+
+  /**
+   * Checks whether an account that keeps a window of 3 transactions still counts every
+   * transaction, shows only the 3 most recent ones, and copies them into caller-supplied arrays
+   * 
+   * @return true when this test verifies a correct functionality, and false otherwise.
+   */
+  public static boolean testBankAccountRecentWindow() {
+    // checks that a negative window is rejected
+    try {
+      new BankAccount("0001", 20, -1);
+      return false;
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+
+    BankAccount test = new BankAccount("0001", 20, 3);
+    for (int i = 1; i <= 10; i++) {
+      test.deposit(i);
+    }
+    String[] expected = {"1 10", "1 9", "1 8", null, null};
+    if (test.getTransactionsCount() != 11 || test.getBalance() != 75
+        || !Arrays.equals(test.getMostRecentTransactions(), expected)) {
+      return false;
+    }
+
+    // checks that only the kept transactions are copied, the most recent one first
+    int[] amounts = new int[5];
+    boolean[] deposits = new boolean[5];
+    if (test.getMostRecentTransactions(amounts, deposits) != 3 || amounts[0] != 10
+        || amounts[2] != 8 || !deposits[0]) {
+      return false;
+    }
+
+    // checks that an account keeping every transaction copies as many as the arrays hold
+    BankAccount full = new BankAccount("0002", 100);
+    try {
+      full.withdraw(10);
+    } catch (DataFormatException e) {
+      return false;
+    }
+    full.deposit(5);
+    return full.getMostRecentTransactions(new int[1], new boolean[1]) == 1
+        && full.getMostRecentTransactions(amounts, deposits) == 3 && amounts[1] == 10
+        && !deposits[1] && amounts[2] == 100 && full.getRecentWindow() == 0;
+  }
+
+  /**
+   * Checks whether the balance grows past the largest int without wrapping around, and whether a
+   * deposit that would take the balance past Long.MAX_VALUE is rejected without changing the
+   * account while a deposit that reaches it exactly is applied
+   * 
+   * @return true when this test verifies a correct functionality, and false otherwise.
+   */
+  public static boolean testBankAccountBalanceOverflow() {
+    BankAccount test = new BankAccount("0001", Integer.MAX_VALUE);
+    test.deposit(Integer.MAX_VALUE);
+    if (test.getBalance() != 2L * Integer.MAX_VALUE
+        || !test.getExactBalance().equals(BigDecimal.valueOf(2L * Integer.MAX_VALUE))) {
+      return false;
+    }
+
+    // checks the deposits around the largest balance
+    BankAccount large = new BankAccount("0002", Long.MAX_VALUE - 100, 0, 0);
+    if (large.tryDeposit(101) != TransactionStatus.BALANCE_OVERFLOW
+        || large.tryDeposit(Integer.MAX_VALUE) != TransactionStatus.BALANCE_OVERFLOW
+        || large.getBalance() != Long.MAX_VALUE - 100 || large.getTransactionsCount() != 0
+        || large.tryDeposit(100) != TransactionStatus.APPLIED
+        || large.getBalance() != Long.MAX_VALUE || large.tryDeposit(0) != TransactionStatus.APPLIED
+        || large.tryDeposit(1) != TransactionStatus.BALANCE_OVERFLOW
+        || large.getTransactionsCount() != 2) {
+      return false;
+    }
+    try {
+      large.deposit(1);
+      return false;
+    } catch (ArithmeticException e) {
+      // expected
+    }
+
+    // checks that the largest balance can still be withdrawn from
+    return large.tryWithdraw(Integer.MAX_VALUE - 7) == TransactionStatus.APPLIED
+        && large.getBalance() == Long.MAX_VALUE - Integer.MAX_VALUE + 7;
+  }
+
   /**
    * Main method calls all of the test methods and prints out a message if one or more fail.
    * 
@@ -207,6 +374,22 @@ public class BankAccountTester {
     if (testBankAccountDepositNegativeAmount() == false) {
       System.out.println("testBankAccountDepositNegativeAmount failed");
     }
+
+    if (testBankAccountMostRecentTransactions() == false) {
+      System.out.println("testBankAccountMostRecentTransactions failed");
+    }
+
+    if (testBankAccountTryWithdrawDeposit() == false) {
+      System.out.println("testBankAccountTryWithdrawDeposit failed");
+    }
+
+    if (testBankAccountRecentWindow() == false) {
+      System.out.println("testBankAccountRecentWindow failed");
+    }
+
+    if (testBankAccountBalanceOverflow() == false) {
+      System.out.println("testBankAccountBalanceOverflow failed");
+    }
   }
 
 }
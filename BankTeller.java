@@ -1,7 +1,26 @@
 /////////////////////////////////////////// FILE  HEADER /////////////////////////////////////////////
 //
 // Title: Exceptional Bank Teller
-// Files: BankAccount.java, BankAccountTester.java, BankTeller.java, BankTellerTester.java
+// Files: BankAccount.java, BankAccountTester.java, BankTeller.java, BankTellerTester.java,
+//        BankTellerBenchmark.java, TransactionLog.java, TransactionLoadResult.java,
+//        ConcurrentTransactionLog.java, ConcurrentBankAccount.java,
+//        ConcurrentBankAccountTester.java, ConcurrentBankTeller.java,
+//        ConcurrentBankTellerTester.java, TransactionStatus.java, TransactionListener.java,
+//        TransactionJournal.java, TransactionJournalTester.java, TransactionSnapshot.java,
+//        ColdAccountStore.java, TieredAccountMap.java, TieredBankTeller.java,
+//        TieredBankTellerTester.java, TransactionBatch.java, TransactionBatchResult.java,
+//        TransactionRecord.java, TransactionEvent.java, TransactionPipeline.java,
+//        TransactionPipelineTester.java, LatencyHistogram.java, TellerMetrics.java,
+//        TellerMetricsTester.java, TransactionFile.java, TransactionFileTester.java,
+//        HighPrecisionBankAccount.java, HighPrecisionBankAccountTester.java, AccountIndex.java,
+//        AccountIndexTester.java, ReconciliationReport.java, ReconciliationTask.java,
+//        TransactionIDCache.java, TransactionIDCacheTester.java, ShardTransport.java,
+//        LocalShardTransport.java, SocketShardTransport.java, ShardServer.java,
+//        ShardedBankTeller.java, ShardedBankTellerTester.java, TransactionParser.java,
+//        TransactionParserTester.java, TellerServer.java, TellerClient.java,
+//        TellerLoadGenerator.java, TellerServerTester.java, TransactionClock.java,
+//        TransactionTimeIndex.java, TransactionHistory.java, TransactionHistoryTester.java,
+//        TellerWorkload.java, TellerReplay.java, TellerReplayResult.java, TellerReplayTester.java
 // This File: BankTeller.java
 // 
 // Name: Benjamin Tarmann
@@ -10,10 +29,27 @@
 ///////////////////////////////////////// 100 COLUMNS WIDE /////////////////////////////////////////
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 import java.util.zip.DataFormatException;
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
 import java.util.Scanner;
 
 /**
@@ -22,20 +58,63 @@ import java.util.Scanner;
  * @author Benjamin Tarmann
  */
 public class BankTeller {
-  private ArrayList<BankAccount> accounts;
+  private static final int DEFAULT_EXPECTED_ACCOUNTS = 16;
+  private static final int MAPPED_WINDOW_SIZE = 64 * 1024 * 1024; // bytes mapped at a time
+  private static final int PARSED_LINES = 4096; // lines of a mapped file parsed at a time
+  static final TransactionStatus[] STATUSES = TransactionStatus.values();
+  static final long PARSED_DEPOSIT = 1L << 32; // flag of a deposit returned by parseTransaction()
+  static final long PARSED_ID = 1L << 33; // flag of a transaction ID returned by parseTransaction()
+  static final long PARSED_INVALID_ID = 1L << 34; // flag of an ID word that is not a valid ID
+  static final long NO_ID = -1; // returned by parseTransactionID() for a transaction without an ID
+  static final long INVALID_ID = -2; // returned by parseTransactionID() for an invalid ID
+
+  private Map<String, BankAccount> accounts; // accounts indexed by their account ID
+  private TransactionJournal journal; // journal of the accounts and their transactions, or null
+  private AccountIndex index; // indexes of the accounts by balance and activity, or null
+  private volatile TransactionIDCache appliedIDs; // IDs of applied transactions, or null
 
   /**
    * Creates a new BankTeller object with an empty list of accounts
    */
   public BankTeller() {
-    accounts = new ArrayList<BankAccount>();
+    this(DEFAULT_EXPECTED_ACCOUNTS);
+  }
+
+  /**
+   * Creates a new BankTeller object with an empty list of accounts, sized to hold the expected
+   * number of accounts without having to grow its index while they are added
+   * 
+   * @param expectedAccounts number of accounts this BankTeller is expected to hold
+   * @throws IllegalArgumentException if expectedAccounts is negative
+   */
+  public BankTeller(int expectedAccounts) {
+    // checks that the expected number of accounts is not negative
+    if (expectedAccounts < 0) {
+      throw new IllegalArgumentException("Expected number of accounts cannot be negative.");
+    }
+
+    // sizes the index so that it stays below the default load factor of 0.75
+    accounts = new HashMap<String, BankAccount>(
+        (int) Math.min((long) expectedAccounts * 4 / 3 + 1, Integer.MAX_VALUE));
+  }
+
+  /**
+   * Creates a new BankTeller object that keeps its accounts in the given empty map. This is used by
+   * subclasses that need a different kind of map, for example one that is safe to use from many
+   * threads.
+   * 
+   * @param accounts empty map that accounts are stored in, indexed by their account ID
+   */
+  protected BankTeller(Map<String, BankAccount> accounts) {
+    this.accounts = accounts;
   }
 
   /**
    * Adds newAccount to the list of this BankTeller
    * 
    * @param newAccount a new account to add
-   * @throws IllegalArgumentException if newAccount is null
+   * @throws IllegalArgumentException if newAccount is null, or if this BankTeller has an open
+   *                                  journal and the older transactions of newAccount are not kept
    * @throws IllegalStateException    if the id of newAccount is equal to an existing id
    */
   public void addBankAccount(BankAccount newAccount) {
@@ -44,16 +123,280 @@ public class BankTeller {
       throw new IllegalArgumentException("New account is null.");
     }
 
-    // checks that newAccount does not have the same ID as another existing account
-    for (int i = 0; i < accounts.size(); i++) {
-      if (accounts.get(i).getID().equals(newAccount.getID())) {
-        throw new IllegalStateException(
-            "New account cannot have the same ID as an existing account.");
-      }
+    // checks that a journal can rebuild newAccount, which needs every transaction of it
+    if (journal != null && !newAccount.hasFullHistory()) {
+      throw new IllegalArgumentException(
+          "Account without its full history cannot be added to a BankTeller with a journal.");
+    }
+
+    // checks that newAccount does not have the same ID as another existing account. putIfAbsent
+    // does the duplicate check and the insertion with a single hash lookup
+    if (accounts.putIfAbsent(newAccount.getID(), newAccount) != null) {
+      throw new IllegalStateException(
+          "New account cannot have the same ID as an existing account.");
+    }
+
+    // indexes and journals the new account and every transaction applied to it from now on.
+    // ConcurrentBankTeller holds the lock stripe of the account until the listener is attached, so
+    // none of its transactions reaches the account between the copy and the listener
+    if (index != null) {
+      index.add(newAccount);
+    }
+    if (journal != null) {
+      journal.accountAdded(newAccount);
+    }
+    if (index != null || journal != null) {
+      newAccount.setTransactionListener(index != null ? index : journal);
+    }
+  }
+
+  /**
+   * Removes the account with the given ID from this BankTeller, for example to move it to another
+   * BankTeller. The account stops being indexed and loses its listener.
+   * 
+   * @param id ID of the account to remove
+   * @return the removed account
+   * @throws NoSuchElementException if no account has the given ID
+   * @throws IllegalStateException  if this BankTeller has an open journal, which has no record of
+   *                                removed accounts and would bring the account back
+   */
+  public BankAccount removeBankAccount(String id) {
+    // checks that the journal would not replay the removed account
+    if (journal != null) {
+      throw new IllegalStateException(
+          "Account cannot be removed from a BankTeller with a journal.");
+    }
+
+    BankAccount removed = accounts.remove(id);
+    if (removed == null) {
+      throw new NoSuchElementException("No account could be found with the given ID.");
+    }
+    if (index != null) {
+      index.remove(id);
+    }
+    removed.setTransactionListener(null);
+    return removed;
+  }
+
+  /**
+   * Opens a write-ahead journal for this BankTeller. The accounts and transactions already in the
+   * journal file are replayed first, which rebuilds the accounts this BankTeller had when the
+   * journal was last used. From then on every account added to this BankTeller, and every deposit
+   * and withdrawal applied to its accounts, is appended to the journal. Records are synced to disk
+   * in groups, as described in TransactionJournal. Snapshots are only taken when snapshotJournal()
+   * is called.
+   * 
+   * @param file               the journal file, which is created if it does not exist
+   * @param syncEveryRecords   number of records after which the journal is synced to disk, 1 to
+   *                           sync every record
+   * @param syncIntervalMillis longest time in milliseconds a record waits to be synced to disk, or
+   *                           0 to only sync by the number of records
+   * @throws IOException              if the journal file cannot be read or opened
+   * @throws IllegalStateException    if this BankTeller already has accounts or an open journal
+   * @throws IllegalArgumentException if syncEveryRecords is less than 1 or syncIntervalMillis is
+   *                                  negative
+   */
+  public void openJournal(File file, int syncEveryRecords, long syncIntervalMillis)
+      throws IOException {
+    openJournal(file, syncEveryRecords, syncIntervalMillis, 0);
+  }
+
+  /**
+   * Opens a write-ahead journal for this BankTeller like openJournal(File, int, long) does, and
+   * takes a snapshot of the accounts in the background every given number of milliseconds. The
+   * latest snapshot is loaded before the journal is replayed, so only the journal records written
+   * after it are replayed, and the records it includes are deleted. Recovery then takes time
+   * proportional to the number of accounts rather than to the length of their history; accounts
+   * recovered from a snapshot only keep their last five transactions.
+   * 
+   * @param file                   the journal file, which is created if it does not exist. The
+   *                               snapshot is kept next to it, in a file with ".snapshot" added
+   *                               to its name.
+   * @param syncEveryRecords       number of records after which the journal is synced to disk, 1
+   *                               to sync every record
+   * @param syncIntervalMillis     longest time in milliseconds a record waits to be synced to disk,
+   *                               or 0 to only sync by the number of records
+   * @param snapshotIntervalMillis time in milliseconds between snapshots, or 0 to only take them
+   *                               when snapshotJournal() is called
+   * @throws IOException              if the journal or snapshot file cannot be read or opened
+   * @throws IllegalStateException    if this BankTeller already has accounts or an open journal
+   * @throws IllegalArgumentException if syncEveryRecords is less than 1, or if syncIntervalMillis
+   *                                  or snapshotIntervalMillis is negative
+   */
+  public void openJournal(File file, int syncEveryRecords, long syncIntervalMillis,
+      long snapshotIntervalMillis) throws IOException {
+    // checks that the journal can rebuild this BankTeller from scratch
+    if (journal != null || getAccountsCount() != 0) {
+      throw new IllegalStateException(
+          "A journal can only be opened for a BankTeller without accounts or a journal.");
+    }
+
+    journal = TransactionJournal.open(file, this, syncEveryRecords, syncIntervalMillis,
+        snapshotIntervalMillis);
+    attachListeners();
+  }
+
+  /**
+   * Takes a snapshot of the accounts of this BankTeller and deletes the journal records it
+   * includes, as described in TransactionJournal.snapshot(). Transactions can be applied while the
+   * snapshot is taken.
+   * 
+   * @throws IOException           if the snapshot cannot be taken
+   * @throws IllegalStateException if this BankTeller has no open journal
+   */
+  public void snapshotJournal() throws IOException {
+    // checks that there is a journal
+    if (journal == null) {
+      throw new IllegalStateException("BankTeller has no open journal.");
+    }
+    journal.snapshot();
+  }
+
+  /**
+   * Syncs every journal record that is waiting to be synced to disk
+   * 
+   * @throws IOException           if the records cannot be written or synced
+   * @throws IllegalStateException if this BankTeller has no open journal
+   */
+  public void syncJournal() throws IOException {
+    // checks that there is a journal
+    if (journal == null) {
+      throw new IllegalStateException("BankTeller has no open journal.");
+    }
+    journal.sync();
+  }
+
+  /**
+   * Syncs and closes the journal of this BankTeller. Transactions applied after this are no longer
+   * journaled. Does nothing if there is no open journal.
+   * 
+   * @throws IOException if the records cannot be written or the journal cannot be closed
+   */
+  public void closeJournal() throws IOException {
+    if (journal == null) {
+      return;
+    }
+    TransactionJournal closing = journal;
+    journal = null;
+    attachListeners();
+    closing.close();
+  }
+
+  /**
+   * Creates the indexes of the accounts of this BankTeller by balance and by number of
+   * transactions, which getAccountIDsByBalance() and getMostActiveAccountIDs() query. The indexes
+   * start with every account this BankTeller holds, and are kept up to date as accounts are added
+   * and transactions are applied, at the cost of a few skip list updates per transaction (see
+   * AccountIndex). This should be called while no other thread uses this BankTeller.
+   * 
+   * @throws IllegalStateException if this BankTeller already has indexes
+   */
+  public void createIndexes() {
+    // checks that there are no indexes yet
+    if (index != null) {
+      throw new IllegalStateException("BankTeller already has indexes.");
+    }
+
+    AccountIndex newIndex = new AccountIndex();
+    for (BankAccount account : getAccounts()) {
+      newIndex.add(account);
+    }
+    index = newIndex;
+    attachListeners();
+  }
+
+  /**
+   * Gets the IDs of the accounts whose balance is between minBalance and maxBalance, both
+   * included, from the lowest balance to the highest, without looking at the other accounts
+   * 
+   * @param minBalance lowest balance of the accounts returned
+   * @param maxBalance highest balance of the accounts returned
+   * @param limit      largest number of account IDs returned
+   * @return the account IDs, at most limit of them
+   * @throws IllegalStateException    if this BankTeller has no indexes
+   * @throws IllegalArgumentException if limit is negative
+   */
+  public List<String> getAccountIDsByBalance(long minBalance, long maxBalance, int limit) {
+    // checks that there are indexes
+    if (index == null) {
+      throw new IllegalStateException("BankTeller has no indexes.");
+    }
+    return index.getIDsByBalance(minBalance, maxBalance, limit);
+  }
+
+  /**
+   * Gets the IDs of the accounts with the most transactions, from the most active one, without
+   * looking at the other accounts
+   * 
+   * @param count largest number of account IDs returned
+   * @return the account IDs, at most count of them
+   * @throws IllegalStateException    if this BankTeller has no indexes
+   * @throws IllegalArgumentException if count is negative
+   */
+  public List<String> getMostActiveAccountIDs(int count) {
+    // checks that there are indexes
+    if (index == null) {
+      throw new IllegalStateException("BankTeller has no indexes.");
     }
+    return index.getMostActiveIDs(count);
+  }
+
+  /**
+   * Makes this BankTeller reject a transaction whose transaction ID was already applied, so that a
+   * feed that is sent again is not applied twice. The IDs of the last window transactions applied
+   * with an ID are remembered in a TransactionIDCache, whose memory is allocated here and does not
+   * grow afterwards. Transactions without an ID are applied as before.
+   * 
+   * @param window number of transaction IDs remembered
+   * @throws IllegalArgumentException if window is less than 1 or larger than 2^28
+   */
+  public void enableDeduplication(int window) {
+    appliedIDs = new TransactionIDCache(window);
+  }
+
+  /**
+   * Makes the indexes, if there are any, the listener of every account and passes the
+   * transactions on from them to the journal. Without indexes the journal, or no listener if there
+   * is no journal either, becomes the listener of every account.
+   */
+  private void attachListeners() {
+    if (index != null) {
+      index.setTransactionListener(journal);
+      setTransactionListeners(index);
+    } else {
+      setTransactionListeners(journal);
+    }
+  }
+
+  /**
+   * Sets the listener of every account of this BankTeller. This is used to attach and detach the
+   * indexes and the journal, and is overridden by subclasses that do not keep every account as an
+   * object.
+   * 
+   * @param listener the new listener, or null to remove the current one
+   */
+  protected void setTransactionListeners(TransactionListener listener) {
+    for (BankAccount account : accounts.values()) {
+      account.setTransactionListener(listener);
+    }
+  }
+
+  /**
+   * Gets the accounts of this BankTeller
+   * 
+   * @return a view of the accounts, which changes when accounts are added
+   */
+  Collection<BankAccount> getAccounts() {
+    return accounts.values();
+  }
 
-    accounts.add(newAccount); // only adds new account if newAccount is not null and the ID
-                              // does not already exist
+  /**
+   * Gets the IDs of the accounts of this BankTeller
+   * 
+   * @return a list of the account IDs, which does not change when accounts are added or removed
+   */
+  List<String> getAccountIDs() {
+    return new ArrayList<String>(accounts.keySet());
   }
 
   /**
@@ -65,15 +408,67 @@ public class BankTeller {
    * @throws NoSuchElementException if the account is not found with the given id parameter
    */
   public BankAccount findAccount(String id) throws NoSuchElementException {
-    for (int i = 0; i < accounts.size(); i++) {
-      if (accounts.get(i).getID().equals(id)) {
-        BankAccount foundAccount = accounts.get(i);
-        return foundAccount;
-      }
+    BankAccount foundAccount;
+    TellerMetrics metrics = TellerMetrics.current;
+    if (metrics == null) {
+      foundAccount = accounts.get(id);
+    } else {
+      TellerMetrics.Recorder recorder = metrics.recorder();
+      long start = recorder.startTimer();
+      foundAccount = accounts.get(id);
+      recorder.record(TellerMetrics.Operation.FIND_ACCOUNT, foundAccount == null
+          ? TransactionStatus.ACCOUNT_NOT_FOUND : TransactionStatus.APPLIED, start);
+    }
+
+    // throws exception if no account was found with the id
+    if (foundAccount == null) {
+      throw new NoSuchElementException("No account could be found with the given ID.");
     }
+    return foundAccount;
+  }
+
+  /**
+   * Transfers an amount of money from one account to another. The transfer follows the rules of
+   * BankAccount.withdraw(): if the amount cannot be withdrawn from the first account, neither
+   * account is changed. Neither is changed either if the amount cannot be deposited to the second
+   * account because its balance would overflow.
+   * 
+   * @param fromId ID of the account the money is withdrawn from
+   * @param toId   ID of the account the money is deposited to
+   * @param amount amount of money to transfer
+   * @throws NoSuchElementException   if either account is not found
+   * @throws IllegalArgumentException if fromId and toId refer to the same account
+   * @throws DataFormatException      if amount is negative or not a multiple of 10
+   * @throws IllegalStateException    if amount is greater than the balance of the first account
+   * @throws ArithmeticException      if amount would make the balance of the second account too
+   *                                  large
+   */
+  public void transfer(String fromId, String toId, int amount) throws DataFormatException {
+    BankAccount from = findAccount(fromId);
+    BankAccount to = findAccount(toId);
 
-    // throws exception if the loop is exited, which means no account was found with the id
-    throw new NoSuchElementException("No account could be found with the given ID.");
+    // checks that the money is moved between two different accounts
+    if (from == to) {
+      throw new IllegalArgumentException("Cannot transfer money to the same account.");
+    }
+
+    checkTransferDeposit(to, amount);
+    from.withdraw(amount); // throws before any account is changed if the amount is not valid
+    to.deposit(amount);
+  }
+
+  /**
+   * Checks that the deposit of a transfer cannot overflow the balance of the account it goes to,
+   * before the amount is withdrawn from the other account
+   * 
+   * @param to     the account the money is deposited to
+   * @param amount amount of money to transfer
+   * @throws ArithmeticException if amount would make the balance of the account too large
+   */
+  static void checkTransferDeposit(BankAccount to, int amount) {
+    if (amount > 0 && !to.canDeposit(amount)) {
+      throw new ArithmeticException(TransactionStatus.BALANCE_OVERFLOW.getMessage());
+    }
   }
 
   /**
@@ -86,30 +481,274 @@ public class BankTeller {
    * @throws NullPointerException if account is null
    */
   public void addTransaction(String transaction, BankAccount account) throws DataFormatException {
-    String[] splitTransaction = transaction.trim().split(" ");
-    int transactionAmount;
+    TransactionStatus status = tryAddTransaction(transaction, account);
+    if (status.isMalformed()) {
+      throw new DataFormatException(status.getMessage());
+    }
+    throwUnlessApplied(status);
+  }
 
+  /**
+   * Adds a new transaction to the account's list of transactions like addTransaction() does, but
+   * reports an incorrect transaction with a status instead of throwing an exception. The
+   * transaction is checked in the same order as addTransaction() checks it: the amount after the
+   * last space must consist of digits only and fit into an int, the transaction must start with
+   * "1" for a deposit or "0" for a withdrawal, and a transaction ID, if there is one, must be
+   * valid.
+   * 
+   * A transaction may carry an ID, written as a word of "#" and a number right before its amount,
+   * for example "1 #1042 20". If deduplication is enabled, a transaction whose ID was already
+   * applied is not applied again and is reported with DUPLICATE_TRANSACTION; addTransaction()
+   * returns normally for it, since the transaction is already in the account. A word before the
+   * amount that starts with "#" but is not a valid ID, such as "#abc", is rejected with
+   * INVALID_TRANSACTION_ID while deduplication is enabled, and ignored otherwise, like every word
+   * between the type and the amount always was.
+   * 
+   * An ID is taken before its transaction is applied and given back if the transaction is
+   * rejected, so that it can be sent again once it can be applied. While a transaction is being
+   * applied, its ID counts as applied: the same ID sent at that time is reported with
+   * DUPLICATE_TRANSACTION even if the first attempt is rejected afterwards. ConcurrentBankTeller
+   * checks, applies and records a transaction under the lock stripe of its account, so a retry of
+   * the transaction on the same account waits for the first attempt instead; only the same ID
+   * sent to another account at that time is reported as a duplicate.
+   * 
+   * @param transaction to add
+   * @param account     bank account
+   * @return APPLIED if the transaction was added, or the reason it was not
+   * @throws NullPointerException if account is null
+   */
+  public TransactionStatus tryAddTransaction(String transaction, BankAccount account) {
     // checks that account is not null
     if (account == null) {
       throw new NullPointerException("Account is null.");
     }
 
-    // checks that the amount the transaction is for consists only of numbers
-    for (int i = 0; i < splitTransaction[splitTransaction.length - 1].length(); i++) {
-      if (Character.isDigit(splitTransaction[splitTransaction.length - 1].charAt(i)) == false) {
-        throw new DataFormatException("Transaction amount should consist of numbers only.");
+    TellerMetrics.Recorder recorder = TellerMetrics.currentRecorder();
+    if (recorder == null) {
+      return applyTransaction(transaction, account, null);
+    }
+    long start = recorder.startTimer();
+    TransactionStatus status = applyTransaction(transaction, account, recorder);
+    recorder.record(TellerMetrics.Operation.ADD_TRANSACTION, status, start);
+    return status;
+  }
+
+  /**
+   * Parses a transaction and applies it to an account for tryAddTransaction(), which records the
+   * metrics of the transaction around it
+   * 
+   * @param transaction to add
+   * @param account     bank account, which is not null
+   * @param recorder    the recorder of the calling thread, or null while metrics are disabled
+   * @return APPLIED if the transaction was added, or the reason it was not
+   */
+  private TransactionStatus applyTransaction(String transaction, BankAccount account,
+      TellerMetrics.Recorder recorder) {
+    long parsed = parseTransaction(transaction);
+    if (parsed < 0) {
+      return STATUSES[(int) (-1 - parsed)];
+    }
+
+    // only transactions with an ID are checked for duplicates, and an ID that is not valid is only
+    // rejected while they are, since the word before the amount was ignored before there were IDs
+    TransactionIDCache cache = appliedIDs;
+    if (cache == null || (parsed & PARSED_ID) == 0) {
+      if (cache != null && (parsed & PARSED_INVALID_ID) != 0) {
+        return TransactionStatus.INVALID_TRANSACTION_ID;
       }
+      return applyParsed(parsed, account, recorder);
+    }
+    long id = parseTransactionID(transaction.trim());
+    if (!cache.add(id)) {
+      return TransactionStatus.DUPLICATE_TRANSACTION;
     }
-    transactionAmount = Integer.valueOf(splitTransaction[splitTransaction.length - 1]);
+    TransactionStatus status = applyParsed(parsed, account, recorder);
+    if (status != TransactionStatus.APPLIED) {
+      cache.remove(id); // a rejected transaction may be sent again once it can be applied
+    }
+    return status;
+  }
 
-    // checks whether the transaction is a withdrawal or deposit, or else throws an exception
-    if (transaction.trim().charAt(0) == '1') {
-      account.deposit(transactionAmount);
-    } else if (transaction.trim().charAt(0) == '0') {
-      account.withdraw(transactionAmount);
+  /**
+   * Applies a transaction parsed by parseTransaction() to an account
+   * 
+   * @param parsed   the parsed transaction, which is not rejected
+   * @param account  bank account, which is not null
+   * @param recorder the recorder of the calling thread, or null while metrics are disabled
+   * @return APPLIED if the transaction was added, or the reason it was not
+   */
+  private static TransactionStatus applyParsed(long parsed, BankAccount account,
+      TellerMetrics.Recorder recorder) {
+    if ((parsed & PARSED_DEPOSIT) != 0) {
+      return account.tryDeposit((int) parsed, recorder);
     } else {
-      throw new DataFormatException(
-          "Transaction does not correctly indicate deposit or withdrawal.");
+      return account.tryWithdraw((int) parsed, recorder);
+    }
+  }
+
+  /**
+   * Parses a transaction without applying it, checking it in the same order as addTransaction()
+   * does. Both tryAddTransaction() and the converter of transaction files parse transactions with
+   * this method, so they accept and reject exactly the same transactions.
+   * 
+   * @param transaction the transaction to parse
+   * @return the amount of the transaction in the low 32 bits, with PARSED_DEPOSIT set for a
+   *         deposit, PARSED_ID set if it has a transaction ID and PARSED_INVALID_ID set if the
+   *         word before its amount starts with "#" but is not a valid ID, or -1 - the ordinal of
+   *         the TransactionStatus it is rejected with
+   */
+  static long parseTransaction(String transaction) {
+    String trimmed = transaction.trim();
+
+    // checks that the amount after the last space consists only of numbers, and parses it
+    long amount = 0;
+    for (int i = trimmed.lastIndexOf(' ') + 1; i < trimmed.length(); i++) {
+      char c = trimmed.charAt(i);
+      if (Character.isDigit(c) == false) {
+        return -1 - TransactionStatus.INVALID_AMOUNT.ordinal();
+      }
+      if (amount <= Integer.MAX_VALUE) {
+        amount = amount * 10 + Character.digit(c, 10); // stops growing once it is too large
+      }
+    }
+
+    // checks that there is an amount and that it fits into an int
+    if (trimmed.isEmpty() || amount > Integer.MAX_VALUE) {
+      return -1 - TransactionStatus.AMOUNT_OUT_OF_RANGE.ordinal();
+    }
+
+    // checks whether the transaction is a withdrawal or deposit
+    if (trimmed.charAt(0) == '1') {
+      amount |= PARSED_DEPOSIT;
+    } else if (trimmed.charAt(0) != '0') {
+      return -1 - TransactionStatus.INVALID_TYPE.ordinal();
+    }
+
+    // flags the transaction ID if there is one; whether an invalid one is rejected is up to the
+    // caller, since only a BankTeller that deduplicates transactions rejects it
+    long id = parseTransactionID(trimmed);
+    if (id >= 0) {
+      amount |= PARSED_ID;
+    } else if (id == INVALID_ID) {
+      amount |= PARSED_INVALID_ID;
+    }
+    return amount;
+  }
+
+  /**
+   * Parses the transaction ID of a trimmed transaction, which is the word before its amount if
+   * that word starts with "#": a "#" followed by the digits of the ID, for example "#1042". A "#"
+   * anywhere else is not an ID.
+   * 
+   * @param trimmed the trimmed transaction
+   * @return the transaction ID, NO_ID if the word before the amount does not start with "#", or
+   *         INVALID_ID if the digits after the "#" are missing, are not made of digits only or do
+   *         not fit into a long
+   */
+  static long parseTransactionID(String trimmed) {
+    int end = trimmed.lastIndexOf(' ');
+    if (end <= 0) {
+      return NO_ID;
+    }
+    int start = trimmed.lastIndexOf(' ', end - 1) + 1;
+    if (start == end || trimmed.charAt(start) != '#') {
+      return NO_ID;
+    }
+    start++;
+    if (start == end) {
+      return INVALID_ID;
+    }
+    long id = 0;
+    for (int i = start; i < end; i++) {
+      int digit = trimmed.charAt(i) - '0';
+      if (digit < 0 || digit > 9 || id > Long.MAX_VALUE / 10) {
+        return INVALID_ID;
+      }
+      id = id * 10 + digit; // can only overflow to a negative number after the check above
+      if (id < 0) {
+        return INVALID_ID;
+      }
+    }
+    return id;
+  }
+
+  /**
+   * Applies a batch of transactions to the accounts of this BankTeller. Each account is found once
+   * for all of its records rather than once per record, and the records are applied in the order
+   * they have in the batch, so a record is applied or rejected exactly as if tryDeposit() or
+   * tryWithdraw() had been called for each record in turn. Records of an account this BankTeller
+   * does not have are rejected with ACCOUNT_NOT_FOUND. No record throws an exception.
+   * 
+   * @param batch the records to apply
+   * @return the status of every record
+   * @throws NullPointerException if batch is null
+   */
+  public TransactionBatchResult applyBatch(TransactionBatch batch) {
+    int[] groupOf = new int[batch.size()];
+    String[] groupIDs = batch.groupByAccount(groupOf);
+    BankAccount[] groupAccounts = new BankAccount[groupIDs.length];
+    for (int group = 0; group < groupIDs.length; group++) {
+      groupAccounts[group] = accounts.get(groupIDs[group]);
+    }
+
+    byte[] statuses = new byte[batch.size()];
+    applyRecords(batch, groupOf, groupAccounts, statuses);
+    return new TransactionBatchResult(statuses);
+  }
+
+  /**
+   * Applies the records of a batch to the accounts that were found for them. This is overridden by
+   * subclasses that have to lock the accounts while the records are applied.
+   * 
+   * @param batch         the records to apply
+   * @param groupOf       number of the account of each record
+   * @param groupAccounts the accounts, indexed by their number, or null if not found
+   * @param statuses      ordinals of the statuses of the records, indexed like the records
+   */
+  protected void applyRecords(TransactionBatch batch, int[] groupOf, BankAccount[] groupAccounts,
+      byte[] statuses) {
+    batch.applyRecords(groupOf, groupAccounts, 0, batch.size(), statuses);
+  }
+
+  /**
+   * Throws the unchecked exception addTransaction() reports a status with, unless the status is
+   * APPLIED or means that the transaction is not correctly formatted
+   * 
+   * @param status the status of a transaction
+   * @throws NumberFormatException    if status is AMOUNT_OUT_OF_RANGE
+   * @throws IllegalStateException    if status is INSUFFICIENT_FUNDS
+   * @throws IllegalArgumentException if status is NEGATIVE_DEPOSIT
+   * @throws ArithmeticException      if status is BALANCE_OVERFLOW
+   */
+  static void throwUnlessApplied(TransactionStatus status) {
+    if (status == TransactionStatus.AMOUNT_OUT_OF_RANGE) {
+      throw new NumberFormatException(status.getMessage());
+    } else if (status == TransactionStatus.INSUFFICIENT_FUNDS) {
+      throw new IllegalStateException(status.getMessage());
+    } else if (status == TransactionStatus.NEGATIVE_DEPOSIT) {
+      throw new IllegalArgumentException(status.getMessage());
+    } else if (status == TransactionStatus.BALANCE_OVERFLOW) {
+      throw new ArithmeticException(status.getMessage());
+    }
+  }
+
+  /**
+   * Counts a transaction line of a transaction file as applied, skipped or duplicated. A line that
+   * was not applied for another reason than its format or its ID makes the bulk loaders throw the
+   * same exception addTransaction() would throw for it.
+   * 
+   * @param status the status of the transaction line
+   * @param result counts of applied and skipped lines to update
+   */
+  static void countLine(TransactionStatus status, TransactionLoadResult result) {
+    if (status == TransactionStatus.APPLIED) {
+      result.lineApplied();
+    } else if (status.isMalformed()) {
+      result.lineSkipped();
+    } else if (status == TransactionStatus.DUPLICATE_TRANSACTION) {
+      result.lineDuplicated();
+    } else {
+      throwUnlessApplied(status);
     }
   }
 
@@ -142,23 +781,394 @@ public class BankTeller {
           "File does not correspond to an actual file within the file system.");
     }
 
+    long start = System.nanoTime();
     Scanner fileContents = new Scanner(file);
     String fileLine;
     while (fileContents.hasNextLine()) {
-      try {
-        fileLine = fileContents.nextLine();
-        addTransaction(fileLine, account);
-      } catch (DataFormatException e) {
-        continue; // if a DataFormatException is thrown, the line is not correctly formatted and is
-                  // skipped
+      fileLine = fileContents.nextLine();
+
+      // lines that are not correctly formatted are skipped without throwing an exception
+      TransactionStatus status = tryAddTransaction(fileLine, account);
+      if (!status.isMalformed()) {
+        throwUnlessApplied(status);
       }
     }
     fileContents.close();
+    fileLoaded(start);
+  }
+
+  /**
+   * Records the metrics of a transaction file that was loaded completely, if metrics are enabled
+   * 
+   * @param start the time in nanoseconds when loading the file started
+   */
+  private static void fileLoaded(long start) {
+    TellerMetrics metrics = TellerMetrics.current;
+    if (metrics != null) {
+      metrics.recorder().record(TellerMetrics.Operation.LOAD_TRANSACTIONS,
+          TransactionStatus.APPLIED, start);
+    }
+  }
+
+  /**
+   * Loads a set of transactions from a provided file object the same way loadTransactions() does,
+   * but memory maps the file and parses each line straight from its bytes instead of creating a
+   * String for it. Lines are skipped and applied exactly as loadTransactions() skips and applies
+   * them, and any exception loadTransactions() would let escape for a line (for example an
+   * IllegalStateException for a withdrawal larger than the balance) escapes from this method too.
+   * Lines that contain non-ASCII characters are decoded and passed to addTransaction() so that they
+   * are handled identically as well.
+   * 
+   * @param file    a java.io.File object referring to a file that contains a set of transactions,
+   *                each in one line
+   * @param account a reference to a BankAccount object
+   * @return the number of lines that were applied to the account and that were skipped
+   * @throws FileNotFoundException if the file object does not correspond to an actual file within
+   *                               the file system
+   * @throws IOException           if the file cannot be read
+   * @throws NullPointerException  if the account is null
+   */
+  public TransactionLoadResult loadTransactionsMapped(File file, BankAccount account)
+      throws IOException {
+    // checks that account is not null
+    if (account == null) {
+      throw new NullPointerException("Account is null.");
+    }
+
+    // checks that the file exists
+    if (!file.exists()) {
+      throw new FileNotFoundException(
+          "File does not correspond to an actual file within the file system.");
+    }
+
+    long start = System.nanoTime();
+    TransactionLoadResult result = new TransactionLoadResult();
+    loadMapped(file, account, result);
+    fileLoaded(start);
+    return result;
+  }
+
+  /**
+   * Memory maps a transaction file and applies its lines to an account, as described in
+   * loadTransactionsMapped(). The counts of the lines applied or skipped before an exception is
+   * thrown are kept in result.
+   * 
+   * @param file    an existing file that contains a set of transactions, each in one line
+   * @param account a reference to a BankAccount object
+   * @param result  counts of applied and skipped lines to update
+   * @throws IOException if the file cannot be read
+   */
+  private void loadMapped(File file, BankAccount account, TransactionLoadResult result)
+      throws IOException {
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      long fileSize = channel.size();
+      long position = 0;
+      int windowSize = MAPPED_WINDOW_SIZE;
+
+      // maps the file one window at a time so that files larger than 2GB can be loaded. Each
+      // window starts at the beginning of a line that has not been applied yet
+      while (position < fileSize) {
+        int length = (int) Math.min(windowSize, fileSize - position);
+        boolean endOfFile = position + length == fileSize;
+        MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+        int consumed = applyMappedLines(window, length, endOfFile, account, result);
+
+        // stops at a line that cannot be decoded, like java.util.Scanner does
+        if (consumed < 0) {
+          break;
+        }
+
+        // grows the window if a single line does not fit into it
+        if (consumed == 0) {
+          if (windowSize == Integer.MAX_VALUE) {
+            throw new IOException("Transaction line is too long to be mapped.");
+          }
+          windowSize = (int) Math.min(windowSize * 2L, Integer.MAX_VALUE);
+        }
+        position += consumed;
+      }
+    }
+  }
+
+  /**
+   * Loads a binary transaction file written by TransactionFile, for example one converted from a
+   * text transaction file with TransactionFile.convert(). Records are decoded straight from the
+   * bytes of the file into deposits and withdrawals, without creating a String for any of them.
+   * Records without an account ID are applied to the given account and records with one to the
+   * account of this BankTeller with that ID. Every record is applied or skipped exactly as the line
+   * it was converted from would be by loadTransactions(), and the same exceptions escape for it.
+   * A block of records is only applied once its checksum and all of its records have been checked
+   * and the accounts of its records found, so a damaged or incomplete file or an unknown account ID
+   * is reported before any record of that block is applied; the records of the blocks before it
+   * stay applied.
+   * 
+   * @param file    a java.io.File object referring to a binary transaction file
+   * @param account the account of the records without an account ID
+   * @return the number of records that were applied to an account and that were skipped
+   * @throws FileNotFoundException  if the file object does not correspond to an actual file within
+   *                                the file system
+   * @throws IOException            if the file cannot be read, or is not a transaction file or is
+   *                                damaged or incomplete
+   * @throws NoSuchElementException if a record has an account ID this BankTeller has no account for
+   * @throws NullPointerException   if the account is null
+   */
+  public TransactionLoadResult loadTransactionsBinary(File file, BankAccount account)
+      throws IOException {
+    // checks that account is not null
+    if (account == null) {
+      throw new NullPointerException("Account is null.");
+    }
+
+    // checks that the file exists
+    if (!file.exists()) {
+      throw new FileNotFoundException(
+          "File does not correspond to an actual file within the file system.");
+    }
+
+    long start = System.nanoTime();
+    TransactionLoadResult result = new TransactionLoadResult();
+    TransactionFile.load(file, this, account, result);
+    fileLoaded(start);
+    return result;
+  }
+
+  /**
+   * Loads many transaction files in parallel, each into the account with the account ID it is
+   * paired with. Every account's files are loaded one after another, in the iteration order of
+   * fileAccounts, by a single task on the executor, so each account sees its transactions in the
+   * same order as if the files were loaded one at a time. Tasks for different accounts run at the
+   * same time. The files are loaded with loadTransactionsMapped(); a file that fails (for example
+   * because it does not exist or because its account ID is not found) is recorded in the result
+   * and does not stop the other files. Accounts must not be added to this BankTeller while the
+   * files are loading.
+   * 
+   * @param fileAccounts transaction files, each mapped to the ID of the account it is loaded into
+   * @param executor     executor that runs the loading tasks, for example a
+   *                     java.util.concurrent.ForkJoinPool
+   * @return the total number of applied and skipped lines, and the files that failed
+   * @throws InterruptedException if the calling thread is interrupted while waiting for the tasks
+   * @throws NullPointerException if fileAccounts or executor is null
+   */
+  public TransactionLoadResult loadTransactionsParallel(Map<File, String> fileAccounts,
+      ExecutorService executor) throws InterruptedException {
+    // groups the files by account, keeping the order in which each account's files were given
+    LinkedHashMap<String, List<File>> filesByAccount = new LinkedHashMap<String, List<File>>();
+    for (Map.Entry<File, String> fileAccount : fileAccounts.entrySet()) {
+      filesByAccount.computeIfAbsent(fileAccount.getValue(), id -> new ArrayList<File>())
+          .add(fileAccount.getKey());
+    }
+
+    // submits one task per account
+    ArrayList<Callable<TransactionLoadResult>> tasks =
+        new ArrayList<Callable<TransactionLoadResult>>(filesByAccount.size());
+    for (Map.Entry<String, List<File>> accountFiles : filesByAccount.entrySet()) {
+      tasks.add(() -> loadAccountFiles(accountFiles.getKey(), accountFiles.getValue()));
+    }
+    List<Future<TransactionLoadResult>> futures = executor.invokeAll(tasks);
+
+    // merges the results of the tasks
+    TransactionLoadResult result = new TransactionLoadResult();
+    for (Future<TransactionLoadResult> future : futures) {
+      try {
+        result.add(future.get());
+      } catch (ExecutionException e) {
+        // cannot happen since loadAccountFiles() records every failure in its result
+        throw new IllegalStateException("Loading task failed unexpectedly.", e.getCause());
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Loads every file of a directory in parallel, as loadTransactionsParallel() does with a map of
+   * files. Each file is loaded into the account whose ID is the file name without its extension,
+   * for example "0001.txt" into the account with ID "0001". Files of the same account are loaded in
+   * the alphabetical order of their names.
+   * 
+   * @param directory directory that contains the transaction files
+   * @param executor  executor that runs the loading tasks
+   * @return the total number of applied and skipped lines, and the files that failed
+   * @throws FileNotFoundException if directory does not correspond to an actual directory
+   * @throws InterruptedException  if the calling thread is interrupted while waiting for the tasks
+   */
+  public TransactionLoadResult loadTransactionsParallel(File directory, ExecutorService executor)
+      throws FileNotFoundException, InterruptedException {
+    File[] files = directory.listFiles(File::isFile);
+
+    // checks that the directory exists
+    if (files == null) {
+      throw new FileNotFoundException(
+          "Directory does not correspond to an actual directory within the file system.");
+    }
+    Arrays.sort(files);
+
+    LinkedHashMap<File, String> fileAccounts = new LinkedHashMap<File, String>();
+    for (File file : files) {
+      String name = file.getName();
+      int extensionStart = name.lastIndexOf('.');
+      fileAccounts.put(file, extensionStart > 0 ? name.substring(0, extensionStart) : name);
+    }
+    return loadTransactionsParallel(fileAccounts, executor);
+  }
+
+  /**
+   * Loads the transaction files of one account one after another. This is the task run for each
+   * account by loadTransactionsParallel().
+   * 
+   * @param id    ID of the account the files are loaded into
+   * @param files transaction files of the account, in the order they are loaded
+   * @return the number of applied and skipped lines, and the files that failed
+   */
+  private TransactionLoadResult loadAccountFiles(String id, List<File> files) {
+    TransactionLoadResult result = new TransactionLoadResult();
+    BankAccount account = accounts.get(id);
+
+    for (File file : files) {
+      try {
+        if (account == null) {
+          throw new NoSuchElementException("No account could be found with the ID " + id + ".");
+        }
+        if (!file.exists()) {
+          throw new FileNotFoundException(
+              "File does not correspond to an actual file within the file system.");
+        }
+        long start = System.nanoTime();
+        loadMapped(file, account, result);
+        fileLoaded(start);
+      } catch (IOException | RuntimeException e) {
+        result.fileFailed(file, e);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Applies every complete line of a mapped window of a transaction file to an account. Lines end
+   * with "\n", "\r" or "\r\n", like the lines returned by java.util.Scanner.nextLine(). The last
+   * line of the file does not need a line terminator. The lines are parsed in bulk by a
+   * TransactionParser and checked the same way addTransaction() checks them; lines with bytes
+   * outside of ASCII or with a transaction ID are applied through applyDecodedLine().
+   * 
+   * @param window    mapped bytes of the transaction file
+   * @param length    number of bytes in the window
+   * @param endOfFile true if the window ends at the end of the file
+   * @param account   bank account the transactions are applied to
+   * @param result    counts of applied and skipped lines to update
+   * @return the number of bytes of the window that were consumed, which is always the end of a
+   *         line, or -1 if a line could not be decoded and the rest of the file must be ignored
+   */
+  private int applyMappedLines(MappedByteBuffer window, int length, boolean endOfFile,
+      BankAccount account, TransactionLoadResult result) {
+    TransactionParser parser = new TransactionParser(PARSED_LINES);
+    TellerMetrics.Recorder recorder = TellerMetrics.currentRecorder();
+    int position = 0;
+    while (position < length) {
+      int next = parser.parse(window, position, length, endOfFile);
+      for (int line = 0; line < parser.getLineCount(); line++) {
+        long parsed = parser.getParsed(line);
+        if (parsed == TransactionParser.DECODE
+            || (parsed >= 0 && (parsed & (PARSED_ID | PARSED_INVALID_ID)) != 0)) {
+          // the last line of the file ends at the end of the window only if it has no terminator
+          int lineEnd = parser.getLineEnd(line);
+          if (!applyDecodedLine(window, parser.getLineStart(line), lineEnd,
+              endOfFile && lineEnd == length, account, result)) {
+            return -1;
+          }
+        } else if (parsed < 0) {
+          countLine(STATUSES[(int) (-1 - parsed)], result);
+        } else {
+          countLine(applyParsed(parsed, account, recorder), result);
+        }
+      }
+
+      // stops at a line that is not complete in this window
+      if (next == position) {
+        break;
+      }
+      position = next;
+    }
+    return position;
+  }
+
+  /**
+   * Decodes a line of a mapped transaction file into Strings and applies them with
+   * tryAddTransaction(), for the rare lines the byte parser leaves to it, such as lines with a
+   * transaction ID. The decoded line is split at the Unicode line separators that
+   * java.util.Scanner.nextLine() also ends lines at. Like java.util.Scanner, a line that is not
+   * valid in the default charset ends the input.
+   * 
+   * @param window     mapped bytes of the transaction file
+   * @param lineStart  index of the first byte of the line
+   * @param lineEnd    index after the last byte of the line, excluding the line terminator
+   * @param lastInFile true if the line is the last one of the file and has no line terminator
+   * @param account    bank account the transactions are applied to
+   * @param result     counts of applied and skipped lines to update
+   * @return false if the line could not be decoded and the rest of the file must be ignored
+   */
+  private boolean applyDecodedLine(MappedByteBuffer window, int lineStart, int lineEnd,
+      boolean lastInFile, BankAccount account, TransactionLoadResult result) {
+    String decoded;
+    try {
+      decoded = Charset.defaultCharset().newDecoder()
+          .decode(window.slice(lineStart, lineEnd - lineStart)).toString();
+    } catch (CharacterCodingException e) {
+      return false;
+    }
+
+    int pieceStart = 0;
+    for (int i = 0; i <= decoded.length(); i++) {
+      if (i < decoded.length()) {
+        char c = decoded.charAt(i);
+        if (c != '\u2028' && c != '\u2029' && c != '\u0085') {
+          continue;
+        }
+      } else if (lastInFile && pieceStart == i && i > 0) {
+        break; // a separator at the very end of the file does not start another line
+      }
+
+      countLine(tryAddTransaction(decoded.substring(pieceStart, i), account), result);
+      pieceStart = i + 1;
+    }
+    return true;
+  }
+
+  /**
+   * Computes the end-of-day totals of the accounts of this BankTeller and checks that the balance
+   * of every account that keeps all its transactions equals its opening balance plus its net flow,
+   * as described in ReconciliationReport. The accounts are reconciled in parallel on the common
+   * fork-join pool.
+   * 
+   * @return the totals, the net flow of every account and the accounts that do not reconcile
+   * @throws ArithmeticException if a balance or a total does not fit into a long
+   */
+  public ReconciliationReport reconcile() {
+    return reconcile(ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Reconciles the accounts of this BankTeller like reconcile() does, on the given fork-join pool.
+   * The accounts are split into ranges of at most ReconciliationTask.THRESHOLD accounts, each
+   * reconciled into a partial report that is merged with the others once its task is joined, and
+   * each account is read in one pass over its packed transactions, so the work spreads over the
+   * threads of the pool without them sharing any counter. Transactions should not be applied and
+   * accounts should not be added while the accounts are reconciled, or the report may mix values
+   * from before and after them.
+   * 
+   * @param pool pool whose threads reconcile the accounts
+   * @return the totals, the net flow of every account in no particular order, and the accounts
+   *         that do not reconcile
+   * @throws ArithmeticException  if a balance or a total does not fit into a long
+   * @throws NullPointerException if pool is null
+   */
+  public ReconciliationReport reconcile(ForkJoinPool pool) {
+    BankAccount[] accountArray = getAccounts().toArray(new BankAccount[0]);
+    return pool.invoke(new ReconciliationTask(accountArray, new String[accountArray.length],
+        new long[accountArray.length], 0, accountArray.length));
   }
 
   /**
-   * Returns the total number of accounts created so far (i.e., the size of the ArrayList of
-   * accounts)
+   * Returns the total number of accounts created so far (i.e., the number of accounts in the
+   * account index)
    * 
    * @return the total number of accounts added to this BankTeller
    */
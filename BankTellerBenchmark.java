@@ -0,0 +1,1591 @@
+/////////////////////////////////////////// FILE  HEADER /////////////////////////////////////////////
+//
+// Title: Exceptional Bank Teller
+// Files: BankAccount.java, BankAccountTester.java, BankTeller.java, BankTellerTester.java,
+//        BankTellerBenchmark.java, TransactionLog.java, TransactionLoadResult.java,
+//        ConcurrentTransactionLog.java, ConcurrentBankAccount.java,
+//        ConcurrentBankAccountTester.java, ConcurrentBankTeller.java,
+//        ConcurrentBankTellerTester.java, TransactionStatus.java, TransactionListener.java,
+//        TransactionJournal.java, TransactionJournalTester.java, TransactionSnapshot.java,
+//        ColdAccountStore.java, TieredAccountMap.java, TieredBankTeller.java,
+//        TieredBankTellerTester.java, TransactionBatch.java, TransactionBatchResult.java,
+//        TransactionRecord.java, TransactionEvent.java, TransactionPipeline.java,
+//        TransactionPipelineTester.java, LatencyHistogram.java, TellerMetrics.java,
+//        TellerMetricsTester.java, TransactionFile.java, TransactionFileTester.java,
+//        HighPrecisionBankAccount.java, HighPrecisionBankAccountTester.java, AccountIndex.java,
+//        AccountIndexTester.java, ReconciliationReport.java, ReconciliationTask.java,
+//        TransactionIDCache.java, TransactionIDCacheTester.java, ShardTransport.java,
+//        LocalShardTransport.java, SocketShardTransport.java, ShardServer.java,
+//        ShardedBankTeller.java, ShardedBankTellerTester.java, TransactionParser.java,
+//        TransactionParserTester.java, TellerServer.java, TellerClient.java,
+//        TellerLoadGenerator.java, TellerServerTester.java, TransactionClock.java,
+//        TransactionTimeIndex.java, TransactionHistory.java, TransactionHistoryTester.java,
+//        TellerWorkload.java, TellerReplay.java, TellerReplayResult.java, TellerReplayTester.java
+// This File: BankTellerBenchmark.java
+// 
+// Name: Benjamin Tarmann
+// Email: btarmann@wisc.edu
+//
+///////////////////////////////////////// 100 COLUMNS WIDE /////////////////////////////////////////
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.zip.DataFormatException;
+
+/**
+ * This class measures the hot paths of BankAccount and BankTeller. Every benchmark is run a few
+ * times to let the JIT compiler warm up before it is measured, and reports the average time per
+ * operation, the operations per second and the bytes allocated per operation.
+ * 
+ * The benchmarks to run can be chosen by name on the command line (all of them run if none is
+ * given). The options are:
+ * 
+ * --csv file writes every result to a CSV file so that runs of different versions can be compared
+ * --label name labels the results in the CSV file, for example with a version number
+ * --large also loads transaction files of 10 million lines and serves 8,000 connections
+ * 
+ * @author Benjamin Tarmann
+ */
+public class BankTellerBenchmark {
+  private static final int WARMUP_RUNS = 3;
+  private static final int MEASURED_RUNS = 5;
+  private static final int[] ACCOUNT_COUNTS = {1_000, 10_000, 100_000, 1_000_000};
+  private static final int[] FILE_LINES = {1_000, 10_000, 100_000, 1_000_000};
+  private static final int LARGE_FILE_LINES = 10_000_000;
+  private static final int OPERATIONS = 1_000_000; // operations per run of the fast benchmarks
+  private static final int METRICS_ROUNDS = 10; // rounds the modes of the metrics benchmark take
+
+  private static ArrayList<String> results = new ArrayList<String>(); // CSV rows of the results
+  private static String label = "current";
+  private static boolean large = false;
+  private static long sink; // consumes benchmark results so they cannot be optimized away
+
+  /**
+   * A benchmark or a single run of one, which may throw any exception
+   */
+  private interface Task {
+    /**
+     * Runs the task
+     * 
+     * @throws Exception if the task fails
+     */
+    void run() throws Exception;
+  }
+
+  /**
+   * The work one thread does in a run of a multi-threaded benchmark
+   */
+  private interface ThreadTask {
+    /**
+     * Runs the work of one thread
+     * 
+     * @param thread index of the thread, from 0 to the number of threads - 1
+     * @throws Exception if the work fails
+     */
+    void run(int thread) throws Exception;
+  }
+
+  /**
+   * Gets the number of bytes the current thread has allocated so far
+   * 
+   * @return the allocated bytes, or 0 if the JVM cannot measure allocations
+   */
+  private static long allocatedBytes() {
+    java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+    if (bean instanceof com.sun.management.ThreadMXBean) {
+      return ((com.sun.management.ThreadMXBean) bean)
+          .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+    return 0;
+  }
+
+  /**
+   * Prints a result and keeps it for the CSV file
+   * 
+   * @param benchmark name of the benchmark
+   * @param parameter parameter the benchmark was run with, for example the number of accounts
+   * @param metric    what was measured, for example "ns/op"
+   * @param value     the measured value
+   */
+  private static void report(String benchmark, String parameter, String metric, double value) {
+    System.out.printf("%-32s %-16s %14.2f %s%n", benchmark, parameter, value, metric);
+    results.add(label + "," + benchmark + "," + parameter + "," + metric + ","
+        + String.format("%.4f", value));
+  }
+
+  /**
+   * Reports the time and allocations of the measured runs of a benchmark
+   * 
+   * @param benchmark  name of the benchmark
+   * @param parameter  parameter the benchmark was run with
+   * @param operations number of operations in one run
+   * @param nanos      total time of the measured runs in nanoseconds
+   * @param bytes      total bytes allocated by the measured runs
+   */
+  private static void reportRuns(String benchmark, String parameter, long operations, long nanos,
+      long bytes) {
+    double totalOperations = (double) operations * MEASURED_RUNS;
+    report(benchmark, parameter, "ns/op", nanos / totalOperations);
+    report(benchmark, parameter, "ops/s", totalOperations / (nanos / 1e9));
+    report(benchmark, parameter, "B/op", bytes / totalOperations);
+  }
+
+  /**
+   * Runs a single-threaded benchmark WARMUP_RUNS times without measuring it, then MEASURED_RUNS
+   * times while measuring its time and the bytes it allocates
+   * 
+   * @param benchmark  name of the benchmark
+   * @param parameter  parameter the benchmark is run with
+   * @param operations number of operations one run of the task does
+   * @param task       one run of the benchmark
+   * @return the average time per operation in nanoseconds
+   * @throws Exception if the task fails
+   */
+  private static double measure(String benchmark, String parameter, long operations, Task task)
+      throws Exception {
+    for (int i = 0; i < WARMUP_RUNS; i++) {
+      task.run();
+    }
+
+    long nanos = 0;
+    long bytes = 0;
+    for (int i = 0; i < MEASURED_RUNS; i++) {
+      long allocated = allocatedBytes();
+      long start = System.nanoTime();
+      task.run();
+      nanos += System.nanoTime() - start;
+      bytes += allocatedBytes() - allocated;
+    }
+    reportRuns(benchmark, parameter, operations, nanos, bytes);
+    return (double) nanos / ((double) operations * MEASURED_RUNS);
+  }
+
+  /**
+   * Runs a multi-threaded benchmark like measure() runs a single-threaded one. Each run starts the
+   * given number of threads that each run the task once, and the bytes allocated by all of the
+   * threads are counted.
+   * 
+   * @param benchmark  name of the benchmark
+   * @param parameter  parameter the benchmark is run with
+   * @param operations number of operations one run does over all threads
+   * @param threads    number of threads
+   * @param setup      prepares the state of one run before its threads are started
+   * @param task       the work of one thread in a run
+   * @throws Exception if the setup or a thread fails
+   */
+  private static void measureThreads(String benchmark, String parameter, long operations,
+      int threads, Task setup, ThreadTask task) throws Exception {
+    long nanos = 0;
+    long bytes = 0;
+    for (int run = 0; run < WARMUP_RUNS + MEASURED_RUNS; run++) {
+      setup.run();
+      long[] threadBytes = new long[threads];
+      Throwable[] failures = new Throwable[threads];
+      Thread[] workers = new Thread[threads];
+      for (int t = 0; t < threads; t++) {
+        final int thread = t;
+        workers[t] = new Thread(() -> {
+          long allocated = allocatedBytes();
+          try {
+            task.run(thread);
+          } catch (Exception | Error e) {
+            failures[thread] = e;
+          }
+          threadBytes[thread] = allocatedBytes() - allocated;
+        });
+      }
+
+      long start = System.nanoTime();
+      for (Thread worker : workers) {
+        worker.start();
+      }
+      for (Thread worker : workers) {
+        worker.join();
+      }
+      long elapsed = System.nanoTime() - start;
+
+      for (int t = 0; t < threads; t++) {
+        if (failures[t] != null) {
+          throw new Exception("Benchmark thread failed.", failures[t]);
+        }
+      }
+
+      // only counts the runs after the warmup runs
+      if (run >= WARMUP_RUNS) {
+        nanos += elapsed;
+        for (long threadAllocated : threadBytes) {
+          bytes += threadAllocated;
+        }
+      }
+    }
+    reportRuns(benchmark, parameter, operations, nanos, bytes);
+  }
+
+  /**
+   * Creates the IDs used for the accounts of a benchmark run
+   * 
+   * @param count number of IDs to create
+   * @return array of distinct account IDs
+   */
+  private static String[] createIDs(int count) {
+    String[] ids = new String[count];
+    for (int i = 0; i < count; i++) {
+      ids[i] = "ACC" + Integer.toString(i);
+    }
+    return ids;
+  }
+
+  /**
+   * Creates a transaction line of a random deposit or withdrawal. Deposits are between 1 and 100
+   * and withdrawals are 10, so an account with a large initial balance never runs out of money.
+   * 
+   * @param random        random generator to use
+   * @param malformedRate fraction of the lines that are not correctly formatted
+   * @return the transaction line
+   */
+  private static String createTransactionLine(Random random, double malformedRate) {
+    if (random.nextDouble() < malformedRate) {
+      return "1 " + random.nextInt(100) + "x";
+    } else if (random.nextInt(4) == 0) {
+      return "0 10";
+    } else {
+      return "1 " + (1 + random.nextInt(100));
+    }
+  }
+
+  /**
+   * Writes a transaction file of random deposits and withdrawals created by
+   * createTransactionLine()
+   * 
+   * @param lines         number of lines to write
+   * @param malformedRate fraction of the lines that are not correctly formatted
+   * @param seed          seed of the random generator, so that runs are repeatable
+   * @return the written file, which is deleted when the JVM exits
+   * @throws IOException if the file cannot be written
+   */
+  private static File createTransactionFile(int lines, double malformedRate, long seed)
+      throws IOException {
+    File file = File.createTempFile("benchmark", ".txt");
+    file.deleteOnExit();
+    Random random = new Random(seed);
+
+    BufferedWriter writer = new BufferedWriter(new FileWriter(file));
+    for (int i = 0; i < lines; i++) {
+      writer.write(createTransactionLine(random, malformedRate));
+      writer.newLine();
+    }
+    writer.close();
+    return file;
+  }
+
+  /**
+   * Measures BankAccount.deposit() and BankAccount.withdraw(). Once the transaction log is warm,
+   * allocations only come from the log storage itself.
+   * 
+   * @throws Exception if the benchmark fails
+   */
+  public static void benchmarkDepositWithdraw() throws Exception {
+    BankAccount account = new BankAccount("ACC0", 10);
+    measure("depositWithdraw", "-", OPERATIONS, () -> {
+      for (int i = 0; i < OPERATIONS; i += 2) {
+        account.deposit(20);
+        account.withdraw(20);
+      }
+    });
+  }
+
+  /**
+   * Measures BankAccount.getMostRecentTransactions() on an account with 1000 transactions that
+   * keeps all of them and on one that keeps a window of 5, both returning strings and copying into
+   * caller-supplied arrays. Also reports the heap used per account by 1000 accounts with 10,000
+   * transactions each, with and without a window.
+   * 
+   * @throws Exception if the benchmark fails
+   */
+  public static void benchmarkMostRecentTransactions() throws Exception {
+    for (int window : new int[] {0, 5}) {
+      String parameter = window == 0 ? "window=all" : "window=" + window;
+      BankAccount account = new BankAccount("ACC0", 10, window);
+      for (int i = 1; i < 1000; i++) {
+        account.deposit(i);
+      }
+      measure("getMostRecentTransactions", parameter, OPERATIONS, () -> {
+        for (int i = 0; i < OPERATIONS; i++) {
+          sink += account.getMostRecentTransactions().length;
+        }
+      });
+
+      int[] amounts = new int[5];
+      boolean[] deposits = new boolean[5];
+      measure("getMostRecentTransactionsCopy", parameter, OPERATIONS, () -> {
+        for (int i = 0; i < OPERATIONS; i++) {
+          sink += account.getMostRecentTransactions(amounts, deposits);
+        }
+      });
+    }
+
+    for (int window : new int[] {0, 5}) {
+      final int accounts = 1000;
+      long before = usedHeap();
+      BankAccount[] kept = new BankAccount[accounts];
+      for (int a = 0; a < accounts; a++) {
+        kept[a] = new BankAccount("ACC" + a, 10, window);
+        for (int i = 0; i < 10_000; i++) {
+          kept[a].deposit(1);
+        }
+      }
+      report("accountMemory", window == 0 ? "window=all" : "window=" + window, "B/account",
+          (double) (usedHeap() - before) / accounts);
+      sink += kept[accounts - 1].getTransactionsCount();
+    }
+  }
+
+  /**
+   * Gets the number of bytes used on the heap after a garbage collection
+   * 
+   * @return the used heap in bytes
+   */
+  private static long usedHeap() {
+    Runtime runtime = Runtime.getRuntime();
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+    }
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+
+  /**
+   * Measures BankTeller.addBankAccount() and BankTeller.findAccount() for each account count in
+   * ACCOUNT_COUNTS. With a hash index both latencies should stay roughly flat as the number of
+   * accounts grows, instead of growing linearly.
+   * 
+   * @throws Exception if the benchmark fails
+   */
+  public static void benchmarkAccountIndex() throws Exception {
+    for (int count : ACCOUNT_COUNTS) {
+      String[] ids = createIDs(count);
+      BankAccount[] newAccounts = new BankAccount[count];
+      for (int i = 0; i < count; i++) {
+        newAccounts[i] = new BankAccount(ids[i], 10);
+      }
+
+      measure("addBankAccount", "accounts=" + count, count, () -> {
+        BankTeller teller = new BankTeller();
+        for (int i = 0; i < count; i++) {
+          teller.addBankAccount(newAccounts[i]);
+        }
+      });
+
+      // looks up randomly chosen existing accounts
+      BankTeller teller = new BankTeller(count);
+      for (int i = 0; i < count; i++) {
+        teller.addBankAccount(newAccounts[i]);
+      }
+      Random random = new Random(42);
+      String[] lookups = new String[OPERATIONS];
+      for (int i = 0; i < OPERATIONS; i++) {
+        lookups[i] = ids[random.nextInt(count)];
+      }
+      measure("findAccount", "accounts=" + count, OPERATIONS, () -> {
+        for (int i = 0; i < OPERATIONS; i++) {
+          sink += teller.findAccount(lookups[i]).getBalance();
+        }
+      });
+    }
+  }
+
+  /**
+   * Measures BankTeller.addTransaction(), which throws a DataFormatException for each malformed
+   * transaction, and BankTeller.tryAddTransaction(), which returns a status instead, when 0%, 10%
+   * and 50% of the transactions are malformed.
+   * 
+   * @throws Exception if the benchmark fails
+   */
+  public static void benchmarkAddTransaction() throws Exception {
+    BankTeller teller = new BankTeller();
+
+    for (double malformedRate : new double[] {0.0, 0.1, 0.5}) {
+      // creates the transactions in memory so that only parsing and applying them is measured
+      Random random = new Random(42);
+      String[] lines = new String[OPERATIONS];
+      for (int i = 0; i < OPERATIONS; i++) {
+        lines[i] = createTransactionLine(random, malformedRate);
+      }
+      String parameter = "malformed=" + (int) (malformedRate * 100) + "%";
+
+      BankAccount throwingAccount = new BankAccount("ACC0", 1_000_000_000);
+      measure("addTransaction", parameter, OPERATIONS, () -> {
+        for (String line : lines) {
+          try {
+            teller.addTransaction(line, throwingAccount);
+          } catch (DataFormatException e) {
+            continue; // skips the malformed line like loadTransactions() used to
+          }
+        }
+      });
+
+      BankAccount statusAccount = new BankAccount("ACC1", 1_000_000_000);
+      measure("tryAddTransaction", parameter, OPERATIONS, () -> {
+        for (String line : lines) {
+          teller.tryAddTransaction(line, statusAccount);
+        }
+      });
+    }
+  }
+
+  /**
+   * Measures BankTeller.loadTransactions() and BankTeller.loadTransactionsMapped() on generated
+   * files of 1,000 to 1,000,000 lines (and 10,000,000 lines with --large), 10% of which are not
+   * correctly formatted. One operation is one line.
+   * 
+   * @throws Exception if the benchmark fails
+   */
+  public static void benchmarkLoadTransactions() throws Exception {
+    BankTeller teller = new BankTeller();
+    ArrayList<Integer> fileLines = new ArrayList<Integer>();
+    for (int lines : FILE_LINES) {
+      fileLines.add(lines);
+    }
+    if (large) {
+      fileLines.add(LARGE_FILE_LINES);
+    }
+
+    for (int lines : fileLines) {
+      File file = createTransactionFile(lines, 0.1, 42);
+      measure("loadTransactions", "lines=" + lines, lines, () -> {
+        teller.loadTransactions(file, new BankAccount("ACC0", 1_000_000_000));
+      });
+      measure("loadTransactionsMapped", "lines=" + lines, lines, () -> {
+        sink += teller.loadTransactionsMapped(file, new BankAccount("ACC1", 1_000_000_000))
+            .getAppliedCount();
+      });
+      file.delete();
+    }
+  }
+
+  /**
+   * Measures BankTeller.loadTransactionsParallel() loading 64 files of 100,000 lines into 64
+   * accounts, with 1 thread and with one thread per available processor. One operation is one
+   * line. Only the allocations of the calling thread are counted.
+   * 
+   * @throws Exception if the benchmark fails
+   */
+  public static void benchmarkLoadTransactionsParallel() throws Exception {
+    final int files = 64;
+    final int lines = 100_000;
+    int processors = Runtime.getRuntime().availableProcessors();
+
+    LinkedHashMap<File, String> fileAccounts = new LinkedHashMap<File, String>();
+    for (int i = 0; i < files; i++) {
+      fileAccounts.put(createTransactionFile(lines, 0.1, i), "ACC" + i);
+    }
+
+    for (int threads : new int[] {1, processors}) {
+      ExecutorService pool = new ForkJoinPool(threads);
+      measure("loadTransactionsParallel", "threads=" + threads, (long) files * lines, () -> {
+        BankTeller teller = new BankTeller(files);
+        for (int i = 0; i < files; i++) {
+          teller.addBankAccount(new BankAccount("ACC" + i, 1_000_000_000));
+        }
+        sink += teller.loadTransactionsParallel(fileAccounts, pool).getAppliedCount();
+      });
+      pool.shutdown();
+    }
+
+    for (File file : fileAccounts.keySet()) {
+      file.delete();
+    }
+  }
+
+  /**
+   * Measures deposits and withdrawals on one hot account shared by 1 to 8 threads, comparing
+   * ConcurrentBankAccount with a BankAccount locked by the caller
+   * 
+   * @throws Exception if the benchmark fails
+   */
+  public static void benchmarkContendedAccount() throws Exception {
+    final int pairs = OPERATIONS / 2; // deposit and withdrawal pairs per thread
+
+    BankAccount[] account = new BankAccount[1]; // the account of the current run
+
+    for (int threads = 1; threads <= 8; threads *= 2) {
+      measureThreads("synchronizedAccount", "threads=" + threads, 2L * pairs * threads, threads,
+          () -> account[0] = new BankAccount("ACC0", 10), t -> {
+            BankAccount locked = account[0];
+            for (int i = 0; i < pairs; i++) {
+              synchronized (locked) {
+                locked.deposit(10);
+              }
+              synchronized (locked) {
+                locked.withdraw(10);
+              }
+            }
+          });
+
+      measureThreads("concurrentAccount", "threads=" + threads, 2L * pairs * threads, threads,
+          () -> account[0] = new ConcurrentBankAccount("ACC1", 10), t -> {
+            BankAccount lockFree = account[0];
+            for (int i = 0; i < pairs; i++) {
+              lockFree.deposit(10);
+              lockFree.withdraw(10);
+            }
+          });
+    }
+  }
+
+  /**
+   * Measures ConcurrentBankTeller.transfer() with 1 to 8 threads, where each thread moves money
+   * back and forth between its own pair of accounts. Since the threads touch disjoint accounts,
+   * the throughput should grow with the number of threads up to the number of processors.
+   * 
+   * @throws Exception if the benchmark fails
+   */
+  public static void benchmarkDisjointTransfers() throws Exception {
+    final int transfers = OPERATIONS; // transfers per thread
+
+    ConcurrentBankTeller[] teller = new ConcurrentBankTeller[1]; // the teller of the current run
+
+    for (int threads = 1; threads <= 8; threads *= 2) {
+      String[] ids = createIDs(2 * threads);
+
+      measureThreads("transfer", "threads=" + threads, (long) transfers * threads, threads, () -> {
+        teller[0] = new ConcurrentBankTeller(ids.length, 1024);
+        for (String id : ids) {
+          teller[0].addBankAccount(new ConcurrentBankAccount(id, 1000));
+        }
+      }, t -> {
+        for (int i = 0; i < transfers; i += 2) {
+          teller[0].transfer(ids[2 * t], ids[2 * t + 1], 10);
+          teller[0].transfer(ids[2 * t + 1], ids[2 * t], 10);
+        }
+      });
+    }
+  }
+
+  /**
+   * Measures the write-ahead journal: deposits on journaled accounts when the journal is synced
+   * every record, every 100 records and every 10,000 records, and recovering 100 accounts with
+   * 1,000,000 transactions from a journal compared with loading the same transactions from
+   * transaction files and with recovering them from a snapshot of the journal. One operation is
+   * one transaction.
+   * 
+   * @throws Exception if the benchmark fails
+   */
+  public static void benchmarkJournal() throws Exception {
+    final int accounts = 100;
+    final int transactions = 1_000_000;
+    String[] ids = createIDs(accounts);
+
+    for (int syncEvery : new int[] {1, 100, 10_000}) {
+      // syncing every record is limited by the disk, so it does fewer operations per run
+      int deposits = syncEvery == 1 ? 1_000 : OPERATIONS;
+      BankAccount[] account = new BankAccount[1];
+      File journal = File.createTempFile("benchmark", ".journal");
+      measure("journalDeposit", "syncEvery=" + syncEvery, deposits, () -> {
+        journal.delete();
+        BankTeller teller = new BankTeller();
+        teller.openJournal(journal, syncEvery, 0);
+        teller.addBankAccount(account[0] = new BankAccount("ACC0", 10));
+        for (int i = 0; i < deposits; i++) {
+          account[0].deposit(10);
+        }
+        teller.closeJournal();
+      });
+      journal.delete();
+    }
+
+    // writes the same transactions to a journal and to one transaction file per account
+    File journal = File.createTempFile("benchmark", ".journal");
+    journal.delete();
+    BankTeller source = new BankTeller(accounts);
+    source.openJournal(journal, 10_000, 0);
+    LinkedHashMap<File, String> fileAccounts = new LinkedHashMap<File, String>();
+    for (int a = 0; a < accounts; a++) {
+      File file = createTransactionFile(transactions / accounts, 0, a);
+      fileAccounts.put(file, ids[a]);
+      BankAccount account = new BankAccount(ids[a], 1_000_000_000);
+      source.addBankAccount(account);
+      source.loadTransactions(file, account);
+    }
+    source.closeJournal();
+
+    measure("journalRecovery", "transactions=" + transactions, transactions, () -> {
+      BankTeller teller = new BankTeller(accounts);
+      teller.openJournal(journal, 10_000, 0);
+      teller.closeJournal();
+      sink += teller.getAccountsCount();
+    });
+    measure("journalRecoveryLoadMapped", "transactions=" + transactions, transactions, () -> {
+      BankTeller teller = new BankTeller(accounts);
+      for (Map.Entry<File, String> file : fileAccounts.entrySet()) {
+        BankAccount account = new BankAccount(file.getValue(), 1_000_000_000);
+        teller.addBankAccount(account);
+        sink += teller.loadTransactionsMapped(file.getKey(), account).getAppliedCount();
+      }
+    });
+
+    // folds the journal into a snapshot, after which recovery only reads the accounts
+    BankTeller compacted = new BankTeller(accounts);
+    compacted.openJournal(journal, 10_000, 0);
+    compacted.snapshotJournal();
+    compacted.closeJournal();
+    File snapshot = new File(journal.getPath() + ".snapshot");
+    measure("journalRecoverySnapshot", "transactions=" + transactions, transactions, () -> {
+      BankTeller teller = new BankTeller(accounts);
+      teller.openJournal(journal, 10_000, 0);
+      teller.closeJournal();
+      sink += teller.getAccountsCount();
+    });
+
+    snapshot.delete();
+    journal.delete();
+    for (File file : fileAccounts.keySet()) {
+      file.delete();
+    }
+  }
+
+  /**
+   * Measures TieredBankTeller with 100,000 accounts of which 1,000 fit in the hot tier: the heap
+   * used per account compared with a BankTeller, findAccount() when 90% of the lookups go to 1% of
+   * the accounts (reporting the share of lookups found in the hot tier), and findAccount() when
+   * every lookup goes to a random account, which mostly measures evicting and promoting accounts.
+   * 
+   * @throws Exception if the benchmark fails
+   */
+  public static void benchmarkTieredAccounts() throws Exception {
+    final int accounts = 100_000;
+    final int hotCapacity = 1_000;
+    String[] ids = createIDs(accounts);
+
+    for (int tiered = 0; tiered < 2; tiered++) {
+      long before = usedHeap();
+      BankTeller teller =
+          tiered == 0 ? new BankTeller(accounts) : new TieredBankTeller(hotCapacity);
+      for (int a = 0; a < accounts; a++) {
+        BankAccount account = new BankAccount(ids[a], 10, 5);
+        for (int i = 0; i < 20; i++) {
+          account.deposit(1);
+        }
+        teller.addBankAccount(account);
+      }
+      report("tieredAccountMemory", tiered == 0 ? "teller=plain" : "teller=tiered", "B/account",
+          (double) (usedHeap() - before) / accounts);
+
+      // 90% of the lookups go to the first 1% of the accounts
+      Random random = new Random(42);
+      String[] skewed = new String[OPERATIONS];
+      String[] uniform = new String[OPERATIONS];
+      for (int i = 0; i < OPERATIONS; i++) {
+        skewed[i] = random.nextInt(10) == 0 ? ids[random.nextInt(accounts)]
+            : ids[random.nextInt(accounts / 100)];
+        uniform[i] = ids[random.nextInt(accounts)];
+      }
+      String parameter = tiered == 0 ? "teller=plain" : "teller=tiered,hot=" + hotCapacity;
+      measure("tieredFindSkewed", parameter, OPERATIONS, () -> {
+        for (int i = 0; i < OPERATIONS; i++) {
+          sink += teller.findAccount(skewed[i]).getBalance();
+        }
+      });
+      if (teller instanceof TieredBankTeller) {
+        TieredBankTeller tieredTeller = (TieredBankTeller) teller;
+        report("tieredFindSkewed", parameter, "hit rate",
+            (double) tieredTeller.getHitCount()
+                / (tieredTeller.getHitCount() + tieredTeller.getMissCount()));
+      }
+      measure("tieredFindUniform", parameter, OPERATIONS, () -> {
+        for (int i = 0; i < OPERATIONS; i++) {
+          sink += teller.findAccount(uniform[i]).getBalance();
+        }
+      });
+    }
+  }
+
+  /**
+   * Measures BankTeller.applyBatch() on 1,000,000 records spread over 1,000 accounts, applied as a
+   * stream of batches of 10,000 records, compared with finding the account and calling
+   * tryAddTransaction() for each record, on a BankTeller and on a ConcurrentBankTeller. One
+   * operation is one record.
+   * 
+   * @throws Exception if the benchmark fails
+   */
+  public static void benchmarkBatch() throws Exception {
+    final int accounts = 1_000;
+    final int batchSize = 10_000;
+    String[] ids = createIDs(accounts);
+    Random random = new Random(42);
+    TransactionBatch[] batches = new TransactionBatch[OPERATIONS / batchSize];
+    String[] lines = new String[OPERATIONS];
+    for (int b = 0; b < batches.length; b++) {
+      batches[b] = new TransactionBatch(batchSize);
+      for (int i = 0; i < batchSize; i++) {
+        boolean deposit = random.nextBoolean();
+        int amount = deposit ? 1 + random.nextInt(100) : 10;
+        batches[b].add(ids[random.nextInt(accounts)], deposit, amount);
+        lines[b * batchSize + i] = (deposit ? "1 " : "0 ") + amount;
+      }
+    }
+
+    for (int concurrent = 0; concurrent < 2; concurrent++) {
+      BankTeller teller = concurrent == 0 ? new BankTeller(accounts) : new ConcurrentBankTeller();
+      for (int a = 0; a < accounts; a++) {
+        teller.addBankAccount(new BankAccount(ids[a], 1_000_000_000, 5));
+      }
+      String parameter = concurrent == 0 ? "teller=plain" : "teller=concurrent";
+      measure("batchOneByOne", parameter, OPERATIONS, () -> {
+        for (int b = 0; b < batches.length; b++) {
+          for (int i = 0; i < batchSize; i++) {
+            BankAccount account = teller.findAccount(batches[b].getAccountID(i));
+            sink += teller.tryAddTransaction(lines[b * batchSize + i], account).ordinal();
+          }
+        }
+      });
+      measure("batchApply", parameter + ",batch=" + batchSize, OPERATIONS, () -> {
+        for (TransactionBatch batch : batches) {
+          sink += teller.applyBatch(batch).getAppliedCount();
+        }
+      });
+    }
+  }
+
+  /**
+   * Gets a percentile of sorted values
+   * 
+   * @param sorted     values sorted in ascending order
+   * @param percentile the percentile, between 0 and 100
+   * @return the smallest value that is not less than the given percentage of the values
+   */
+  private static long percentile(long[] sorted, double percentile) {
+    int index = (int) Math.ceil(percentile / 100 * sorted.length) - 1;
+    return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+  }
+
+  /**
+   * Measures TransactionPipeline under bursty load: 200,000 records for 1,000 accounts are
+   * published in bursts of 10,000 records, 10 milliseconds apart, with 1 lane and with one lane
+   * per processor. Reports the throughput and the 50th, 99th and 99.9th percentiles of the time
+   * from publishing a record to receiving its event, which includes the time the publisher waits
+   * because of backpressure.
+   * 
+   * @throws Exception if the benchmark fails
+   */
+  public static void benchmarkPipeline() throws Exception {
+    final int accounts = 1_000;
+    final int records = 200_000;
+    final int burst = 10_000;
+    final int bufferSize = 1_024;
+    String[] ids = createIDs(accounts);
+    Random random = new Random(42);
+    TransactionRecord[] feed = new TransactionRecord[records];
+    IdentityHashMap<TransactionRecord, Integer> indices =
+        new IdentityHashMap<TransactionRecord, Integer>(records);
+    for (int i = 0; i < records; i++) {
+      boolean deposit = random.nextBoolean();
+      feed[i] = new TransactionRecord(ids[random.nextInt(accounts)], deposit,
+          deposit ? 1 + random.nextInt(100) : 10);
+      indices.put(feed[i], i);
+    }
+
+    int processors = Runtime.getRuntime().availableProcessors();
+    for (int laneCount : new int[] {1, Math.max(2, processors)}) {
+      ExecutorService executor = Executors.newFixedThreadPool(laneCount);
+      long[] sentAt = new long[records];
+      long[] latencies = new long[records];
+      long nanos = 0;
+      for (int run = 0; run < 2; run++) { // the first run warms up
+        ConcurrentBankTeller teller = new ConcurrentBankTeller();
+        for (int a = 0; a < accounts; a++) {
+          teller.addBankAccount(new BankAccount(ids[a], 1_000_000_000, 5));
+        }
+        TransactionPipeline pipeline =
+            new TransactionPipeline(teller, laneCount, bufferSize, executor);
+        CountDownLatch done = new CountDownLatch(1);
+        pipeline.subscribe(new Flow.Subscriber<TransactionEvent>() {
+          @Override
+          public void onSubscribe(Flow.Subscription subscription) {
+            subscription.request(Long.MAX_VALUE);
+          }
+
+          @Override
+          public void onNext(TransactionEvent event) {
+            int index = indices.get(event.getRecord());
+            latencies[index] = System.nanoTime() - sentAt[index];
+          }
+
+          @Override
+          public void onError(Throwable throwable) {
+            done.countDown();
+          }
+
+          @Override
+          public void onComplete() {
+            done.countDown();
+          }
+        });
+
+        SubmissionPublisher<TransactionRecord> publisher =
+            new SubmissionPublisher<TransactionRecord>(ForkJoinPool.commonPool(), bufferSize);
+        publisher.subscribe(pipeline);
+        long start = System.nanoTime();
+        for (int i = 0; i < records; i++) {
+          if (i > 0 && i % burst == 0) {
+            Thread.sleep(10);
+          }
+          sentAt[i] = System.nanoTime();
+          publisher.submit(feed[i]); // waits while the pipeline applies earlier records
+        }
+        publisher.close();
+        done.await();
+        nanos = System.nanoTime() - start;
+      }
+      executor.shutdown();
+
+      String parameter = "lanes=" + laneCount;
+      long[] sorted = latencies.clone();
+      Arrays.sort(sorted);
+      report("pipelineThroughput", parameter, "records/s", records / (nanos / 1e9));
+      report("pipelineLatencyP50", parameter, "us", percentile(sorted, 50) / 1e3);
+      report("pipelineLatencyP99", parameter, "us", percentile(sorted, 99) / 1e3);
+      report("pipelineLatencyP999", parameter, "us", percentile(sorted, 99.9) / 1e3);
+    }
+  }
+
+  /**
+   * Measures the overhead of TellerMetrics on deposits and withdrawals, on finding an account and
+   * adding a transaction line to it, and on loading a mapped transaction file of 100,000 lines:
+   * with metrics disabled, enabled with the default sample of one timed operation in 1024, and
+   * enabled with every operation timed. The modes take turns over METRICS_ROUNDS rounds, so that
+   * they run with the same JIT state, and the fastest round of each is compared. Reports the
+   * overhead of each enabled mode in nanoseconds per operation and in percent of the disabled
+   * time.
+   * 
+   * @throws Exception if the benchmark fails
+   */
+  public static void benchmarkMetrics() throws Exception {
+    final int accounts = 1_000;
+    final int lines = 100_000;
+    String[] ids = createIDs(accounts);
+    BankTeller teller = new BankTeller(accounts);
+    for (int a = 0; a < accounts; a++) {
+      teller.addBankAccount(new BankAccount(ids[a], 1_000_000_000, 5));
+    }
+    BankAccount account = teller.findAccount(ids[0]);
+    Random random = new Random(42);
+    String[] lookups = new String[OPERATIONS];
+    for (int i = 0; i < OPERATIONS; i++) {
+      lookups[i] = ids[random.nextInt(accounts)];
+    }
+    File file = createTransactionFile(lines, 0.1, 42);
+
+    String[] workloads = {"metricsDepositWithdraw", "metricsFindAddTransaction",
+        "metricsLoadTransactionsMapped"};
+    int[] sampleIntervals = {0, 1024, 1};
+    double[][] fastest = new double[sampleIntervals.length][workloads.length];
+    for (double[] modeNanos : fastest) {
+      Arrays.fill(modeNanos, Double.MAX_VALUE);
+    }
+    for (int round = 0; round < METRICS_ROUNDS; round++) {
+      for (int mode = 0; mode < sampleIntervals.length; mode++) {
+        String parameter = metricsParameter(sampleIntervals[mode]);
+        if (sampleIntervals[mode] == 0) {
+          TellerMetrics.disable();
+        } else {
+          TellerMetrics.enable(sampleIntervals[mode]);
+        }
+
+        double[] nanos = new double[workloads.length];
+        nanos[0] = measure(workloads[0], parameter, OPERATIONS, () -> {
+          for (int i = 0; i < OPERATIONS; i += 2) {
+            account.tryDeposit(20);
+            account.tryWithdraw(20);
+          }
+        });
+        nanos[1] = measure(workloads[1], parameter, OPERATIONS, () -> {
+          for (int i = 0; i < OPERATIONS; i++) {
+            sink += teller.tryAddTransaction("1 10", teller.findAccount(lookups[i])).ordinal();
+          }
+        });
+        nanos[2] = measure(workloads[2], parameter, lines, () -> {
+          sink += teller.loadTransactionsMapped(file, new BankAccount("ACC1", 1_000_000_000))
+              .getAppliedCount();
+        });
+        for (int w = 0; w < workloads.length; w++) {
+          fastest[mode][w] = Math.min(fastest[mode][w], nanos[w]);
+        }
+      }
+    }
+    TellerMetrics.disable();
+    file.delete();
+
+    for (int mode = 1; mode < sampleIntervals.length; mode++) {
+      String parameter = metricsParameter(sampleIntervals[mode]);
+      for (int w = 0; w < workloads.length; w++) {
+        report(workloads[w], parameter, "ns/op overhead", fastest[mode][w] - fastest[0][w]);
+        report(workloads[w], parameter, "% overhead", 100 * (fastest[mode][w] / fastest[0][w] - 1));
+      }
+    }
+  }
+
+  /**
+   * Gets the parameter the metrics benchmark reports a mode with
+   * 
+   * @param sampleInterval operations per timed operation, or 0 if metrics are disabled
+   * @return the parameter
+   */
+  private static String metricsParameter(int sampleInterval) {
+    return sampleInterval == 0 ? "metrics=off" : "metrics=on,sample=1/" + sampleInterval;
+  }
+
+  /**
+   * Measures the binary transaction files of TransactionFile against the text files they are
+   * converted from: the bytes per record of both, converting a text file, and loading it with
+   * BankTeller.loadTransactions(), BankTeller.loadTransactionsMapped() and
+   * BankTeller.loadTransactionsBinary(). The files have 1,000 to 1,000,000 lines (and 10,000,000
+   * lines with --large), 10% of which are not correctly formatted. One operation is one line of
+   * the text file.
+   * 
+   * @throws Exception if the benchmark fails
+   */
+  public static void benchmarkBinaryFile() throws Exception {
+    BankTeller teller = new BankTeller();
+    ArrayList<Integer> fileLines = new ArrayList<Integer>();
+    for (int lines : FILE_LINES) {
+      fileLines.add(lines);
+    }
+    if (large) {
+      fileLines.add(LARGE_FILE_LINES);
+    }
+
+    for (int lines : fileLines) {
+      String parameter = "lines=" + lines;
+      File text = createTransactionFile(lines, 0.1, 42);
+      File binary = File.createTempFile("benchmark", ".btx");
+      binary.deleteOnExit();
+      TransactionLoadResult converted = TransactionFile.convert(text, binary);
+      report("binaryFileSize", parameter, "text B/record",
+          (double) text.length() / converted.getAppliedCount());
+      report("binaryFileSize", parameter, "binary B/record",
+          (double) binary.length() / converted.getAppliedCount());
+
+      measure("binaryFileConvert", parameter, lines, () -> {
+        sink += TransactionFile.convert(text, binary).getAppliedCount();
+      });
+      measure("binaryFileLoadScanner", parameter, lines, () -> {
+        teller.loadTransactions(text, new BankAccount("ACC0", 1_000_000_000));
+      });
+      measure("binaryFileLoadMapped", parameter, lines, () -> {
+        sink += teller.loadTransactionsMapped(text, new BankAccount("ACC1", 1_000_000_000))
+            .getAppliedCount();
+      });
+      measure("binaryFileLoadBinary", parameter, lines, () -> {
+        sink += teller.loadTransactionsBinary(binary, new BankAccount("ACC2", 1_000_000_000))
+            .getAppliedCount();
+      });
+      text.delete();
+      binary.delete();
+    }
+  }
+
+  /**
+   * Measures deposit and withdrawal pairs on a BankAccount, a ConcurrentBankAccount and a
+   * HighPrecisionBankAccount, each starting with a small balance and with a balance a few thousand
+   * dollars below Long.MAX_VALUE, where every deposit is checked closely for overflow. The accounts
+   * keep a window of 5 transactions so that the log does not dominate the results.
+   * 
+   * @throws Exception if the benchmark fails
+   */
+  public static void benchmarkBalance() throws Exception {
+    for (long start : new long[] {10, Long.MAX_VALUE - 10_000}) {
+      String parameter = start == 10 ? "balance=10" : "balance=max-10000";
+      BankAccount[] accounts = {new BankAccount("ACC0", start, 0, 5),
+          new ConcurrentBankAccount("ACC1", start, 0, 5),
+          new HighPrecisionBankAccount("ACC2", BigDecimal.valueOf(start), 0, 5)};
+      for (BankAccount account : accounts) {
+        String name = "balance" + account.getClass().getSimpleName();
+        measure(name, parameter, OPERATIONS, () -> {
+          for (int i = 0; i < OPERATIONS; i += 2) {
+            account.deposit(1000);
+            account.withdraw(1000);
+          }
+        });
+      }
+    }
+  }
+
+  /**
+   * Measures the queries of the account indexes on 1000 to 1,000,000 accounts with random balances
+   * and numbers of transactions: the 100 lowest balances from a random balance on, and the 100 most
+   * active accounts, next to finding the same balances by scanning every account. Also measures
+   * deposits and withdrawals on random accounts of a BankTeller with and without indexes, which is
+   * the cost of keeping the indexes up to date.
+   * 
+   * @throws Exception if the benchmark fails
+   */
+  public static void benchmarkAccountQueries() throws Exception {
+    final int queries = 10_000;
+    final int scans = 10;
+    final int limit = 100;
+
+    for (int count : ACCOUNT_COUNTS) {
+      String parameter = "accounts=" + count;
+      String[] ids = createIDs(count);
+      Random random = new Random(42);
+      BankTeller[] tellers = {new BankTeller(count), new BankTeller(count)};
+      tellers[1].createIndexes();
+      for (int i = 0; i < count; i++) {
+        int balance = 10 + random.nextInt(1_000_000);
+        for (BankTeller teller : tellers) {
+          BankAccount account = new BankAccount(ids[i], balance, 5);
+          for (int t = random.nextInt(4); t > 0; t--) {
+            account.deposit(10);
+          }
+          teller.addBankAccount(account);
+        }
+      }
+      BankTeller indexed = tellers[1];
+
+      long[] minBalances = new long[queries];
+      for (int i = 0; i < queries; i++) {
+        minBalances[i] = random.nextInt(1_000_000);
+      }
+      measure("indexBalanceRange", parameter, queries, () -> {
+        for (int i = 0; i < queries; i++) {
+          sink += indexed.getAccountIDsByBalance(minBalances[i], Long.MAX_VALUE, limit).size();
+        }
+      });
+      measure("indexMostActive", parameter, queries, () -> {
+        for (int i = 0; i < queries; i++) {
+          sink += indexed.getMostActiveAccountIDs(limit).size();
+        }
+      });
+      measure("scanBalanceRange", parameter, scans, () -> {
+        for (int i = 0; i < scans; i++) {
+          ArrayList<BankAccount> found = new ArrayList<BankAccount>();
+          for (BankAccount account : indexed.getAccounts()) {
+            if (account.getBalance() >= minBalances[i]) {
+              found.add(account);
+            }
+          }
+          found.sort((a, b) -> Long.compare(a.getBalance(), b.getBalance()));
+          sink += Math.min(found.size(), limit);
+        }
+      });
+
+      // applies the same transactions with and without indexes
+      BankAccount[] targets = new BankAccount[OPERATIONS];
+      for (String name : new String[] {"depositWithdrawPlain", "depositWithdrawIndexed"}) {
+        BankTeller teller = name.equals("depositWithdrawPlain") ? tellers[0] : tellers[1];
+        Random choices = new Random(7);
+        for (int i = 0; i < OPERATIONS; i++) {
+          targets[i] = teller.findAccount(ids[choices.nextInt(count)]);
+        }
+        measure(name, parameter, OPERATIONS, () -> {
+          for (int i = 0; i < OPERATIONS; i += 2) {
+            targets[i].deposit(10);
+            targets[i].withdraw(10);
+          }
+        });
+      }
+    }
+  }
+
+  /**
+   * Measures BankTeller.reconcile() on 1000 to 1,000,000 accounts with 20 transactions each, on
+   * fork-join pools of 1 to 8 threads, next to a single thread reading every transaction one at a
+   * time by its index. One operation is one transaction.
+   * 
+   * @throws Exception if the benchmark fails
+   */
+  public static void benchmarkReconcile() throws Exception {
+    final int transactions = 20; // transactions per account, including the initial balance
+
+    for (int count : ACCOUNT_COUNTS) {
+      String parameter = "accounts=" + count;
+      String[] ids = createIDs(count);
+      BankTeller teller = new BankTeller(count);
+      Random random = new Random(42);
+      for (int i = 0; i < count; i++) {
+        BankAccount account = new BankAccount(ids[i], 1000);
+        for (int t = 1; t < transactions; t++) {
+          if (random.nextBoolean()) {
+            account.deposit(10 * random.nextInt(10));
+          } else {
+            account.tryWithdraw(10 * random.nextInt(10));
+          }
+        }
+        teller.addBankAccount(account);
+      }
+      long operations = (long) count * transactions;
+
+      measure("reconcileByIndex", parameter, operations, () -> {
+        long total = 0;
+        for (BankAccount account : teller.getAccounts()) {
+          for (int t = 0; t < account.getTransactionsCount(); t++) {
+            int amount = account.getTransactionAmount(t);
+            total += account.isDepositTransaction(t) ? amount : -amount;
+          }
+          if (total != account.getBalance()) {
+            throw new IllegalStateException("Account does not reconcile.");
+          }
+          total = 0;
+        }
+      });
+
+      for (int threads = 1; threads <= 8; threads *= 2) {
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        measure("reconcile", parameter + ",threads=" + threads, operations, () -> {
+          sink += teller.reconcile(pool).getTotalBalance();
+        });
+        pool.shutdown();
+      }
+    }
+  }
+
+  /**
+   * Measures what deduplication adds to BankTeller.tryAddTransaction(): lines without IDs, lines
+   * with IDs and no deduplication, and lines with IDs checked against windows that either have
+   * forgotten every ID before it comes round again (every line is new) or remember every ID
+   * (every line is a duplicate). Also measures TransactionIDCache.add() on its own, and the heap
+   * used by a cache after it has seen its window of IDs and after ten times as many.
+   * 
+   * @throws Exception if the benchmark fails
+   */
+  public static void benchmarkDeduplication() throws Exception {
+    // the heap used by a cache stays the same however many IDs it has seen; this is measured
+    // first, while the heap holds nothing else
+    final int memoryWindow = 1_000_000;
+    long before = usedHeap();
+    TransactionIDCache filled = new TransactionIDCache(memoryWindow);
+    for (long id = 0; id < memoryWindow; id++) {
+      filled.add(id * 31);
+    }
+    report("idCacheMemory", "window=" + memoryWindow + ",ids=" + memoryWindow, "B/id",
+        (double) (usedHeap() - before) / memoryWindow);
+    for (long id = memoryWindow; id < 10L * memoryWindow; id++) {
+      filled.add(id * 31);
+    }
+    report("idCacheMemory", "window=" + memoryWindow + ",ids=" + 10 * memoryWindow, "B/id",
+        (double) (usedHeap() - before) / memoryWindow);
+    sink += filled.size();
+
+    Random random = new Random(42);
+    String[] plainLines = new String[OPERATIONS];
+    String[] idLines = new String[OPERATIONS];
+    for (int i = 0; i < OPERATIONS; i++) {
+      plainLines[i] = (random.nextBoolean() ? "1 " : "0 ") + random.nextInt(100);
+      idLines[i] = plainLines[i].substring(0, 2) + "#" + (1_000_000_000L + i)
+          + plainLines[i].substring(1);
+    }
+
+    BankTeller teller = new BankTeller();
+    BankAccount account = new BankAccount("ACC0", 1_000_000_000);
+    teller.addBankAccount(account);
+    measure("tryAddTransaction", "ids=none", OPERATIONS, () -> {
+      for (String line : plainLines) {
+        teller.tryAddTransaction(line, account);
+      }
+    });
+    measure("tryAddTransaction", "ids=ignored", OPERATIONS, () -> {
+      for (String line : idLines) {
+        teller.tryAddTransaction(line, account);
+      }
+    });
+
+    // a window smaller than the lines forgets each ID before the next run sends it again
+    teller.enableDeduplication(OPERATIONS / 16);
+    measure("tryAddTransaction", "ids=new,window=" + OPERATIONS / 16, OPERATIONS, () -> {
+      for (String line : idLines) {
+        teller.tryAddTransaction(line, account);
+      }
+    });
+    teller.enableDeduplication(OPERATIONS);
+    measure("tryAddTransaction", "ids=duplicate,window=" + OPERATIONS, OPERATIONS, () -> {
+      for (String line : idLines) {
+        teller.tryAddTransaction(line, account);
+      }
+    });
+
+    for (int window : new int[] {1_000, 1_000_000}) {
+      TransactionIDCache cache = new TransactionIDCache(window);
+      long[] next = {0};
+      measure("idCacheAdd", "window=" + window, OPERATIONS, () -> {
+        long id = next[0];
+        for (int i = 0; i < OPERATIONS; i++) {
+          sink += cache.add(id++) ? 1 : 0;
+        }
+        next[0] = id;
+      });
+      measure("idCacheDuplicate", "window=" + window, OPERATIONS, () -> {
+        long id = next[0] - Math.min(window, 1000);
+        for (int i = 0; i < OPERATIONS; i++) {
+          sink += cache.add(id + (i & 511)) ? 1 : 0;
+        }
+      });
+    }
+  }
+
+  /**
+   * Measures ShardedBankTeller.tryAddTransaction() with 1 to 8 shards in this JVM, each driven by
+   * one thread that sends deposits and withdrawals to accounts of every shard, so that its
+   * throughput can be compared as shards are added. Also measures the same transactions sent to
+   * a shard over a loopback socket, and the time adding a shard to 100,000 accounts takes.
+   * 
+   * @throws Exception if the benchmark fails
+   */
+  public static void benchmarkSharding() throws Exception {
+    final int accounts = 100_000;
+    final int transactions = OPERATIONS / 4; // transactions per thread
+    String[] ids = createIDs(accounts);
+    Random random = new Random(42);
+    int[] targets = new int[transactions * 8]; // account of each transaction of every thread
+    String[] lines = new String[targets.length];
+    for (int i = 0; i < targets.length; i++) {
+      targets[i] = random.nextInt(accounts);
+      lines[i] = (random.nextBoolean() ? "1 " : "0 ") + 10 * random.nextInt(10);
+    }
+
+    // the same transactions sent straight to one BankTeller, without routing
+    ConcurrentBankTeller direct = new ConcurrentBankTeller(accounts, 256);
+    for (String id : ids) {
+      direct.addBankAccount(new ConcurrentBankAccount(id, 1_000_000));
+    }
+    measure("unsharded", "threads=1", transactions, () -> {
+      for (int i = 0; i < transactions; i++) {
+        direct.tryAddTransaction(lines[i], direct.findAccount(ids[targets[i]]));
+      }
+    });
+
+    ShardedBankTeller[] sharded = new ShardedBankTeller[1]; // the teller of the current run
+    for (int shards = 1; shards <= 8; shards *= 2) {
+      final int threads = shards;
+      measureThreads("sharded", "shards=" + shards + ",threads=" + threads,
+          (long) transactions * threads, threads, () -> {
+            ArrayList<ShardTransport> transports = new ArrayList<ShardTransport>();
+            for (int i = 0; i < threads; i++) {
+              transports.add(
+                  new LocalShardTransport(new ConcurrentBankTeller(accounts / threads, 256)));
+            }
+            sharded[0] = new ShardedBankTeller(transports);
+            for (String id : ids) {
+              sharded[0].addBankAccount(new ConcurrentBankAccount(id, 1_000_000));
+            }
+          }, t -> {
+            for (int i = t * transactions; i < (t + 1) * transactions; i++) {
+              sharded[0].tryAddTransaction(ids[targets[i]], lines[i]);
+            }
+          });
+    }
+
+    // the same transactions over a loopback socket, one request at a time
+    BankTeller remote = new ConcurrentBankTeller(accounts, 256);
+    try (ShardServer server = new ShardServer(remote, 0);
+        ShardedBankTeller teller = new ShardedBankTeller(Arrays.<ShardTransport>asList(
+            new SocketShardTransport("localhost", server.getPort())))) {
+      for (String id : ids) {
+        teller.addBankAccount(new ConcurrentBankAccount(id, 1_000_000));
+      }
+      final int requests = transactions / 10;
+      measure("shardedSocket", "shards=1", requests, () -> {
+        for (int i = 0; i < requests; i++) {
+          teller.tryAddTransaction(ids[targets[i]], lines[i]);
+        }
+      });
+    }
+
+    for (int shards = 1; shards <= 8; shards *= 2) {
+      ArrayList<ShardTransport> transports = new ArrayList<ShardTransport>();
+      for (int i = 0; i < shards; i++) {
+        transports.add(new LocalShardTransport(new ConcurrentBankTeller()));
+      }
+      ShardedBankTeller teller = new ShardedBankTeller(transports);
+      for (String id : ids) {
+        teller.addBankAccount(new ConcurrentBankAccount(id, 1_000_000));
+      }
+      long start = System.nanoTime();
+      int moved = teller.addShard(new LocalShardTransport(new ConcurrentBankTeller()));
+      String parameter = "accounts=" + accounts + ",shards=" + shards + "+1";
+      report("addShard", parameter, "ms", (System.nanoTime() - start) / 1e6);
+      report("addShard", parameter, "moved", moved);
+    }
+  }
+
+  /**
+   * Measures parsing 1,000,000 transaction lines with BankTeller.parseTransaction(), one String per
+   * line as addTransaction() parses them, and in bulk from the bytes of the lines with
+   * TransactionParser, as loadTransactionsMapped() parses them. The lines are either short, with
+   * amounts up to 100 of which 10% are not correctly formatted, or have amounts of up to 8 digits.
+   * Besides the time per line, the throughput in bytes of lines per second is reported.
+   * 
+   * @throws Exception if the benchmark fails
+   */
+  public static void benchmarkParse() throws Exception {
+    for (boolean longAmounts : new boolean[] {false, true}) {
+      Random random = new Random(42);
+      String[] lines = new String[OPERATIONS];
+      StringBuilder text = new StringBuilder();
+      for (int i = 0; i < OPERATIONS; i++) {
+        lines[i] = longAmounts ? random.nextInt(2) + " " + random.nextInt(100_000_000)
+            : createTransactionLine(random, 0.1);
+        text.append(lines[i]).append('\n');
+      }
+      byte[] bytes = text.toString().getBytes(StandardCharsets.US_ASCII);
+      ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length); // like a mapped file
+      buffer.put(bytes);
+      String parameter = longAmounts ? "amounts=8 digits" : "malformed=10%";
+
+      double nanos = measure("parseTransaction", parameter, OPERATIONS, () -> {
+        for (String line : lines) {
+          sink += BankTeller.parseTransaction(line);
+        }
+      });
+      report("parseTransaction", parameter, "GB/s", bytes.length / (nanos * OPERATIONS));
+
+      TransactionParser parser = new TransactionParser(4096);
+      nanos = measure("parseBulk", parameter, OPERATIONS, () -> {
+        int position = 0;
+        while (position < bytes.length) {
+          position = parser.parse(buffer, position, bytes.length, true);
+          for (int line = 0; line < parser.getLineCount(); line++) {
+            sink += parser.getParsed(line);
+          }
+        }
+      });
+      report("parseBulk", parameter, "GB/s", bytes.length / (nanos * OPERATIONS));
+    }
+  }
+
+  /**
+   * Measures a TellerServer over loopback with TellerLoadGenerator: 10 to 1,000 connections (and
+   * 8,000 with --large) each make round trips of 1 or 16 pipelined transactions, about 200,000
+   * transactions in all. Reports the transactions answered per second and the percentiles of the
+   * round-trip latency. The load generator runs in the same JVM as the server, so both share the
+   * CPUs.
+   * 
+   * @throws Exception if the benchmark fails
+   */
+  public static void benchmarkServer() throws Exception {
+    ArrayList<Integer> connectionCounts = new ArrayList<Integer>(Arrays.asList(10, 100, 1_000));
+    if (large) {
+      connectionCounts.add(8_000);
+    }
+
+    ConcurrentBankTeller teller = new ConcurrentBankTeller();
+    TellerLoadGenerator.addAccounts(teller, 10_000);
+    try (TellerServer server = new TellerServer(teller, 0)) {
+      for (int connections : connectionCounts) {
+        for (int pipeline : new int[] {1, 16}) {
+          String parameter = "connections=" + connections + ",pipeline=" + pipeline;
+          int roundTrips = Math.max(1, 200_000 / (connections * pipeline));
+          TellerLoadGenerator.run("localhost", server.getPort(), connections, roundTrips,
+              pipeline, 10_000, 1, new LatencyHistogram()); // warms up
+
+          LatencyHistogram latencies = new LatencyHistogram();
+          double throughput = TellerLoadGenerator.run("localhost", server.getPort(), connections,
+              roundTrips, pipeline, 10_000, 42, latencies);
+          report("server", parameter, "transactions/s", throughput);
+          report("server", parameter, "p50 us", latencies.getPercentile(50) / 1e3);
+          report("server", parameter, "p99 us", latencies.getPercentile(99) / 1e3);
+          report("server", parameter, "p999 us", latencies.getPercentile(99.9) / 1e3);
+        }
+      }
+    }
+  }
+
+  /**
+   * Measures reading the history of an account with 1,000,000 transactions applied over a year:
+   * the whole history a page of 256 transactions at a time, and the transactions of the last 30
+   * days with a time-range query, against finding them by scanning the time of every transaction.
+   * One operation of the full read is one transaction, and one operation of the queries is one
+   * query.
+   * 
+   * @throws Exception if the benchmark fails
+   */
+  public static void benchmarkHistory() throws Exception {
+    long year = 365L * 24 * 60 * 60 * 1000;
+    long start = System.currentTimeMillis() - year;
+    BankAccount account = new BankAccount("ACC0", 0, 0, 0);
+    for (int i = 0; i < OPERATIONS; i++) {
+      account.restoreTransaction(i % 2 == 0, 10 + i % 100, start + i * (year / OPERATIONS));
+    }
+    int[] amounts = new int[256];
+    boolean[] deposits = new boolean[256];
+    long[] times = new long[256];
+
+    for (boolean newestFirst : new boolean[] {false, true}) {
+      measure("historyPages", newestFirst ? "newestFirst" : "oldestFirst", OPERATIONS, () -> {
+        TransactionHistory history = account.getHistory(newestFirst);
+        int count;
+        while ((count = history.nextPage(amounts, deposits, times)) > 0) {
+          sink += amounts[count - 1] + times[count - 1];
+        }
+      });
+    }
+
+    long from = start + year - 30L * 24 * 60 * 60 * 1000;
+    int queries = 100;
+    measure("historyLast30Days", "timeRange", queries, () -> {
+      for (int q = 0; q < queries; q++) {
+        TransactionHistory history = account.getHistory(from, Long.MAX_VALUE, true);
+        int count;
+        while ((count = history.nextPage(amounts, deposits, times)) > 0) {
+          sink += count;
+        }
+      }
+    });
+    measure("historyLast30Days", "scan", queries, () -> {
+      for (int q = 0; q < queries; q++) {
+        for (int index = 0; index < account.getTransactionsCount(); index++) {
+          if (account.getTransactionTime(index) >= from) {
+            sink += account.getTransactionAmount(index);
+          }
+        }
+      }
+    });
+  }
+
+  /**
+   * Measures replaying a seeded TellerWorkload of 1,000,000 lines (1% malformed) over 10,000
+   * accounts with TellerReplay, with the lines spread evenly over the accounts (skew=0) or sent
+   * mostly to a few hot accounts (skew=1): line by line into a ConcurrentBankTeller with 1, 2 and 4
+   * threads (and 8 with --large), and as one transaction file per account. Reports the lines
+   * replayed per second, the 99th percentile of the sampled latencies (of the lines, or of the
+   * files) and the bytes allocated per line, and fails if a replay does not end with the balances
+   * the workload expects.
+   * 
+   * @throws Exception if the benchmark fails
+   */
+  public static void benchmarkReplay() throws Exception {
+    ArrayList<Integer> threadCounts = new ArrayList<Integer>(Arrays.asList(1, 2, 4));
+    if (large) {
+      threadCounts.add(8);
+    }
+
+    for (double skew : new double[] {0, 1}) {
+      TellerWorkload workload = new TellerWorkload(10_000, OPERATIONS, skew, 0.01, 0.75, 42);
+      File directory = Files.createTempDirectory("benchmark").toFile();
+      File[] files = workload.writeFiles(directory);
+      try {
+        for (boolean fromFiles : new boolean[] {false, true}) {
+          for (int threads : threadCounts) {
+            String parameter = "skew=" + skew + ",threads=" + threads;
+            String benchmark = fromFiles ? "replayFiles" : "replayLines";
+            LatencyHistogram latencies = new LatencyHistogram();
+            long nanos = 0;
+            long bytes = 0;
+            for (int run = 0; run < WARMUP_RUNS + MEASURED_RUNS; run++) {
+              ConcurrentBankTeller teller = new ConcurrentBankTeller();
+              workload.addAccounts(teller);
+              TellerReplayResult result =
+                  fromFiles ? TellerReplay.replayFiles(teller, workload, files, threads)
+                      : TellerReplay.replayLines(teller, workload, threads);
+              if (!result.isVerified()) {
+                throw new IllegalStateException("Replay did not end with the expected balances.");
+              }
+              // only counts the runs after the warmup runs
+              if (run >= WARMUP_RUNS) {
+                nanos += result.getElapsedNanos();
+                bytes += result.getAllocatedBytes();
+                latencies.add(result.getLatencies());
+              }
+            }
+            double lines = (double) OPERATIONS * MEASURED_RUNS;
+            report(benchmark, parameter, "lines/s", lines / (nanos / 1e9));
+            report(benchmark, parameter, "p99 us", latencies.getPercentile(99) / 1e3);
+            report(benchmark, parameter, "B/line", bytes / lines);
+          }
+        }
+      } finally {
+        for (File file : files) {
+          file.delete();
+        }
+        directory.delete();
+      }
+    }
+  }
+
+  /**
+   * Runs the benchmarks named on the command line, or all of them if none is named
+   * 
+   * @param args benchmark names and options, as described in the class comment
+   * @throws Exception if a benchmark fails
+   */
+  public static void main(String[] args) throws Exception {
+    LinkedHashMap<String, Task> benchmarks = new LinkedHashMap<String, Task>();
+    benchmarks.put("depositWithdraw", BankTellerBenchmark::benchmarkDepositWithdraw);
+    benchmarks.put("mostRecentTransactions", BankTellerBenchmark::benchmarkMostRecentTransactions);
+    benchmarks.put("accountIndex", BankTellerBenchmark::benchmarkAccountIndex);
+    benchmarks.put("addTransaction", BankTellerBenchmark::benchmarkAddTransaction);
+    benchmarks.put("loadTransactions", BankTellerBenchmark::benchmarkLoadTransactions);
+    benchmarks.put("loadTransactionsParallel",
+        BankTellerBenchmark::benchmarkLoadTransactionsParallel);
+    benchmarks.put("contendedAccount", BankTellerBenchmark::benchmarkContendedAccount);
+    benchmarks.put("disjointTransfers", BankTellerBenchmark::benchmarkDisjointTransfers);
+    benchmarks.put("journal", BankTellerBenchmark::benchmarkJournal);
+    benchmarks.put("tieredAccounts", BankTellerBenchmark::benchmarkTieredAccounts);
+    benchmarks.put("batch", BankTellerBenchmark::benchmarkBatch);
+    benchmarks.put("pipeline", BankTellerBenchmark::benchmarkPipeline);
+    benchmarks.put("metrics", BankTellerBenchmark::benchmarkMetrics);
+    benchmarks.put("binaryFile", BankTellerBenchmark::benchmarkBinaryFile);
+    benchmarks.put("balance", BankTellerBenchmark::benchmarkBalance);
+    benchmarks.put("accountQueries", BankTellerBenchmark::benchmarkAccountQueries);
+    benchmarks.put("reconcile", BankTellerBenchmark::benchmarkReconcile);
+    benchmarks.put("deduplication", BankTellerBenchmark::benchmarkDeduplication);
+    benchmarks.put("sharding", BankTellerBenchmark::benchmarkSharding);
+    benchmarks.put("parse", BankTellerBenchmark::benchmarkParse);
+    benchmarks.put("server", BankTellerBenchmark::benchmarkServer);
+    benchmarks.put("history", BankTellerBenchmark::benchmarkHistory);
+    benchmarks.put("replay", BankTellerBenchmark::benchmarkReplay);
+
+    // reads the options and the names of the benchmarks to run
+    String csvFile = null;
+    ArrayList<String> selected = new ArrayList<String>();
+    for (int i = 0; i < args.length; i++) {
+      if (args[i].equals("--csv") && i + 1 < args.length) {
+        csvFile = args[++i];
+      } else if (args[i].equals("--label") && i + 1 < args.length) {
+        label = args[++i];
+      } else if (args[i].equals("--large")) {
+        large = true;
+      } else if (benchmarks.containsKey(args[i])) {
+        selected.add(args[i]);
+      } else {
+        System.out.println("Unknown benchmark or option: " + args[i]);
+        return;
+      }
+    }
+
+    for (Map.Entry<String, Task> benchmark : benchmarks.entrySet()) {
+      if (selected.isEmpty() || selected.contains(benchmark.getKey())) {
+        benchmark.getValue().run();
+      }
+    }
+
+    // writes the results so that they can be compared with the results of other versions
+    if (csvFile != null) {
+      PrintWriter writer = new PrintWriter(csvFile);
+      writer.println("label,benchmark,parameter,metric,value");
+      for (String result : results) {
+        writer.println(result);
+      }
+      writer.close();
+    }
+  }
+}
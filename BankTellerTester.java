@@ -1,7 +1,26 @@
 /////////////////////////////////////////// FILE  HEADER /////////////////////////////////////////////
 //
 // Title: Exceptional Bank Teller
-// Files: BankAccount.java, BankAccountTester.java, BankTeller.java, BankTellerTester.java
+// Files: BankAccount.java, BankAccountTester.java, BankTeller.java, BankTellerTester.java,
+//        BankTellerBenchmark.java, TransactionLog.java, TransactionLoadResult.java,
+//        ConcurrentTransactionLog.java, ConcurrentBankAccount.java,
+//        ConcurrentBankAccountTester.java, ConcurrentBankTeller.java,
+//        ConcurrentBankTellerTester.java, TransactionStatus.java, TransactionListener.java,
+//        TransactionJournal.java, TransactionJournalTester.java, TransactionSnapshot.java,
+//        ColdAccountStore.java, TieredAccountMap.java, TieredBankTeller.java,
+//        TieredBankTellerTester.java, TransactionBatch.java, TransactionBatchResult.java,
+//        TransactionRecord.java, TransactionEvent.java, TransactionPipeline.java,
+//        TransactionPipelineTester.java, LatencyHistogram.java, TellerMetrics.java,
+//        TellerMetricsTester.java, TransactionFile.java, TransactionFileTester.java,
+//        HighPrecisionBankAccount.java, HighPrecisionBankAccountTester.java, AccountIndex.java,
+//        AccountIndexTester.java, ReconciliationReport.java, ReconciliationTask.java,
+//        TransactionIDCache.java, TransactionIDCacheTester.java, ShardTransport.java,
+//        LocalShardTransport.java, SocketShardTransport.java, ShardServer.java,
+//        ShardedBankTeller.java, ShardedBankTellerTester.java, TransactionParser.java,
+//        TransactionParserTester.java, TellerServer.java, TellerClient.java,
+//        TellerLoadGenerator.java, TellerServerTester.java, TransactionClock.java,
+//        TransactionTimeIndex.java, TransactionHistory.java, TransactionHistoryTester.java,
+//        TellerWorkload.java, TellerReplay.java, TellerReplayResult.java, TellerReplayTester.java
 // This File: BankTellerTester.java
 // 
 // Name: Benjamin Tarmann
@@ -11,6 +30,16 @@
 
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.DataFormatException;
 
 /**
  * This class is a tester for the BankTeller class's public behaviors
@@ -52,6 +81,33 @@ public class BankTellerTester {
     }
   }
 
+  /**
+   * Checks whether the BankTeller.findAccount() method returns the account with exactly the given
+   * identifier, and throws a NoSuchElementException when no account has that identifier.
+   * 
+   * @return true when this test verifies a correct functionality, and false otherwise.
+   */
+  public static boolean testBankTellerFindAccount() {
+    BankTeller testTeller = new BankTeller(1000);
+    for (int i = 0; i < 1000; i++) {
+      testTeller.addBankAccount(new BankAccount("ACC" + i, 10 + i));
+    }
+
+    // checks that the accounts count and a found account are correct
+    if (testTeller.getAccountsCount() != 1000
+        || testTeller.findAccount("ACC500").getBalance() != 510) {
+      return false;
+    }
+
+    // checks that a case sensitive comparison is used to find accounts
+    try {
+      testTeller.findAccount("acc500");
+      return false; // test fails if exception is not thrown from above line
+    } catch (NoSuchElementException e) {
+      return true;
+    }
+  }
+
   /**
    * This method checks whether the BankTeller.loadTransactions() method that takes a File parameter
    * throws a FileNotFoundException, when it is passed a File object that does not correspond to an
@@ -72,6 +128,477 @@ public class BankTellerTester {
     }
   }
 
+  /**
+   * Checks whether the BankTeller.transfer() method moves money between two accounts, and leaves
+   * both accounts unchanged when the amount cannot be withdrawn from the first one.
+   * 
+   * @return true when this test verifies a correct functionality, and false otherwise.
+   */
+  public static boolean testBankTellerTransfer() {
+    BankTeller testTeller = new BankTeller();
+    BankAccount from = new BankAccount("0001", 100);
+    BankAccount to = new BankAccount("0002", 10);
+    testTeller.addBankAccount(from);
+    testTeller.addBankAccount(to);
+
+    try {
+      testTeller.transfer("0001", "0002", 40);
+    } catch (DataFormatException e) {
+      return false;
+    }
+    if (from.getBalance() != 60 || to.getBalance() != 50
+        || !to.getMostRecentTransactions()[0].equals("1 40")) {
+      return false;
+    }
+
+    // checks that a transfer larger than the balance changes neither account
+    try {
+      testTeller.transfer("0001", "0002", 70);
+      return false;
+    } catch (IllegalStateException e) {
+      // expected
+    } catch (DataFormatException e) {
+      return false;
+    }
+    return from.getBalance() == 60 && to.getBalance() == 50 && to.getTransactionsCount() == 2;
+  }
+
+  /**
+   * Checks whether a transfer that would make the balance of the second account too large changes
+   * neither account, with a BankTeller and with a ConcurrentBankTeller, while a transfer into a
+   * HighPrecisionBankAccount takes its balance past Long.MAX_VALUE.
+   * 
+   * @return true when this test verifies a correct functionality, and false otherwise.
+   */
+  public static boolean testBankTellerTransferOverflow() {
+    for (BankTeller testTeller : new BankTeller[] {new BankTeller(), new ConcurrentBankTeller()}) {
+      BankAccount from = new BankAccount("0001", 100);
+      BankAccount to = new BankAccount("0002", Long.MAX_VALUE - 30, 0, 0);
+      testTeller.addBankAccount(from);
+      testTeller.addBankAccount(to);
+      try {
+        testTeller.transfer("0001", "0002", 40);
+        return false;
+      } catch (ArithmeticException e) {
+        // expected
+      } catch (DataFormatException e) {
+        return false;
+      }
+      if (from.getBalance() != 100 || from.getTransactionsCount() != 1
+          || to.getBalance() != Long.MAX_VALUE - 30 || to.getTransactionsCount() != 0) {
+        return false;
+      }
+    }
+
+    BankTeller testTeller = new BankTeller();
+    testTeller.addBankAccount(new BankAccount("0001", 100));
+    BankAccount to = new HighPrecisionBankAccount("0002", BigDecimal.valueOf(Long.MAX_VALUE), 0, 0);
+    testTeller.addBankAccount(to);
+    try {
+      testTeller.transfer("0001", "0002", 40);
+    } catch (DataFormatException e) {
+      return false;
+    }
+    BigDecimal expected = BigDecimal.valueOf(Long.MAX_VALUE).add(BigDecimal.valueOf(40));
+    return to.getExactBalance().equals(expected)
+        && testTeller.findAccount("0001").getBalance() == 60;
+  }
+
+  /**
+   * Checks whether the BankTeller.tryAddTransaction() method reports each kind of incorrect
+   * transaction with the same status that addTransaction() reports with an exception, and applies
+   * correct transactions.
+   * 
+   * @return true when this test verifies a correct functionality, and false otherwise.
+   */
+  public static boolean testBankTellerTryAddTransaction() {
+    BankTeller testTeller = new BankTeller();
+    BankAccount testAccount = new BankAccount("0001", 20);
+
+    if (testTeller.tryAddTransaction("1 5x", testAccount) != TransactionStatus.INVALID_AMOUNT
+        || testTeller.tryAddTransaction("2 5", testAccount) != TransactionStatus.INVALID_TYPE
+        || testTeller.tryAddTransaction("0 5", testAccount)
+            != TransactionStatus.INVALID_WITHDRAW_AMOUNT
+        || testTeller.tryAddTransaction("0 50", testAccount)
+            != TransactionStatus.INSUFFICIENT_FUNDS
+        || testTeller.tryAddTransaction("  ", testAccount)
+            != TransactionStatus.AMOUNT_OUT_OF_RANGE
+        || testTeller.tryAddTransaction("1 2147483648", testAccount)
+            != TransactionStatus.AMOUNT_OUT_OF_RANGE
+        || testAccount.getBalance() != 20) {
+      return false;
+    }
+
+    // checks that addTransaction() reports a malformed transaction with a DataFormatException
+    try {
+      testTeller.addTransaction("x 5", testAccount);
+      return false;
+    } catch (DataFormatException e) {
+      // expected
+    }
+
+    return testTeller.tryAddTransaction(" 1 30 ", testAccount) == TransactionStatus.APPLIED
+        && testTeller.tryAddTransaction("0  50", testAccount) == TransactionStatus.APPLIED
+        && testAccount.getBalance() == 0;
+  }
+
+  /**
+   * Writes the given text to a new temporary file that is deleted when the JVM exits
+   * 
+   * @param contents text to write to the file
+   * @return the temporary file
+   * @throws IOException if the file cannot be created or written
+   */
+  private static File createTransactionFile(String contents) throws IOException {
+    File file = File.createTempFile("transactions", ".txt");
+    file.deleteOnExit();
+    PrintWriter writer = new PrintWriter(file);
+    writer.print(contents);
+    writer.close();
+    return file;
+  }
+
+  /**
+   * Checks whether the BankTeller.loadTransactionsMapped() method applies and skips exactly the
+   * same lines as BankTeller.loadTransactions(), with a mix of correctly and incorrectly formatted
+   * lines, "\n" and "\r\n" line terminators and a last line without a line terminator. Also
+   * checks that both methods throw a NumberFormatException for an empty line.
+   * 
+   * @return true when this test verifies a correct functionality, and false otherwise.
+   */
+  public static boolean testBankTellerLoadTransactionsMapped() {
+    BankTeller testTeller = new BankTeller();
+    BankAccount scannerAccount = new BankAccount("0001", 100);
+    BankAccount mappedAccount = new BankAccount("0002", 100);
+
+    try {
+      File file = createTransactionFile("1 250\n  0 100  \r\n0 15\nx 5\n1 5x\n1  30\n10\n1\n"
+          + "0 0\n1\t5\n0 -10\n1 007\r0 20\n1 99");
+      testTeller.loadTransactions(file, scannerAccount);
+      TransactionLoadResult result = testTeller.loadTransactionsMapped(file, mappedAccount);
+
+      // checks that both accounts ended up with the same balance and transactions
+      if (scannerAccount.getBalance() != mappedAccount.getBalance()
+          || scannerAccount.getTransactionsCount() != mappedAccount.getTransactionsCount()
+          || !Arrays.equals(scannerAccount.getMostRecentTransactions(),
+              mappedAccount.getMostRecentTransactions())) {
+        return false;
+      }
+
+      // checks the counts of applied and skipped lines, not counting the initial deposit
+      if (result.getAppliedCount() != mappedAccount.getTransactionsCount() - 1
+          || result.getSkippedCount() != 5) {
+        return false;
+      }
+    } catch (IOException e) {
+      return false;
+    }
+
+    // checks that an empty line is not skipped by either method
+    boolean scannerThrew = false;
+    boolean mappedThrew = false;
+    try {
+      File file = createTransactionFile("1 10\n\n1 20\n");
+      try {
+        testTeller.loadTransactions(file, scannerAccount);
+      } catch (NumberFormatException e) {
+        scannerThrew = true;
+      }
+      try {
+        testTeller.loadTransactionsMapped(file, mappedAccount);
+      } catch (NumberFormatException e) {
+        mappedThrew = true;
+      }
+    } catch (IOException e) {
+      return false;
+    }
+    return scannerThrew && mappedThrew
+        && scannerAccount.getBalance() == mappedAccount.getBalance();
+  }
+
+  /**
+   * Checks whether the BankTeller.loadTransactionsParallel() method loads every file into the
+   * account it is paired with, applies the files of the same account in the order they were given,
+   * and records the files that fail without stopping the other files.
+   * 
+   * @return true when this test verifies a correct functionality, and false otherwise.
+   */
+  public static boolean testBankTellerLoadTransactionsParallel() {
+    BankTeller testTeller = new BankTeller();
+    testTeller.addBankAccount(new BankAccount("0001", 10));
+    testTeller.addBankAccount(new BankAccount("0002", 10));
+    ExecutorService pool = new ForkJoinPool(4);
+
+    try {
+      // the withdrawal of the second file of account 0001 only succeeds after the first file
+      LinkedHashMap<File, String> fileAccounts = new LinkedHashMap<File, String>();
+      fileAccounts.put(createTransactionFile("1 100\n1 x\n"), "0001");
+      fileAccounts.put(createTransactionFile("1 5\n"), "0002");
+      fileAccounts.put(createTransactionFile("0 110\n"), "0001");
+      File unknownAccountFile = createTransactionFile("1 5\n");
+      fileAccounts.put(unknownAccountFile, "0003");
+      File missingFile = new File("missing.txt");
+      fileAccounts.put(missingFile, "0002");
+
+      TransactionLoadResult result = testTeller.loadTransactionsParallel(fileAccounts, pool);
+
+      // checks the balances and the aggregate result
+      if (testTeller.findAccount("0001").getBalance() != 0
+          || testTeller.findAccount("0002").getBalance() != 15 || result.getAppliedCount() != 3
+          || result.getSkippedCount() != 1 || result.getFailures().size() != 2) {
+        return false;
+      }
+
+      // checks that the failed files were recorded with the right exceptions
+      return result.getFailures().get(unknownAccountFile) instanceof NoSuchElementException
+          && result.getFailures().get(missingFile) instanceof FileNotFoundException;
+    } catch (IOException | InterruptedException e) {
+      return false;
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  /**
+   * Checks whether the BankTeller.applyBatch() method applies and rejects each record of a batch
+   * exactly as tryDeposit() and tryWithdraw() would in the order of the batch, including records
+   * of an unknown account or an empty account ID, and whether a cleared batch can be filled and
+   * applied again.
+   * 
+   * @return true when this test verifies a correct functionality, and false otherwise.
+   */
+  public static boolean testBankTellerApplyBatch() {
+    BankTeller testTeller = new BankTeller();
+    testTeller.addBankAccount(new BankAccount("0001", 100));
+    testTeller.addBankAccount(new BankAccount("0002", 50));
+
+    TransactionBatch batch = new TransactionBatch(2);
+    batch.add("0001", true, 20);
+    batch.add("0002", false, 30);
+    batch.add("0003", true, 5);
+    batch.add("0001", false, 200);
+    batch.add("0001", false, 15);
+    batch.add("0002", true, -1);
+    batch.add("0001", false, 120);
+    batch.add("0002", false, 20);
+    TransactionBatchResult result = testTeller.applyBatch(batch);
+
+    TransactionStatus[] expected = {TransactionStatus.APPLIED, TransactionStatus.APPLIED,
+        TransactionStatus.ACCOUNT_NOT_FOUND, TransactionStatus.INSUFFICIENT_FUNDS,
+        TransactionStatus.INVALID_WITHDRAW_AMOUNT, TransactionStatus.NEGATIVE_DEPOSIT,
+        TransactionStatus.APPLIED, TransactionStatus.APPLIED};
+    if (result.size() != expected.length || result.getAppliedCount() != 4
+        || result.getRejectedCount() != 4) {
+      return false;
+    }
+    for (int i = 0; i < expected.length; i++) {
+      if (result.getStatus(i) != expected[i]) {
+        return false;
+      }
+    }
+    BankAccount first = testTeller.findAccount("0001");
+    BankAccount second = testTeller.findAccount("0002");
+    if (first.getBalance() != 0 || first.getTransactionsCount() != 3 || second.getBalance() != 0
+        || second.getTransactionsCount() != 3
+        || !"0 120".equals(first.getMostRecentTransactions()[0])) {
+      return false;
+    }
+
+    // checks that a cleared batch starts empty and can be reused
+    batch.clear();
+    if (testTeller.applyBatch(batch).size() != 0) {
+      return false;
+    }
+    batch.add("0002", true, 40);
+    result = testTeller.applyBatch(batch);
+    if (result.size() != 1 || result.getStatus(0) != TransactionStatus.APPLIED
+        || second.getBalance() != 40) {
+      return false;
+    }
+
+    // checks that a first record with an empty account ID is looked up like any other ID
+    batch.clear();
+    batch.add("", true, 10);
+    batch.add("", true, 10);
+    batch.add("0002", true, 10);
+    result = testTeller.applyBatch(batch);
+    return result.size() == 3 && result.getStatus(0) == TransactionStatus.ACCOUNT_NOT_FOUND
+        && result.getStatus(1) == TransactionStatus.ACCOUNT_NOT_FOUND
+        && result.getStatus(2) == TransactionStatus.APPLIED && second.getBalance() == 50;
+  }
+
+  /**
+   * Reconciles 5000 accounts of every kind, some keeping every transaction and some only a window
+   * of them, after random deposits and withdrawals. Checks the totals and the net flow of every
+   * account against the transactions the test applied, and that every account that keeps all its
+   * transactions reconciles.
+   * 
+   * @return true when this test verifies a correct functionality, and false otherwise.
+   */
+  public static boolean testBankTellerReconcile() {
+    Random random = new Random(19);
+    BankTeller teller = new ConcurrentBankTeller();
+    BankAccount[] accounts = new BankAccount[5000];
+    long[] deposits = new long[accounts.length];
+    long[] withdrawals = new long[accounts.length];
+    for (int i = 0; i < accounts.length; i++) {
+      int initialBalance = 10 + random.nextInt(1000);
+      int window = i % 4 == 3 ? 5 : 0;
+      accounts[i] = i % 3 == 0 ? new BankAccount("R" + i, initialBalance, window)
+          : i % 3 == 1 ? new ConcurrentBankAccount("R" + i, initialBalance, window)
+              : new HighPrecisionBankAccount("R" + i, initialBalance, window);
+      teller.addBankAccount(accounts[i]);
+    }
+    for (int t = 0; t < 50_000; t++) {
+      // the first account gets enough transactions to fill several chunks of its log
+      int i = t % 10 == 0 ? 0 : random.nextInt(accounts.length);
+      int amount = 10 * random.nextInt(50);
+      if (random.nextBoolean() && accounts[i].tryDeposit(amount) == TransactionStatus.APPLIED) {
+        deposits[i] += amount;
+      } else if (accounts[i].tryWithdraw(amount) == TransactionStatus.APPLIED) {
+        withdrawals[i] += amount;
+      }
+    }
+
+    // adds up the transactions each account still keeps, which are the recent ones of the accounts
+    // that do not keep all of them
+    long totalDeposits = 0;
+    long totalWithdrawals = 0;
+    long totalBalance = 0;
+    int unverified = 0;
+    int[] amounts = new int[5];
+    boolean[] isDeposit = new boolean[5];
+    for (int i = 0; i < accounts.length; i++) {
+      totalBalance += accounts[i].getBalance();
+      if (accounts[i].hasFullHistory()) {
+        totalDeposits += deposits[i];
+        totalWithdrawals += withdrawals[i];
+        continue;
+      }
+      unverified++;
+      int kept = accounts[i].getMostRecentTransactions(amounts, isDeposit);
+      for (int k = 0; k < kept; k++) {
+        totalDeposits += isDeposit[k] ? amounts[k] : 0;
+        totalWithdrawals += isDeposit[k] ? 0 : amounts[k];
+      }
+    }
+
+    ForkJoinPool pool = new ForkJoinPool(4);
+    ReconciliationReport report = teller.reconcile(pool);
+    pool.shutdown();
+    if (report.getAccountsCount() != accounts.length || !report.isReconciled()
+        || report.getUnverifiedCount() != unverified
+        || report.getVerifiedCount() != accounts.length - unverified
+        || report.getTotalDeposits() != totalDeposits
+        || report.getTotalWithdrawals() != totalWithdrawals
+        || report.getTotalBalance() != totalBalance || report.getTotalOpeningBalance()
+            + totalDeposits - totalWithdrawals != totalBalance) {
+      return false;
+    }
+
+    // checks the net flow of every account that keeps all its transactions
+    for (int k = 0; k < report.getAccountsCount(); k++) {
+      int i = Integer.parseInt(report.getAccountID(k).substring(1));
+      if (accounts[i].hasFullHistory() && report.getNetFlow(k) != deposits[i] - withdrawals[i]) {
+        return false;
+      }
+    }
+    return teller.reconcile().getTotalBalance() == totalBalance;
+  }
+
+  /**
+   * Checks whether reconcile() reports an account whose transactions do not add up to its
+   * balance, does not check an account whose older transactions are not kept, and reports an
+   * empty BankTeller with all totals at 0
+   * 
+   * @return true when this test verifies a correct functionality, and false otherwise.
+   */
+  public static boolean testBankTellerReconcileMismatch() {
+    if (new BankTeller().reconcile().getAccountsCount() != 0
+        || new BankTeller().reconcile().getTotalBalance() != 0) {
+      return false;
+    }
+
+    BankTeller teller = new BankTeller();
+    BankAccount plain = new BankAccount("0001", 100);
+    plain.deposit(50);
+    teller.addBankAccount(plain);
+    // an account restored with a balance but without a transaction explaining it
+    teller.addBankAccount(new BankAccount("0002", 500, 0, 0));
+    // an account restored without its first three transactions
+    BankAccount restored = new BankAccount("0003", 70, 3, 0);
+    restored.deposit(30);
+    teller.addBankAccount(restored);
+
+    ReconciliationReport report = teller.reconcile();
+    return !report.isReconciled()
+        && report.getMismatchedAccountIDs().equals(Arrays.asList("0002"))
+        && report.getVerifiedCount() == 2 && report.getUnverifiedCount() == 1
+        && report.getTotalOpeningBalance() == 100 + 0 + 70
+        && report.getTotalDeposits() == 50 + 30 && report.getTotalWithdrawals() == 0
+        && report.getTotalBalance() == 150 + 500 + 100 && report.getTransactionsCount() == 2 + 4;
+  }
+
+  /**
+   * Checks whether removeBankAccount() removes an account from a BankTeller, its indexes and the
+   * cold tier of a TieredBankTeller, and refuses to remove an account from a BankTeller with a
+   * journal
+   * 
+   * @return true when this test verifies a correct functionality, and false otherwise.
+   */
+  public static boolean testBankTellerRemoveAccount() {
+    BankTeller teller = new BankTeller();
+    teller.createIndexes();
+    BankAccount removed = new BankAccount("0001", 100);
+    teller.addBankAccount(removed);
+    teller.addBankAccount(new BankAccount("0002", 200));
+    if (teller.removeBankAccount("0001") != removed || teller.getAccountsCount() != 1
+        || !teller.getAccountIDsByBalance(0, 1000, 10).equals(Arrays.asList("0002"))) {
+      return false;
+    }
+    removed.deposit(10); // no longer updates the indexes of the BankTeller
+    if (!teller.getMostActiveAccountIDs(10).equals(Arrays.asList("0002"))) {
+      return false;
+    }
+    try {
+      teller.removeBankAccount("0001");
+      return false;
+    } catch (NoSuchElementException e) {
+      // expected: the account was already removed
+    }
+    teller.addBankAccount(removed); // can be added again
+
+    // an evicted account is removed from the cold tier, as the object a caller still holds
+    TieredBankTeller tiered = new TieredBankTeller(1);
+    BankAccount evicted = new BankAccount("0001", 100);
+    tiered.addBankAccount(evicted);
+    tiered.addBankAccount(new BankAccount("0002", 200));
+    if (tiered.removeBankAccount("0001") != evicted || tiered.getAccountsCount() != 1
+        || tiered.removeBankAccount("0002").getBalance() != 200 || tiered.getAccountsCount() != 0) {
+      return false;
+    }
+
+    try {
+      File file = File.createTempFile("journal", ".bin");
+      file.delete();
+      file.deleteOnExit();
+      BankTeller journaled = new BankTeller();
+      journaled.openJournal(file, 1, 0);
+      journaled.addBankAccount(new BankAccount("0001", 100));
+      try {
+        journaled.removeBankAccount("0001");
+        return false;
+      } catch (IllegalStateException e) {
+        // expected: the journal would bring the account back
+      } finally {
+        journaled.closeJournal();
+      }
+      return journaled.findAccount("0001").getBalance() == 100;
+    } catch (IOException e) {
+      return false;
+    }
+  }
+
   /**
    * Calls the test methods defined in this BankTellerTester class
    * 
@@ -86,9 +613,49 @@ public class BankTellerTester {
       System.out.println("testBankTellerAddBankAccountUsedIdentifier failed.");
     }
 
+    if (testBankTellerFindAccount() == false) {
+      System.out.println("testBankTellerFindAccount failed.");
+    }
+
+    if (testBankTellerTransfer() == false) {
+      System.out.println("testBankTellerTransfer failed.");
+    }
+
+    if (testBankTellerTransferOverflow() == false) {
+      System.out.println("testBankTellerTransferOverflow failed.");
+    }
+
+    if (testBankTellerTryAddTransaction() == false) {
+      System.out.println("testBankTellerTryAddTransaction failed.");
+    }
+
     if (testBankTellerLoadTransactionsFileNotFound() == false) {
       System.out.println("testBankTellerLoadTransactionsFileNotFound failed.");
     }
+
+    if (testBankTellerLoadTransactionsMapped() == false) {
+      System.out.println("testBankTellerLoadTransactionsMapped failed.");
+    }
+
+    if (testBankTellerLoadTransactionsParallel() == false) {
+      System.out.println("testBankTellerLoadTransactionsParallel failed.");
+    }
+
+    if (testBankTellerApplyBatch() == false) {
+      System.out.println("testBankTellerApplyBatch failed.");
+    }
+
+    if (testBankTellerReconcile() == false) {
+      System.out.println("testBankTellerReconcile failed.");
+    }
+
+    if (testBankTellerReconcileMismatch() == false) {
+      System.out.println("testBankTellerReconcileMismatch failed.");
+    }
+
+    if (testBankTellerRemoveAccount() == false) {
+      System.out.println("testBankTellerRemoveAccount failed.");
+    }
   }
 
 }
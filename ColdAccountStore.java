@@ -0,0 +1,325 @@
+/////////////////////////////////////////// FILE  HEADER /////////////////////////////////////////////
+//
+// Title: Exceptional Bank Teller
+// Files: BankAccount.java, BankAccountTester.java, BankTeller.java, BankTellerTester.java,
+//        BankTellerBenchmark.java, TransactionLog.java, TransactionLoadResult.java,
+//        ConcurrentTransactionLog.java, ConcurrentBankAccount.java,
+//        ConcurrentBankAccountTester.java, ConcurrentBankTeller.java,
+//        ConcurrentBankTellerTester.java, TransactionStatus.java, TransactionListener.java,
+//        TransactionJournal.java, TransactionJournalTester.java, TransactionSnapshot.java,
+//        ColdAccountStore.java, TieredAccountMap.java, TieredBankTeller.java,
+//        TieredBankTellerTester.java, TransactionBatch.java, TransactionBatchResult.java,
+//        TransactionRecord.java, TransactionEvent.java, TransactionPipeline.java,
+//        TransactionPipelineTester.java, LatencyHistogram.java, TellerMetrics.java,
+//        TellerMetricsTester.java, TransactionFile.java, TransactionFileTester.java,
+//        HighPrecisionBankAccount.java, HighPrecisionBankAccountTester.java, AccountIndex.java,
+//        AccountIndexTester.java, ReconciliationReport.java, ReconciliationTask.java,
+//        TransactionIDCache.java, TransactionIDCacheTester.java, ShardTransport.java,
+//        LocalShardTransport.java, SocketShardTransport.java, ShardServer.java,
+//        ShardedBankTeller.java, ShardedBankTellerTester.java, TransactionParser.java,
+//        TransactionParserTester.java, TellerServer.java, TellerClient.java,
+//        TellerLoadGenerator.java, TellerServerTester.java, TransactionClock.java,
+//        TransactionTimeIndex.java, TransactionHistory.java, TransactionHistoryTester.java,
+//        TellerWorkload.java, TellerReplay.java, TellerReplayResult.java, TellerReplayTester.java
+// This File: ColdAccountStore.java
+// 
+// Name: Benjamin Tarmann
+// Email: btarmann@wisc.edu
+//
+///////////////////////////////////////// 100 COLUMNS WIDE /////////////////////////////////////////
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * This class models a compact store of bank accounts kept outside of the Java heap. An account is
+ * stored as a record in a direct ByteBuffer "slab": its kind (1 byte), its balance (8 bytes), its
+ * number of transactions, index of its oldest kept transaction, window and number of kept
+ * transactions (4 bytes each), followed by a deposit flag (1 byte), an amount (4 bytes) and a time
+ * (8 bytes) for each kept transaction. Only the account ID and the location of its record stay on
+ * the heap, so the garbage collector does not have to trace the accounts or their transactions.
+ * The balance of a HighPrecisionBankAccount may not fit into 8 bytes, so its balance field holds
+ * the scale of its exact balance and the length of the unscaled value (4 bytes each), and the
+ * unscaled value follows its transactions as a big-endian two's-complement number.
+ * 
+ * Records are allocated at the end of the last slab. Removing an account leaves a hole; a slab
+ * whose records are all removed is released, and once the holes take more space than the live
+ * records the live records are copied into new slabs.
+ * 
+ * Accounts are read back as new objects of the class they were stored as, with the same balance,
+ * transaction count, window and kept transactions with their times, and without a listener.
+ * 
+ * @author Benjamin Tarmann
+ */
+public class ColdAccountStore {
+  private static final byte ACCOUNT = 1;
+  private static final byte CONCURRENT_ACCOUNT = 2;
+  private static final byte HIGH_PRECISION_ACCOUNT = 3;
+  private static final int HEADER_SIZE = 1 + 8 + 4 * 4; // bytes of a record before transactions
+  private static final int TRANSACTION_SIZE = 1 + 4 + 8;
+  private static final int SLAB_SIZE = 1024 * 1024;
+
+  private final HashMap<String, Long> locations; // slab index in the high 32 bits, offset in low
+  private final ArrayList<ByteBuffer> slabs; // released slabs are null
+  private final ArrayList<Integer> liveBytes; // bytes of live records in each slab
+  private long totalLiveBytes;
+  private long allocatedBytes;
+
+  /**
+   * Creates a new empty store
+   */
+  public ColdAccountStore() {
+    locations = new HashMap<String, Long>();
+    slabs = new ArrayList<ByteBuffer>();
+    liveBytes = new ArrayList<Integer>();
+    totalLiveBytes = 0;
+    allocatedBytes = 0;
+  }
+
+  /**
+   * Stores an account, replacing the stored account with the same ID if there is one. If the
+   * account cannot be stored, the stored account with the same ID is kept.
+   * 
+   * @param account the account to store
+   * @throws IllegalArgumentException if the account has too many transactions to be stored
+   */
+  public void put(BankAccount account) {
+    byte kind = account instanceof ConcurrentBankAccount ? CONCURRENT_ACCOUNT : ACCOUNT;
+    BigDecimal exactBalance = null;
+    byte[] unscaled = null;
+    if (account instanceof HighPrecisionBankAccount) {
+      kind = HIGH_PRECISION_ACCOUNT;
+      exactBalance = account.getExactBalance();
+      unscaled = exactBalance.unscaledValue().toByteArray();
+    }
+
+    int transactionsCount = account.getTransactionsCount();
+    int firstKept = account.getFirstKeptTransaction();
+    int kept = transactionsCount - firstKept;
+    long length = HEADER_SIZE + (long) kept * TRANSACTION_SIZE
+        + (unscaled == null ? 0 : unscaled.length);
+    if (length > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("Account has too many transactions to be stored.");
+    }
+
+    Long oldLocation = locations.remove(account.getID());
+    if (oldLocation != null) {
+      free(oldLocation, recordLength(oldLocation));
+    }
+
+    long location = allocate((int) length);
+    ByteBuffer slab = slabs.get((int) (location >>> 32));
+    int offset = (int) location;
+    slab.put(offset, kind);
+    if (unscaled == null) {
+      slab.putLong(offset + 1, account.getBalance());
+    } else {
+      slab.putInt(offset + 1, exactBalance.scale());
+      slab.putInt(offset + 5, unscaled.length);
+      slab.put(offset + HEADER_SIZE + kept * TRANSACTION_SIZE, unscaled);
+    }
+    slab.putInt(offset + 9, transactionsCount);
+    slab.putInt(offset + 13, firstKept);
+    slab.putInt(offset + 17, account.getRecentWindow());
+    slab.putInt(offset + 21, kept);
+    int position = offset + HEADER_SIZE;
+    for (int index = firstKept; index < transactionsCount; index++) {
+      slab.put(position, account.isDepositTransaction(index) ? (byte) 1 : (byte) 0);
+      slab.putInt(position + 1, account.getTransactionAmount(index));
+      slab.putLong(position + 5, account.getTransactionTime(index));
+      position += TRANSACTION_SIZE;
+    }
+    locations.put(account.getID(), location);
+  }
+
+  /**
+   * Reads a stored account without removing it
+   * 
+   * @param id the account ID
+   * @return a new account with the stored state, or null if no account with this ID is stored
+   */
+  public BankAccount get(String id) {
+    Long location = locations.get(id);
+    if (location == null) {
+      return null;
+    }
+
+    ByteBuffer slab = slabs.get((int) (location >>> 32));
+    int offset = (int) (long) location;
+    byte kind = slab.get(offset);
+    int firstKept = slab.getInt(offset + 13);
+    int window = slab.getInt(offset + 17);
+    int kept = slab.getInt(offset + 21);
+    BankAccount account;
+    if (kind == ACCOUNT) {
+      account = new BankAccount(id, slab.getLong(offset + 1), firstKept, window);
+    } else if (kind == CONCURRENT_ACCOUNT) {
+      account = new ConcurrentBankAccount(id, slab.getLong(offset + 1), firstKept, window);
+    } else {
+      byte[] unscaled = new byte[slab.getInt(offset + 5)];
+      slab.get(offset + HEADER_SIZE + kept * TRANSACTION_SIZE, unscaled);
+      BigDecimal balance = new BigDecimal(new BigInteger(unscaled), slab.getInt(offset + 1));
+      account = new HighPrecisionBankAccount(id, balance, firstKept, window);
+    }
+    int position = offset + HEADER_SIZE;
+    for (int i = 0; i < kept; i++) {
+      account.restoreTransaction(slab.get(position) != 0, slab.getInt(position + 1),
+          slab.getLong(position + 5));
+      position += TRANSACTION_SIZE;
+    }
+    return account;
+  }
+
+  /**
+   * Removes a stored account and reads it
+   * 
+   * @param id the account ID
+   * @return a new account with the stored state, or null if no account with this ID is stored
+   */
+  public BankAccount remove(String id) {
+    BankAccount account = get(id);
+    if (account != null) {
+      long location = locations.remove(id);
+      free(location, recordLength(location));
+    }
+    return account;
+  }
+
+  /**
+   * Checks whether an account is stored
+   * 
+   * @param id the account ID
+   * @return true if an account with this ID is stored, false otherwise
+   */
+  public boolean contains(String id) {
+    return locations.containsKey(id);
+  }
+
+  /**
+   * Gets the IDs of the stored accounts
+   * 
+   * @return a view of the stored account IDs
+   */
+  public Set<String> getIDs() {
+    return locations.keySet();
+  }
+
+  /**
+   * Gets the number of stored accounts
+   * 
+   * @return the number of stored accounts
+   */
+  public int size() {
+    return locations.size();
+  }
+
+  /**
+   * Gets the number of bytes allocated outside of the heap for the records, including holes
+   * 
+   * @return the allocated bytes
+   */
+  public long getAllocatedBytes() {
+    return allocatedBytes;
+  }
+
+  /**
+   * Gets the length of the record at a location
+   * 
+   * @param location the location of the record
+   * @return the length of the record in bytes
+   */
+  private int recordLength(long location) {
+    return recordLength(slabs.get((int) (location >>> 32)), (int) location);
+  }
+
+  /**
+   * Gets the length of the record at an offset of a slab
+   * 
+   * @param slab   the slab holding the record
+   * @param offset the offset of the record in the slab
+   * @return the length of the record in bytes
+   */
+  private static int recordLength(ByteBuffer slab, int offset) {
+    int length = HEADER_SIZE + slab.getInt(offset + 21) * TRANSACTION_SIZE;
+    if (slab.get(offset) == HIGH_PRECISION_ACCOUNT) {
+      length += slab.getInt(offset + 5); // the unscaled balance that follows the transactions
+    }
+    return length;
+  }
+
+  /**
+   * Allocates space for a record at the end of the last slab, or in a new slab if it does not fit
+   * 
+   * @param length length of the record in bytes
+   * @return the location of the record
+   */
+  private long allocate(int length) {
+    int slabIndex = slabs.size() - 1;
+    ByteBuffer slab = slabIndex < 0 ? null : slabs.get(slabIndex);
+    if (slab == null || slab.remaining() < length) {
+      slab = ByteBuffer.allocateDirect(Math.max(SLAB_SIZE, length));
+      slabs.add(slab);
+      liveBytes.add(0);
+      allocatedBytes += slab.capacity();
+      slabIndex = slabs.size() - 1;
+    }
+
+    int offset = slab.position();
+    slab.position(offset + length);
+    liveBytes.set(slabIndex, liveBytes.get(slabIndex) + length);
+    totalLiveBytes += length;
+    return ((long) slabIndex << 32) | offset;
+  }
+
+  /**
+   * Frees the space of a removed record, releasing its slab if it has no live records left and
+   * compacting the store if more than half of it are holes
+   * 
+   * @param location the location of the record
+   * @param length   the length of the record in bytes
+   */
+  private void free(long location, int length) {
+    int slabIndex = (int) (location >>> 32);
+    int live = liveBytes.get(slabIndex) - length;
+    liveBytes.set(slabIndex, live);
+    totalLiveBytes -= length;
+
+    // releases an empty slab, unless records are still allocated at its end
+    if (live == 0 && slabIndex != slabs.size() - 1) {
+      allocatedBytes -= slabs.get(slabIndex).capacity();
+      slabs.set(slabIndex, null);
+    }
+
+    if (allocatedBytes > 2 * SLAB_SIZE && totalLiveBytes < allocatedBytes / 2) {
+      compact();
+    }
+  }
+
+  /**
+   * Copies every live record into new slabs, leaving out the holes
+   */
+  private void compact() {
+    ArrayList<ByteBuffer> oldSlabs = new ArrayList<ByteBuffer>(slabs);
+    slabs.clear();
+    liveBytes.clear();
+    totalLiveBytes = 0;
+    allocatedBytes = 0;
+
+    for (Map.Entry<String, Long> entry : locations.entrySet()) {
+      long oldLocation = entry.getValue();
+      ByteBuffer oldSlab = oldSlabs.get((int) (oldLocation >>> 32));
+      int oldOffset = (int) oldLocation;
+      int length = recordLength(oldSlab, oldOffset);
+
+      long location = allocate(length);
+      ByteBuffer slab = slabs.get((int) (location >>> 32));
+      slab.put((int) location, oldSlab, oldOffset, length);
+      entry.setValue(location);
+    }
+  }
+}
@@ -0,0 +1,391 @@
+/////////////////////////////////////////// FILE  HEADER /////////////////////////////////////////////
+//
+// Title: Exceptional Bank Teller
+// Files: BankAccount.java, BankAccountTester.java, BankTeller.java, BankTellerTester.java,
+//        BankTellerBenchmark.java, TransactionLog.java, TransactionLoadResult.java,
+//        ConcurrentTransactionLog.java, ConcurrentBankAccount.java,
+//        ConcurrentBankAccountTester.java, ConcurrentBankTeller.java,
+//        ConcurrentBankTellerTester.java, TransactionStatus.java, TransactionListener.java,
+//        TransactionJournal.java, TransactionJournalTester.java, TransactionSnapshot.java,
+//        ColdAccountStore.java, TieredAccountMap.java, TieredBankTeller.java,
+//        TieredBankTellerTester.java, TransactionBatch.java, TransactionBatchResult.java,
+//        TransactionRecord.java, TransactionEvent.java, TransactionPipeline.java,
+//        TransactionPipelineTester.java, LatencyHistogram.java, TellerMetrics.java,
+//        TellerMetricsTester.java, TransactionFile.java, TransactionFileTester.java,
+//        HighPrecisionBankAccount.java, HighPrecisionBankAccountTester.java, AccountIndex.java,
+//        AccountIndexTester.java, ReconciliationReport.java, ReconciliationTask.java,
+//        TransactionIDCache.java, TransactionIDCacheTester.java, ShardTransport.java,
+//        LocalShardTransport.java, SocketShardTransport.java, ShardServer.java,
+//        ShardedBankTeller.java, ShardedBankTellerTester.java, TransactionParser.java,
+//        TransactionParserTester.java, TellerServer.java, TellerClient.java,
+//        TellerLoadGenerator.java, TellerServerTester.java, TransactionClock.java,
+//        TransactionTimeIndex.java, TransactionHistory.java, TransactionHistoryTester.java,
+//        TellerWorkload.java, TellerReplay.java, TellerReplayResult.java, TellerReplayTester.java
+// This File: ConcurrentBankAccount.java
+// 
+// Name: Benjamin Tarmann
+// Email: btarmann@wisc.edu
+//
+///////////////////////////////////////// 100 COLUMNS WIDE /////////////////////////////////////////
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * This class models a bank account that many tellers can use at the same time. The balance is
+ * updated with compare-and-set instead of a lock, so a withdrawal checks the balance and takes the
+ * money out in one atomic step, and the transactions are kept in a lock-free
+ * ConcurrentTransactionLog. It follows the same rules as BankAccount.
+ * 
+ * @author Benjamin Tarmann
+ */
+public class ConcurrentBankAccount extends BankAccount {
+  private static final VarHandle BALANCE;
+
+  static {
+    try {
+      BALANCE = MethodHandles.lookup().findVarHandle(ConcurrentBankAccount.class, "balance",
+          long.class);
+    } catch (ReflectiveOperationException e) {
+      throw new ExceptionInInitializerError(e);
+    }
+  }
+
+  private volatile long balance; // updated through BALANCE
+  private final ConcurrentTransactionLog transactions;
+
+  /**
+   * Creates a new bank account with a given account ID and an initial balance. A deposit
+   * transaction with the initial balance is added to the account's list of transactions.
+   * 
+   * @param accountID      account's unique ID
+   * @param initialBalance account's initial balance
+   * @throws IllegalArgumentException with error message if the initial balance is less than 10
+   */
+  public ConcurrentBankAccount(String accountID, int initialBalance) {
+    this(accountID, initialBalance, 0);
+  }
+
+  /**
+   * Creates a new bank account that only keeps a given number of its most recent transactions,
+   * like the matching BankAccount constructor
+   * 
+   * @param accountID      account's unique ID
+   * @param initialBalance account's initial balance
+   * @param recentWindow   number of most recent transactions kept, or 0 to keep all of them
+   * @throws IllegalArgumentException with error message if the initial balance is less than 10, or
+   *                                  if recentWindow is negative or larger than 2^30
+   */
+  public ConcurrentBankAccount(String accountID, int initialBalance, int recentWindow) {
+    super(accountID);
+
+    // checks that the initial balance is greater than or equal to 10
+    if (initialBalance < 10) {
+      throw new IllegalArgumentException("Initial balance must be at least $10.");
+    }
+
+    balance = initialBalance;
+
+    // adds a deposit transaction with the initial balance
+    transactions = new ConcurrentTransactionLog(0, recentWindow);
+    transactions.append(true, initialBalance);
+  }
+
+  /**
+   * Creates a bank account restored from a snapshot, like the matching BankAccount constructor
+   * 
+   * @param accountID        account's unique ID
+   * @param balance          account's balance
+   * @param firstTransaction number of older transactions that are not kept
+   * @param recentWindow     number of most recent transactions kept, or 0 to keep all of them
+   */
+  ConcurrentBankAccount(String accountID, long balance, int firstTransaction, int recentWindow) {
+    super(accountID);
+    this.balance = balance;
+    transactions = new ConcurrentTransactionLog(firstTransaction, recentWindow);
+  }
+
+  /**
+   * Gets the account balance
+   * 
+   * @return the account balance
+   */
+  @Override
+  public long getBalance() {
+    return balance;
+  }
+
+  /**
+   * Deposits an amount to this bank account like BankAccount.applyDeposit() does. Can be called by
+   * many threads at the same time. While the account has a listener, the deposit is applied and
+   * reported to the listener under the lock of this account, as described in applyTransaction().
+   * 
+   * @param depositAmount amount deposited into the account
+   * @return APPLIED if the amount was deposited, NEGATIVE_DEPOSIT if depositAmount is negative, or
+   *         BALANCE_OVERFLOW if the deposit would make the balance too large
+   */
+  @Override
+  protected TransactionStatus applyDeposit(int depositAmount) {
+    // checks that the deposit amount is positive
+    if (depositAmount < 0) {
+      return TransactionStatus.NEGATIVE_DEPOSIT;
+    }
+    return applyTransaction(true, depositAmount);
+  }
+
+  /**
+   * Withdraws a specific amount of money like BankAccount.applyWithdrawal() does. Can be called by
+   * many threads at the same time; the balance check and the debit happen in one atomic step, so
+   * concurrent withdrawals can never take out more than the balance. While the account has a
+   * listener, the withdrawal is applied and reported to the listener under the lock of this
+   * account, as described in applyTransaction().
+   * 
+   * @param withdrawAmount amount withdrawn from the account
+   * @return APPLIED if the amount was withdrawn, INVALID_WITHDRAW_AMOUNT if withdrawAmount is
+   *         negative or not a multiple of 10, or INSUFFICIENT_FUNDS if withdrawAmount is greater
+   *         than the account balance
+   */
+  @Override
+  protected TransactionStatus applyWithdrawal(int withdrawAmount) {
+    // checks that the withdraw amount is positive and a multiple of 10
+    if (withdrawAmount < 0 || withdrawAmount % 10 != 0) {
+      return TransactionStatus.INVALID_WITHDRAW_AMOUNT;
+    }
+    return applyTransaction(false, withdrawAmount);
+  }
+
+  /**
+   * Applies a checked deposit or withdrawal to the balance, adds it to the list of transactions
+   * and tells the listener about it. Without a listener this takes no lock. With one, for example
+   * a TransactionJournal, the whole step is done under the lock of this account, so the listener
+   * is told about the transactions in the same order as they changed the balance; otherwise a
+   * journal could hold a withdrawal before the deposit that paid for it, and replaying it would
+   * fail.
+   * 
+   * @param deposit true for a deposit, false for a withdrawal
+   * @param amount  the checked transaction amount
+   * @return APPLIED if the transaction was applied, or the reason it was not
+   */
+  private TransactionStatus applyTransaction(boolean deposit, int amount) {
+    TransactionListener currentListener = getTransactionListener();
+    if (currentListener == null) {
+      TransactionStatus status = updateBalance(deposit, amount);
+      if (status == TransactionStatus.APPLIED) {
+        transactions.append(deposit, amount);
+      }
+      return status;
+    }
+
+    synchronized (this) {
+      TransactionStatus status = updateBalance(deposit, amount);
+      if (status == TransactionStatus.APPLIED) {
+        transactions.append(deposit, amount);
+        currentListener.transactionApplied(this, deposit, amount);
+      }
+      return status;
+    }
+  }
+
+  /**
+   * Credits or debits the balance with compare-and-set
+   * 
+   * @param deposit true to credit the amount, false to debit it
+   * @param amount  the checked transaction amount
+   * @return APPLIED if the balance was updated, BALANCE_OVERFLOW if a credit would make it too
+   *         large, or INSUFFICIENT_FUNDS if a debit is greater than the balance
+   */
+  private TransactionStatus updateBalance(boolean deposit, int amount) {
+    // retries until the balance did not change between the check and the update, since updating
+    // first and checking afterwards would let other threads see a wrapped or negative balance
+    long currentBalance;
+    long newBalance;
+    do {
+      currentBalance = balance;
+      if (deposit) {
+        if (currentBalance > Long.MAX_VALUE - amount) {
+          return TransactionStatus.BALANCE_OVERFLOW;
+        }
+        newBalance = currentBalance + amount;
+      } else {
+        // checks that the withdraw amount is not larger than the account's balance
+        if (amount > currentBalance) {
+          return TransactionStatus.INSUFFICIENT_FUNDS;
+        }
+        newBalance = currentBalance - amount;
+      }
+    } while (!BALANCE.weakCompareAndSet(this, currentBalance, newBalance));
+    return TransactionStatus.APPLIED;
+  }
+
+  /**
+   * Gets the most recent FIVE transactions in an array of length 5, as described in
+   * BankAccount.getMostRecentTransactions(). Transactions appended while this method runs may or
+   * may not be included.
+   * 
+   * @return the most recent transactions in an array that may contain up to 5 string references
+   */
+  @Override
+  public String[] getMostRecentTransactions() {
+    String[] recentTransactions = new String[5];
+    int[] amounts = new int[recentTransactions.length];
+    boolean[] deposits = new boolean[recentTransactions.length];
+    int count = transactions.copyRecent(amounts, deposits);
+
+    for (int i = 0; i < count; i++) {
+      recentTransactions[i] = TransactionLog.render(deposits[i], amounts[i]);
+    }
+
+    return recentTransactions;
+  }
+
+  /**
+   * Copies the most recent transactions of this account into caller-supplied arrays like
+   * BankAccount.getMostRecentTransactions(int[], boolean[]) does. Transactions appended while this
+   * method runs may or may not be included.
+   * 
+   * @param amounts  array the transaction amounts are copied into
+   * @param deposits array the deposit flags are copied into
+   * @return the number of transactions copied
+   */
+  @Override
+  public int getMostRecentTransactions(int[] amounts, boolean[] deposits) {
+    return transactions.copyRecent(amounts, deposits);
+  }
+
+  /**
+   * Gets the number of most recent transactions this account keeps
+   * 
+   * @return the number of kept transactions, or 0 if all of them are kept
+   */
+  @Override
+  public int getRecentWindow() {
+    return transactions.getWindow();
+  }
+
+  /**
+   * Gets the total number of transactions performed on this bank account
+   * 
+   * @return the total number of transactions performed on this account
+   */
+  @Override
+  public int getTransactionsCount() {
+    return transactions.size();
+  }
+
+  /**
+   * Adds a transaction that was applied at a given time to the end of this account's list of
+   * transactions without changing the balance or telling the listener, like
+   * BankAccount.restoreTransaction() does
+   * 
+   * @param deposit true for a deposit, false for a withdrawal
+   * @param amount  the transaction amount
+   * @param time    the time the transaction was applied at, in milliseconds since the epoch
+   */
+  @Override
+  void restoreTransaction(boolean deposit, int amount, long time) {
+    transactions.append(deposit, amount, time);
+  }
+
+  /**
+   * Gets the index of the oldest transaction of this account that is kept
+   * 
+   * @return the index of the oldest kept transaction, 0 if every transaction is kept
+   */
+  @Override
+  int getFirstKeptTransaction() {
+    return transactions.getFirstIndex();
+  }
+
+  /**
+   * Checks whether the transaction at the given index of this account's list of transactions is a
+   * deposit
+   * 
+   * @param index index of the transaction, 0 being the oldest one
+   * @return true if the transaction is a deposit, false if it is a withdrawal
+   * @throws IndexOutOfBoundsException if index is negative or not less than
+   *                                   getTransactionsCount(), or if the transaction is no longer
+   *                                   kept
+   */
+  @Override
+  boolean isDepositTransaction(int index) {
+    return transactions.isDeposit(index);
+  }
+
+  /**
+   * Gets the amount of the transaction at the given index of this account's list of transactions
+   * 
+   * @param index index of the transaction, 0 being the oldest one
+   * @return the transaction amount
+   * @throws IndexOutOfBoundsException if index is negative or not less than
+   *                                   getTransactionsCount(), or if the transaction is no longer
+   *                                   kept
+   */
+  @Override
+  int getTransactionAmount(int index) {
+    return transactions.getAmount(index);
+  }
+
+  /**
+   * Gets the time the transaction at the given index of this account's list of transactions was
+   * applied at
+   * 
+   * @param index index of the transaction, 0 being the oldest one
+   * @return the time of the transaction, in milliseconds since the epoch
+   * @throws IndexOutOfBoundsException if index is negative or not less than
+   *                                   getTransactionsCount(), or if the transaction is no longer
+   *                                   kept
+   */
+  @Override
+  long getTransactionTime(int index) {
+    return transactions.getTime(index);
+  }
+
+  /**
+   * Finds the first kept transaction of this account that was applied at or after a given time
+   * 
+   * @param time the time, in milliseconds since the epoch
+   * @return the index of the first such transaction, or getTransactionsCount() if every kept
+   *         transaction is older
+   */
+  @Override
+  int findTransaction(long time) {
+    return transactions.findIndex(time);
+  }
+
+  /**
+   * Copies a run of consecutive transactions of this account and their times into
+   * caller-supplied arrays, for TransactionHistory
+   * 
+   * @param start       index of the first transaction copied
+   * @param length      number of transactions copied, which must fit into every array
+   * @param newestFirst true to copy from start down to older transactions, false to copy from
+   *                    start up to newer ones
+   * @param amounts     array the transaction amounts are copied into
+   * @param deposits    array the deposit flags are copied into
+   * @param times       array the times are copied into
+   * @return the number of transactions copied, which is less than length only if the oldest of
+   *         them were dropped from a window of recent transactions while they were copied
+   * @throws IndexOutOfBoundsException if one of the transactions was not kept when the copy
+   *                                   started
+   */
+  @Override
+  int copyTransactions(int start, int length, boolean newestFirst, int[] amounts,
+      boolean[] deposits, long[] times) {
+    return transactions.copyRun(start, length, newestFirst, amounts, deposits, times);
+  }
+
+  /**
+   * Adds up the amounts of the deposits and of the withdrawals of this account from a given index
+   * of its list of transactions on, without rendering them as strings
+   * 
+   * @param fromIndex index of the first transaction added up
+   * @param sums      array whose element 0 the deposits are added to, and whose element 1 the
+   *                  withdrawals are added to
+   * @throws IndexOutOfBoundsException if fromIndex is less than getFirstKeptTransaction() or
+   *                                   greater than getTransactionsCount()
+   */
+  @Override
+  void sumTransactions(int fromIndex, long[] sums) {
+    transactions.sumAmounts(fromIndex, sums);
+  }
+}
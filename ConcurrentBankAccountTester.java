@@ -0,0 +1,313 @@
+/////////////////////////////////////////// FILE  HEADER /////////////////////////////////////////////
+//
+// Title: Exceptional Bank Teller
+// Files: BankAccount.java, BankAccountTester.java, BankTeller.java, BankTellerTester.java,
+//        BankTellerBenchmark.java, TransactionLog.java, TransactionLoadResult.java,
+//        ConcurrentTransactionLog.java, ConcurrentBankAccount.java,
+//        ConcurrentBankAccountTester.java, ConcurrentBankTeller.java,
+//        ConcurrentBankTellerTester.java, TransactionStatus.java, TransactionListener.java,
+//        TransactionJournal.java, TransactionJournalTester.java, TransactionSnapshot.java,
+//        ColdAccountStore.java, TieredAccountMap.java, TieredBankTeller.java,
+//        TieredBankTellerTester.java, TransactionBatch.java, TransactionBatchResult.java,
+//        TransactionRecord.java, TransactionEvent.java, TransactionPipeline.java,
+//        TransactionPipelineTester.java, LatencyHistogram.java, TellerMetrics.java,
+//        TellerMetricsTester.java, TransactionFile.java, TransactionFileTester.java,
+//        HighPrecisionBankAccount.java, HighPrecisionBankAccountTester.java, AccountIndex.java,
+//        AccountIndexTester.java, ReconciliationReport.java, ReconciliationTask.java,
+//        TransactionIDCache.java, TransactionIDCacheTester.java, ShardTransport.java,
+//        LocalShardTransport.java, SocketShardTransport.java, ShardServer.java,
+//        ShardedBankTeller.java, ShardedBankTellerTester.java, TransactionParser.java,
+//        TransactionParserTester.java, TellerServer.java, TellerClient.java,
+//        TellerLoadGenerator.java, TellerServerTester.java, TransactionClock.java,
+//        TransactionTimeIndex.java, TransactionHistory.java, TransactionHistoryTester.java,
+//        TellerWorkload.java, TellerReplay.java, TellerReplayResult.java, TellerReplayTester.java
+// This File: ConcurrentBankAccountTester.java
+// 
+// Name: Benjamin Tarmann
+// Email: btarmann@wisc.edu
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.DataFormatException;
+
+/**
+ * This class represents a tester for the ConcurrentBankAccount class's public behaviors, including
+ * its behavior when many threads use the same account at the same time
+ * 
+ * @author Benjamin Tarmann
+ */
+public class ConcurrentBankAccountTester {
+  private static final int THREADS = 8;
+  private static final int OPERATIONS_PER_THREAD = 100_000;
+
+  /**
+   * Checks whether a ConcurrentBankAccount follows the same single-threaded rules as a
+   * BankAccount: the initial balance must be at least 10, withdrawals must be multiples of 10 and
+   * not larger than the balance, and each transaction is added to the most recent transactions.
+   * 
+   * @return true when this test verifies a correct functionality, and false otherwise
+   */
+  public static boolean testConcurrentBankAccountSingleThreaded() {
+    // checks that the initial balance is validated
+    try {
+      new ConcurrentBankAccount("0001", 5);
+      return false;
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+
+    ConcurrentBankAccount test = new ConcurrentBankAccount("0001", 20);
+    try {
+      test.withdraw(15);
+      return false;
+    } catch (DataFormatException e) {
+      // expected
+    }
+    try {
+      test.withdraw(30);
+      return false;
+    } catch (IllegalStateException e) {
+      // expected
+    } catch (DataFormatException e) {
+      return false;
+    }
+
+    // checks that valid transactions change the balance and are recorded
+    try {
+      test.deposit(5);
+      test.withdraw(10);
+    } catch (DataFormatException e) {
+      return false;
+    }
+    String[] recent = test.getMostRecentTransactions();
+    return test.getBalance() == 15 && test.getTransactionsCount() == 3 && recent[0].equals("0 10")
+        && recent[1].equals("1 5") && recent[2].equals("1 20") && recent[3] == null;
+  }
+
+  /**
+   * Checks that no money is created or lost when THREADS threads deposit to and withdraw from the
+   * same account at the same time. Each thread counts the money it deposited and successfully
+   * withdrew, and the final balance must be the initial balance plus all deposits minus all
+   * withdrawals. Every successful transaction must also be recorded exactly once.
+   * 
+   * @return true when this test verifies a correct functionality, and false otherwise
+   */
+  public static boolean testConcurrentBankAccountStress() {
+    final int initialBalance = 1000;
+    ConcurrentBankAccount test = new ConcurrentBankAccount("0001", initialBalance);
+    AtomicLong deposited = new AtomicLong();
+    AtomicLong withdrawn = new AtomicLong();
+    AtomicInteger transactions = new AtomicInteger(1); // counts the initial deposit
+    AtomicInteger errors = new AtomicInteger();
+
+    Thread[] threads = new Thread[THREADS];
+    for (int t = 0; t < THREADS; t++) {
+      final long seed = t;
+      threads[t] = new Thread(() -> {
+        Random random = new Random(seed);
+        for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+          try {
+            if (random.nextBoolean()) {
+              int amount = random.nextInt(20);
+              test.deposit(amount);
+              deposited.addAndGet(amount);
+            } else {
+              int amount = 10 * random.nextInt(3);
+              test.withdraw(amount);
+              withdrawn.addAndGet(amount);
+            }
+            transactions.incrementAndGet();
+          } catch (IllegalStateException e) {
+            // the balance was too low, which leaves the account unchanged
+          } catch (DataFormatException e) {
+            errors.incrementAndGet(); // every withdraw amount is valid
+          }
+        }
+      });
+      threads[t].start();
+    }
+
+    try {
+      for (Thread thread : threads) {
+        thread.join();
+      }
+    } catch (InterruptedException e) {
+      return false;
+    }
+
+    return errors.get() == 0 && test.getBalance() >= 0
+        && test.getBalance() == initialBalance + deposited.get() - withdrawn.get()
+        && test.getTransactionsCount() == transactions.get();
+  }
+
+  /**
+   * Checks that concurrent withdrawals can never take out more than the balance: THREADS threads
+   * keep withdrawing 10 from an account with a balance of 1000 until it runs out, which must
+   * happen after exactly 100 successful withdrawals.
+   * 
+   * @return true when this test verifies a correct functionality, and false otherwise
+   */
+  public static boolean testConcurrentBankAccountNoOverdraft() {
+    ConcurrentBankAccount test = new ConcurrentBankAccount("0001", 1000);
+    AtomicInteger successes = new AtomicInteger();
+
+    Thread[] threads = new Thread[THREADS];
+    for (int t = 0; t < THREADS; t++) {
+      threads[t] = new Thread(() -> {
+        try {
+          while (true) {
+            test.withdraw(10);
+            successes.incrementAndGet();
+          }
+        } catch (IllegalStateException | DataFormatException e) {
+          // the account ran out of money
+        }
+      });
+      threads[t].start();
+    }
+
+    try {
+      for (Thread thread : threads) {
+        thread.join();
+      }
+    } catch (InterruptedException e) {
+      return false;
+    }
+
+    return successes.get() == 100 && test.getBalance() == 0
+        && test.getTransactionsCount() == 101;
+  }
+
+  /**
+   * Checks whether an account that keeps a window of 8 transactions counts every deposit made by
+   * THREADS threads, while another thread keeps copying its most recent transactions and only ever
+   * sees transactions that were deposited
+   * 
+   * @return true when this test verifies a correct functionality, and false otherwise.
+   */
+  public static boolean testConcurrentBankAccountRecentWindow() {
+    final int window = 8;
+    ConcurrentBankAccount test = new ConcurrentBankAccount("0001", 10, window);
+    int errors = 0;
+
+    Thread[] threads = new Thread[THREADS];
+    for (int t = 0; t < THREADS; t++) {
+      final int amount = t + 1;
+      threads[t] = new Thread(() -> {
+        for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+          test.deposit(amount);
+        }
+      });
+      threads[t].start();
+    }
+
+    // copies the most recent transactions until the depositing threads are done
+    int[] amounts = new int[window];
+    boolean[] deposits = new boolean[window];
+    try {
+      boolean running = true;
+      while (running) {
+        running = false;
+        for (Thread thread : threads) {
+          running |= thread.isAlive();
+        }
+        int count = test.getMostRecentTransactions(amounts, deposits);
+        for (int i = 0; i < count; i++) {
+          if (!deposits[i] || amounts[i] < 1 || (amounts[i] > THREADS && amounts[i] != 10)) {
+            errors++;
+          }
+        }
+      }
+      for (Thread thread : threads) {
+        thread.join();
+      }
+    } catch (InterruptedException e) {
+      return false;
+    }
+
+    // checks that the window holds the last deposits in order once the threads are done
+    for (int i = 1; i <= window; i++) {
+      test.deposit(100 + i);
+    }
+    if (test.getMostRecentTransactions(amounts, deposits) != window) {
+      return false;
+    }
+    for (int i = 0; i < window; i++) {
+      if (amounts[i] != 100 + window - i) {
+        return false;
+      }
+    }
+    return errors == 0
+        && test.getTransactionsCount() == 1 + THREADS * OPERATIONS_PER_THREAD + window
+        && test.getMostRecentTransactions()[4].equals("1 " + (100 + window - 4));
+  }
+
+  /**
+   * Checks whether THREADS threads depositing into an account close to the largest balance apply
+   * exactly the deposits that fit and reject the rest with BALANCE_OVERFLOW, so the balance ends
+   * at Long.MAX_VALUE without ever wrapping around
+   * 
+   * @return true when this test verifies a correct functionality, and false otherwise.
+   */
+  public static boolean testConcurrentBankAccountBalanceOverflow() {
+    final long room = THREADS * OPERATIONS_PER_THREAD / 2; // only half of the deposits fit
+    ConcurrentBankAccount test = new ConcurrentBankAccount("0001", Long.MAX_VALUE - room, 0, 0);
+    AtomicInteger applied = new AtomicInteger();
+    AtomicInteger overflowed = new AtomicInteger();
+
+    Thread[] threads = new Thread[THREADS];
+    for (int t = 0; t < THREADS; t++) {
+      threads[t] = new Thread(() -> {
+        for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+          TransactionStatus status = test.tryDeposit(1);
+          if (status == TransactionStatus.APPLIED) {
+            applied.incrementAndGet();
+          } else if (status == TransactionStatus.BALANCE_OVERFLOW) {
+            overflowed.incrementAndGet();
+          }
+        }
+      });
+      threads[t].start();
+    }
+    try {
+      for (Thread thread : threads) {
+        thread.join();
+      }
+    } catch (InterruptedException e) {
+      return false;
+    }
+
+    return applied.get() == room && overflowed.get() == THREADS * OPERATIONS_PER_THREAD - room
+        && test.getBalance() == Long.MAX_VALUE && test.getTransactionsCount() == room
+        && test.tryWithdraw(10) == TransactionStatus.APPLIED;
+  }
+
+  /**
+   * Main method calls all of the test methods and prints out a message if one or more fail.
+   * 
+   * @param args
+   */
+  public static void main(String[] args) {
+    if (testConcurrentBankAccountSingleThreaded() == false) {
+      System.out.println("testConcurrentBankAccountSingleThreaded failed");
+    }
+
+    if (testConcurrentBankAccountStress() == false) {
+      System.out.println("testConcurrentBankAccountStress failed");
+    }
+
+    if (testConcurrentBankAccountNoOverdraft() == false) {
+      System.out.println("testConcurrentBankAccountNoOverdraft failed");
+    }
+
+    if (testConcurrentBankAccountRecentWindow() == false) {
+      System.out.println("testConcurrentBankAccountRecentWindow failed");
+    }
+
+    if (testConcurrentBankAccountBalanceOverflow() == false) {
+      System.out.println("testConcurrentBankAccountBalanceOverflow failed");
+    }
+  }
+
+}
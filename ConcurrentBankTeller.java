@@ -0,0 +1,229 @@
+/////////////////////////////////////////// FILE  HEADER /////////////////////////////////////////////
+//
+// Title: Exceptional Bank Teller
+// Files: BankAccount.java, BankAccountTester.java, BankTeller.java, BankTellerTester.java,
+//        BankTellerBenchmark.java, TransactionLog.java, TransactionLoadResult.java,
+//        ConcurrentTransactionLog.java, ConcurrentBankAccount.java,
+//        ConcurrentBankAccountTester.java, ConcurrentBankTeller.java,
+//        ConcurrentBankTellerTester.java, TransactionStatus.java, TransactionListener.java,
+//        TransactionJournal.java, TransactionJournalTester.java, TransactionSnapshot.java,
+//        ColdAccountStore.java, TieredAccountMap.java, TieredBankTeller.java,
+//        TieredBankTellerTester.java, TransactionBatch.java, TransactionBatchResult.java,
+//        TransactionRecord.java, TransactionEvent.java, TransactionPipeline.java,
+//        TransactionPipelineTester.java, LatencyHistogram.java, TellerMetrics.java,
+//        TellerMetricsTester.java, TransactionFile.java, TransactionFileTester.java,
+//        HighPrecisionBankAccount.java, HighPrecisionBankAccountTester.java, AccountIndex.java,
+//        AccountIndexTester.java, ReconciliationReport.java, ReconciliationTask.java,
+//        TransactionIDCache.java, TransactionIDCacheTester.java, ShardTransport.java,
+//        LocalShardTransport.java, SocketShardTransport.java, ShardServer.java,
+//        ShardedBankTeller.java, ShardedBankTellerTester.java, TransactionParser.java,
+//        TransactionParserTester.java, TellerServer.java, TellerClient.java,
+//        TellerLoadGenerator.java, TellerServerTester.java, TransactionClock.java,
+//        TransactionTimeIndex.java, TransactionHistory.java, TransactionHistoryTester.java,
+//        TellerWorkload.java, TellerReplay.java, TellerReplayResult.java, TellerReplayTester.java
+// This File: ConcurrentBankTeller.java
+// 
+// Name: Benjamin Tarmann
+// Email: btarmann@wisc.edu
+//
+///////////////////////////////////////// 100 COLUMNS WIDE /////////////////////////////////////////
+
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.DataFormatException;
+
+/**
+ * This class models a BankTeller that many threads can use at the same time. Accounts are kept in
+ * a ConcurrentHashMap, so adding and finding accounts is thread-safe, and transactions and
+ * transfers lock the accounts they change. Instead of one lock per account, each account ID is
+ * mapped to one of a fixed number of lock stripes, so the number of locks does not grow with the
+ * number of accounts while operations on different accounts rarely wait for each other.
+ * 
+ * Transfers lock the stripes of both accounts in the order of their stripe indices, so two
+ * transfers can never wait for each other in a cycle. Adding an account holds its stripe until
+ * the indexes and the journal listen to it. The loadTransactionsMapped() and
+ * loadTransactionsParallel() bulk loaders do not take the locks; accounts that are loaded while
+ * other threads use them should be ConcurrentBankAccount objects.
+ * 
+ * @author Benjamin Tarmann
+ */
+public class ConcurrentBankTeller extends BankTeller {
+  private static final int DEFAULT_EXPECTED_ACCOUNTS = 16;
+  private static final int DEFAULT_STRIPES = 256;
+
+  private final Object[] stripes; // locks that guard the accounts whose IDs hash to them
+  private final int stripeMask;
+
+  /**
+   * Creates a new ConcurrentBankTeller object with an empty list of accounts
+   */
+  public ConcurrentBankTeller() {
+    this(DEFAULT_EXPECTED_ACCOUNTS, DEFAULT_STRIPES);
+  }
+
+  /**
+   * Creates a new ConcurrentBankTeller object with an empty list of accounts, sized to hold the
+   * expected number of accounts, and with the given number of lock stripes
+   * 
+   * @param expectedAccounts number of accounts this BankTeller is expected to hold
+   * @param stripeCount      number of lock stripes, rounded up to a power of two
+   * @throws IllegalArgumentException if expectedAccounts is negative or stripeCount is not
+   *                                  between 1 and 2^30
+   */
+  public ConcurrentBankTeller(int expectedAccounts, int stripeCount) {
+    super(new ConcurrentHashMap<String, BankAccount>(expectedAccounts));
+
+    // checks that the number of stripes can be rounded up to a power of two
+    if (stripeCount < 1 || stripeCount > 1 << 30) {
+      throw new IllegalArgumentException("Stripe count must be between 1 and 2^30.");
+    }
+
+    // a power of two lets stripeIndex() use a mask instead of a division
+    stripes = new Object[stripeCount == 1 ? 1 : Integer.highestOneBit(stripeCount - 1) << 1];
+    for (int i = 0; i < stripes.length; i++) {
+      stripes[i] = new Object();
+    }
+    stripeMask = stripes.length - 1;
+  }
+
+  /**
+   * Gets the index of the lock stripe that guards the account with the given ID
+   * 
+   * @param id account ID
+   * @return the index of the stripe in stripes
+   */
+  private int stripeIndex(String id) {
+    int hash = id.hashCode();
+    return (hash ^ (hash >>> 16)) & stripeMask;
+  }
+
+  /**
+   * Adds newAccount to the list of this BankTeller, as BankTeller.addBankAccount() does, while
+   * holding the lock stripe of the account. Other threads can find the account as soon as it is
+   * inserted, so the lock keeps their transactions and transfers waiting until the indexes and the
+   * journal have copied the account and listen to it; a transaction applied in between would be
+   * missing from both. Transactions applied directly through the methods of the account are not
+   * held back.
+   * 
+   * @param newAccount a new account to add
+   * @throws IllegalArgumentException if newAccount is null, or if this BankTeller has an open
+   *                                  journal and the older transactions of newAccount are not kept
+   * @throws IllegalStateException    if the id of newAccount is equal to an existing id
+   */
+  @Override
+  public void addBankAccount(BankAccount newAccount) {
+    // checks that newAccount is not null
+    if (newAccount == null) {
+      throw new IllegalArgumentException("New account is null.");
+    }
+
+    synchronized (stripes[stripeIndex(newAccount.getID())]) {
+      super.addBankAccount(newAccount);
+    }
+  }
+
+  /**
+   * Adds a new transaction to the account's list of transactions, as
+   * BankTeller.tryAddTransaction() does, while holding the lock stripe of the account. The
+   * addTransaction() and loadTransactions() methods add their transactions through this method.
+   * With deduplication enabled, the ID of the transaction is checked, the transaction applied and
+   * the ID recorded or given back in one step under the lock, so a retry of a transaction on the
+   * same account waits for an attempt that is in flight and is only reported as a duplicate if
+   * that attempt was applied.
+   * 
+   * @param transaction to add
+   * @param account     bank account
+   * @return APPLIED if the transaction was added, or the reason it was not
+   * @throws NullPointerException if account is null
+   */
+  @Override
+  public TransactionStatus tryAddTransaction(String transaction, BankAccount account) {
+    // checks that account is not null
+    if (account == null) {
+      throw new NullPointerException("Account is null.");
+    }
+
+    synchronized (stripes[stripeIndex(account.getID())]) {
+      return super.tryAddTransaction(transaction, account);
+    }
+  }
+
+  /**
+   * Applies the records of a batch to the accounts that were found for them while holding the
+   * lock stripes of the accounts. Consecutive records whose accounts share a stripe are applied
+   * under one lock, so a run of records of the same account locks its stripe only once.
+   * 
+   * @param batch         the records to apply
+   * @param groupOf       number of the account of each record
+   * @param groupAccounts the accounts, indexed by their number, or null if not found
+   * @param statuses      ordinals of the statuses of the records, indexed like the records
+   */
+  @Override
+  protected void applyRecords(TransactionBatch batch, int[] groupOf, BankAccount[] groupAccounts,
+      byte[] statuses) {
+    // finds the stripe of each account once
+    int[] groupStripe = new int[groupAccounts.length];
+    for (int group = 0; group < groupAccounts.length; group++) {
+      groupStripe[group] =
+          groupAccounts[group] == null ? -1 : stripeIndex(groupAccounts[group].getID());
+    }
+
+    int size = batch.size();
+    int from = 0;
+    while (from < size) {
+      int stripe = groupStripe[groupOf[from]];
+      int to = from + 1;
+      while (to < size && groupStripe[groupOf[to]] == stripe) {
+        to++;
+      }
+      if (stripe < 0) {
+        batch.applyRecords(groupOf, groupAccounts, from, to, statuses); // no account to lock
+      } else {
+        synchronized (stripes[stripe]) {
+          batch.applyRecords(groupOf, groupAccounts, from, to, statuses);
+        }
+      }
+      from = to;
+    }
+  }
+
+  /**
+   * Transfers an amount of money from one account to another, as BankTeller.transfer() does. The
+   * transfer is atomic: while it runs no other transaction or transfer of this BankTeller can
+   * change either account, and either both accounts are changed or neither is.
+   * 
+   * @param fromId ID of the account the money is withdrawn from
+   * @param toId   ID of the account the money is deposited to
+   * @param amount amount of money to transfer
+   * @throws NoSuchElementException   if either account is not found
+   * @throws IllegalArgumentException if fromId and toId refer to the same account
+   * @throws DataFormatException      if amount is negative or not a multiple of 10
+   * @throws IllegalStateException    if amount is greater than the balance of the first account
+   * @throws ArithmeticException      if amount would make the balance of the second account too
+   *                                  large
+   */
+  @Override
+  public void transfer(String fromId, String toId, int amount) throws DataFormatException {
+    BankAccount from = findAccount(fromId);
+    BankAccount to = findAccount(toId);
+
+    // checks that the money is moved between two different accounts
+    if (from == to) {
+      throw new IllegalArgumentException("Cannot transfer money to the same account.");
+    }
+
+    // locks the stripe with the lower index first so that transfers cannot deadlock
+    int fromStripe = stripeIndex(from.getID());
+    int toStripe = stripeIndex(to.getID());
+    Object first = stripes[Math.min(fromStripe, toStripe)];
+    Object second = stripes[Math.max(fromStripe, toStripe)];
+
+    synchronized (first) {
+      synchronized (second) { // reentrant, so this also works when both stripes are the same
+        checkTransferDeposit(to, amount);
+        from.withdraw(amount); // throws before any account is changed if the amount is not valid
+        to.deposit(amount);
+      }
+    }
+  }
+}
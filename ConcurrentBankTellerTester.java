@@ -0,0 +1,195 @@
+/////////////////////////////////////////// FILE  HEADER /////////////////////////////////////////////
+//
+// Title: Exceptional Bank Teller
+// Files: BankAccount.java, BankAccountTester.java, BankTeller.java, BankTellerTester.java,
+//        BankTellerBenchmark.java, TransactionLog.java, TransactionLoadResult.java,
+//        ConcurrentTransactionLog.java, ConcurrentBankAccount.java,
+//        ConcurrentBankAccountTester.java, ConcurrentBankTeller.java,
+//        ConcurrentBankTellerTester.java, TransactionStatus.java, TransactionListener.java,
+//        TransactionJournal.java, TransactionJournalTester.java, TransactionSnapshot.java,
+//        ColdAccountStore.java, TieredAccountMap.java, TieredBankTeller.java,
+//        TieredBankTellerTester.java, TransactionBatch.java, TransactionBatchResult.java,
+//        TransactionRecord.java, TransactionEvent.java, TransactionPipeline.java,
+//        TransactionPipelineTester.java, LatencyHistogram.java, TellerMetrics.java,
+//        TellerMetricsTester.java, TransactionFile.java, TransactionFileTester.java,
+//        HighPrecisionBankAccount.java, HighPrecisionBankAccountTester.java, AccountIndex.java,
+//        AccountIndexTester.java, ReconciliationReport.java, ReconciliationTask.java,
+//        TransactionIDCache.java, TransactionIDCacheTester.java, ShardTransport.java,
+//        LocalShardTransport.java, SocketShardTransport.java, ShardServer.java,
+//        ShardedBankTeller.java, ShardedBankTellerTester.java, TransactionParser.java,
+//        TransactionParserTester.java, TellerServer.java, TellerClient.java,
+//        TellerLoadGenerator.java, TellerServerTester.java, TransactionClock.java,
+//        TransactionTimeIndex.java, TransactionHistory.java, TransactionHistoryTester.java,
+//        TellerWorkload.java, TellerReplay.java, TellerReplayResult.java, TellerReplayTester.java
+// This File: ConcurrentBankTellerTester.java
+// 
+// Name: Benjamin Tarmann
+// Email: btarmann@wisc.edu
+//
+///////////////////////////////////////// 100 COLUMNS WIDE /////////////////////////////////////////
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+import java.util.zip.DataFormatException;
+
+/**
+ * This class is a tester for the ConcurrentBankTeller class's public behaviors when many threads
+ * use it at the same time
+ * 
+ * @author Benjamin Tarmann
+ */
+public class ConcurrentBankTellerTester {
+  private static final int THREADS = 8;
+
+  /**
+   * Starts the given number of threads that each run the given task, and waits for all of them
+   * 
+   * @param threadCount number of threads to start
+   * @param task        task each thread runs, given the index of its thread
+   * @return true if every thread finished, false if the waiting thread was interrupted
+   */
+  private static boolean runThreads(int threadCount, IntConsumer task) {
+    Thread[] threads = new Thread[threadCount];
+    for (int t = 0; t < threadCount; t++) {
+      final int index = t;
+      threads[t] = new Thread(() -> task.accept(index));
+      threads[t].start();
+    }
+
+    try {
+      for (Thread thread : threads) {
+        thread.join();
+      }
+    } catch (InterruptedException e) {
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * Checks whether ConcurrentBankTeller.addBankAccount() adds each account ID exactly once when
+   * THREADS threads try to add accounts with the same IDs at the same time.
+   * 
+   * @return true when this test verifies a correct functionality, and false otherwise.
+   */
+  public static boolean testConcurrentBankTellerAddBankAccount() {
+    ConcurrentBankTeller testTeller = new ConcurrentBankTeller();
+    AtomicInteger added = new AtomicInteger();
+
+    boolean finished = runThreads(THREADS, t -> {
+      for (int i = 0; i < 1000; i++) {
+        try {
+          testTeller.addBankAccount(new BankAccount("ACC" + i, 10));
+          added.incrementAndGet();
+        } catch (IllegalStateException e) {
+          // another thread added this ID first
+        }
+      }
+    });
+
+    return finished && added.get() == 1000 && testTeller.getAccountsCount() == 1000;
+  }
+
+  /**
+   * Checks that no money is created or lost when THREADS threads transfer random amounts between
+   * random pairs of 16 accounts at the same time, including transfers in opposite directions
+   * between the same two accounts that would deadlock without ordered locking.
+   * 
+   * @return true when this test verifies a correct functionality, and false otherwise.
+   */
+  public static boolean testConcurrentBankTellerTransfer() {
+    final int accounts = 16;
+    ConcurrentBankTeller testTeller = new ConcurrentBankTeller(accounts, 4);
+    for (int i = 0; i < accounts; i++) {
+      testTeller.addBankAccount(new BankAccount("ACC" + i, 1000));
+    }
+    AtomicInteger errors = new AtomicInteger();
+
+    boolean finished = runThreads(THREADS, t -> {
+      Random random = new Random(t);
+      for (int i = 0; i < 100_000; i++) {
+        int from = random.nextInt(accounts);
+        int to = (from + 1 + random.nextInt(accounts - 1)) % accounts;
+        try {
+          testTeller.transfer("ACC" + from, "ACC" + to, 10 * random.nextInt(20));
+        } catch (IllegalStateException e) {
+          // the first account did not have enough money, which leaves both accounts unchanged
+        } catch (DataFormatException e) {
+          errors.incrementAndGet(); // every amount is a valid multiple of 10
+        }
+      }
+    });
+
+    // checks that the total balance did not change and no account was overdrawn
+    long total = 0;
+    for (int i = 0; i < accounts; i++) {
+      long balance = testTeller.findAccount("ACC" + i).getBalance();
+      if (balance < 0) {
+        return false;
+      }
+      total += balance;
+    }
+    return finished && errors.get() == 0 && total == 1000L * accounts;
+  }
+
+  /**
+   * Checks that no deposit or withdrawal is lost when THREADS threads apply batches to the same 16
+   * accounts at the same time, and that every record is reported as applied.
+   * 
+   * @return true when this test verifies a correct functionality, and false otherwise.
+   */
+  public static boolean testConcurrentBankTellerApplyBatch() {
+    final int accounts = 16;
+    ConcurrentBankTeller testTeller = new ConcurrentBankTeller(accounts, 4);
+    for (int i = 0; i < accounts; i++) {
+      testTeller.addBankAccount(new BankAccount("ACC" + i, 1000));
+    }
+    AtomicInteger rejected = new AtomicInteger();
+
+    // every batch deposits 20 and withdraws 10 from each record's account, in that order
+    boolean finished = runThreads(THREADS, t -> {
+      Random random = new Random(t);
+      TransactionBatch batch = new TransactionBatch();
+      for (int round = 0; round < 100; round++) {
+        batch.clear();
+        for (int i = 0; i < 500; i++) {
+          String id = "ACC" + random.nextInt(accounts);
+          batch.add(id, true, 20);
+          batch.add(id, false, 10);
+        }
+        rejected.addAndGet(testTeller.applyBatch(batch).getRejectedCount());
+      }
+    });
+
+    long total = 0;
+    long transactions = 0;
+    for (int i = 0; i < accounts; i++) {
+      BankAccount account = testTeller.findAccount("ACC" + i);
+      total += account.getBalance();
+      transactions += account.getTransactionsCount() - 1;
+    }
+    return finished && rejected.get() == 0 && transactions == THREADS * 100 * 1000
+        && total == 1000L * accounts + 10L * THREADS * 100 * 500;
+  }
+
+  /**
+   * Calls the test methods defined in this ConcurrentBankTellerTester class
+   * 
+   * @param args
+   */
+  public static void main(String[] args) {
+    if (testConcurrentBankTellerAddBankAccount() == false) {
+      System.out.println("testConcurrentBankTellerAddBankAccount failed.");
+    }
+
+    if (testConcurrentBankTellerTransfer() == false) {
+      System.out.println("testConcurrentBankTellerTransfer failed.");
+    }
+
+    if (testConcurrentBankTellerApplyBatch() == false) {
+      System.out.println("testConcurrentBankTellerApplyBatch failed.");
+    }
+  }
+
+}
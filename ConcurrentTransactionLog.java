@@ -0,0 +1,475 @@
+/////////////////////////////////////////// FILE  HEADER /////////////////////////////////////////////
+//
+// Title: Exceptional Bank Teller
+// Files: BankAccount.java, BankAccountTester.java, BankTeller.java, BankTellerTester.java,
+//        BankTellerBenchmark.java, TransactionLog.java, TransactionLoadResult.java,
+//        ConcurrentTransactionLog.java, ConcurrentBankAccount.java,
+//        ConcurrentBankAccountTester.java, ConcurrentBankTeller.java,
+//        ConcurrentBankTellerTester.java, TransactionStatus.java, TransactionListener.java,
+//        TransactionJournal.java, TransactionJournalTester.java, TransactionSnapshot.java,
+//        ColdAccountStore.java, TieredAccountMap.java, TieredBankTeller.java,
+//        TieredBankTellerTester.java, TransactionBatch.java, TransactionBatchResult.java,
+//        TransactionRecord.java, TransactionEvent.java, TransactionPipeline.java,
+//        TransactionPipelineTester.java, LatencyHistogram.java, TellerMetrics.java,
+//        TellerMetricsTester.java, TransactionFile.java, TransactionFileTester.java,
+//        HighPrecisionBankAccount.java, HighPrecisionBankAccountTester.java, AccountIndex.java,
+//        AccountIndexTester.java, ReconciliationReport.java, ReconciliationTask.java,
+//        TransactionIDCache.java, TransactionIDCacheTester.java, ShardTransport.java,
+//        LocalShardTransport.java, SocketShardTransport.java, ShardServer.java,
+//        ShardedBankTeller.java, ShardedBankTellerTester.java, TransactionParser.java,
+//        TransactionParserTester.java, TellerServer.java, TellerClient.java,
+//        TellerLoadGenerator.java, TellerServerTester.java, TransactionClock.java,
+//        TransactionTimeIndex.java, TransactionHistory.java, TransactionHistoryTester.java,
+//        TellerWorkload.java, TellerReplay.java, TellerReplayResult.java, TellerReplayTester.java
+// This File: ConcurrentTransactionLog.java
+// 
+// Name: Benjamin Tarmann
+// Email: btarmann@wisc.edu
+//
+///////////////////////////////////////// 100 COLUMNS WIDE /////////////////////////////////////////
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * This class models a list of transactions that many threads can append to at the same time
+ * without locking. Transactions are packed into longs like in TransactionLog. They are stored in
+ * buckets that double in size (8, 16, 32, ... transactions), so the log grows without ever copying
+ * or moving a transaction: an appending thread reserves an index with a single atomic increment,
+ * installs the bucket of that index with a compare-and-set if nobody has yet, and writes its
+ * transaction into it. The times of the transactions are kept in a TransactionTimeIndex, which
+ * only takes a lock once per tick of the clock.
+ * 
+ * A log can also keep only a window of its most recent transactions, like a TransactionLog. It
+ * then stores them in a ring buffer, and each slot of the ring is tagged with the lap of the index
+ * stored in it (the index divided by the size of the ring). A writer only replaces a slot holding
+ * an older lap, so a slow writer never overwrites a newer transaction, and a reader can tell a slot
+ * that is not written yet, which it waits for, from one that was already overwritten.
+ * 
+ * @author Benjamin Tarmann
+ */
+public class ConcurrentTransactionLog {
+  private static final int FIRST_BUCKET_BITS = 3;
+  private static final int FIRST_BUCKET_SIZE = 1 << FIRST_BUCKET_BITS;
+  private static final int BUCKET_COUNT = 32 - FIRST_BUCKET_BITS; // enough for 2^31 transactions
+  private static final int MAX_SIZE = Integer.MAX_VALUE - FIRST_BUCKET_SIZE;
+  private static final long AMOUNT_MASK = 0xFFFFFFFFL;
+  private static final long DEPOSIT_FLAG = 1L << 32;
+  private static final long WRITTEN_FLAG = 1L << 33; // tells a written slot from an empty one
+  private static final int LAP_SHIFT = 34; // the lap of a ring slot is kept in the top 30 bits
+  private static final int LAP_MASK = (1 << 30) - 1;
+  private static final int MAX_WINDOW = 1 << 30; // largest window that fits into a ring
+
+  private static final VarHandle SIZE;
+  private static final VarHandle BUCKETS = MethodHandles.arrayElementVarHandle(long[][].class);
+  private static final VarHandle SLOTS = MethodHandles.arrayElementVarHandle(long[].class);
+
+  static {
+    try {
+      SIZE = MethodHandles.lookup().findVarHandle(ConcurrentTransactionLog.class, "size",
+          int.class);
+    } catch (ReflectiveOperationException e) {
+      throw new ExceptionInInitializerError(e);
+    }
+  }
+
+  private final int firstIndex; // index of the first transaction appended to this log
+  private final int window; // number of recent transactions kept, or 0 to keep all of them
+  private final long[] ring; // the kept transactions if there is a window, or null
+  private final int ringBits; // log2 of the length of the ring
+  private final long[][] buckets; // the kept transactions if there is no window, or null
+  private final TransactionTimeIndex timeIndex;
+  private volatile int size; // number of reserved indices, updated through SIZE
+
+  /**
+   * Creates a new empty transaction log
+   */
+  public ConcurrentTransactionLog() {
+    this(0);
+  }
+
+  /**
+   * Creates a new empty transaction log for an account whose older transactions are not kept, like
+   * TransactionLog(int) does
+   * 
+   * @param firstIndex index of the first transaction appended to this log
+   * @throws IllegalArgumentException if firstIndex is negative
+   */
+  public ConcurrentTransactionLog(int firstIndex) {
+    this(firstIndex, 0);
+  }
+
+  /**
+   * Creates a new empty transaction log that starts at a given index and only keeps a given number
+   * of its most recent transactions, like TransactionLog(int, int) does
+   * 
+   * @param firstIndex index of the first transaction appended to this log
+   * @param window     number of recent transactions kept, or 0 to keep all of them
+   * @throws IllegalArgumentException if firstIndex is negative, or if window is negative or larger
+   *                                  than 2^30
+   */
+  public ConcurrentTransactionLog(int firstIndex, int window) {
+    // checks that the first index and the window are in range
+    if (firstIndex < 0) {
+      throw new IllegalArgumentException("Index of the first transaction cannot be negative.");
+    }
+    if (window < 0 || window > MAX_WINDOW) {
+      throw new IllegalArgumentException("Window of recent transactions is out of range.");
+    }
+
+    this.firstIndex = firstIndex;
+    this.window = window;
+    if (window > 0) {
+      // rounds the ring up to a power of two so that an index is turned into a slot with a mask
+      ringBits = 32 - Integer.numberOfLeadingZeros(window - 1);
+      ring = new long[1 << ringBits];
+      buckets = null;
+    } else {
+      ringBits = 0;
+      ring = null;
+      buckets = new long[BUCKET_COUNT][];
+    }
+    timeIndex = new TransactionTimeIndex();
+    size = firstIndex;
+  }
+
+  /**
+   * Adds a transaction to the end of this log, at the current time of TransactionClock. This
+   * method can be called by many threads at the same time; transactions appended at the same time
+   * are stored in an unspecified order.
+   * 
+   * @param deposit true for a deposit transaction, false for a withdrawal
+   * @param amount  the transaction amount
+   * @throws IllegalStateException if the log already holds the maximum number of transactions
+   */
+  public void append(boolean deposit, int amount) {
+    append(deposit, amount, TransactionClock.now());
+  }
+
+  /**
+   * Adds a transaction that was applied at a given time to the end of this log, like
+   * TransactionLog.append(boolean, int, long) does
+   * 
+   * @param deposit true for a deposit transaction, false for a withdrawal
+   * @param amount  the transaction amount
+   * @param time    the time the transaction was applied at, in milliseconds since the epoch
+   * @throws IllegalStateException if the log already holds the maximum number of transactions
+   */
+  public void append(boolean deposit, int amount, long time) {
+    int reserved = (int) SIZE.getAndAdd(this, 1);
+
+    // checks that the index did not go past the capacity of the buckets
+    if (reserved < 0 || reserved >= MAX_SIZE) {
+      SIZE.getAndAdd(this, -1);
+      throw new IllegalStateException("Transaction log is full.");
+    }
+
+    if (ring != null) {
+      appendToRing(reserved, (amount & AMOUNT_MASK) | (deposit ? DEPOSIT_FLAG : 0L));
+      timeIndex.record(reserved, time, Math.max(firstIndex, reserved + 1 - window));
+      return;
+    }
+
+    int index = reserved - firstIndex;
+    int position = index + FIRST_BUCKET_SIZE;
+    int highestBit = 31 - Integer.numberOfLeadingZeros(position);
+    int bucketIndex = highestBit - FIRST_BUCKET_BITS;
+
+    // installs the bucket of the index unless another thread already has
+    long[] bucket = (long[]) BUCKETS.getAcquire(buckets, bucketIndex);
+    if (bucket == null) {
+      long[] newBucket = new long[FIRST_BUCKET_SIZE << bucketIndex];
+      long[] witness =
+          (long[]) BUCKETS.compareAndExchangeRelease(buckets, bucketIndex, null, newBucket);
+      bucket = witness == null ? newBucket : witness;
+    }
+
+    long transaction = (amount & AMOUNT_MASK) | (deposit ? DEPOSIT_FLAG : 0L) | WRITTEN_FLAG;
+    SLOTS.setRelease(bucket, position ^ (1 << highestBit), transaction);
+    timeIndex.record(reserved, time, firstIndex);
+  }
+
+  /**
+   * Writes a transaction into the ring slot of its index, unless a transaction of a later lap has
+   * already been written there
+   * 
+   * @param index       index of the transaction
+   * @param transaction the packed transaction, without its flag and lap
+   */
+  private void appendToRing(int index, long transaction) {
+    int lap = (index >>> ringBits) & LAP_MASK;
+    long tagged = transaction | WRITTEN_FLAG | ((long) lap << LAP_SHIFT);
+    int slot = index & (ring.length - 1);
+
+    long current = (long) SLOTS.getVolatile(ring, slot);
+    while ((current & WRITTEN_FLAG) == 0 || lapDifference(current, lap) < 0) {
+      long witness = (long) SLOTS.compareAndExchangeRelease(ring, slot, current, tagged);
+      if (witness == current) {
+        return;
+      }
+      current = witness;
+    }
+  }
+
+  /**
+   * Compares the lap of a written ring slot with a given lap
+   * 
+   * @param slot the written slot
+   * @param lap  the lap to compare with
+   * @return a negative number if the slot holds an earlier lap, 0 if it holds the same one and a
+   *         positive number if it holds a later one
+   */
+  private static int lapDifference(long slot, int lap) {
+    // laps wrap around after 2^30, so the difference is sign-extended from 30 bits
+    return ((int) (slot >>> LAP_SHIFT) - lap) << 2 >> 2;
+  }
+
+  /**
+   * Gets the packed transaction at the given index. If the thread appending the transaction has
+   * reserved its index but not written it yet, this method waits until it is written.
+   * 
+   * @param index index of the transaction, 0 being the oldest one
+   * @return the packed transaction
+   * @throws IndexOutOfBoundsException if index is less than getFirstIndex() or not less than
+   *                                   size(), or if the transaction was overwritten while it was
+   *                                   read
+   */
+  private long get(int index) {
+    long transaction = index < getFirstIndex() || index >= size ? 0 : read(index);
+    if (transaction == 0) {
+      throw new IndexOutOfBoundsException("Transaction index " + index + " is out of bounds.");
+    }
+    return transaction;
+  }
+
+  /**
+   * Reads the packed transaction at a given index that was reserved, waiting until it is written
+   * 
+   * @param index index of the transaction, which is at least firstIndex and less than size
+   * @return the packed transaction, or 0 if its ring slot was already overwritten by a later one
+   */
+  private long read(int index) {
+    if (ring != null) {
+      int lap = (index >>> ringBits) & LAP_MASK;
+      int slot = index & (ring.length - 1);
+      while (true) {
+        long transaction = (long) SLOTS.getAcquire(ring, slot);
+        if ((transaction & WRITTEN_FLAG) != 0) {
+          int difference = lapDifference(transaction, lap);
+          if (difference == 0) {
+            return transaction;
+          } else if (difference > 0) {
+            return 0;
+          }
+        }
+        Thread.onSpinWait();
+      }
+    }
+
+    int position = index - firstIndex + FIRST_BUCKET_SIZE;
+    int highestBit = 31 - Integer.numberOfLeadingZeros(position);
+    int bucketIndex = highestBit - FIRST_BUCKET_BITS;
+
+    long[] bucket;
+    while ((bucket = (long[]) BUCKETS.getAcquire(buckets, bucketIndex)) == null) {
+      Thread.onSpinWait();
+    }
+    long transaction;
+    while ((transaction = (long) SLOTS.getAcquire(bucket, position ^ (1 << highestBit))) == 0) {
+      Thread.onSpinWait();
+    }
+    return transaction;
+  }
+
+  /**
+   * Checks whether the transaction at the given index is a deposit
+   * 
+   * @param index index of the transaction, 0 being the oldest one
+   * @return true if the transaction is a deposit, false if it is a withdrawal
+   * @throws IndexOutOfBoundsException if index is less than getFirstIndex() or not less than
+   *                                   size()
+   */
+  public boolean isDeposit(int index) {
+    return (get(index) & DEPOSIT_FLAG) != 0;
+  }
+
+  /**
+   * Gets the amount of the transaction at the given index
+   * 
+   * @param index index of the transaction, 0 being the oldest one
+   * @return the transaction amount
+   * @throws IndexOutOfBoundsException if index is less than getFirstIndex() or not less than
+   *                                   size()
+   */
+  public int getAmount(int index) {
+    return (int) (get(index) & AMOUNT_MASK);
+  }
+
+  /**
+   * Renders the transaction at the given index the way it is written in a transaction file, "1 "
+   * followed by the amount for a deposit or "0 " followed by the amount for a withdrawal
+   * 
+   * @param index index of the transaction, 0 being the oldest one
+   * @return the transaction as a string
+   * @throws IndexOutOfBoundsException if index is less than getFirstIndex() or not less than
+   *                                   size()
+   */
+  public String toString(int index) {
+    long transaction = get(index);
+    return TransactionLog.render((transaction & DEPOSIT_FLAG) != 0,
+        (int) (transaction & AMOUNT_MASK));
+  }
+
+  /**
+   * Copies the most recent transactions of this log into caller-supplied arrays, the most recent
+   * one first, without allocating anything. Transactions appended while this method runs may or
+   * may not be included.
+   * 
+   * @param amounts  array the transaction amounts are copied into
+   * @param deposits array the deposit flags are copied into
+   * @return the number of transactions copied, which is the length of the shorter array or the
+   *         number of kept transactions, whichever is smaller
+   */
+  public int copyRecent(int[] amounts, boolean[] deposits) {
+    int currentSize = size;
+    int kept = window == 0 ? currentSize - firstIndex
+        : Math.min(currentSize - firstIndex, window);
+    int count = Math.min(Math.min(amounts.length, deposits.length), kept);
+    for (int i = 0; i < count; i++) {
+      long transaction = read(currentSize - i - 1);
+      if (transaction == 0) {
+        return i; // the older transactions were overwritten by ones appended in the meantime
+      }
+      amounts[i] = (int) (transaction & AMOUNT_MASK);
+      deposits[i] = (transaction & DEPOSIT_FLAG) != 0;
+    }
+    return count;
+  }
+
+  /**
+   * Gets the time the transaction at the given index was appended at
+   * 
+   * @param index index of the transaction, 0 being the oldest one
+   * @return the time of the transaction, in milliseconds since the epoch
+   * @throws IndexOutOfBoundsException if index is less than getFirstIndex() or not less than
+   *                                   size()
+   */
+  public long getTime(int index) {
+    get(index); // checks the index
+    return timeIndex.getTime(index);
+  }
+
+  /**
+   * Finds the first kept transaction appended at or after a given time, like
+   * TransactionLog.findIndex() does
+   * 
+   * @param time the time, in milliseconds since the epoch
+   * @return the index of the first such transaction, or size() if every kept transaction is older
+   */
+  public int findIndex(long time) {
+    int currentSize = size;
+    int firstKept = window == 0 ? firstIndex : Math.max(firstIndex, currentSize - window);
+    return Math.max(firstKept, Math.min(currentSize, timeIndex.findIndex(time)));
+  }
+
+  /**
+   * Copies a run of consecutive transactions of this log and their times into caller-supplied
+   * arrays, like TransactionLog.copyRun() does. The copy stops early at a transaction that was
+   * overwritten by one appended in the meantime.
+   * 
+   * @param start       index of the first transaction copied
+   * @param length      number of transactions copied, which must fit into every array
+   * @param newestFirst true to copy start, start - 1, ... down to older transactions, false to
+   *                    copy start, start + 1, ... up to newer ones
+   * @param amounts     array the transaction amounts are copied into
+   * @param deposits    array the deposit flags are copied into
+   * @param times       array the times are copied into
+   * @return the number of transactions copied
+   * @throws IndexOutOfBoundsException if one of the transactions is not reserved yet, or is older
+   *                                   than the first transaction appended to this log
+   */
+  int copyRun(int start, int length, boolean newestFirst, int[] amounts, boolean[] deposits,
+      long[] times) {
+    int lowest = newestFirst ? start - length + 1 : start;
+    if (length > 0 && (lowest < firstIndex || lowest + length > size)) {
+      throw new IndexOutOfBoundsException("Transaction index " + lowest + " is out of bounds.");
+    }
+
+    int copied = 0;
+    while (copied < length) {
+      long transaction = read(newestFirst ? start - copied : start + copied);
+      if (transaction == 0) {
+        break; // the older transactions were overwritten by ones appended in the meantime
+      }
+      amounts[copied] = (int) (transaction & AMOUNT_MASK);
+      deposits[copied] = (transaction & DEPOSIT_FLAG) != 0;
+      copied++;
+    }
+    timeIndex.copyTimes(start, copied, newestFirst, times);
+    return copied;
+  }
+
+  /**
+   * Adds up the amounts of the deposits and of the withdrawals kept in this log from a given index
+   * up to the current size, without rendering them. Transactions appended while this method runs
+   * are not included.
+   * 
+   * @param fromIndex index of the first transaction added up
+   * @param sums      array whose element 0 the deposits are added to, and whose element 1 the
+   *                  withdrawals are added to
+   * @throws IndexOutOfBoundsException if fromIndex is less than getFirstIndex() or greater than
+   *                                   size(), or if a transaction was overwritten while it was read
+   */
+  void sumAmounts(int fromIndex, long[] sums) {
+    int currentSize = size;
+    if (fromIndex < getFirstIndex() || fromIndex > currentSize) {
+      throw new IndexOutOfBoundsException("Transaction index " + fromIndex + " is out of bounds.");
+    }
+
+    long deposits = 0;
+    long withdrawals = 0;
+    for (int index = fromIndex; index < currentSize; index++) {
+      long transaction = read(index);
+      if (transaction == 0) {
+        throw new IndexOutOfBoundsException("Transaction index " + index + " is out of bounds.");
+      }
+      if ((transaction & DEPOSIT_FLAG) != 0) {
+        deposits += transaction & AMOUNT_MASK;
+      } else {
+        withdrawals += transaction & AMOUNT_MASK;
+      }
+    }
+    sums[0] += deposits;
+    sums[1] += withdrawals;
+  }
+
+  /**
+   * Gets the index of the oldest transaction kept in this log, which is 0 unless the log was
+   * created without the older transactions or only keeps a window of them
+   * 
+   * @return the index of the oldest kept transaction
+   */
+  public int getFirstIndex() {
+    int currentSize = size;
+    return window == 0 ? firstIndex : Math.max(firstIndex, currentSize - window);
+  }
+
+  /**
+   * Gets the number of most recent transactions this log keeps
+   * 
+   * @return the window of kept transactions, or 0 if all of them are kept
+   */
+  public int getWindow() {
+    return window;
+  }
+
+  /**
+   * Gets the number of transactions in this log, including the older ones that are not kept and
+   * the ones being appended right now
+   * 
+   * @return the number of transactions
+   */
+  public int size() {
+    return size;
+  }
+}
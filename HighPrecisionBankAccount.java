@@ -0,0 +1,169 @@
+/////////////////////////////////////////// FILE  HEADER /////////////////////////////////////////////
+//
+// Title: Exceptional Bank Teller
+// Files: BankAccount.java, BankAccountTester.java, BankTeller.java, BankTellerTester.java,
+//        BankTellerBenchmark.java, TransactionLog.java, TransactionLoadResult.java,
+//        ConcurrentTransactionLog.java, ConcurrentBankAccount.java,
+//        ConcurrentBankAccountTester.java, ConcurrentBankTeller.java,
+//        ConcurrentBankTellerTester.java, TransactionStatus.java, TransactionListener.java,
+//        TransactionJournal.java, TransactionJournalTester.java, TransactionSnapshot.java,
+//        ColdAccountStore.java, TieredAccountMap.java, TieredBankTeller.java,
+//        TieredBankTellerTester.java, TransactionBatch.java, TransactionBatchResult.java,
+//        TransactionRecord.java, TransactionEvent.java, TransactionPipeline.java,
+//        TransactionPipelineTester.java, LatencyHistogram.java, TellerMetrics.java,
+//        TellerMetricsTester.java, TransactionFile.java, TransactionFileTester.java,
+//        HighPrecisionBankAccount.java, HighPrecisionBankAccountTester.java, AccountIndex.java,
+//        AccountIndexTester.java, ReconciliationReport.java, ReconciliationTask.java,
+//        TransactionIDCache.java, TransactionIDCacheTester.java, ShardTransport.java,
+//        LocalShardTransport.java, SocketShardTransport.java, ShardServer.java,
+//        ShardedBankTeller.java, ShardedBankTellerTester.java, TransactionParser.java,
+//        TransactionParserTester.java, TellerServer.java, TellerClient.java,
+//        TellerLoadGenerator.java, TellerServerTester.java, TransactionClock.java,
+//        TransactionTimeIndex.java, TransactionHistory.java, TransactionHistoryTester.java,
+//        TellerWorkload.java, TellerReplay.java, TellerReplayResult.java, TellerReplayTester.java
+// This File: HighPrecisionBankAccount.java
+// 
+// Name: Benjamin Tarmann
+// Email: btarmann@wisc.edu
+//
+///////////////////////////////////////// 100 COLUMNS WIDE /////////////////////////////////////////
+
+import java.math.BigDecimal;
+
+/**
+ * This class models a bank account whose balance is a BigDecimal, so deposits are never rejected
+ * for making the balance too large. It follows the same rules as BankAccount otherwise. Every
+ * transaction allocates a new BigDecimal, which makes it slower than a BankAccount, so it is only
+ * meant for the few accounts whose balance may grow past Long.MAX_VALUE.
+ * 
+ * getBalance() throws an ArithmeticException once the balance does not fit into a long, while
+ * getExactBalance() always reports it. Journals, snapshots and the cold tier of TieredBankTeller
+ * store the account with its exact balance, and restore it as a HighPrecisionBankAccount.
+ * 
+ * @author Benjamin Tarmann
+ */
+public class HighPrecisionBankAccount extends BankAccount {
+  private BigDecimal balance; // kept instead of the long balance of BankAccount
+
+  /**
+   * Creates a new bank account with a given account ID and an initial balance. A deposit
+   * transaction with the initial balance is added to the account's list of transactions.
+   * 
+   * @param accountID      account's unique ID
+   * @param initialBalance account's initial balance
+   * @throws IllegalArgumentException with error message if the initial balance is less than 10
+   */
+  public HighPrecisionBankAccount(String accountID, int initialBalance) {
+    this(accountID, initialBalance, 0);
+  }
+
+  /**
+   * Creates a new bank account that only keeps a given number of its most recent transactions,
+   * like the matching BankAccount constructor
+   * 
+   * @param accountID      account's unique ID
+   * @param initialBalance account's initial balance
+   * @param recentWindow   number of most recent transactions kept, or 0 to keep all of them
+   * @throws IllegalArgumentException with error message if the initial balance is less than 10, or
+   *                                  if recentWindow is negative or larger than 2^30
+   */
+  public HighPrecisionBankAccount(String accountID, int initialBalance, int recentWindow) {
+    super(accountID, initialBalance, recentWindow);
+    balance = BigDecimal.valueOf(initialBalance);
+  }
+
+  /**
+   * Creates a bank account restored with a given balance and a given number of older transactions
+   * that are not kept, like the matching BankAccount constructor. The balance may be larger than
+   * any long.
+   * 
+   * @param accountID        account's unique ID
+   * @param balance          account's balance
+   * @param firstTransaction number of older transactions that are not kept
+   * @param recentWindow     number of most recent transactions kept, or 0 to keep all of them
+   */
+  HighPrecisionBankAccount(String accountID, BigDecimal balance, int firstTransaction,
+      int recentWindow) {
+    super(accountID, 0, firstTransaction, recentWindow);
+    this.balance = balance;
+  }
+
+  /**
+   * Gets the account balance
+   * 
+   * @return the account balance
+   * @throws ArithmeticException if the balance does not fit into a long
+   */
+  @Override
+  public long getBalance() {
+    return balance.longValueExact();
+  }
+
+  /**
+   * Gets the account balance, however large it is
+   * 
+   * @return the account balance
+   */
+  @Override
+  public BigDecimal getExactBalance() {
+    return balance;
+  }
+
+  /**
+   * Checks whether an amount can be deposited to this account, which is always the case
+   * 
+   * @param depositAmount amount that would be deposited
+   * @return true
+   */
+  @Override
+  boolean canDeposit(int depositAmount) {
+    return true;
+  }
+
+  /**
+   * Deposits an amount to this bank account like BankAccount.applyDeposit() does, but never
+   * rejects it for making the balance too large
+   * 
+   * @param depositAmount amount deposited into the account
+   * @return APPLIED if the amount was deposited, or NEGATIVE_DEPOSIT if depositAmount is negative
+   */
+  @Override
+  protected TransactionStatus applyDeposit(int depositAmount) {
+    // checks that the deposit amount is positive
+    if (depositAmount < 0) {
+      return TransactionStatus.NEGATIVE_DEPOSIT;
+    }
+
+    balance = balance.add(BigDecimal.valueOf(depositAmount));
+    appendTransaction(true, depositAmount);
+    transactionApplied(true, depositAmount);
+    return TransactionStatus.APPLIED;
+  }
+
+  /**
+   * Withdraws a specific amount of money like BankAccount.applyWithdrawal() does
+   * 
+   * @param withdrawAmount amount withdrawn from the account
+   * @return APPLIED if the amount was withdrawn, INVALID_WITHDRAW_AMOUNT if withdrawAmount is
+   *         negative or not a multiple of 10, or INSUFFICIENT_FUNDS if withdrawAmount is greater
+   *         than the account balance
+   */
+  @Override
+  protected TransactionStatus applyWithdrawal(int withdrawAmount) {
+    // checks that the withdraw amount is positive and a multiple of 10
+    if (withdrawAmount < 0 || withdrawAmount % 10 != 0) {
+      return TransactionStatus.INVALID_WITHDRAW_AMOUNT;
+    }
+
+    // checks that the withdraw amount is not larger than the account's balance
+    BigDecimal amount = BigDecimal.valueOf(withdrawAmount);
+    if (amount.compareTo(balance) > 0) {
+      return TransactionStatus.INSUFFICIENT_FUNDS;
+    }
+
+    balance = balance.subtract(amount);
+    appendTransaction(false, withdrawAmount);
+    transactionApplied(false, withdrawAmount);
+    return TransactionStatus.APPLIED;
+  }
+}
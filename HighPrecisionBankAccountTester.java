@@ -0,0 +1,209 @@
+/////////////////////////////////////////// FILE  HEADER /////////////////////////////////////////////
+//
+// Title: Exceptional Bank Teller
+// Files: BankAccount.java, BankAccountTester.java, BankTeller.java, BankTellerTester.java,
+//        BankTellerBenchmark.java, TransactionLog.java, TransactionLoadResult.java,
+//        ConcurrentTransactionLog.java, ConcurrentBankAccount.java,
+//        ConcurrentBankAccountTester.java, ConcurrentBankTeller.java,
+//        ConcurrentBankTellerTester.java, TransactionStatus.java, TransactionListener.java,
+//        TransactionJournal.java, TransactionJournalTester.java, TransactionSnapshot.java,
+//        ColdAccountStore.java, TieredAccountMap.java, TieredBankTeller.java,
+//        TieredBankTellerTester.java, TransactionBatch.java, TransactionBatchResult.java,
+//        TransactionRecord.java, TransactionEvent.java, TransactionPipeline.java,
+//        TransactionPipelineTester.java, LatencyHistogram.java, TellerMetrics.java,
+//        TellerMetricsTester.java, TransactionFile.java, TransactionFileTester.java,
+//        HighPrecisionBankAccount.java, HighPrecisionBankAccountTester.java, AccountIndex.java,
+//        AccountIndexTester.java, ReconciliationReport.java, ReconciliationTask.java,
+//        TransactionIDCache.java, TransactionIDCacheTester.java, ShardTransport.java,
+//        LocalShardTransport.java, SocketShardTransport.java, ShardServer.java,
+//        ShardedBankTeller.java, ShardedBankTellerTester.java, TransactionParser.java,
+//        TransactionParserTester.java, TellerServer.java, TellerClient.java,
+//        TellerLoadGenerator.java, TellerServerTester.java, TransactionClock.java,
+//        TransactionTimeIndex.java, TransactionHistory.java, TransactionHistoryTester.java,
+//        TellerWorkload.java, TellerReplay.java, TellerReplayResult.java, TellerReplayTester.java
+// This File: HighPrecisionBankAccountTester.java
+// 
+// Name: Benjamin Tarmann
+// Email: btarmann@wisc.edu
+//
+///////////////////////////////////////// 100 COLUMNS WIDE /////////////////////////////////////////
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.DataFormatException;
+
+/**
+ * This class represents a tester for the HighPrecisionBankAccount class
+ * 
+ * @author Benjamin Tarmann
+ */
+public class HighPrecisionBankAccountTester {
+
+  /**
+   * Restores an account a few dollars short of Long.MAX_VALUE and deposits past it. Checks that the
+   * exact balance keeps growing while getBalance() refuses to truncate it, and that withdrawals
+   * bring the balance back into the range of a long
+   * 
+   * @return true when this test verifies a correct functionality, and false otherwise
+   */
+  public static boolean testHighPrecisionBankAccountBeyondLong() {
+    BigDecimal start = BigDecimal.valueOf(Long.MAX_VALUE - 5);
+    HighPrecisionBankAccount account = new HighPrecisionBankAccount("0001", start, 0, 0);
+
+    // deposits past the largest long
+    account.deposit(100);
+    if (account.tryDeposit(Integer.MAX_VALUE) != TransactionStatus.APPLIED
+        || !account.getExactBalance()
+            .equals(start.add(BigDecimal.valueOf(100L + Integer.MAX_VALUE)))) {
+      return false;
+    }
+    try {
+      account.getBalance();
+      return false;
+    } catch (ArithmeticException e) {
+      // expected: the balance does not fit into a long
+    }
+
+    // withdraws back below the largest long
+    if (account.tryWithdraw(Integer.MAX_VALUE - 7) != TransactionStatus.APPLIED
+        || account.tryWithdraw(110) != TransactionStatus.APPLIED
+        || account.getBalance() != Long.MAX_VALUE - 5 - 10 + 7) {
+      return false;
+    }
+
+    // checks the ordinary rules still hold
+    return account.tryWithdraw(15) == TransactionStatus.INVALID_WITHDRAW_AMOUNT
+        && account.tryDeposit(-1) == TransactionStatus.NEGATIVE_DEPOSIT
+        && new HighPrecisionBankAccount("0002", 10).tryWithdraw(20)
+            == TransactionStatus.INSUFFICIENT_FUNDS
+        && Arrays.equals(account.getMostRecentTransactions(),
+            new String[] {"0 110", "0 " + (Integer.MAX_VALUE - 7), "1 " + Integer.MAX_VALUE,
+                "1 100", null});
+  }
+
+  /**
+   * Applies the same random deposits and withdrawals to a BankAccount and to a
+   * HighPrecisionBankAccount, and checks that every transaction has the same status, and that both
+   * accounts end with the same balance and the same recent transactions
+   * 
+   * @return true when this test verifies a correct functionality, and false otherwise
+   */
+  public static boolean testHighPrecisionBankAccountMatchesBankAccount() {
+    Random random = new Random(17);
+    BankAccount plain = new BankAccount("0001", 500, 8);
+    HighPrecisionBankAccount precise = new HighPrecisionBankAccount("0001", 500, 8);
+    for (int i = 0; i < 10_000; i++) {
+      int amount = random.nextInt(400) - 20;
+      boolean deposit = random.nextBoolean();
+      TransactionStatus expected = deposit ? plain.tryDeposit(amount) : plain.tryWithdraw(amount);
+      TransactionStatus actual = deposit ? precise.tryDeposit(amount) : precise.tryWithdraw(amount);
+      if (expected != actual || plain.getBalance() != precise.getBalance()) {
+        return false;
+      }
+    }
+    return plain.getTransactionsCount() == precise.getTransactionsCount()
+        && Arrays.equals(plain.getMostRecentTransactions(), precise.getMostRecentTransactions())
+        && plain.getExactBalance().equals(precise.getExactBalance());
+  }
+
+  /**
+   * Checks whether a restored account is a HighPrecisionBankAccount with the same ID, exact
+   * balance, number of transactions, window and most recent transactions as the original one
+   * 
+   * @param expected the original account
+   * @param actual   the restored account
+   * @return true if the accounts match, false otherwise
+   */
+  private static boolean samePreciseAccount(BankAccount expected, BankAccount actual) {
+    return actual instanceof HighPrecisionBankAccount && expected.getID().equals(actual.getID())
+        && expected.getExactBalance().equals(actual.getExactBalance())
+        && expected.getTransactionsCount() == actual.getTransactionsCount()
+        && expected.getRecentWindow() == actual.getRecentWindow()
+        && Arrays.equals(expected.getMostRecentTransactions(), actual.getMostRecentTransactions());
+  }
+
+  /**
+   * Checks whether snapshots, the cold tier of TieredBankTeller and journals keep a
+   * HighPrecisionBankAccount as one, with its exact balance even when it does not fit into a long,
+   * and whether evicting such an account to the cold tier keeps it
+   * 
+   * @return true when this test verifies a correct functionality, and false otherwise
+   */
+  public static boolean testHighPrecisionBankAccountPersisted() {
+    try {
+      BigDecimal beyondLong = BigDecimal.valueOf(Long.MAX_VALUE).add(BigDecimal.valueOf(1000));
+      HighPrecisionBankAccount large = new HighPrecisionBankAccount("0001", beyondLong, 0, 0);
+      large.deposit(25);
+      large.withdraw(10);
+
+      // checks that a snapshot restores the account with its exact balance
+      File snapshotFile = File.createTempFile("snapshot", ".bin");
+      snapshotFile.deleteOnExit();
+      TransactionSnapshot.write(snapshotFile, 1, List.of(large));
+      BankTeller restored = new BankTeller();
+      TransactionSnapshot.read(snapshotFile, restored);
+      if (!samePreciseAccount(large, restored.findAccount("0001"))) {
+        return false;
+      }
+
+      // checks that the cold tier stores the account, also when it is evicted to it
+      ColdAccountStore store = new ColdAccountStore();
+      store.put(large);
+      store.put(new BankAccount("0002", 10));
+      store.put(large);
+      if (!samePreciseAccount(large, store.get("0001"))
+          || store.get("0002").getBalance() != 10) {
+        return false;
+      }
+      TieredBankTeller tiered = new TieredBankTeller(1);
+      tiered.addBankAccount(large);
+      tiered.addBankAccount(new BankAccount("0002", 10));
+      if (tiered.getAccountsCount() != 2
+          || !samePreciseAccount(large, tiered.findAccount("0001"))) {
+        return false;
+      }
+
+      // checks that replaying a journal restores the account with deposits beyond an int
+      File journalFile = File.createTempFile("journal", ".bin");
+      journalFile.delete();
+      journalFile.deleteOnExit();
+      BankTeller original = new BankTeller();
+      original.openJournal(journalFile, 1, 0);
+      HighPrecisionBankAccount journaled = new HighPrecisionBankAccount("0003", 100, 4);
+      original.addBankAccount(journaled);
+      for (int i = 0; i < 10; i++) {
+        journaled.deposit(Integer.MAX_VALUE);
+      }
+      original.closeJournal();
+      BankTeller recovered = new BankTeller();
+      recovered.openJournal(journalFile, 1, 0);
+      recovered.closeJournal();
+      return samePreciseAccount(journaled, recovered.findAccount("0003"));
+    } catch (IOException | DataFormatException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Calls the test methods defined in this HighPrecisionBankAccountTester class
+   * 
+   * @param args
+   */
+  public static void main(String[] args) {
+    if (testHighPrecisionBankAccountBeyondLong() == false) {
+      System.out.println("testHighPrecisionBankAccountBeyondLong failed.");
+    }
+
+    if (testHighPrecisionBankAccountMatchesBankAccount() == false) {
+      System.out.println("testHighPrecisionBankAccountMatchesBankAccount failed.");
+    }
+
+    if (testHighPrecisionBankAccountPersisted() == false) {
+      System.out.println("testHighPrecisionBankAccountPersisted failed.");
+    }
+  }
+
+}
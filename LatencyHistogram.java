@@ -0,0 +1,201 @@
+/////////////////////////////////////////// FILE  HEADER /////////////////////////////////////////////
+//
+// Title: Exceptional Bank Teller
+// Files: BankAccount.java, BankAccountTester.java, BankTeller.java, BankTellerTester.java,
+//        BankTellerBenchmark.java, TransactionLog.java, TransactionLoadResult.java,
+//        ConcurrentTransactionLog.java, ConcurrentBankAccount.java,
+//        ConcurrentBankAccountTester.java, ConcurrentBankTeller.java,
+//        ConcurrentBankTellerTester.java, TransactionStatus.java, TransactionListener.java,
+//        TransactionJournal.java, TransactionJournalTester.java, TransactionSnapshot.java,
+//        ColdAccountStore.java, TieredAccountMap.java, TieredBankTeller.java,
+//        TieredBankTellerTester.java, TransactionBatch.java, TransactionBatchResult.java,
+//        TransactionRecord.java, TransactionEvent.java, TransactionPipeline.java,
+//        TransactionPipelineTester.java, LatencyHistogram.java, TellerMetrics.java,
+//        TellerMetricsTester.java, TransactionFile.java, TransactionFileTester.java,
+//        HighPrecisionBankAccount.java, HighPrecisionBankAccountTester.java, AccountIndex.java,
+//        AccountIndexTester.java, ReconciliationReport.java, ReconciliationTask.java,
+//        TransactionIDCache.java, TransactionIDCacheTester.java, ShardTransport.java,
+//        LocalShardTransport.java, SocketShardTransport.java, ShardServer.java,
+//        ShardedBankTeller.java, ShardedBankTellerTester.java, TransactionParser.java,
+//        TransactionParserTester.java, TellerServer.java, TellerClient.java,
+//        TellerLoadGenerator.java, TellerServerTester.java, TransactionClock.java,
+//        TransactionTimeIndex.java, TransactionHistory.java, TransactionHistoryTester.java,
+//        TellerWorkload.java, TellerReplay.java, TellerReplayResult.java, TellerReplayTester.java
+// This File: LatencyHistogram.java
+// 
+// Name: Benjamin Tarmann
+// Email: btarmann@wisc.edu
+//
+///////////////////////////////////////// 100 COLUMNS WIDE /////////////////////////////////////////
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class models a histogram of latencies in nanoseconds, in the style of HdrHistogram: values
+ * below 64 are counted exactly, and larger values are counted in buckets that split every power of
+ * two into 32 equal parts, so a value read back from the histogram is never more than about 3%
+ * larger than the value that was recorded. The histogram takes a fixed 15 KB whatever the values
+ * are, and recording a value is a few arithmetic operations and one atomic increment, so many
+ * threads can record into the same histogram at the same time.
+ * 
+ * @author Benjamin Tarmann
+ */
+public class LatencyHistogram {
+  private static final int SUB_BITS = 5; // buckets per power of two are 1 << SUB_BITS
+  private static final int EXACT = 2 << SUB_BITS; // values below this are counted exactly
+  private static final int BUCKETS = EXACT + (63 - SUB_BITS - 1) * (1 << SUB_BITS);
+
+  private final AtomicLongArray counts;
+  private final LongAdder total; // sum of the recorded values
+  private final LongAccumulator max;
+
+  /**
+   * Creates a new empty histogram
+   */
+  public LatencyHistogram() {
+    counts = new AtomicLongArray(BUCKETS);
+    total = new LongAdder();
+    max = new LongAccumulator(Math::max, 0);
+  }
+
+  /**
+   * Gets the bucket a value is counted in
+   * 
+   * @param value a value that is not negative
+   * @return the index of its bucket
+   */
+  private static int bucket(long value) {
+    if (value < EXACT) {
+      return (int) value;
+    }
+    int exponent = 63 - Long.numberOfLeadingZeros(value); // at least SUB_BITS + 1
+    int mantissa = (int) (value >>> (exponent - SUB_BITS)) & ((1 << SUB_BITS) - 1);
+    return EXACT + ((exponent - SUB_BITS - 1) << SUB_BITS) + mantissa;
+  }
+
+  /**
+   * Gets the largest value that is counted in a bucket
+   * 
+   * @param bucket the index of the bucket
+   * @return the largest value of the bucket
+   */
+  private static long highestValue(int bucket) {
+    if (bucket < EXACT) {
+      return bucket;
+    }
+    int exponent = ((bucket - EXACT) >>> SUB_BITS) + SUB_BITS + 1;
+    long mantissa = (bucket - EXACT) & ((1 << SUB_BITS) - 1);
+    long lowest = ((1L << SUB_BITS) + mantissa) << (exponent - SUB_BITS);
+    return lowest + (1L << (exponent - SUB_BITS)) - 1;
+  }
+
+  /**
+   * Records a value. Negative values are recorded as 0.
+   * 
+   * @param nanos the latency in nanoseconds
+   */
+  public void record(long nanos) {
+    long value = Math.max(0, nanos);
+    counts.incrementAndGet(bucket(value));
+    total.add(value);
+    max.accumulate(value);
+  }
+
+  /**
+   * Gets the number of recorded values
+   * 
+   * @return the number of values
+   */
+  public long getCount() {
+    long count = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      count += counts.get(i);
+    }
+    return count;
+  }
+
+  /**
+   * Gets the largest recorded value
+   * 
+   * @return the largest value, or 0 if no value was recorded
+   */
+  public long getMax() {
+    return max.get();
+  }
+
+  /**
+   * Gets the mean of the recorded values
+   * 
+   * @return the mean, or 0 if no value was recorded
+   */
+  public double getMean() {
+    long count = getCount();
+    return count == 0 ? 0 : (double) total.sum() / count;
+  }
+
+  /**
+   * Gets a percentile of the recorded values
+   * 
+   * @param percentile the percentile, between 0 and 100
+   * @return the largest value of the bucket that holds the percentile, but never more than the
+   *         largest recorded value, or 0 if no value was recorded
+   * @throws IllegalArgumentException if percentile is not between 0 and 100
+   */
+  public long getPercentile(double percentile) {
+    // checks that the percentile is between 0 and 100
+    if (!(percentile >= 0 && percentile <= 100)) {
+      throw new IllegalArgumentException("Percentile must be between 0 and 100.");
+    }
+
+    long[] snapshot = new long[BUCKETS];
+    long count = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      snapshot[i] = counts.get(i);
+      count += snapshot[i];
+    }
+    long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+    long seen = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      seen += snapshot[i];
+      if (seen >= rank) {
+        return Math.min(highestValue(i), getMax());
+      }
+    }
+    return 0;
+  }
+
+  /**
+   * Adds the values recorded in another histogram to this one, for example to merge histograms
+   * that separate threads recorded into without contending on the same counters
+   * 
+   * @param other histogram whose values are added
+   */
+  public void add(LatencyHistogram other) {
+    for (int i = 0; i < BUCKETS; i++) {
+      long count = other.counts.get(i);
+      if (count != 0) {
+        counts.addAndGet(i, count);
+      }
+    }
+    total.add(other.total.sum());
+    max.accumulate(other.max.get());
+  }
+
+  /**
+   * Creates a copy of this histogram, which does not change when values are recorded into this
+   * one afterwards. Values recorded while the copy is made may or may not be in it.
+   * 
+   * @return the copy
+   */
+  public LatencyHistogram copy() {
+    LatencyHistogram copy = new LatencyHistogram();
+    for (int i = 0; i < BUCKETS; i++) {
+      copy.counts.set(i, counts.get(i));
+    }
+    copy.total.add(total.sum());
+    copy.max.accumulate(max.get());
+    return copy;
+  }
+}
@@ -0,0 +1,157 @@
+/////////////////////////////////////////// FILE  HEADER /////////////////////////////////////////////
+//
+// Title: Exceptional Bank Teller
+// Files: BankAccount.java, BankAccountTester.java, BankTeller.java, BankTellerTester.java,
+//        BankTellerBenchmark.java, TransactionLog.java, TransactionLoadResult.java,
+//        ConcurrentTransactionLog.java, ConcurrentBankAccount.java,
+//        ConcurrentBankAccountTester.java, ConcurrentBankTeller.java,
+//        ConcurrentBankTellerTester.java, TransactionStatus.java, TransactionListener.java,
+//        TransactionJournal.java, TransactionJournalTester.java, TransactionSnapshot.java,
+//        ColdAccountStore.java, TieredAccountMap.java, TieredBankTeller.java,
+//        TieredBankTellerTester.java, TransactionBatch.java, TransactionBatchResult.java,
+//        TransactionRecord.java, TransactionEvent.java, TransactionPipeline.java,
+//        TransactionPipelineTester.java, LatencyHistogram.java, TellerMetrics.java,
+//        TellerMetricsTester.java, TransactionFile.java, TransactionFileTester.java,
+//        HighPrecisionBankAccount.java, HighPrecisionBankAccountTester.java, AccountIndex.java,
+//        AccountIndexTester.java, ReconciliationReport.java, ReconciliationTask.java,
+//        TransactionIDCache.java, TransactionIDCacheTester.java, ShardTransport.java,
+//        LocalShardTransport.java, SocketShardTransport.java, ShardServer.java,
+//        ShardedBankTeller.java, ShardedBankTellerTester.java, TransactionParser.java,
+//        TransactionParserTester.java, TellerServer.java, TellerClient.java,
+//        TellerLoadGenerator.java, TellerServerTester.java, TransactionClock.java,
+//        TransactionTimeIndex.java, TransactionHistory.java, TransactionHistoryTester.java,
+//        TellerWorkload.java, TellerReplay.java, TellerReplayResult.java, TellerReplayTester.java
+// This File: LocalShardTransport.java
+// 
+// Name: Benjamin Tarmann
+// Email: btarmann@wisc.edu
+//
+///////////////////////////////////////// 100 COLUMNS WIDE /////////////////////////////////////////
+
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * This class models a shard of a ShardedBankTeller that is a BankTeller in the same JVM. Calls go
+ * straight to the BankTeller, so accounts are added, found and removed as the objects themselves
+ * and routing to a local shard costs no more than a method call.
+ * 
+ * A ShardedBankTeller calls its shards from every thread that uses it, so the BankTeller should be
+ * a ConcurrentBankTeller if the ShardedBankTeller is shared between threads.
+ * 
+ * @author Benjamin Tarmann
+ */
+public class LocalShardTransport implements ShardTransport {
+  private final BankTeller teller;
+
+  /**
+   * Creates a transport to a BankTeller in this JVM
+   * 
+   * @param teller the BankTeller holding the accounts of the shard
+   * @throws IllegalArgumentException if teller is null
+   */
+  public LocalShardTransport(BankTeller teller) {
+    // checks that teller is not null
+    if (teller == null) {
+      throw new IllegalArgumentException("Teller is null.");
+    }
+
+    this.teller = teller;
+  }
+
+  /**
+   * Gets the BankTeller of the shard
+   * 
+   * @return the BankTeller
+   */
+  public BankTeller getTeller() {
+    return teller;
+  }
+
+  /**
+   * Adds an account to the BankTeller
+   * 
+   * @param account the account to add
+   * @throws IllegalArgumentException if account is null
+   * @throws IllegalStateException    if the BankTeller already has an account with the same ID
+   */
+  @Override
+  public void addAccount(BankAccount account) {
+    teller.addBankAccount(account);
+  }
+
+  /**
+   * Finds an account of the BankTeller
+   * 
+   * @param id the account ID
+   * @return the account, or null if the BankTeller has no account with this ID
+   */
+  @Override
+  public BankAccount findAccount(String id) {
+    try {
+      return teller.findAccount(id);
+    } catch (NoSuchElementException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Applies a transaction to an account of the BankTeller
+   * 
+   * @param id          the account ID
+   * @param transaction the transaction, for example "1 20"
+   * @return APPLIED if the transaction was added, ACCOUNT_NOT_FOUND if the BankTeller has no
+   *         account with this ID, or the reason the transaction was not added
+   */
+  @Override
+  public TransactionStatus tryAddTransaction(String id, String transaction) {
+    BankAccount account = findAccount(id);
+    if (account == null) {
+      return TransactionStatus.ACCOUNT_NOT_FOUND;
+    }
+    return teller.tryAddTransaction(transaction, account);
+  }
+
+  /**
+   * Removes an account from the BankTeller
+   * 
+   * @param id the account ID
+   * @return the removed account, or null if the BankTeller has no account with this ID
+   * @throws IllegalStateException if the BankTeller has an open journal
+   */
+  @Override
+  public BankAccount removeAccount(String id) {
+    try {
+      return teller.removeBankAccount(id);
+    } catch (NoSuchElementException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Gets the IDs of the accounts of the BankTeller
+   * 
+   * @return a list of the account IDs
+   */
+  @Override
+  public List<String> getAccountIDs() {
+    return teller.getAccountIDs();
+  }
+
+  /**
+   * Gets the number of accounts of the BankTeller
+   * 
+   * @return the number of accounts
+   */
+  @Override
+  public int getAccountsCount() {
+    return teller.getAccountsCount();
+  }
+
+  /**
+   * Does nothing, since the BankTeller stays usable on its own
+   */
+  @Override
+  public void close() {
+  }
+}
@@ -0,0 +1,245 @@
+/////////////////////////////////////////// FILE  HEADER /////////////////////////////////////////////
+//
+// Title: Exceptional Bank Teller
+// Files: BankAccount.java, BankAccountTester.java, BankTeller.java, BankTellerTester.java,
+//        BankTellerBenchmark.java, TransactionLog.java, TransactionLoadResult.java,
+//        ConcurrentTransactionLog.java, ConcurrentBankAccount.java,
+//        ConcurrentBankAccountTester.java, ConcurrentBankTeller.java,
+//        ConcurrentBankTellerTester.java, TransactionStatus.java, TransactionListener.java,
+//        TransactionJournal.java, TransactionJournalTester.java, TransactionSnapshot.java,
+//        ColdAccountStore.java, TieredAccountMap.java, TieredBankTeller.java,
+//        TieredBankTellerTester.java, TransactionBatch.java, TransactionBatchResult.java,
+//        TransactionRecord.java, TransactionEvent.java, TransactionPipeline.java,
+//        TransactionPipelineTester.java, LatencyHistogram.java, TellerMetrics.java,
+//        TellerMetricsTester.java, TransactionFile.java, TransactionFileTester.java,
+//        HighPrecisionBankAccount.java, HighPrecisionBankAccountTester.java, AccountIndex.java,
+//        AccountIndexTester.java, ReconciliationReport.java, ReconciliationTask.java,
+//        TransactionIDCache.java, TransactionIDCacheTester.java, ShardTransport.java,
+//        LocalShardTransport.java, SocketShardTransport.java, ShardServer.java,
+//        ShardedBankTeller.java, ShardedBankTellerTester.java, TransactionParser.java,
+//        TransactionParserTester.java, TellerServer.java, TellerClient.java,
+//        TellerLoadGenerator.java, TellerServerTester.java, TransactionClock.java,
+//        TransactionTimeIndex.java, TransactionHistory.java, TransactionHistoryTester.java,
+//        TellerWorkload.java, TellerReplay.java, TellerReplayResult.java, TellerReplayTester.java
+// This File: ReconciliationReport.java
+// 
+// Name: Benjamin Tarmann
+// Email: btarmann@wisc.edu
+//
+///////////////////////////////////////// 100 COLUMNS WIDE /////////////////////////////////////////
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * This class reports the end-of-day totals of the accounts of a BankTeller, as computed by
+ * BankTeller.reconcile(): the sum of their opening balances, deposits, withdrawals and balances,
+ * the net flow (deposits minus withdrawals) of every account, and which accounts do not
+ * reconcile.
+ * 
+ * The opening balance of an account is its initial balance, the first transaction of its list,
+ * and its deposits and withdrawals are the transactions after it. An account reconciles if its
+ * balance equals its opening balance plus its net flow. This can only be checked for accounts that
+ * keep every transaction; for the other accounts (accounts with a window of recent transactions
+ * or restored from a snapshot) the totals include only the kept transactions, and their opening
+ * balance is taken to be their balance minus the net flow of those transactions.
+ * 
+ * @author Benjamin Tarmann
+ */
+public class ReconciliationReport {
+  private final String[] accountIDs; // ID of every account, shared by all partial reports
+  private final long[] netFlows; // net flow of every account, shared by all partial reports
+  private long transactionsCount;
+  private long totalOpeningBalance;
+  private long totalDeposits;
+  private long totalWithdrawals;
+  private long totalBalance;
+  private int verifiedCount;
+  private int unverifiedCount;
+  private ArrayList<String> mismatches; // IDs of the accounts that do not reconcile
+
+  /**
+   * Creates a new report with all totals at 0, which records the account IDs and net flows into
+   * the given arrays. The partial reports of a parallel reconciliation share these arrays, each
+   * writing the elements of its own accounts.
+   * 
+   * @param accountIDs array the account IDs are written into
+   * @param netFlows   array the net flows are written into, at the index of their account ID
+   */
+  ReconciliationReport(String[] accountIDs, long[] netFlows) {
+    this.accountIDs = accountIDs;
+    this.netFlows = netFlows;
+    mismatches = new ArrayList<String>();
+  }
+
+  /**
+   * Adds the transactions of an account to the totals and records its net flow
+   * 
+   * @param index          index of the account in the arrays of this report
+   * @param account        the account
+   * @param sums           sums of the deposits (element 0) and withdrawals (element 1) after the
+   *                       opening balance
+   * @param openingBalance the initial balance of the account, which is only used if verified is
+   *                       true
+   * @param verified       true if the account keeps every transaction, so that its balance is
+   *                       checked against its transactions
+   * @throws ArithmeticException if the balance or a total does not fit into a long
+   */
+  void accountReconciled(int index, BankAccount account, long[] sums, long openingBalance,
+      boolean verified) {
+    long balance = account.getBalance();
+    accountIDs[index] = account.getID();
+    netFlows[index] = sums[0] - sums[1];
+    if (!verified) {
+      openingBalance = balance - netFlows[index];
+    }
+    transactionsCount += account.getTransactionsCount();
+    totalOpeningBalance = Math.addExact(totalOpeningBalance, openingBalance);
+    totalDeposits = Math.addExact(totalDeposits, sums[0]);
+    totalWithdrawals = Math.addExact(totalWithdrawals, sums[1]);
+    totalBalance = Math.addExact(totalBalance, balance);
+    if (!verified) {
+      unverifiedCount++;
+    } else {
+      verifiedCount++;
+      if (balance != openingBalance + netFlows[index]) {
+        mismatches.add(account.getID());
+      }
+    }
+  }
+
+  /**
+   * Adds the totals and mismatched accounts of another partial report to this one
+   * 
+   * @param other report to add to this one
+   * @throws ArithmeticException if a total does not fit into a long
+   */
+  void add(ReconciliationReport other) {
+    transactionsCount += other.transactionsCount;
+    totalOpeningBalance = Math.addExact(totalOpeningBalance, other.totalOpeningBalance);
+    totalDeposits = Math.addExact(totalDeposits, other.totalDeposits);
+    totalWithdrawals = Math.addExact(totalWithdrawals, other.totalWithdrawals);
+    totalBalance = Math.addExact(totalBalance, other.totalBalance);
+    verifiedCount += other.verifiedCount;
+    unverifiedCount += other.unverifiedCount;
+    mismatches.addAll(other.mismatches);
+  }
+
+  /**
+   * Gets the number of accounts in this report
+   * 
+   * @return the number of accounts
+   */
+  public int getAccountsCount() {
+    return accountIDs.length;
+  }
+
+  /**
+   * Gets the ID of the account at the given index of this report
+   * 
+   * @param index index of the account, from 0 to getAccountsCount()-1
+   * @return the account ID
+   * @throws IndexOutOfBoundsException if index is out of range
+   */
+  public String getAccountID(int index) {
+    return accountIDs[index];
+  }
+
+  /**
+   * Gets the net flow, deposits minus withdrawals after the opening balance, of the account at
+   * the given index of this report
+   * 
+   * @param index index of the account, from 0 to getAccountsCount()-1
+   * @return the net flow of the account
+   * @throws IndexOutOfBoundsException if index is out of range
+   */
+  public long getNetFlow(int index) {
+    return netFlows[index];
+  }
+
+  /**
+   * Gets the number of transactions of all accounts, including the opening balances and the
+   * transactions that are not kept
+   * 
+   * @return the number of transactions
+   */
+  public long getTransactionsCount() {
+    return transactionsCount;
+  }
+
+  /**
+   * Gets the sum of the opening balances of all accounts
+   * 
+   * @return the total opening balance
+   */
+  public long getTotalOpeningBalance() {
+    return totalOpeningBalance;
+  }
+
+  /**
+   * Gets the sum of the deposits of all accounts, not counting their opening balances
+   * 
+   * @return the total deposits
+   */
+  public long getTotalDeposits() {
+    return totalDeposits;
+  }
+
+  /**
+   * Gets the sum of the withdrawals of all accounts
+   * 
+   * @return the total withdrawals
+   */
+  public long getTotalWithdrawals() {
+    return totalWithdrawals;
+  }
+
+  /**
+   * Gets the sum of the balances of all accounts
+   * 
+   * @return the total balance
+   */
+  public long getTotalBalance() {
+    return totalBalance;
+  }
+
+  /**
+   * Gets the number of accounts whose balance was checked against every one of their
+   * transactions
+   * 
+   * @return the number of verified accounts
+   */
+  public int getVerifiedCount() {
+    return verifiedCount;
+  }
+
+  /**
+   * Gets the number of accounts whose first transactions are not kept, so that their balance could
+   * not be checked
+   * 
+   * @return the number of unverified accounts
+   */
+  public int getUnverifiedCount() {
+    return unverifiedCount;
+  }
+
+  /**
+   * Gets the IDs of the verified accounts whose balance does not equal their opening balance plus
+   * their net flow
+   * 
+   * @return an unmodifiable list of the account IDs, empty if every account reconciles
+   */
+  public List<String> getMismatchedAccountIDs() {
+    return Collections.unmodifiableList(mismatches);
+  }
+
+  /**
+   * Checks whether every verified account reconciles
+   * 
+   * @return true if no account is mismatched
+   */
+  public boolean isReconciled() {
+    return mismatches.isEmpty();
+  }
+}
@@ -0,0 +1,109 @@
+/////////////////////////////////////////// FILE  HEADER /////////////////////////////////////////////
+//
+// Title: Exceptional Bank Teller
+// Files: BankAccount.java, BankAccountTester.java, BankTeller.java, BankTellerTester.java,
+//        BankTellerBenchmark.java, TransactionLog.java, TransactionLoadResult.java,
+//        ConcurrentTransactionLog.java, ConcurrentBankAccount.java,
+//        ConcurrentBankAccountTester.java, ConcurrentBankTeller.java,
+//        ConcurrentBankTellerTester.java, TransactionStatus.java, TransactionListener.java,
+//        TransactionJournal.java, TransactionJournalTester.java, TransactionSnapshot.java,
+//        ColdAccountStore.java, TieredAccountMap.java, TieredBankTeller.java,
+//        TieredBankTellerTester.java, TransactionBatch.java, TransactionBatchResult.java,
+//        TransactionRecord.java, TransactionEvent.java, TransactionPipeline.java,
+//        TransactionPipelineTester.java, LatencyHistogram.java, TellerMetrics.java,
+//        TellerMetricsTester.java, TransactionFile.java, TransactionFileTester.java,
+//        HighPrecisionBankAccount.java, HighPrecisionBankAccountTester.java, AccountIndex.java,
+//        AccountIndexTester.java, ReconciliationReport.java, ReconciliationTask.java,
+//        TransactionIDCache.java, TransactionIDCacheTester.java, ShardTransport.java,
+//        LocalShardTransport.java, SocketShardTransport.java, ShardServer.java,
+//        ShardedBankTeller.java, ShardedBankTellerTester.java, TransactionParser.java,
+//        TransactionParserTester.java, TellerServer.java, TellerClient.java,
+//        TellerLoadGenerator.java, TellerServerTester.java, TransactionClock.java,
+//        TransactionTimeIndex.java, TransactionHistory.java, TransactionHistoryTester.java,
+//        TellerWorkload.java, TellerReplay.java, TellerReplayResult.java, TellerReplayTester.java
+// This File: ReconciliationTask.java
+// 
+// Name: Benjamin Tarmann
+// Email: btarmann@wisc.edu
+//
+///////////////////////////////////////// 100 COLUMNS WIDE /////////////////////////////////////////
+
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * This class models the fork-join task behind BankTeller.reconcile(). It splits a range of
+ * accounts in halves until a range is small enough, reconciles the accounts of each small range
+ * into a partial report of its own, and adds up the partial reports as the halves are joined, so
+ * the threads never share a counter. Each account is read in one pass over its packed
+ * transactions.
+ * 
+ * @author Benjamin Tarmann
+ */
+class ReconciliationTask extends RecursiveTask<ReconciliationReport> {
+  private static final long serialVersionUID = 1L;
+  static final int THRESHOLD = 1024; // largest number of accounts reconciled without splitting
+
+  private final BankAccount[] accounts;
+  private final String[] accountIDs; // shared by every task, each writing its own range
+  private final long[] netFlows; // shared by every task, each writing its own range
+  private final int from;
+  private final int to;
+
+  /**
+   * Creates a task that reconciles the accounts in a range of an array
+   * 
+   * @param accounts   the accounts
+   * @param accountIDs array the account IDs are written into
+   * @param netFlows   array the net flows are written into
+   * @param from       index of the first account of the range
+   * @param to         index after the last account of the range
+   */
+  ReconciliationTask(BankAccount[] accounts, String[] accountIDs, long[] netFlows, int from,
+      int to) {
+    this.accounts = accounts;
+    this.accountIDs = accountIDs;
+    this.netFlows = netFlows;
+    this.from = from;
+    this.to = to;
+  }
+
+  /**
+   * Reconciles the accounts of the range, splitting it if it holds more than THRESHOLD accounts
+   * 
+   * @return the report of the accounts of the range
+   * @throws ArithmeticException if a balance or a total does not fit into a long
+   */
+  @Override
+  protected ReconciliationReport compute() {
+    if (to - from > THRESHOLD) {
+      int middle = (from + to) >>> 1;
+      ReconciliationTask left =
+          new ReconciliationTask(accounts, accountIDs, netFlows, from, middle);
+      left.fork();
+      ReconciliationReport right =
+          new ReconciliationTask(accounts, accountIDs, netFlows, middle, to).compute();
+      ReconciliationReport report = left.join();
+      report.add(right); // keeps the mismatched accounts in the order of the array
+      return report;
+    }
+
+    ReconciliationReport report = new ReconciliationReport(accountIDs, netFlows);
+    long[] sums = new long[2];
+    for (int i = from; i < to; i++) {
+      BankAccount account = accounts[i];
+      sums[0] = 0;
+      sums[1] = 0;
+      boolean verified = account.hasFullHistory();
+      long openingBalance = 0;
+      if (!verified) {
+        account.sumTransactions(account.getFirstKeptTransaction(), sums);
+      } else if (account.getTransactionsCount() > 0) {
+        // the first transaction of an account that keeps all of them is its initial balance
+        openingBalance = account.getTransactionAmount(0);
+        account.sumTransactions(1, sums);
+      }
+      report.accountReconciled(i, account, sums, openingBalance, verified);
+    }
+    return report;
+  }
+}
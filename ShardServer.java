@@ -0,0 +1,246 @@
+/////////////////////////////////////////// FILE  HEADER /////////////////////////////////////////////
+//
+// Title: Exceptional Bank Teller
+// Files: BankAccount.java, BankAccountTester.java, BankTeller.java, BankTellerTester.java,
+//        BankTellerBenchmark.java, TransactionLog.java, TransactionLoadResult.java,
+//        ConcurrentTransactionLog.java, ConcurrentBankAccount.java,
+//        ConcurrentBankAccountTester.java, ConcurrentBankTeller.java,
+//        ConcurrentBankTellerTester.java, TransactionStatus.java, TransactionListener.java,
+//        TransactionJournal.java, TransactionJournalTester.java, TransactionSnapshot.java,
+//        ColdAccountStore.java, TieredAccountMap.java, TieredBankTeller.java,
+//        TieredBankTellerTester.java, TransactionBatch.java, TransactionBatchResult.java,
+//        TransactionRecord.java, TransactionEvent.java, TransactionPipeline.java,
+//        TransactionPipelineTester.java, LatencyHistogram.java, TellerMetrics.java,
+//        TellerMetricsTester.java, TransactionFile.java, TransactionFileTester.java,
+//        HighPrecisionBankAccount.java, HighPrecisionBankAccountTester.java, AccountIndex.java,
+//        AccountIndexTester.java, ReconciliationReport.java, ReconciliationTask.java,
+//        TransactionIDCache.java, TransactionIDCacheTester.java, ShardTransport.java,
+//        LocalShardTransport.java, SocketShardTransport.java, ShardServer.java,
+//        ShardedBankTeller.java, ShardedBankTellerTester.java, TransactionParser.java,
+//        TransactionParserTester.java, TellerServer.java, TellerClient.java,
+//        TellerLoadGenerator.java, TellerServerTester.java, TransactionClock.java,
+//        TransactionTimeIndex.java, TransactionHistory.java, TransactionHistoryTester.java,
+//        TellerWorkload.java, TellerReplay.java, TellerReplayResult.java, TellerReplayTester.java
+// This File: ShardServer.java
+// 
+// Name: Benjamin Tarmann
+// Email: btarmann@wisc.edu
+//
+///////////////////////////////////////// 100 COLUMNS WIDE /////////////////////////////////////////
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * This class serves a BankTeller as a shard over TCP, for SocketShardTransport clients. Each
+ * connection is served by a thread of its own, which reads requests and answers them in order, so
+ * a client may send several requests before reading their answers.
+ * 
+ * A request is an operation code (1 byte) followed by its arguments: account IDs and transactions
+ * are written as by DataOutputStream.writeUTF(), and accounts as in a snapshot. An answer starts
+ * with OK, NOT_FOUND or FAILED (1 byte). OK is followed by the result of the operation, if it has
+ * one, and FAILED by the message of the exception the BankTeller threw.
+ * 
+ * @author Benjamin Tarmann
+ */
+public class ShardServer implements Closeable {
+  static final byte ADD_ACCOUNT = 1; // account; answers OK
+  static final byte FIND_ACCOUNT = 2; // ID; answers OK and the account, or NOT_FOUND
+  static final byte ADD_TRANSACTION = 3; // ID and transaction; answers OK and the status ordinal
+  static final byte REMOVE_ACCOUNT = 4; // ID; answers OK and the account, or NOT_FOUND
+  static final byte ACCOUNT_IDS = 5; // answers OK, the number of IDs and the IDs
+  static final byte ACCOUNTS_COUNT = 6; // answers OK and the number of accounts
+  static final byte OK = 0;
+  static final byte NOT_FOUND = 1;
+  static final byte FAILED = 2;
+  static final int BUFFER_SIZE = 64 * 1024;
+
+  private final LocalShardTransport shard;
+  private final ServerSocket serverSocket;
+  private final Set<Socket> connections; // open connections, closed when the server is closed
+  private final Thread acceptor;
+
+  /**
+   * Creates a server for a BankTeller that listens on a port of the loopback address
+   * 
+   * @param teller the BankTeller holding the accounts of the shard, which should be a
+   *               ConcurrentBankTeller if more than one client connects
+   * @param port   the port, or 0 for any free port
+   * @throws IOException              if the port cannot be listened on
+   * @throws IllegalArgumentException if teller is null
+   */
+  public ShardServer(BankTeller teller, int port) throws IOException {
+    this(teller, new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+  }
+
+  /**
+   * Creates a server for a BankTeller that listens on an address
+   * 
+   * @param teller  the BankTeller holding the accounts of the shard, which should be a
+   *                ConcurrentBankTeller if more than one client connects
+   * @param address the address and port, where a port of 0 means any free port
+   * @throws IOException              if the address cannot be listened on
+   * @throws IllegalArgumentException if teller is null
+   */
+  public ShardServer(BankTeller teller, InetSocketAddress address) throws IOException {
+    shard = new LocalShardTransport(teller);
+    serverSocket = new ServerSocket();
+    serverSocket.bind(address);
+    connections = ConcurrentHashMap.newKeySet();
+    acceptor = new Thread(this::accept, "shard-server-" + getPort());
+    acceptor.setDaemon(true);
+    acceptor.start();
+  }
+
+  /**
+   * Gets the port this server listens on
+   * 
+   * @return the port
+   */
+  public int getPort() {
+    return serverSocket.getLocalPort();
+  }
+
+  /**
+   * Accepts connections until the server is closed, and starts a thread for each of them
+   */
+  private void accept() {
+    while (!serverSocket.isClosed()) {
+      try {
+        Socket socket = serverSocket.accept();
+        socket.setTcpNoDelay(true);
+        connections.add(socket);
+        Thread connection = new Thread(() -> serve(socket), acceptor.getName() + "-connection");
+        connection.setDaemon(true);
+        connection.start();
+      } catch (IOException e) {
+        continue; // the server was closed, or the connection failed before it was accepted
+      }
+    }
+  }
+
+  /**
+   * Answers the requests of one connection until the client closes it or the server is closed
+   * 
+   * @param socket the connection
+   */
+  private void serve(Socket socket) {
+    try (DataInputStream input =
+        new DataInputStream(new BufferedInputStream(socket.getInputStream(), BUFFER_SIZE));
+        DataOutputStream output =
+            new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), BUFFER_SIZE))) {
+      byte[] id = new byte[TransactionSnapshot.MAX_ID_LENGTH];
+      while (true) {
+        byte operation;
+        try {
+          operation = input.readByte();
+        } catch (EOFException e) {
+          return; // the client closed the connection
+        }
+        answer(operation, input, output, id);
+
+        // answers to pipelined requests are sent together once no request is waiting
+        if (input.available() == 0) {
+          output.flush();
+        }
+      }
+    } catch (IOException e) {
+      return; // the connection failed or the server was closed
+    } finally {
+      connections.remove(socket);
+    }
+  }
+
+  /**
+   * Reads the arguments of one request, applies it to the shard and writes its answer
+   * 
+   * @param operation the operation code of the request
+   * @param input     the stream the arguments are read from
+   * @param output    the stream the answer is written to
+   * @param id        buffer for reading account IDs of accounts
+   * @throws IOException if the request cannot be read or answered, or is not a valid request
+   */
+  private void answer(byte operation, DataInputStream input, DataOutputStream output, byte[] id)
+      throws IOException {
+    try {
+      switch (operation) {
+        case ADD_ACCOUNT:
+          BankAccount account = TransactionSnapshot.readAccount(input, id);
+          if (account == null) {
+            throw new IOException("Account is damaged."); // the rest of the request is unknown
+          }
+          shard.addAccount(account);
+          output.writeByte(OK);
+          break;
+        case FIND_ACCOUNT:
+        case REMOVE_ACCOUNT:
+          String accountID = input.readUTF();
+          BankAccount found = operation == FIND_ACCOUNT ? shard.findAccount(accountID)
+              : shard.removeAccount(accountID);
+          if (found == null) {
+            output.writeByte(NOT_FOUND);
+          } else {
+            output.writeByte(OK);
+            TransactionSnapshot.writeAccount(output, found);
+          }
+          break;
+        case ADD_TRANSACTION:
+          String target = input.readUTF();
+          TransactionStatus status = shard.tryAddTransaction(target, input.readUTF());
+          output.writeByte(OK);
+          output.writeByte(status.ordinal());
+          break;
+        case ACCOUNT_IDS:
+          List<String> ids = shard.getAccountIDs();
+          output.writeByte(OK);
+          output.writeInt(ids.size());
+          for (String listed : ids) {
+            output.writeUTF(listed);
+          }
+          break;
+        case ACCOUNTS_COUNT:
+          int count = shard.getAccountsCount();
+          output.writeByte(OK);
+          output.writeInt(count);
+          break;
+        default:
+          throw new IOException("Unknown operation " + operation + ".");
+      }
+    } catch (RuntimeException e) {
+      // the request was read completely, so the connection can go on with the next one
+      output.writeByte(FAILED);
+      output.writeUTF(String.valueOf(e.getMessage()));
+    }
+  }
+
+  /**
+   * Stops accepting connections, closes the open ones and waits for the server thread to end.
+   * The BankTeller stays usable. Closing a closed server has no effect.
+   * 
+   * @throws IOException if the server socket cannot be closed
+   */
+  @Override
+  public void close() throws IOException {
+    serverSocket.close();
+    for (Socket socket : connections) {
+      socket.close();
+    }
+    try {
+      acceptor.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
@@ -0,0 +1,105 @@
+/////////////////////////////////////////// FILE  HEADER /////////////////////////////////////////////
+//
+// Title: Exceptional Bank Teller
+// Files: BankAccount.java, BankAccountTester.java, BankTeller.java, BankTellerTester.java,
+//        BankTellerBenchmark.java, TransactionLog.java, TransactionLoadResult.java,
+//        ConcurrentTransactionLog.java, ConcurrentBankAccount.java,
+//        ConcurrentBankAccountTester.java, ConcurrentBankTeller.java,
+//        ConcurrentBankTellerTester.java, TransactionStatus.java, TransactionListener.java,
+//        TransactionJournal.java, TransactionJournalTester.java, TransactionSnapshot.java,
+//        ColdAccountStore.java, TieredAccountMap.java, TieredBankTeller.java,
+//        TieredBankTellerTester.java, TransactionBatch.java, TransactionBatchResult.java,
+//        TransactionRecord.java, TransactionEvent.java, TransactionPipeline.java,
+//        TransactionPipelineTester.java, LatencyHistogram.java, TellerMetrics.java,
+//        TellerMetricsTester.java, TransactionFile.java, TransactionFileTester.java,
+//        HighPrecisionBankAccount.java, HighPrecisionBankAccountTester.java, AccountIndex.java,
+//        AccountIndexTester.java, ReconciliationReport.java, ReconciliationTask.java,
+//        TransactionIDCache.java, TransactionIDCacheTester.java, ShardTransport.java,
+//        LocalShardTransport.java, SocketShardTransport.java, ShardServer.java,
+//        ShardedBankTeller.java, ShardedBankTellerTester.java, TransactionParser.java,
+//        TransactionParserTester.java, TellerServer.java, TellerClient.java,
+//        TellerLoadGenerator.java, TellerServerTester.java, TransactionClock.java,
+//        TransactionTimeIndex.java, TransactionHistory.java, TransactionHistoryTester.java,
+//        TellerWorkload.java, TellerReplay.java, TellerReplayResult.java, TellerReplayTester.java
+// This File: ShardTransport.java
+// 
+// Name: Benjamin Tarmann
+// Email: btarmann@wisc.edu
+//
+///////////////////////////////////////// 100 COLUMNS WIDE /////////////////////////////////////////
+
+import java.io.Closeable;
+import java.io.UncheckedIOException;
+import java.util.List;
+
+/**
+ * This interface is implemented by the ways a ShardedBankTeller reaches one of its shards. A shard
+ * is a BankTeller holding some of the accounts: LocalShardTransport calls a BankTeller in the same
+ * JVM directly, and SocketShardTransport sends each call over a socket to a ShardServer, which may
+ * run in another JVM or on another machine.
+ * 
+ * Accounts are named by their ID rather than passed around as objects, since a remote shard keeps
+ * its own objects. A remote shard gets and returns copies of accounts, written as in a snapshot,
+ * so an account moved through it keeps its balance, its number of transactions and its last five
+ * transactions, but not its older history.
+ * 
+ * @author Benjamin Tarmann
+ */
+public interface ShardTransport extends Closeable {
+  /**
+   * Adds an account to the shard
+   * 
+   * @param account the account to add
+   * @throws IllegalArgumentException if account is null
+   * @throws IllegalStateException    if the shard already has an account with the same ID
+   * @throws UncheckedIOException     if the shard cannot be reached
+   */
+  void addAccount(BankAccount account);
+
+  /**
+   * Finds an account of the shard
+   * 
+   * @param id the account ID
+   * @return the account, which is a copy if the shard is remote, or null if the shard has no
+   *         account with this ID
+   * @throws UncheckedIOException if the shard cannot be reached
+   */
+  BankAccount findAccount(String id);
+
+  /**
+   * Applies a transaction to an account of the shard, as BankTeller.tryAddTransaction() does
+   * 
+   * @param id          the account ID
+   * @param transaction the transaction, for example "1 20"
+   * @return APPLIED if the transaction was added, ACCOUNT_NOT_FOUND if the shard has no account
+   *         with this ID, or the reason the transaction was not added
+   * @throws UncheckedIOException if the shard cannot be reached
+   */
+  TransactionStatus tryAddTransaction(String id, String transaction);
+
+  /**
+   * Removes an account from the shard, so that it can be added to another shard
+   * 
+   * @param id the account ID
+   * @return the removed account, which is a copy if the shard is remote, or null if the shard has
+   *         no account with this ID
+   * @throws UncheckedIOException if the shard cannot be reached
+   */
+  BankAccount removeAccount(String id);
+
+  /**
+   * Gets the IDs of the accounts of the shard
+   * 
+   * @return a list of the account IDs, which does not change when accounts are added or removed
+   * @throws UncheckedIOException if the shard cannot be reached
+   */
+  List<String> getAccountIDs();
+
+  /**
+   * Gets the number of accounts of the shard
+   * 
+   * @return the number of accounts
+   * @throws UncheckedIOException if the shard cannot be reached
+   */
+  int getAccountsCount();
+}
@@ -0,0 +1,408 @@
+/////////////////////////////////////////// FILE  HEADER /////////////////////////////////////////////
+//
+// Title: Exceptional Bank Teller
+// Files: BankAccount.java, BankAccountTester.java, BankTeller.java, BankTellerTester.java,
+//        BankTellerBenchmark.java, TransactionLog.java, TransactionLoadResult.java,
+//        ConcurrentTransactionLog.java, ConcurrentBankAccount.java,
+//        ConcurrentBankAccountTester.java, ConcurrentBankTeller.java,
+//        ConcurrentBankTellerTester.java, TransactionStatus.java, TransactionListener.java,
+//        TransactionJournal.java, TransactionJournalTester.java, TransactionSnapshot.java,
+//        ColdAccountStore.java, TieredAccountMap.java, TieredBankTeller.java,
+//        TieredBankTellerTester.java, TransactionBatch.java, TransactionBatchResult.java,
+//        TransactionRecord.java, TransactionEvent.java, TransactionPipeline.java,
+//        TransactionPipelineTester.java, LatencyHistogram.java, TellerMetrics.java,
+//        TellerMetricsTester.java, TransactionFile.java, TransactionFileTester.java,
+//        HighPrecisionBankAccount.java, HighPrecisionBankAccountTester.java, AccountIndex.java,
+//        AccountIndexTester.java, ReconciliationReport.java, ReconciliationTask.java,
+//        TransactionIDCache.java, TransactionIDCacheTester.java, ShardTransport.java,
+//        LocalShardTransport.java, SocketShardTransport.java, ShardServer.java,
+//        ShardedBankTeller.java, ShardedBankTellerTester.java, TransactionParser.java,
+//        TransactionParserTester.java, TellerServer.java, TellerClient.java,
+//        TellerLoadGenerator.java, TellerServerTester.java, TransactionClock.java,
+//        TransactionTimeIndex.java, TransactionHistory.java, TransactionHistoryTester.java,
+//        TellerWorkload.java, TellerReplay.java, TellerReplayResult.java, TellerReplayTester.java
+// This File: ShardedBankTeller.java
+// 
+// Name: Benjamin Tarmann
+// Email: btarmann@wisc.edu
+//
+///////////////////////////////////////// 100 COLUMNS WIDE /////////////////////////////////////////
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.DataFormatException;
+
+/**
+ * This class models a BankTeller whose accounts are split across several shards, each of which is
+ * a BankTeller of its own that may run in this JVM or in another one. An account belongs to the
+ * shard chosen by consistent hashing of its ID: every shard owns many points on a ring of 64-bit
+ * hashes, and an account belongs to the shard of the first point at or after the hash of its ID.
+ * Adding a shard therefore only moves the accounts whose hashes fall just before its points, about
+ * one in every shard count of them, while every other account stays where it is.
+ * 
+ * Shards are reached through a ShardTransport. A shard in this JVM is called directly and keeps
+ * the account objects, while a remote shard is reached through a socket and exchanges copies of
+ * them; see ShardTransport.
+ * 
+ * Many threads may use a ShardedBankTeller at the same time, as long as its shards can be used by
+ * many threads. Each shard has a read-write lock: routing a call to a shard holds its read lock,
+ * so calls to different shards never wait for each other, and adding a shard holds the write lock
+ * of every shard while accounts move, so no call sees an account that is between two shards.
+ * 
+ * @author Benjamin Tarmann
+ */
+public class ShardedBankTeller implements Closeable {
+  private static final int POINTS_PER_SHARD = 128; // points of each shard on the ring
+
+  private final ArrayList<Shard> shards; // every shard, in the order they were added
+  private volatile Ring ring; // the ring of the shards, replaced when a shard is added
+
+  /**
+   * A shard and the lock that keeps its accounts from moving while a call is routed to it
+   */
+  private static final class Shard {
+    private final ShardTransport transport;
+    private final ReentrantReadWriteLock lock;
+    private final int index; // position of the shard in the order shards were added
+
+    /**
+     * Creates a shard
+     * 
+     * @param transport the transport to the shard
+     * @param index     position of the shard in the order shards were added
+     */
+    private Shard(ShardTransport transport, int index) {
+      this.transport = transport;
+      this.lock = new ReentrantReadWriteLock();
+      this.index = index;
+    }
+  }
+
+  /**
+   * The points of every shard on the ring, sorted by their hash. A ring is never changed once it
+   * is created, so threads can route through it without locking it.
+   */
+  private static final class Ring {
+    private final long[] points; // hashes of the points, in ascending order
+    private final Shard[] owners; // shard of each point
+
+    /**
+     * Creates the ring of the given shards
+     * 
+     * @param shards the shards
+     */
+    private Ring(List<Shard> shards) {
+      long[] sorted = new long[shards.size() * POINTS_PER_SHARD];
+      int count = 0;
+      for (Shard shard : shards) {
+        for (int point = 0; point < POINTS_PER_SHARD; point++) {
+          sorted[count++] = mix(((long) shard.index << 32) | point);
+        }
+      }
+      Arrays.sort(sorted);
+
+      // finds the owner of each point again, which is cheap next to moving accounts
+      points = sorted;
+      owners = new Shard[sorted.length];
+      for (Shard shard : shards) {
+        for (int point = 0; point < POINTS_PER_SHARD; point++) {
+          int position = Arrays.binarySearch(points, mix(((long) shard.index << 32) | point));
+          owners[position] = shard;
+        }
+      }
+    }
+
+    /**
+     * Finds the shard an account belongs to
+     * 
+     * @param id the account ID
+     * @return the shard of the first point at or after the hash of the ID, wrapping around
+     */
+    private Shard owner(String id) {
+      int position = Arrays.binarySearch(points, mix(id.hashCode()));
+      if (position < 0) {
+        position = -1 - position;
+        if (position == points.length) {
+          position = 0;
+        }
+      }
+      return owners[position];
+    }
+  }
+
+  /**
+   * Creates a ShardedBankTeller whose accounts are split across the given shards, which should
+   * have no accounts yet
+   * 
+   * @param transports the transports to the shards
+   * @throws IllegalArgumentException if transports is null or empty, or holds null
+   */
+  public ShardedBankTeller(List<ShardTransport> transports) {
+    // checks that there is at least one shard
+    if (transports == null || transports.isEmpty() || transports.contains(null)) {
+      throw new IllegalArgumentException("Sharded teller needs at least one shard.");
+    }
+
+    shards = new ArrayList<Shard>(transports.size());
+    for (ShardTransport transport : transports) {
+      shards.add(new Shard(transport, shards.size()));
+    }
+    ring = new Ring(shards);
+  }
+
+  /**
+   * Mixes the bits of a value so that similar values get unrelated hashes, as the finalizer of
+   * SplitMix64 does
+   * 
+   * @param value the value
+   * @return its 64-bit hash
+   */
+  private static long mix(long value) {
+    long hash = (value ^ (value >>> 30)) * 0xBF58476D1CE4E5B9L;
+    hash = (hash ^ (hash >>> 27)) * 0x94D049BB133111EBL;
+    return hash ^ (hash >>> 31);
+  }
+
+  /**
+   * Finds the shard an account belongs to and holds its read lock, so that the account cannot
+   * move to another shard until the lock is released
+   * 
+   * @param id the account ID
+   * @return the shard, whose read lock the caller must release
+   */
+  private Shard lockOwner(String id) {
+    while (true) {
+      Ring current = ring;
+      Shard shard = current.owner(id);
+      shard.lock.readLock().lock();
+      if (ring == current) {
+        return shard;
+      }
+      shard.lock.readLock().unlock(); // a shard was added meanwhile, so the owner may differ
+    }
+  }
+
+  /**
+   * Adds an account to the shard it belongs to
+   * 
+   * @param newAccount a new account to add
+   * @throws IllegalArgumentException if newAccount is null
+   * @throws IllegalStateException    if the id of newAccount is equal to an existing id
+   * @throws UncheckedIOException     if the shard cannot be reached
+   */
+  public void addBankAccount(BankAccount newAccount) {
+    // checks that newAccount is not null
+    if (newAccount == null) {
+      throw new IllegalArgumentException("New account is null.");
+    }
+
+    Shard shard = lockOwner(newAccount.getID());
+    try {
+      shard.transport.addAccount(newAccount);
+    } finally {
+      shard.lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Returns the bank account that has exactly the provided identifier, from the shard it belongs
+   * to. The account is a copy if the shard is remote.
+   * 
+   * @param id a string that represents an identifier of a bank account
+   * @return the account that matches the id parameter
+   * @throws NoSuchElementException if the account is not found with the given id parameter
+   * @throws UncheckedIOException   if the shard cannot be reached
+   */
+  public BankAccount findAccount(String id) {
+    BankAccount account;
+    Shard shard = lockOwner(id);
+    try {
+      account = shard.transport.findAccount(id);
+    } finally {
+      shard.lock.readLock().unlock();
+    }
+
+    // throws exception if no account was found with the id
+    if (account == null) {
+      throw new NoSuchElementException("No account could be found with the given ID.");
+    }
+    return account;
+  }
+
+  /**
+   * Adds a transaction to an account like BankTeller.addTransaction() does, on the shard the
+   * account belongs to
+   * 
+   * @param id          ID of the account
+   * @param transaction to add
+   * @throws DataFormatException    if the format of the transaction is not correct
+   * @throws NoSuchElementException if the account is not found with the given id parameter
+   * @throws UncheckedIOException   if the shard cannot be reached
+   */
+  public void addTransaction(String id, String transaction) throws DataFormatException {
+    TransactionStatus status = tryAddTransaction(id, transaction);
+    if (status.isMalformed()) {
+      throw new DataFormatException(status.getMessage());
+    } else if (status == TransactionStatus.ACCOUNT_NOT_FOUND) {
+      throw new NoSuchElementException(status.getMessage());
+    }
+    BankTeller.throwUnlessApplied(status);
+  }
+
+  /**
+   * Adds a transaction to an account like BankTeller.tryAddTransaction() does, on the shard the
+   * account belongs to
+   * 
+   * @param id          ID of the account
+   * @param transaction to add
+   * @return APPLIED if the transaction was added, ACCOUNT_NOT_FOUND if there is no account with
+   *         this ID, or the reason the transaction was not added
+   * @throws UncheckedIOException if the shard cannot be reached
+   */
+  public TransactionStatus tryAddTransaction(String id, String transaction) {
+    Shard shard = lockOwner(id);
+    try {
+      return shard.transport.tryAddTransaction(id, transaction);
+    } finally {
+      shard.lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Adds a shard and moves the accounts that now belong to it from the other shards. Calls wait
+   * while the accounts move. If an account cannot be moved, the accounts moved so far are moved
+   * back, so every account stays on the shard it belonged to before.
+   * 
+   * @param transport the transport to the new shard, which should have no accounts yet
+   * @return the number of accounts moved to the new shard
+   * @throws IllegalArgumentException if transport is null
+   * @throws IllegalStateException    if a shard has an open journal, from which accounts cannot be
+   *                                  removed
+   * @throws UncheckedIOException     if a shard cannot be reached
+   */
+  public synchronized int addShard(ShardTransport transport) {
+    // checks that transport is not null
+    if (transport == null) {
+      throw new IllegalArgumentException("Shard transport is null.");
+    }
+
+    Shard added = new Shard(transport, shards.size());
+    ArrayList<Shard> newShards = new ArrayList<Shard>(shards);
+    newShards.add(added);
+    Ring newRing = new Ring(newShards);
+
+    for (Shard shard : shards) {
+      shard.lock.writeLock().lock();
+    }
+    ArrayList<Shard> movedFrom = new ArrayList<Shard>(); // shard each moved account came from
+    ArrayList<String> movedIDs = new ArrayList<String>();
+    try {
+      for (Shard shard : shards) {
+        for (String id : shard.transport.getAccountIDs()) {
+          if (newRing.owner(id) == added) {
+            move(id, shard, added);
+            movedFrom.add(shard);
+            movedIDs.add(id);
+          }
+        }
+      }
+      shards.add(added);
+      ring = newRing;
+      return movedIDs.size();
+    } catch (RuntimeException e) {
+      // moves the accounts back in the opposite order, as far as the shards allow
+      for (int i = movedIDs.size() - 1; i >= 0; i--) {
+        move(movedIDs.get(i), added, movedFrom.get(i));
+      }
+      throw e;
+    } finally {
+      for (Shard shard : shards) {
+        if (shard != added) {
+          shard.lock.writeLock().unlock();
+        }
+      }
+    }
+  }
+
+  /**
+   * Moves an account from one shard to another. If the account cannot be added to the other
+   * shard, it is added back to the shard it came from.
+   * 
+   * @param id   the account ID
+   * @param from the shard the account is on
+   * @param to   the shard the account moves to
+   * @throws RuntimeException if the account cannot be moved
+   */
+  private static void move(String id, Shard from, Shard to) {
+    BankAccount account = from.transport.removeAccount(id);
+    if (account == null) {
+      return; // the account was removed from the shard directly
+    }
+    try {
+      to.transport.addAccount(account);
+    } catch (RuntimeException e) {
+      from.transport.addAccount(account);
+      throw e;
+    }
+  }
+
+  /**
+   * Gets the position of the shard an account belongs to, in the order the shards were added.
+   * A caller running next to one of the shards can use it to handle its own accounts locally.
+   * 
+   * @param id the account ID
+   * @return the index of the shard, from 0 to getShardCount() - 1
+   */
+  public int getShardIndex(String id) {
+    return ring.owner(id).index;
+  }
+
+  /**
+   * Gets the number of shards
+   * 
+   * @return the number of shards
+   */
+  public synchronized int getShardCount() {
+    return shards.size();
+  }
+
+  /**
+   * Gets the number of accounts of all shards
+   * 
+   * @return the number of accounts
+   * @throws UncheckedIOException if a shard cannot be reached
+   */
+  public synchronized long getAccountsCount() {
+    long count = 0;
+    for (Shard shard : shards) {
+      count += shard.transport.getAccountsCount();
+    }
+    return count;
+  }
+
+  /**
+   * Closes the transports to every shard
+   * 
+   * @throws IOException if a transport cannot be closed; the other transports are still closed
+   */
+  @Override
+  public synchronized void close() throws IOException {
+    IOException failure = null;
+    for (Shard shard : shards) {
+      try {
+        shard.transport.close();
+      } catch (IOException e) {
+        failure = failure == null ? e : failure;
+      }
+    }
+    if (failure != null) {
+      throw failure;
+    }
+  }
+}
@@ -0,0 +1,350 @@
+/////////////////////////////////////////// FILE  HEADER /////////////////////////////////////////////
+//
+// Title: Exceptional Bank Teller
+// Files: BankAccount.java, BankAccountTester.java, BankTeller.java, BankTellerTester.java,
+//        BankTellerBenchmark.java, TransactionLog.java, TransactionLoadResult.java,
+//        ConcurrentTransactionLog.java, ConcurrentBankAccount.java,
+//        ConcurrentBankAccountTester.java, ConcurrentBankTeller.java,
+//        ConcurrentBankTellerTester.java, TransactionStatus.java, TransactionListener.java,
+//        TransactionJournal.java, TransactionJournalTester.java, TransactionSnapshot.java,
+//        ColdAccountStore.java, TieredAccountMap.java, TieredBankTeller.java,
+//        TieredBankTellerTester.java, TransactionBatch.java, TransactionBatchResult.java,
+//        TransactionRecord.java, TransactionEvent.java, TransactionPipeline.java,
+//        TransactionPipelineTester.java, LatencyHistogram.java, TellerMetrics.java,
+//        TellerMetricsTester.java, TransactionFile.java, TransactionFileTester.java,
+//        HighPrecisionBankAccount.java, HighPrecisionBankAccountTester.java, AccountIndex.java,
+//        AccountIndexTester.java, ReconciliationReport.java, ReconciliationTask.java,
+//        TransactionIDCache.java, TransactionIDCacheTester.java, ShardTransport.java,
+//        LocalShardTransport.java, SocketShardTransport.java, ShardServer.java,
+//        ShardedBankTeller.java, ShardedBankTellerTester.java, TransactionParser.java,
+//        TransactionParserTester.java, TellerServer.java, TellerClient.java,
+//        TellerLoadGenerator.java, TellerServerTester.java, TransactionClock.java,
+//        TransactionTimeIndex.java, TransactionHistory.java, TransactionHistoryTester.java,
+//        TellerWorkload.java, TellerReplay.java, TellerReplayResult.java, TellerReplayTester.java
+// This File: ShardedBankTellerTester.java
+// 
+// Name: Benjamin Tarmann
+// Email: btarmann@wisc.edu
+//
+///////////////////////////////////////// 100 COLUMNS WIDE /////////////////////////////////////////
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.zip.DataFormatException;
+
+/**
+ * This class represents a tester for the ShardedBankTeller class and its transports
+ * 
+ * @author Benjamin Tarmann
+ */
+public class ShardedBankTellerTester {
+
+  /**
+   * Creates transports to new BankTellers in this JVM
+   * 
+   * @param tellers array that the BankTellers are stored in, one per transport
+   * @return the transports
+   */
+  private static List<ShardTransport> createLocalShards(BankTeller[] tellers) {
+    ArrayList<ShardTransport> transports = new ArrayList<ShardTransport>();
+    for (int i = 0; i < tellers.length; i++) {
+      tellers[i] = new ConcurrentBankTeller();
+      transports.add(new LocalShardTransport(tellers[i]));
+    }
+    return transports;
+  }
+
+  /**
+   * Adds 2,000 accounts to a ShardedBankTeller with 4 shards in this JVM. Checks that the
+   * accounts are spread evenly, that each account is on the shard getShardIndex() names, and that
+   * transactions reach their accounts.
+   * 
+   * @return true when this test verifies a correct functionality, and false otherwise.
+   */
+  public static boolean testShardedBankTellerRouting() {
+    BankTeller[] tellers = new BankTeller[4];
+    ShardedBankTeller teller = new ShardedBankTeller(createLocalShards(tellers));
+    for (int i = 0; i < 2000; i++) {
+      teller.addBankAccount(new BankAccount("ACC" + i, 100));
+    }
+    for (BankTeller shard : tellers) {
+      if (shard.getAccountsCount() < 300 || shard.getAccountsCount() > 700) {
+        return false;
+      }
+    }
+
+    try {
+      for (int i = 0; i < 2000; i++) {
+        String id = "ACC" + i;
+        BankAccount account = tellers[teller.getShardIndex(id)].findAccount(id);
+        teller.addTransaction(id, "1 " + i);
+        if (teller.findAccount(id) != account || account.getBalance() != 100 + i) {
+          return false;
+        }
+      }
+    } catch (DataFormatException | NoSuchElementException e) {
+      return false;
+    }
+
+    // rejected transactions are reported like BankTeller reports them
+    if (teller.tryAddTransaction("ACC1", "0 1000") != TransactionStatus.INSUFFICIENT_FUNDS
+        || teller.tryAddTransaction("ACC1", "2 10") != TransactionStatus.INVALID_TYPE
+        || teller.tryAddTransaction("NONE", "1 10") != TransactionStatus.ACCOUNT_NOT_FOUND
+        || teller.getAccountsCount() != 2000 || teller.getShardCount() != 4) {
+      return false;
+    }
+    try {
+      teller.addTransaction("ACC1", "1 1x");
+      return false;
+    } catch (DataFormatException e) {
+      // expected: the transaction is malformed
+    }
+    try {
+      teller.addTransaction("NONE", "1 10");
+      return false;
+    } catch (NoSuchElementException | DataFormatException e) {
+      // expected: the account does not exist
+    }
+    try {
+      teller.addBankAccount(new BankAccount("ACC1", 10));
+      return false;
+    } catch (IllegalStateException e) {
+      // expected: the account exists on its shard
+    }
+    return true;
+  }
+
+  /**
+   * Adds a fourth shard to a ShardedBankTeller with 3,000 accounts on 3 shards. Checks that only
+   * accounts that now belong to the new shard move, that about a quarter of them do, and that
+   * every account keeps its balance.
+   * 
+   * @return true when this test verifies a correct functionality, and false otherwise.
+   */
+  public static boolean testShardedBankTellerRebalance() {
+    BankTeller[] tellers = new BankTeller[4];
+    List<ShardTransport> transports = createLocalShards(tellers);
+    ShardedBankTeller teller = new ShardedBankTeller(transports.subList(0, 3));
+    int[] shardBefore = new int[3000];
+    for (int i = 0; i < 3000; i++) {
+      teller.addBankAccount(new BankAccount("ACC" + i, 10 * (i + 1)));
+      shardBefore[i] = teller.getShardIndex("ACC" + i);
+    }
+
+    int moved = teller.addShard(transports.get(3));
+    if (moved < 500 || moved > 1000 || tellers[3].getAccountsCount() != moved
+        || teller.getAccountsCount() != 3000 || teller.getShardCount() != 4) {
+      return false;
+    }
+    for (int i = 0; i < 3000; i++) {
+      String id = "ACC" + i;
+      int shard = teller.getShardIndex(id);
+      if ((shard != 3 && shard != shardBefore[i])
+          || tellers[shard].findAccount(id).getBalance() != 10 * (i + 1)) {
+        return false;
+      }
+    }
+    return teller.tryAddTransaction("ACC7", "1 10") == TransactionStatus.APPLIED
+        && teller.findAccount("ACC7").getBalance() == 90;
+  }
+
+  /**
+   * Splits accounts across a shard in this JVM and two shards served over loopback sockets, then
+   * adds another socket shard. Checks that accounts, transactions and failures cross the sockets,
+   * and that accounts moved through a socket keep their balance and their recent transactions.
+   * 
+   * @return true when this test verifies a correct functionality, and false otherwise.
+   */
+  public static boolean testShardedBankTellerSocket() {
+    BankTeller[] tellers = new BankTeller[4];
+    ShardServer[] servers = new ShardServer[3];
+    ArrayList<ShardTransport> transports = new ArrayList<ShardTransport>();
+    try {
+      tellers[0] = new ConcurrentBankTeller();
+      transports.add(new LocalShardTransport(tellers[0]));
+      for (int i = 0; i < servers.length; i++) {
+        tellers[i + 1] = new ConcurrentBankTeller();
+        servers[i] = new ShardServer(tellers[i + 1], 0);
+        transports.add(new SocketShardTransport("localhost", servers[i].getPort()));
+      }
+
+      try (ShardedBankTeller teller = new ShardedBankTeller(transports.subList(0, 3))) {
+        for (int i = 0; i < 300; i++) {
+          BankAccount account = new BankAccount("ACC" + i, 100);
+          account.deposit(20);
+          account.withdraw(10);
+          teller.addBankAccount(account);
+          teller.addTransaction("ACC" + i, "1 " + (i + 1));
+        }
+        if (tellers[1].getAccountsCount() == 0 || tellers[2].getAccountsCount() == 0
+            || teller.getAccountsCount() != 300) {
+          return false;
+        }
+
+        teller.addShard(transports.get(3));
+        if (tellers[3].getAccountsCount() == 0 || teller.getAccountsCount() != 300) {
+          return false;
+        }
+        int[] amounts = new int[5];
+        boolean[] deposits = new boolean[5];
+        for (int i = 0; i < 300; i++) {
+          BankAccount account = teller.findAccount("ACC" + i);
+          if (account.getBalance() != 111 + i || account.getTransactionsCount() != 4
+              || account.getMostRecentTransactions(amounts, deposits) != 4
+              || !Arrays.equals(amounts, new int[] {i + 1, 10, 20, 100, 0})) {
+            return false;
+          }
+        }
+
+        // exceptions of a remote shard reach the caller
+        String remoteID = "ACC0";
+        for (int i = 0; teller.getShardIndex(remoteID) == 0; i++) {
+          remoteID = "ACC" + i;
+        }
+        try {
+          teller.addBankAccount(new BankAccount(remoteID, 10));
+          return false;
+        } catch (IllegalStateException e) {
+          // expected: the account exists on its shard
+        }
+        return teller.tryAddTransaction(remoteID, "0 10000")
+            == TransactionStatus.INSUFFICIENT_FUNDS
+            && teller.tryAddTransaction("NONE", "1 10") == TransactionStatus.ACCOUNT_NOT_FOUND;
+      }
+    } catch (IOException | DataFormatException | NoSuchElementException e) {
+      return false;
+    } finally {
+      for (ShardServer server : servers) {
+        try {
+          if (server != null) {
+            server.close();
+          }
+        } catch (IOException e) {
+          return false;
+        }
+      }
+    }
+  }
+
+  /**
+   * Deposits to 100 accounts from 8 threads while two shards are added, and checks that no
+   * deposit is lost or applied twice while accounts move
+   * 
+   * @return true when this test verifies a correct functionality, and false otherwise.
+   */
+  public static boolean testShardedBankTellerConcurrent() {
+    BankTeller[] tellers = new BankTeller[4];
+    List<ShardTransport> transports = createLocalShards(tellers);
+    ShardedBankTeller teller = new ShardedBankTeller(transports.subList(0, 2));
+    for (int i = 0; i < 100; i++) {
+      teller.addBankAccount(new ConcurrentBankAccount("ACC" + i, 10));
+    }
+
+    Thread[] threads = new Thread[8];
+    boolean[] failed = new boolean[1];
+    for (int t = 0; t < threads.length; t++) {
+      threads[t] = new Thread(() -> {
+        for (int i = 0; i < 20_000; i++) {
+          if (teller.tryAddTransaction("ACC" + i % 100, "1 1") != TransactionStatus.APPLIED) {
+            failed[0] = true;
+          }
+        }
+      });
+      threads[t].start();
+    }
+    teller.addShard(transports.get(2));
+    teller.addShard(transports.get(3));
+    try {
+      for (Thread thread : threads) {
+        thread.join();
+      }
+    } catch (InterruptedException e) {
+      return false;
+    }
+
+    for (int i = 0; i < 100; i++) {
+      if (teller.findAccount("ACC" + i).getBalance() != 10 + 8 * 200) {
+        return false;
+      }
+    }
+    return !failed[0] && teller.getAccountsCount() == 100;
+  }
+
+  /**
+   * Checks whether a ShardedBankTeller rejects missing shards and accounts
+   * 
+   * @return true when this test verifies a correct functionality, and false otherwise.
+   */
+  public static boolean testShardedBankTellerInvalidArguments() {
+    List<List<ShardTransport>> invalid = new ArrayList<List<ShardTransport>>();
+    invalid.add(null);
+    invalid.add(new ArrayList<ShardTransport>());
+    invalid.add(Arrays.asList(new LocalShardTransport(new BankTeller()), null));
+    for (List<ShardTransport> transports : invalid) {
+      try {
+        new ShardedBankTeller(transports);
+        return false;
+      } catch (IllegalArgumentException e) {
+        // expected: a shard is missing
+      }
+    }
+
+    ShardedBankTeller teller =
+        new ShardedBankTeller(Arrays.asList(new LocalShardTransport(new BankTeller())));
+    try {
+      teller.addBankAccount(null);
+      return false;
+    } catch (IllegalArgumentException e) {
+      // expected: the account is missing
+    }
+    try {
+      teller.addShard(null);
+      return false;
+    } catch (IllegalArgumentException e) {
+      // expected: the shard is missing
+    }
+    try {
+      teller.findAccount("ACC0");
+      return false;
+    } catch (NoSuchElementException e) {
+      // expected: there are no accounts
+    }
+    try {
+      new LocalShardTransport(null);
+      return false;
+    } catch (IllegalArgumentException e) {
+      return true; // expected: the teller is missing
+    }
+  }
+
+  /**
+   * Calls the test methods defined in this ShardedBankTellerTester class
+   * 
+   * @param args
+   */
+  public static void main(String[] args) {
+    if (testShardedBankTellerRouting() == false) {
+      System.out.println("testShardedBankTellerRouting failed.");
+    }
+
+    if (testShardedBankTellerRebalance() == false) {
+      System.out.println("testShardedBankTellerRebalance failed.");
+    }
+
+    if (testShardedBankTellerSocket() == false) {
+      System.out.println("testShardedBankTellerSocket failed.");
+    }
+
+    if (testShardedBankTellerConcurrent() == false) {
+      System.out.println("testShardedBankTellerConcurrent failed.");
+    }
+
+    if (testShardedBankTellerInvalidArguments() == false) {
+      System.out.println("testShardedBankTellerInvalidArguments failed.");
+    }
+  }
+
+}
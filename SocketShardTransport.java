@@ -0,0 +1,237 @@
+/////////////////////////////////////////// FILE  HEADER /////////////////////////////////////////////
+//
+// Title: Exceptional Bank Teller
+// Files: BankAccount.java, BankAccountTester.java, BankTeller.java, BankTellerTester.java,
+//        BankTellerBenchmark.java, TransactionLog.java, TransactionLoadResult.java,
+//        ConcurrentTransactionLog.java, ConcurrentBankAccount.java,
+//        ConcurrentBankAccountTester.java, ConcurrentBankTeller.java,
+//        ConcurrentBankTellerTester.java, TransactionStatus.java, TransactionListener.java,
+//        TransactionJournal.java, TransactionJournalTester.java, TransactionSnapshot.java,
+//        ColdAccountStore.java, TieredAccountMap.java, TieredBankTeller.java,
+//        TieredBankTellerTester.java, TransactionBatch.java, TransactionBatchResult.java,
+//        TransactionRecord.java, TransactionEvent.java, TransactionPipeline.java,
+//        TransactionPipelineTester.java, LatencyHistogram.java, TellerMetrics.java,
+//        TellerMetricsTester.java, TransactionFile.java, TransactionFileTester.java,
+//        HighPrecisionBankAccount.java, HighPrecisionBankAccountTester.java, AccountIndex.java,
+//        AccountIndexTester.java, ReconciliationReport.java, ReconciliationTask.java,
+//        TransactionIDCache.java, TransactionIDCacheTester.java, ShardTransport.java,
+//        LocalShardTransport.java, SocketShardTransport.java, ShardServer.java,
+//        ShardedBankTeller.java, ShardedBankTellerTester.java, TransactionParser.java,
+//        TransactionParserTester.java, TellerServer.java, TellerClient.java,
+//        TellerLoadGenerator.java, TellerServerTester.java, TransactionClock.java,
+//        TransactionTimeIndex.java, TransactionHistory.java, TransactionHistoryTester.java,
+//        TellerWorkload.java, TellerReplay.java, TellerReplayResult.java, TellerReplayTester.java
+// This File: SocketShardTransport.java
+// 
+// Name: Benjamin Tarmann
+// Email: btarmann@wisc.edu
+//
+///////////////////////////////////////// 100 COLUMNS WIDE /////////////////////////////////////////
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class models a shard of a ShardedBankTeller that is served by a ShardServer, reached over a
+ * TCP connection. Each call sends one request and waits for its answer, in the protocol described
+ * in ShardServer. Calls from several threads share the connection and are sent one at a time.
+ * 
+ * Accounts are sent and received as copies, as described in ShardTransport. If the connection
+ * fails, the call throws an UncheckedIOException and the transport cannot be used any more.
+ * 
+ * @author Benjamin Tarmann
+ */
+public class SocketShardTransport implements ShardTransport {
+  private static final TransactionStatus[] STATUSES = TransactionStatus.values();
+
+  private final Socket socket;
+  private final DataInputStream input;
+  private final DataOutputStream output;
+  private final byte[] idBuffer; // buffer for reading the IDs of accounts
+
+  /**
+   * Connects to a ShardServer
+   * 
+   * @param host the host name or address of the server
+   * @param port the port of the server
+   * @throws IOException if the connection cannot be made
+   */
+  public SocketShardTransport(String host, int port) throws IOException {
+    socket = new Socket(host, port);
+    socket.setTcpNoDelay(true);
+    input = new DataInputStream(
+        new BufferedInputStream(socket.getInputStream(), ShardServer.BUFFER_SIZE));
+    output = new DataOutputStream(
+        new BufferedOutputStream(socket.getOutputStream(), ShardServer.BUFFER_SIZE));
+    idBuffer = new byte[TransactionSnapshot.MAX_ID_LENGTH];
+  }
+
+  /**
+   * Sends a copy of an account to the shard
+   * 
+   * @param account the account to add
+   * @throws IllegalArgumentException if account is null
+   * @throws IllegalStateException    if the shard already has an account with the same ID
+   * @throws UncheckedIOException     if the shard cannot be reached
+   */
+  @Override
+  public synchronized void addAccount(BankAccount account) {
+    // checks that account is not null
+    if (account == null) {
+      throw new IllegalArgumentException("New account is null.");
+    }
+
+    try {
+      output.writeByte(ShardServer.ADD_ACCOUNT);
+      TransactionSnapshot.writeAccount(output, account);
+      readAnswer();
+    } catch (IOException e) {
+      throw new UncheckedIOException("Shard could not be reached.", e);
+    }
+  }
+
+  /**
+   * Gets a copy of an account of the shard. Changes to the copy are not sent to the shard.
+   * 
+   * @param id the account ID
+   * @return a copy of the account, or null if the shard has no account with this ID
+   * @throws UncheckedIOException if the shard cannot be reached
+   */
+  @Override
+  public synchronized BankAccount findAccount(String id) {
+    return requestAccount(ShardServer.FIND_ACCOUNT, id);
+  }
+
+  /**
+   * Sends a transaction to an account of the shard
+   * 
+   * @param id          the account ID
+   * @param transaction the transaction, for example "1 20"
+   * @return APPLIED if the transaction was added, ACCOUNT_NOT_FOUND if the shard has no account
+   *         with this ID, or the reason the transaction was not added
+   * @throws UncheckedIOException if the shard cannot be reached
+   */
+  @Override
+  public synchronized TransactionStatus tryAddTransaction(String id, String transaction) {
+    try {
+      output.writeByte(ShardServer.ADD_TRANSACTION);
+      output.writeUTF(id);
+      output.writeUTF(transaction);
+      readAnswer();
+      return STATUSES[input.readUnsignedByte()];
+    } catch (IOException e) {
+      throw new UncheckedIOException("Shard could not be reached.", e);
+    }
+  }
+
+  /**
+   * Removes an account from the shard and gets a copy of it
+   * 
+   * @param id the account ID
+   * @return a copy of the removed account, or null if the shard has no account with this ID
+   * @throws IllegalStateException if the BankTeller of the shard has an open journal
+   * @throws UncheckedIOException  if the shard cannot be reached
+   */
+  @Override
+  public synchronized BankAccount removeAccount(String id) {
+    return requestAccount(ShardServer.REMOVE_ACCOUNT, id);
+  }
+
+  /**
+   * Gets the IDs of the accounts of the shard
+   * 
+   * @return a list of the account IDs
+   * @throws UncheckedIOException if the shard cannot be reached
+   */
+  @Override
+  public synchronized List<String> getAccountIDs() {
+    try {
+      output.writeByte(ShardServer.ACCOUNT_IDS);
+      readAnswer();
+      int count = input.readInt();
+      ArrayList<String> ids = new ArrayList<String>(count);
+      for (int i = 0; i < count; i++) {
+        ids.add(input.readUTF());
+      }
+      return ids;
+    } catch (IOException e) {
+      throw new UncheckedIOException("Shard could not be reached.", e);
+    }
+  }
+
+  /**
+   * Gets the number of accounts of the shard
+   * 
+   * @return the number of accounts
+   * @throws UncheckedIOException if the shard cannot be reached
+   */
+  @Override
+  public synchronized int getAccountsCount() {
+    try {
+      output.writeByte(ShardServer.ACCOUNTS_COUNT);
+      readAnswer();
+      return input.readInt();
+    } catch (IOException e) {
+      throw new UncheckedIOException("Shard could not be reached.", e);
+    }
+  }
+
+  /**
+   * Sends a request about one account whose answer is the account, if it is found
+   * 
+   * @param operation FIND_ACCOUNT or REMOVE_ACCOUNT
+   * @param accountID the account ID
+   * @return a copy of the account, or null if the shard has no account with this ID
+   * @throws UncheckedIOException if the shard cannot be reached
+   */
+  private BankAccount requestAccount(byte operation, String accountID) {
+    try {
+      output.writeByte(operation);
+      output.writeUTF(accountID);
+      if (!readAnswer()) {
+        return null;
+      }
+      BankAccount account = TransactionSnapshot.readAccount(input, idBuffer);
+      if (account == null) {
+        throw new IOException("Shard sent a damaged account.");
+      }
+      return account;
+    } catch (IOException e) {
+      throw new UncheckedIOException("Shard could not be reached.", e);
+    }
+  }
+
+  /**
+   * Sends the request written so far and reads the start of its answer
+   * 
+   * @return true if the answer is OK, false if it is NOT_FOUND
+   * @throws IOException           if the request cannot be sent or the answer cannot be read
+   * @throws IllegalStateException if the BankTeller of the shard threw an exception for the
+   *                               request, with the message of that exception
+   */
+  private boolean readAnswer() throws IOException {
+    output.flush();
+    byte answer = input.readByte();
+    if (answer == ShardServer.FAILED) {
+      throw new IllegalStateException(input.readUTF());
+    }
+    return answer == ShardServer.OK;
+  }
+
+  /**
+   * Closes the connection to the shard. Closing a closed transport has no effect.
+   * 
+   * @throws IOException if the connection cannot be closed
+   */
+  @Override
+  public void close() throws IOException {
+    socket.close();
+  }
+}
@@ -0,0 +1,260 @@
+/////////////////////////////////////////// FILE  HEADER /////////////////////////////////////////////
+//
+// Title: Exceptional Bank Teller
+// Files: BankAccount.java, BankAccountTester.java, BankTeller.java, BankTellerTester.java,
+//        BankTellerBenchmark.java, TransactionLog.java, TransactionLoadResult.java,
+//        ConcurrentTransactionLog.java, ConcurrentBankAccount.java,
+//        ConcurrentBankAccountTester.java, ConcurrentBankTeller.java,
+//        ConcurrentBankTellerTester.java, TransactionStatus.java, TransactionListener.java,
+//        TransactionJournal.java, TransactionJournalTester.java, TransactionSnapshot.java,
+//        ColdAccountStore.java, TieredAccountMap.java, TieredBankTeller.java,
+//        TieredBankTellerTester.java, TransactionBatch.java, TransactionBatchResult.java,
+//        TransactionRecord.java, TransactionEvent.java, TransactionPipeline.java,
+//        TransactionPipelineTester.java, LatencyHistogram.java, TellerMetrics.java,
+//        TellerMetricsTester.java, TransactionFile.java, TransactionFileTester.java,
+//        HighPrecisionBankAccount.java, HighPrecisionBankAccountTester.java, AccountIndex.java,
+//        AccountIndexTester.java, ReconciliationReport.java, ReconciliationTask.java,
+//        TransactionIDCache.java, TransactionIDCacheTester.java, ShardTransport.java,
+//        LocalShardTransport.java, SocketShardTransport.java, ShardServer.java,
+//        ShardedBankTeller.java, ShardedBankTellerTester.java, TransactionParser.java,
+//        TransactionParserTester.java, TellerServer.java, TellerClient.java,
+//        TellerLoadGenerator.java, TellerServerTester.java, TransactionClock.java,
+//        TransactionTimeIndex.java, TransactionHistory.java, TransactionHistoryTester.java,
+//        TellerWorkload.java, TellerReplay.java, TellerReplayResult.java, TellerReplayTester.java
+// This File: TellerClient.java
+// 
+// Name: Benjamin Tarmann
+// Email: btarmann@wisc.edu
+//
+///////////////////////////////////////// 100 COLUMNS WIDE /////////////////////////////////////////
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.Socket;
+import java.util.NoSuchElementException;
+
+/**
+ * This class models a connection to a TellerServer, through which the accounts of the server's
+ * BankTeller are read and changed as if the BankTeller were in this JVM. Each call sends its
+ * requests and waits for their answers, in the protocol described in TellerServer. Calls from
+ * several threads share the connection and are sent one at a time, so each thread that needs its
+ * own share of the server's throughput should have a client of its own.
+ * 
+ * applyBatch() pipelines its records: they are sent without waiting for each answer, and the server
+ * applies the records that arrive together as one batch. If the connection fails, the call throws
+ * an UncheckedIOException and the client cannot be used any more.
+ * 
+ * @author Benjamin Tarmann
+ */
+public class TellerClient implements Closeable {
+  private static final TransactionStatus[] STATUSES = TransactionStatus.values();
+
+  private final Socket socket;
+  private final DataInputStream input;
+  private final DataOutputStream output;
+  private final byte[] idBuffer; // buffer for reading the IDs of accounts
+
+  /**
+   * Connects to a TellerServer
+   * 
+   * @param host the host name or address of the server
+   * @param port the port of the server
+   * @throws IOException if the connection cannot be made
+   */
+  public TellerClient(String host, int port) throws IOException {
+    socket = new Socket(host, port);
+    socket.setTcpNoDelay(true);
+    input = new DataInputStream(
+        new BufferedInputStream(socket.getInputStream(), TellerServer.BUFFER_SIZE));
+    output = new DataOutputStream(
+        new BufferedOutputStream(socket.getOutputStream(), TellerServer.BUFFER_SIZE));
+    idBuffer = new byte[TransactionSnapshot.MAX_ID_LENGTH];
+  }
+
+  /**
+   * Gets a copy of an account of the server. Changes to the copy are not sent to the server.
+   * 
+   * @param id the account ID
+   * @return a copy of the account
+   * @throws NoSuchElementException if the server has no account with this ID
+   * @throws UncheckedIOException   if the server cannot be reached
+   */
+  public synchronized BankAccount findAccount(String id) throws NoSuchElementException {
+    try {
+      request(TellerServer.FIND_ACCOUNT, id);
+      BankAccount account = TransactionSnapshot.readAccount(input, idBuffer);
+      if (account == null) {
+        throw new IOException("Server sent a damaged account.");
+      }
+      return account;
+    } catch (IOException e) {
+      throw new UncheckedIOException("Server could not be reached.", e);
+    }
+  }
+
+  /**
+   * Gets the balance of an account of the server
+   * 
+   * @param id the account ID
+   * @return the balance of the account
+   * @throws NoSuchElementException if the server has no account with this ID
+   * @throws UncheckedIOException   if the server cannot be reached
+   */
+  public synchronized long getBalance(String id) throws NoSuchElementException {
+    try {
+      request(TellerServer.GET_BALANCE, id);
+      return input.readLong();
+    } catch (IOException e) {
+      throw new UncheckedIOException("Server could not be reached.", e);
+    }
+  }
+
+  /**
+   * Gets the most recent five transactions of an account of the server, in the form
+   * BankAccount.getMostRecentTransactions() gives them
+   * 
+   * @param id the account ID
+   * @return the most recent transactions, the most recent one first, followed by null references
+   *         if the account has fewer than five
+   * @throws NoSuchElementException if the server has no account with this ID
+   * @throws UncheckedIOException   if the server cannot be reached
+   */
+  public synchronized String[] getMostRecentTransactions(String id) throws NoSuchElementException {
+    try {
+      request(TellerServer.RECENT_TRANSACTIONS, id);
+      String[] recent = new String[5];
+      int count = input.readUnsignedByte();
+      for (int i = 0; i < count; i++) {
+        recent[i] = input.readUTF();
+      }
+      return recent;
+    } catch (IOException e) {
+      throw new UncheckedIOException("Server could not be reached.", e);
+    }
+  }
+
+  /**
+   * Sends a transaction to an account of the server, which adds it as
+   * BankTeller.tryAddTransaction() does
+   * 
+   * @param id          the account ID
+   * @param transaction the transaction, for example "1 20"
+   * @return APPLIED if the transaction was added, ACCOUNT_NOT_FOUND if the server has no account
+   *         with this ID, or the reason the transaction was not added
+   * @throws UncheckedIOException if the server cannot be reached
+   */
+  public synchronized TransactionStatus tryAddTransaction(String id, String transaction) {
+    try {
+      output.writeByte(TellerServer.ADD_TRANSACTION);
+      output.writeUTF(id);
+      output.writeUTF(transaction);
+      readAnswer();
+      return STATUSES[input.readUnsignedByte()];
+    } catch (IOException e) {
+      throw new UncheckedIOException("Server could not be reached.", e);
+    }
+  }
+
+  /**
+   * Applies a batch of transactions to the accounts of the server, as BankTeller.applyBatch()
+   * does. The records are sent in windows of up to TellerServer.MAX_BATCH records, and the next
+   * window is sent before the answers to the previous one are read, so the server always has
+   * records to apply while its answers travel back.
+   * 
+   * @param batch the records to apply
+   * @return the status of every record
+   * @throws NullPointerException if batch is null
+   * @throws UncheckedIOException if the server cannot be reached
+   */
+  public synchronized TransactionBatchResult applyBatch(TransactionBatch batch) {
+    byte[] statuses = new byte[batch.size()];
+    try {
+      int sent = sendWindow(batch, 0);
+      int answered = 0;
+      while (answered < statuses.length) {
+        // sends the next window before reading the answers to the last one, so that at most two
+        // windows are unanswered, whose answers fit in the socket buffers; the server stops
+        // reading requests while it cannot write its answers
+        int unanswered = sent;
+        if (sent < statuses.length) {
+          sent = sendWindow(batch, sent);
+        }
+        for (; answered < unanswered; answered++) {
+          readAnswer();
+          statuses[answered] = (byte) input.readUnsignedByte();
+        }
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException("Server could not be reached.", e);
+    }
+    return new TransactionBatchResult(statuses);
+  }
+
+  /**
+   * Sends a window of up to TellerServer.MAX_BATCH records of a batch as APPLY requests
+   * 
+   * @param batch the records
+   * @param from  index of the first record to send
+   * @return the index after the last record sent
+   * @throws IOException if the requests cannot be sent
+   */
+  private int sendWindow(TransactionBatch batch, int from) throws IOException {
+    int to = Math.min(batch.size(), from + TellerServer.MAX_BATCH);
+    for (int i = from; i < to; i++) {
+      output.writeByte(TellerServer.APPLY);
+      output.writeUTF(batch.getAccountID(i));
+      output.writeBoolean(batch.isDeposit(i));
+      output.writeInt(batch.getAmount(i));
+    }
+    output.flush();
+    return to;
+  }
+
+  /**
+   * Sends a request about one account and reads the start of its answer
+   * 
+   * @param operation FIND_ACCOUNT, GET_BALANCE or RECENT_TRANSACTIONS
+   * @param accountID the account ID
+   * @throws NoSuchElementException if the server has no account with this ID
+   * @throws IOException            if the request cannot be sent or the answer cannot be read
+   */
+  private void request(byte operation, String accountID) throws IOException {
+    output.writeByte(operation);
+    output.writeUTF(accountID);
+    if (!readAnswer()) {
+      throw new NoSuchElementException("No account could be found with the given ID.");
+    }
+  }
+
+  /**
+   * Sends the requests written so far and reads the start of the next answer
+   * 
+   * @return true if the answer is OK, false if it is NOT_FOUND
+   * @throws IOException           if the requests cannot be sent or the answer cannot be read
+   * @throws IllegalStateException if the BankTeller of the server threw an exception for the
+   *                               request, with the message of that exception
+   */
+  private boolean readAnswer() throws IOException {
+    output.flush();
+    byte answer = input.readByte();
+    if (answer == TellerServer.FAILED) {
+      throw new IllegalStateException(input.readUTF());
+    }
+    return answer == TellerServer.OK;
+  }
+
+  /**
+   * Closes the connection to the server. Closing a closed client has no effect.
+   * 
+   * @throws IOException if the connection cannot be closed
+   */
+  @Override
+  public void close() throws IOException {
+    socket.close();
+  }
+}
@@ -0,0 +1,174 @@
+/////////////////////////////////////////// FILE  HEADER /////////////////////////////////////////////
+//
+// Title: Exceptional Bank Teller
+// Files: BankAccount.java, BankAccountTester.java, BankTeller.java, BankTellerTester.java,
+//        BankTellerBenchmark.java, TransactionLog.java, TransactionLoadResult.java,
+//        ConcurrentTransactionLog.java, ConcurrentBankAccount.java,
+//        ConcurrentBankAccountTester.java, ConcurrentBankTeller.java,
+//        ConcurrentBankTellerTester.java, TransactionStatus.java, TransactionListener.java,
+//        TransactionJournal.java, TransactionJournalTester.java, TransactionSnapshot.java,
+//        ColdAccountStore.java, TieredAccountMap.java, TieredBankTeller.java,
+//        TieredBankTellerTester.java, TransactionBatch.java, TransactionBatchResult.java,
+//        TransactionRecord.java, TransactionEvent.java, TransactionPipeline.java,
+//        TransactionPipelineTester.java, LatencyHistogram.java, TellerMetrics.java,
+//        TellerMetricsTester.java, TransactionFile.java, TransactionFileTester.java,
+//        HighPrecisionBankAccount.java, HighPrecisionBankAccountTester.java, AccountIndex.java,
+//        AccountIndexTester.java, ReconciliationReport.java, ReconciliationTask.java,
+//        TransactionIDCache.java, TransactionIDCacheTester.java, ShardTransport.java,
+//        LocalShardTransport.java, SocketShardTransport.java, ShardServer.java,
+//        ShardedBankTeller.java, ShardedBankTellerTester.java, TransactionParser.java,
+//        TransactionParserTester.java, TellerServer.java, TellerClient.java,
+//        TellerLoadGenerator.java, TellerServerTester.java, TransactionClock.java,
+//        TransactionTimeIndex.java, TransactionHistory.java, TransactionHistoryTester.java,
+//        TellerWorkload.java, TellerReplay.java, TellerReplayResult.java, TellerReplayTester.java
+// This File: TellerLoadGenerator.java
+// 
+// Name: Benjamin Tarmann
+// Email: btarmann@wisc.edu
+//
+///////////////////////////////////////// 100 COLUMNS WIDE /////////////////////////////////////////
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * This class generates load on a TellerServer and reports its throughput and latency. It opens a
+ * number of connections, each with a TellerClient served by a thread of its own (a virtual thread
+ * when the JVM has them), and every connection sends round trips of pipelined transactions to
+ * random accounts as fast as the server answers them. The latency of every round trip, from
+ * sending its first transaction to reading the answer to its last, is recorded in a
+ * LatencyHistogram. The transactions are created from a seed, so every run sends the same ones.
+ * 
+ * The server's accounts must have the IDs addAccounts() gives them, which TellerServer.main() does.
+ * 
+ * @author Benjamin Tarmann
+ */
+public class TellerLoadGenerator {
+  static final String ACCOUNT_PREFIX = "load-"; // IDs of the accounts are this and a number
+  private static final int INITIAL_BALANCE = 1_000_000;
+
+  /**
+   * Adds the accounts load is generated for to a BankTeller
+   * 
+   * @param teller the BankTeller
+   * @param count  number of accounts to add
+   */
+  static void addAccounts(BankTeller teller, int count) {
+    for (int i = 0; i < count; i++) {
+      teller.addBankAccount(new BankAccount(ACCOUNT_PREFIX + i, INITIAL_BALANCE));
+    }
+  }
+
+  /**
+   * Opens connections to a server, sends round trips of transactions over all of them at the same
+   * time, and waits for the answers to all of them
+   * 
+   * @param host        the host name or address of the server
+   * @param port        the port of the server
+   * @param connections number of connections
+   * @param roundTrips  number of round trips each connection makes
+   * @param pipeline    number of transactions sent in each round trip
+   * @param accounts    number of accounts of the server the transactions go to
+   * @param seed        seed of the random transactions
+   * @param latencies   histogram the latency of every round trip is recorded in
+   * @return the number of transactions answered per second, over all connections
+   * @throws IOException              if a connection cannot be made or fails
+   * @throws InterruptedException     if this thread is interrupted while waiting for the answers
+   * @throws IllegalArgumentException if connections, roundTrips, pipeline or accounts is not
+   *                                  positive
+   */
+  public static double run(String host, int port, int connections, int roundTrips, int pipeline,
+      int accounts, long seed, LatencyHistogram latencies)
+      throws IOException, InterruptedException {
+    // checks that the load is not empty
+    if (connections < 1 || roundTrips < 1 || pipeline < 1 || accounts < 1) {
+      throw new IllegalArgumentException("Load must have a positive size.");
+    }
+
+    // connects one client at a time, so the server does not have to queue them
+    TellerClient[] clients = new TellerClient[connections];
+    ExecutorService threads = TellerServer.newThreadPerTaskExecutor("teller-load");
+    try {
+      for (int i = 0; i < connections; i++) {
+        clients[i] = new TellerClient(host, port);
+      }
+
+      CountDownLatch start = new CountDownLatch(1);
+      CountDownLatch done = new CountDownLatch(connections);
+      AtomicReference<RuntimeException> failure = new AtomicReference<RuntimeException>();
+      for (int i = 0; i < connections; i++) {
+        TellerClient client = clients[i];
+        Random random = new Random(seed + i);
+        threads.execute(() -> {
+          try {
+            start.await();
+            TransactionBatch batch = new TransactionBatch(pipeline);
+            for (int trip = 0; trip < roundTrips; trip++) {
+              batch.clear();
+              for (int j = 0; j < pipeline; j++) {
+                boolean deposit = random.nextBoolean();
+                batch.add(ACCOUNT_PREFIX + random.nextInt(accounts), deposit,
+                    deposit ? 1 + random.nextInt(100) : 10 * (1 + random.nextInt(10)));
+              }
+              long sent = System.nanoTime();
+              client.applyBatch(batch);
+              latencies.record(System.nanoTime() - sent);
+            }
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          } catch (RuntimeException e) {
+            failure.compareAndSet(null, e);
+          } finally {
+            done.countDown();
+          }
+        });
+      }
+
+      long startTime = System.nanoTime();
+      start.countDown();
+      done.await();
+      long elapsed = System.nanoTime() - startTime;
+      if (failure.get() != null) {
+        throw new IOException("Load could not be sent.", failure.get());
+      }
+      return (double) connections * roundTrips * pipeline * 1e9 / elapsed;
+    } finally {
+      threads.shutdown();
+      for (TellerClient client : clients) {
+        if (client != null) {
+          client.close();
+        }
+      }
+    }
+  }
+
+  /**
+   * Generates load on a running TellerServer and prints the throughput and the percentiles of the
+   * round-trip latency
+   * 
+   * @param args the host, port, number of connections, round trips per connection, transactions
+   *             per round trip and number of accounts, which are localhost, 7070, 10000, 100, 16
+   *             and 10000 if not given
+   * @throws Exception if the load cannot be sent
+   */
+  public static void main(String[] args) throws Exception {
+    String host = args.length > 0 ? args[0] : "localhost";
+    int port = args.length > 1 ? Integer.parseInt(args[1]) : 7070;
+    int connections = args.length > 2 ? Integer.parseInt(args[2]) : 10_000;
+    int roundTrips = args.length > 3 ? Integer.parseInt(args[3]) : 100;
+    int pipeline = args.length > 4 ? Integer.parseInt(args[4]) : 16;
+    int accounts = args.length > 5 ? Integer.parseInt(args[5]) : 10_000;
+
+    LatencyHistogram latencies = new LatencyHistogram();
+    double throughput =
+        run(host, port, connections, roundTrips, pipeline, accounts, 42, latencies);
+    System.out.printf("connections=%d pipeline=%d: %.0f transactions/s%n", connections, pipeline,
+        throughput);
+    System.out.printf("round trip: p50=%.1f us p99=%.1f us p999=%.1f us max=%.1f us%n",
+        latencies.getPercentile(50) / 1e3, latencies.getPercentile(99) / 1e3,
+        latencies.getPercentile(99.9) / 1e3, latencies.getMax() / 1e3);
+  }
+}
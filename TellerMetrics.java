@@ -0,0 +1,427 @@
+/////////////////////////////////////////// FILE  HEADER /////////////////////////////////////////////
+//
+// Title: Exceptional Bank Teller
+// Files: BankAccount.java, BankAccountTester.java, BankTeller.java, BankTellerTester.java,
+//        BankTellerBenchmark.java, TransactionLog.java, TransactionLoadResult.java,
+//        ConcurrentTransactionLog.java, ConcurrentBankAccount.java,
+//        ConcurrentBankAccountTester.java, ConcurrentBankTeller.java,
+//        ConcurrentBankTellerTester.java, TransactionStatus.java, TransactionListener.java,
+//        TransactionJournal.java, TransactionJournalTester.java, TransactionSnapshot.java,
+//        ColdAccountStore.java, TieredAccountMap.java, TieredBankTeller.java,
+//        TieredBankTellerTester.java, TransactionBatch.java, TransactionBatchResult.java,
+//        TransactionRecord.java, TransactionEvent.java, TransactionPipeline.java,
+//        TransactionPipelineTester.java, LatencyHistogram.java, TellerMetrics.java,
+//        TellerMetricsTester.java, TransactionFile.java, TransactionFileTester.java,
+//        HighPrecisionBankAccount.java, HighPrecisionBankAccountTester.java, AccountIndex.java,
+//        AccountIndexTester.java, ReconciliationReport.java, ReconciliationTask.java,
+//        TransactionIDCache.java, TransactionIDCacheTester.java, ShardTransport.java,
+//        LocalShardTransport.java, SocketShardTransport.java, ShardServer.java,
+//        ShardedBankTeller.java, ShardedBankTellerTester.java, TransactionParser.java,
+//        TransactionParserTester.java, TellerServer.java, TellerClient.java,
+//        TellerLoadGenerator.java, TellerServerTester.java, TransactionClock.java,
+//        TransactionTimeIndex.java, TransactionHistory.java, TransactionHistoryTester.java,
+//        TellerWorkload.java, TellerReplay.java, TellerReplayResult.java, TellerReplayTester.java
+// This File: TellerMetrics.java
+// 
+// Name: Benjamin Tarmann
+// Email: btarmann@wisc.edu
+//
+///////////////////////////////////////// 100 COLUMNS WIDE /////////////////////////////////////////
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.Locale;
+
+/**
+ * This class collects metrics of the hot paths of BankAccount and BankTeller: how many times each
+ * operation finished with each TransactionStatus (which also counts the rejections by reason) and
+ * a LatencyHistogram of each operation. Metrics are process-wide and disabled until enable() is
+ * called. While they are disabled, an operation only reads one field to find out that there is
+ * nothing to record.
+ * 
+ * Counters are striped like a LongAdder, but all the way down to one stripe per thread: every
+ * thread counts into its own Recorder with plain increments, so counting takes no atomic
+ * instruction and threads never contend, and reading a count adds up the recorders of all threads.
+ * Timing an operation costs two reads of the clock, which is more than some operations take, so
+ * each thread only times every sampleInterval-th operation; by default one in 1024. Loading a
+ * transaction file is always timed, and only counted once the file is loaded completely. An
+ * operation that is not timed costs a lookup of the recorder of its thread, a countdown to the next
+ * sample and an increment, about 3 nanoseconds. The lookup reads a small cache indexed by thread ID
+ * before falling back to a ThreadLocal, and every public method looks the recorder up once and
+ * passes it on to the deposits and withdrawals it applies, as loading a file does. The recorder of
+ * a thread that has ended is folded into a total of retired counts the next time the recorders are
+ * read or enough new threads have registered, so a server that runs every connection on a thread of
+ * its own does not keep a recorder per connection it ever served. Operations that do not apply a
+ * transaction themselves, such as finding an account, finish with APPLIED when they succeed.
+ * 
+ * @author Benjamin Tarmann
+ */
+public final class TellerMetrics {
+  /**
+   * The operations metrics are collected for
+   */
+  public enum Operation {
+    DEPOSIT("deposit"), WITHDRAW("withdraw"), ADD_TRANSACTION("add_transaction"),
+    FIND_ACCOUNT("find_account"), LOAD_TRANSACTIONS("load_transactions");
+
+    private final String label;
+
+    /**
+     * Creates an operation
+     * 
+     * @param label name of the operation in the exported text
+     */
+    private Operation(String label) {
+      this.label = label;
+    }
+  }
+
+  private static final Operation[] OPERATIONS = Operation.values();
+  private static final TransactionStatus[] STATUSES = TransactionStatus.values();
+  private static final int DEFAULT_SAMPLE_INTERVAL = 1024;
+  private static final int MIN_REAP_THRESHOLD = 16; // recorders registered before the first reap
+  private static final int CACHED_RECORDERS = 64; // slots of recorderCache, a power of two
+
+  static volatile TellerMetrics current; // metrics being collected, or null while disabled
+
+  private static final VarHandle COUNTS = MethodHandles.arrayElementVarHandle(long[].class);
+
+  private final ThreadLocal<Recorder> recorder;
+  private final Recorder[] recorderCache; // recorders of recent threads, indexed by thread ID
+  private final ArrayList<Recorder> recorders; // recorders of threads that may still be running
+  private final long[] retired; // counts of the recorders of ended threads; guarded by recorders
+  private int reapThreshold; // number of recorders at which registering reaps ended threads
+  private final LatencyHistogram[] latencies; // indexed by operation
+  private final int sampleInterval;
+
+  /**
+   * The counts of the operations of one thread. Only the thread writes them, so they are plain
+   * increments, published with opaque writes so that other threads can read whole values.
+   */
+  final class Recorder {
+    private final long[] counts = new long[OPERATIONS.length * STATUSES.length];
+    private final Thread owner; // thread whose operations are recorded, or null for a snapshot
+    private int untilSample = 1; // operations until the next timed one
+
+    /**
+     * Creates a new empty recorder
+     * 
+     * @param owner the thread whose operations are recorded, or null for a snapshot
+     */
+    private Recorder(Thread owner) {
+      this.owner = owner;
+    }
+
+    /**
+     * Starts timing an operation if it is part of the sample
+     * 
+     * @return the current time in nanoseconds, or 0 if the operation is not timed
+     */
+    long startTimer() {
+      return --untilSample != 0 ? 0 : startSample();
+    }
+
+    /**
+     * Starts timing an operation that is part of the sample. This is kept out of startTimer() so
+     * that startTimer() stays small enough to be inlined into every operation.
+     * 
+     * @return the current time in nanoseconds, which is never 0
+     */
+    private long startSample() {
+      untilSample = sampleInterval;
+      long start = System.nanoTime();
+      return start == 0 ? 1 : start; // 0 means not timed
+    }
+
+    /**
+     * Records a finished operation
+     * 
+     * @param operation the operation
+     * @param status    the status it finished with
+     * @param start     the time startTimer() returned for it, or 0 if it is not timed
+     */
+    void record(Operation operation, TransactionStatus status, long start) {
+      int index = operation.ordinal() * STATUSES.length + status.ordinal();
+      COUNTS.setOpaque(counts, index, counts[index] + 1);
+      if (start != 0) {
+        recordLatency(operation, start);
+      }
+    }
+
+    /**
+     * Records the latency of a timed operation, kept out of record() like startSample()
+     * 
+     * @param operation the operation
+     * @param start     the time startTimer() returned for it
+     */
+    private void recordLatency(Operation operation, long start) {
+      latencies[operation.ordinal()].record(System.nanoTime() - start);
+    }
+  }
+
+  /**
+   * Creates new empty metrics
+   * 
+   * @param sampleInterval operations per timed operation in each thread
+   */
+  private TellerMetrics(int sampleInterval) {
+    recorders = new ArrayList<Recorder>();
+    retired = new long[OPERATIONS.length * STATUSES.length];
+    reapThreshold = MIN_REAP_THRESHOLD;
+    recorder = ThreadLocal.withInitial(this::register);
+    recorderCache = new Recorder[CACHED_RECORDERS];
+    latencies = new LatencyHistogram[OPERATIONS.length];
+    for (int i = 0; i < latencies.length; i++) {
+      latencies[i] = new LatencyHistogram();
+    }
+    this.sampleInterval = sampleInterval;
+  }
+
+  /**
+   * Starts collecting metrics with new empty counters and histograms, timing one in 1024 operations
+   * per thread.
+   * 
+   * @return the metrics being collected
+   */
+  public static TellerMetrics enable() {
+    return enable(DEFAULT_SAMPLE_INTERVAL);
+  }
+
+  /**
+   * Starts collecting metrics with new empty counters and histograms, timing one in every given
+   * number of operations
+   * 
+   * @param sampleInterval operations per timed operation in each thread; 1 times every operation
+   * @return the metrics being collected
+   * @throws IllegalArgumentException if sampleInterval is not positive
+   */
+  public static TellerMetrics enable(int sampleInterval) {
+    // checks that the sample interval is positive
+    if (sampleInterval < 1) {
+      throw new IllegalArgumentException("Sample interval must be positive.");
+    }
+
+    TellerMetrics metrics = new TellerMetrics(sampleInterval);
+    current = metrics;
+    return metrics;
+  }
+
+  /**
+   * Stops collecting metrics. The metrics collected so far can still be read.
+   */
+  public static void disable() {
+    current = null;
+  }
+
+  /**
+   * Gets the metrics being collected
+   * 
+   * @return the metrics, or null while they are disabled
+   */
+  public static TellerMetrics getCurrent() {
+    return current;
+  }
+
+  /**
+   * Gets the recorder of the calling thread
+   * 
+   * @return the recorder
+   */
+  Recorder recorder() {
+    // a recorder found in the cache is the right one if the calling thread owns it; its fields
+    // are final or only used by its owner, so reading it without a lock is safe
+    Thread thread = Thread.currentThread();
+    Recorder cached = recorderCache[(int) thread.getId() & (CACHED_RECORDERS - 1)];
+    return cached != null && cached.owner == thread ? cached : cacheRecorder(thread);
+  }
+
+  /**
+   * Looks up the recorder of a thread that is not in the cache and puts it there, possibly in
+   * place of the recorder of another thread
+   * 
+   * @param thread the calling thread
+   * @return the recorder
+   */
+  private Recorder cacheRecorder(Thread thread) {
+    Recorder threadRecorder = recorder.get();
+    recorderCache[(int) thread.getId() & (CACHED_RECORDERS - 1)] = threadRecorder;
+    return threadRecorder;
+  }
+
+  /**
+   * Gets the recorder of the calling thread in the metrics being collected. A method that records
+   * several operations, such as adding a transaction or loading a file, looks its recorder up once
+   * with this and passes it on, since the lookup is a large part of the cost of recording one.
+   * 
+   * @return the recorder, or null while metrics are disabled
+   */
+  static Recorder currentRecorder() {
+    TellerMetrics metrics = current;
+    return metrics == null ? null : metrics.recorder();
+  }
+
+  /**
+   * Creates the recorder of the calling thread and adds it to the recorders that are read. Once
+   * the recorders have doubled since the last time, the ones of ended threads are folded into the
+   * retired counts first, so registering stays cheap however many threads come and go.
+   * 
+   * @return the new recorder
+   */
+  private Recorder register() {
+    Recorder threadRecorder = new Recorder(Thread.currentThread());
+    synchronized (recorders) {
+      if (recorders.size() >= reapThreshold) {
+        reap();
+        reapThreshold = Math.max(MIN_REAP_THRESHOLD, 2 * recorders.size());
+      }
+      recorders.add(threadRecorder);
+    }
+    return threadRecorder;
+  }
+
+  /**
+   * Folds the counts of the recorders of ended threads into the retired counts and removes those
+   * recorders. A thread that has ended made all its writes visible to a thread that sees it has
+   * ended, so its counts are complete. Must be called while holding the lock of recorders.
+   */
+  private void reap() {
+    int kept = 0;
+    for (int r = 0; r < recorders.size(); r++) {
+      Recorder threadRecorder = recorders.get(r);
+      if (threadRecorder.owner != null && !threadRecorder.owner.isAlive()) {
+        for (int i = 0; i < retired.length; i++) {
+          retired[i] += threadRecorder.counts[i];
+        }
+      } else {
+        recorders.set(kept++, threadRecorder);
+      }
+    }
+    recorders.subList(kept, recorders.size()).clear();
+  }
+
+  /**
+   * Gets the number of recorders that are read, which are the recorders of the threads that may
+   * still be running
+   * 
+   * @return the number of recorders
+   */
+  int getRecordersCount() {
+    synchronized (recorders) {
+      reap();
+      return recorders.size();
+    }
+  }
+
+  /**
+   * Gets the number of times an operation finished with a status
+   * 
+   * @param operation the operation
+   * @param status    the status
+   * @return the number of operations
+   */
+  public long getCount(Operation operation, TransactionStatus status) {
+    int index = operation.ordinal() * STATUSES.length + status.ordinal();
+    synchronized (recorders) {
+      reap();
+      long count = retired[index];
+      for (Recorder threadRecorder : recorders) {
+        count += (long) COUNTS.getOpaque(threadRecorder.counts, index);
+      }
+      return count;
+    }
+  }
+
+  /**
+   * Gets the number of times an operation finished, with any status
+   * 
+   * @param operation the operation
+   * @return the number of operations
+   */
+  public long getCount(Operation operation) {
+    long count = 0;
+    for (TransactionStatus status : STATUSES) {
+      count += getCount(operation, status);
+    }
+    return count;
+  }
+
+  /**
+   * Gets the latencies of the timed operations of one kind
+   * 
+   * @param operation the operation
+   * @return the histogram of latencies in nanoseconds, which keeps changing as operations finish
+   */
+  public LatencyHistogram getLatency(Operation operation) {
+    return latencies[operation.ordinal()];
+  }
+
+  /**
+   * Gets a copy of these metrics that does not change when more operations finish. Operations that
+   * finish while the copy is made may or may not be in it.
+   * 
+   * @return the snapshot
+   */
+  public TellerMetrics snapshot() {
+    TellerMetrics snapshot = new TellerMetrics(sampleInterval);
+    synchronized (recorders) {
+      reap();
+      System.arraycopy(retired, 0, snapshot.retired, 0, retired.length);
+      for (Recorder threadRecorder : recorders) {
+        for (int i = 0; i < retired.length; i++) {
+          snapshot.retired[i] += (long) COUNTS.getOpaque(threadRecorder.counts, i);
+        }
+      }
+    }
+    for (int i = 0; i < latencies.length; i++) {
+      snapshot.latencies[i] = latencies[i].copy();
+    }
+    return snapshot;
+  }
+
+  /**
+   * Exports these metrics as text in the Prometheus exposition format: one line per operation and
+   * status that occurred, and the count, mean, 50th, 99th and 99.9th percentiles and maximum of
+   * the sampled latencies of each operation that was timed. For example:
+   * 
+   * <pre>
+   * bankteller_operations_total{operation="withdraw",status="INSUFFICIENT_FUNDS"} 12
+   * bankteller_latency_nanos{operation="withdraw",quantile="0.99"} 95
+   * </pre>
+   * 
+   * @return the metrics as text, one metric per line
+   */
+  public String toText() {
+    StringBuilder text = new StringBuilder();
+    for (Operation operation : OPERATIONS) {
+      for (TransactionStatus status : STATUSES) {
+        long count = getCount(operation, status);
+        if (count != 0) {
+          text.append("bankteller_operations_total{operation=\"").append(operation.label)
+              .append("\",status=\"").append(status.name()).append("\"} ").append(count)
+              .append('\n');
+        }
+      }
+    }
+    for (Operation operation : OPERATIONS) {
+      LatencyHistogram latency = latencies[operation.ordinal()].copy();
+      long count = latency.getCount();
+      if (count == 0) {
+        continue;
+      }
+      String labels = "{operation=\"" + operation.label + "\"";
+      for (String quantile : new String[] {"0.5", "0.99", "0.999"}) {
+        text.append("bankteller_latency_nanos").append(labels).append(",quantile=\"")
+            .append(quantile).append("\"} ")
+            .append(latency.getPercentile(Double.parseDouble(quantile) * 100)).append('\n');
+      }
+      text.append("bankteller_latency_nanos_count").append(labels).append("} ").append(count)
+          .append('\n');
+      text.append("bankteller_latency_nanos_mean").append(labels).append("} ")
+          .append(String.format(Locale.ROOT, "%.1f", latency.getMean())).append('\n');
+      text.append("bankteller_latency_nanos_max").append(labels).append("} ")
+          .append(latency.getMax()).append('\n');
+    }
+    return text.toString();
+  }
+}
@@ -0,0 +1,298 @@
+/////////////////////////////////////////// FILE  HEADER /////////////////////////////////////////////
+//
+// Title: Exceptional Bank Teller
+// Files: BankAccount.java, BankAccountTester.java, BankTeller.java, BankTellerTester.java,
+//        BankTellerBenchmark.java, TransactionLog.java, TransactionLoadResult.java,
+//        ConcurrentTransactionLog.java, ConcurrentBankAccount.java,
+//        ConcurrentBankAccountTester.java, ConcurrentBankTeller.java,
+//        ConcurrentBankTellerTester.java, TransactionStatus.java, TransactionListener.java,
+//        TransactionJournal.java, TransactionJournalTester.java, TransactionSnapshot.java,
+//        ColdAccountStore.java, TieredAccountMap.java, TieredBankTeller.java,
+//        TieredBankTellerTester.java, TransactionBatch.java, TransactionBatchResult.java,
+//        TransactionRecord.java, TransactionEvent.java, TransactionPipeline.java,
+//        TransactionPipelineTester.java, LatencyHistogram.java, TellerMetrics.java,
+//        TellerMetricsTester.java, TransactionFile.java, TransactionFileTester.java,
+//        HighPrecisionBankAccount.java, HighPrecisionBankAccountTester.java, AccountIndex.java,
+//        AccountIndexTester.java, ReconciliationReport.java, ReconciliationTask.java,
+//        TransactionIDCache.java, TransactionIDCacheTester.java, ShardTransport.java,
+//        LocalShardTransport.java, SocketShardTransport.java, ShardServer.java,
+//        ShardedBankTeller.java, ShardedBankTellerTester.java, TransactionParser.java,
+//        TransactionParserTester.java, TellerServer.java, TellerClient.java,
+//        TellerLoadGenerator.java, TellerServerTester.java, TransactionClock.java,
+//        TransactionTimeIndex.java, TransactionHistory.java, TransactionHistoryTester.java,
+//        TellerWorkload.java, TellerReplay.java, TellerReplayResult.java, TellerReplayTester.java
+// This File: TellerMetricsTester.java
+// 
+// Name: Benjamin Tarmann
+// Email: btarmann@wisc.edu
+//
+///////////////////////////////////////// 100 COLUMNS WIDE /////////////////////////////////////////
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.NoSuchElementException;
+
+/**
+ * This class is a tester for the TellerMetrics and LatencyHistogram classes, which collect
+ * metrics of the operations of BankAccount and BankTeller
+ * 
+ * @author Benjamin Tarmann
+ */
+public class TellerMetricsTester {
+
+  /**
+   * Checks whether a LatencyHistogram counts small values exactly, reads larger values back within
+   * about 3% of the recorded values, reports the percentiles, mean and maximum of the values, and
+   * merges the values of other histograms.
+   * 
+   * @return true when this test verifies a correct functionality, and false otherwise.
+   */
+  public static boolean testLatencyHistogram() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    if (histogram.getCount() != 0 || histogram.getPercentile(50) != 0 || histogram.getMax() != 0) {
+      return false;
+    }
+
+    for (long value = 1; value <= 10_000; value++) {
+      histogram.record(value);
+    }
+    histogram.record(-5); // recorded as 0
+    if (histogram.getCount() != 10_001 || histogram.getMax() != 10_000
+        || histogram.getPercentile(100) != 10_000 || histogram.getPercentile(0) != 0
+        || Math.abs(histogram.getMean() - 5_000) > 1) {
+      return false;
+    }
+    for (double percentile : new double[] {50, 90, 99, 99.9}) {
+      long expected = (long) Math.ceil(percentile / 100 * 10_001) - 1;
+      long actual = histogram.getPercentile(percentile);
+      if (actual < expected || actual > expected * 1.032) {
+        return false;
+      }
+    }
+
+    // checks exact small values, a very large value and that a copy does not change
+    LatencyHistogram small = new LatencyHistogram();
+    small.record(7);
+    small.record(Long.MAX_VALUE);
+    LatencyHistogram copy = small.copy();
+    small.record(9);
+    if (copy.getPercentile(50) != 7 || small.getPercentile(50) != 9 || copy.getCount() != 2
+        || small.getCount() != 3 || copy.getPercentile(100) != Long.MAX_VALUE) {
+      return false;
+    }
+
+    // checks that adding a histogram merges its values into this one and leaves it unchanged
+    LatencyHistogram merged = new LatencyHistogram();
+    merged.record(3);
+    merged.add(small);
+    return merged.getCount() == 4 && merged.getPercentile(25) == 3
+        && merged.getPercentile(50) == 7 && merged.getPercentile(75) == 9
+        && merged.getMax() == Long.MAX_VALUE && small.getCount() == 3;
+  }
+
+  /**
+   * Checks whether enabled metrics count every deposit, withdrawal, transaction, account lookup
+   * and loaded file with the status it finished with, and whether disabled metrics count nothing.
+   * 
+   * @return true when this test verifies a correct functionality, and false otherwise.
+   */
+  public static boolean testTellerMetricsCounts() {
+    try {
+      BankTeller testTeller = new BankTeller();
+      BankAccount account = new ConcurrentBankAccount("0001", 100);
+      testTeller.addBankAccount(account);
+      testTeller.addBankAccount(new BankAccount("0002", 100));
+      account.deposit(10); // not counted while metrics are disabled
+
+      TellerMetrics metrics = TellerMetrics.enable(1);
+      account.deposit(10);
+      account.tryDeposit(-1);
+      account.tryWithdraw(15);
+      account.tryWithdraw(1000);
+      testTeller.findAccount("0002").tryWithdraw(10);
+      try {
+        testTeller.findAccount("0003");
+        return false;
+      } catch (NoSuchElementException e) {
+        // expected
+      }
+      testTeller.tryAddTransaction("2 10", account);
+      testTeller.tryAddTransaction("1 10", account);
+
+      File file = File.createTempFile("transactions", ".txt");
+      file.deleteOnExit();
+      PrintWriter writer = new PrintWriter(file);
+      writer.print("1 5\n0 x\n");
+      writer.close();
+      testTeller.loadTransactionsMapped(file, account);
+      TellerMetrics.disable();
+      account.deposit(10); // not counted after metrics are disabled
+
+      TellerMetrics snapshot = metrics.snapshot();
+      return TellerMetrics.getCurrent() == null
+          && snapshot.getCount(TellerMetrics.Operation.DEPOSIT, TransactionStatus.APPLIED) == 3
+          && snapshot.getCount(TellerMetrics.Operation.DEPOSIT,
+              TransactionStatus.NEGATIVE_DEPOSIT) == 1
+          && snapshot.getCount(TellerMetrics.Operation.WITHDRAW,
+              TransactionStatus.INVALID_WITHDRAW_AMOUNT) == 1
+          && snapshot.getCount(TellerMetrics.Operation.WITHDRAW,
+              TransactionStatus.INSUFFICIENT_FUNDS) == 1
+          && snapshot.getCount(TellerMetrics.Operation.WITHDRAW, TransactionStatus.APPLIED) == 1
+          && snapshot.getCount(TellerMetrics.Operation.FIND_ACCOUNT) == 2
+          && snapshot.getCount(TellerMetrics.Operation.FIND_ACCOUNT,
+              TransactionStatus.ACCOUNT_NOT_FOUND) == 1
+          && snapshot.getCount(TellerMetrics.Operation.ADD_TRANSACTION,
+              TransactionStatus.INVALID_TYPE) == 1
+          && snapshot.getCount(TellerMetrics.Operation.ADD_TRANSACTION) == 2
+          && snapshot.getCount(TellerMetrics.Operation.LOAD_TRANSACTIONS) == 1
+          && snapshot.getLatency(TellerMetrics.Operation.DEPOSIT).getCount() == 4
+          && metrics.getCount(TellerMetrics.Operation.DEPOSIT) == 4;
+    } catch (IOException e) {
+      return false;
+    } finally {
+      TellerMetrics.disable();
+    }
+  }
+
+  /**
+   * Checks whether metrics count every deposit when many threads deposit at the same time, and
+   * whether only about the requested share of the operations is timed.
+   * 
+   * @return true when this test verifies a correct functionality, and false otherwise.
+   */
+  public static boolean testTellerMetricsConcurrent() {
+    final int threads = 8;
+    final int deposits = 100_000;
+    ConcurrentBankAccount account = new ConcurrentBankAccount("0001", 10);
+    TellerMetrics metrics = TellerMetrics.enable(16);
+    Thread[] workers = new Thread[threads];
+    for (int t = 0; t < threads; t++) {
+      workers[t] = new Thread(() -> {
+        for (int i = 0; i < deposits; i++) {
+          account.tryDeposit(1);
+        }
+      });
+      workers[t].start();
+    }
+    try {
+      for (Thread worker : workers) {
+        worker.join();
+      }
+    } catch (InterruptedException e) {
+      return false;
+    } finally {
+      TellerMetrics.disable();
+    }
+
+    long total = (long) threads * deposits;
+    long timed = metrics.getLatency(TellerMetrics.Operation.DEPOSIT).getCount();
+    return metrics.getCount(TellerMetrics.Operation.DEPOSIT, TransactionStatus.APPLIED) == total
+        && timed > total / 16 * 0.9 && timed < total / 16 * 1.1;
+  }
+
+  /**
+   * Checks whether the counts of threads that have ended are kept once their recorders are
+   * removed, and whether the recorders of many short-lived threads are removed instead of adding
+   * up
+   * 
+   * @return true when this test verifies a correct functionality, and false otherwise.
+   */
+  public static boolean testTellerMetricsRetiredThreads() {
+    final int threads = 1000;
+    BankAccount account = new ConcurrentBankAccount("0001", 10);
+    TellerMetrics metrics = TellerMetrics.enable(1024);
+    int mostRecorders = 0;
+    try {
+      for (int t = 0; t < threads; t++) {
+        Thread worker = new Thread(() -> account.tryDeposit(10));
+        worker.start();
+        worker.join();
+        mostRecorders = Math.max(mostRecorders, metrics.getRecordersCount());
+        if (t == threads / 2 && metrics.getCount(TellerMetrics.Operation.DEPOSIT,
+            TransactionStatus.APPLIED) != t + 1) {
+          return false;
+        }
+      }
+    } catch (InterruptedException e) {
+      return false;
+    } finally {
+      TellerMetrics.disable();
+    }
+
+    return mostRecorders <= 1 && metrics.getRecordersCount() == 0
+        && metrics.getCount(TellerMetrics.Operation.DEPOSIT, TransactionStatus.APPLIED) == threads
+        && metrics.snapshot().getCount(TellerMetrics.Operation.DEPOSIT,
+            TransactionStatus.APPLIED) == threads;
+  }
+
+  /**
+   * Checks whether the text export has a line for every operation and status that occurred and the
+   * percentiles of every timed operation
+   * 
+   * @return true when this test verifies a correct functionality, and false otherwise.
+   */
+  public static boolean testTellerMetricsText() {
+    TellerMetrics metrics = TellerMetrics.enable(1);
+    BankAccount account = new BankAccount("0001", 10);
+    account.tryWithdraw(20);
+    account.tryWithdraw(20);
+    TellerMetrics.disable();
+
+    String text = metrics.toText();
+    return text.contains(
+        "bankteller_operations_total{operation=\"withdraw\",status=\"INSUFFICIENT_FUNDS\"} 2\n")
+        && text.contains("bankteller_latency_nanos{operation=\"withdraw\",quantile=\"0.99\"} ")
+        && text.contains("bankteller_latency_nanos_count{operation=\"withdraw\"} 2\n")
+        && !text.contains("operation=\"deposit\"");
+  }
+
+  /**
+   * Checks whether the sample interval must be positive
+   * 
+   * @return true when this test verifies a correct functionality, and false otherwise.
+   */
+  public static boolean testTellerMetricsSampleInterval() {
+    for (int interval : new int[] {0, -4}) {
+      try {
+        TellerMetrics.enable(interval);
+        return false;
+      } catch (IllegalArgumentException e) {
+        // expected
+      }
+    }
+    return TellerMetrics.getCurrent() == null;
+  }
+
+  /**
+   * Calls the test methods defined in this TellerMetricsTester class
+   * 
+   * @param args
+   */
+  public static void main(String[] args) {
+    if (testLatencyHistogram() == false) {
+      System.out.println("testLatencyHistogram failed.");
+    }
+
+    if (testTellerMetricsCounts() == false) {
+      System.out.println("testTellerMetricsCounts failed.");
+    }
+
+    if (testTellerMetricsConcurrent() == false) {
+      System.out.println("testTellerMetricsConcurrent failed.");
+    }
+
+    if (testTellerMetricsRetiredThreads() == false) {
+      System.out.println("testTellerMetricsRetiredThreads failed.");
+    }
+
+    if (testTellerMetricsText() == false) {
+      System.out.println("testTellerMetricsText failed.");
+    }
+
+    if (testTellerMetricsSampleInterval() == false) {
+      System.out.println("testTellerMetricsSampleInterval failed.");
+    }
+  }
+
+}
@@ -0,0 +1,344 @@
+/////////////////////////////////////////// FILE  HEADER /////////////////////////////////////////////
+//
+// Title: Exceptional Bank Teller
+// Files: BankAccount.java, BankAccountTester.java, BankTeller.java, BankTellerTester.java,
+//        BankTellerBenchmark.java, TransactionLog.java, TransactionLoadResult.java,
+//        ConcurrentTransactionLog.java, ConcurrentBankAccount.java,
+//        ConcurrentBankAccountTester.java, ConcurrentBankTeller.java,
+//        ConcurrentBankTellerTester.java, TransactionStatus.java, TransactionListener.java,
+//        TransactionJournal.java, TransactionJournalTester.java, TransactionSnapshot.java,
+//        ColdAccountStore.java, TieredAccountMap.java, TieredBankTeller.java,
+//        TieredBankTellerTester.java, TransactionBatch.java, TransactionBatchResult.java,
+//        TransactionRecord.java, TransactionEvent.java, TransactionPipeline.java,
+//        TransactionPipelineTester.java, LatencyHistogram.java, TellerMetrics.java,
+//        TellerMetricsTester.java, TransactionFile.java, TransactionFileTester.java,
+//        HighPrecisionBankAccount.java, HighPrecisionBankAccountTester.java, AccountIndex.java,
+//        AccountIndexTester.java, ReconciliationReport.java, ReconciliationTask.java,
+//        TransactionIDCache.java, TransactionIDCacheTester.java, ShardTransport.java,
+//        LocalShardTransport.java, SocketShardTransport.java, ShardServer.java,
+//        ShardedBankTeller.java, ShardedBankTellerTester.java, TransactionParser.java,
+//        TransactionParserTester.java, TellerServer.java, TellerClient.java,
+//        TellerLoadGenerator.java, TellerServerTester.java, TransactionClock.java,
+//        TransactionTimeIndex.java, TransactionHistory.java, TransactionHistoryTester.java,
+//        TellerWorkload.java, TellerReplay.java, TellerReplayResult.java, TellerReplayTester.java
+// This File: TellerReplay.java
+// 
+// Name: Benjamin Tarmann
+// Email: btarmann@wisc.edu
+//
+///////////////////////////////////////// 100 COLUMNS WIDE /////////////////////////////////////////
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class replays a TellerWorkload through a BankTeller with a given number of threads, and
+ * reports the throughput, the latencies, the bytes allocated and whether the balances are the ones
+ * the workload expects. There are two kinds of replay:
+ * 
+ * replayLines() applies every line with tryAddTransaction(), and fails like addTransaction() on a
+ * correctly formatted line that is not applied. Thread t applies lines t, t + threads, t + 2 *
+ * threads and so on, so the threads share the hot accounts and contend on them as concurrent
+ * tellers would. Reading the clock takes about as long as applying a line, so only one line in
+ * SAMPLE_INTERVAL has its latency recorded; the sampled lines are spread evenly over the replay.
+ * 
+ * replayFiles() loads the workload's transaction files with loadTransactions(), each file into its
+ * account. The threads take the files of the hottest accounts first, and the latency of every
+ * loadTransactions() call is recorded.
+ * 
+ * The threads are started before the replay and released at the same time, so the elapsed time
+ * does not include starting them. Each thread records its latencies into a histogram of its own,
+ * and the histograms are merged once the replay is done.
+ * 
+ * @author Benjamin Tarmann
+ */
+public class TellerReplay {
+  static final int SAMPLE_INTERVAL = 16; // one line in this many has its latency recorded
+
+  /**
+   * The work one thread does in a replay
+   */
+  private interface Worker {
+    /**
+     * Replays the share of one thread
+     * 
+     * @param thread    index of the thread, from 0 to the number of threads - 1
+     * @param latencies histogram of this thread that latencies are recorded in
+     * @throws IOException if a transaction file cannot be read
+     */
+    void run(int thread, LatencyHistogram latencies) throws IOException;
+  }
+
+  /**
+   * Gets the number of bytes the current thread has allocated so far
+   * 
+   * @return the allocated bytes, or 0 if the JVM cannot measure allocations
+   */
+  private static long allocatedBytes() {
+    java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+    if (bean instanceof com.sun.management.ThreadMXBean) {
+      return ((com.sun.management.ThreadMXBean) bean)
+          .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+    return 0;
+  }
+
+  /**
+   * Finds the accounts of a workload in a BankTeller, so that they are not looked up while the
+   * replay is measured
+   * 
+   * @param teller   the BankTeller
+   * @param workload the workload
+   * @param threads  number of threads the workload is replayed with
+   * @return the accounts, indexed like the workload's accounts
+   * @throws IllegalArgumentException if threads is not positive
+   * @throws NoSuchElementException   if the BankTeller does not hold one of the accounts
+   */
+  private static BankAccount[] findAccounts(BankTeller teller, TellerWorkload workload,
+      int threads) {
+    // checks that there is a thread to replay the workload
+    if (threads < 1) {
+      throw new IllegalArgumentException("Replay needs at least one thread.");
+    }
+
+    BankAccount[] accounts = new BankAccount[workload.getAccountsCount()];
+    for (int account = 0; account < accounts.length; account++) {
+      accounts[account] = teller.findAccount(workload.getAccountID(account));
+    }
+    return accounts;
+  }
+
+  /**
+   * Replays the lines of a workload with tryAddTransaction(), as described in the class comment
+   * 
+   * @param teller   a BankTeller that holds the accounts of the workload with their initial
+   *                 balances, as TellerWorkload.addAccounts() adds them
+   * @param workload the workload to replay
+   * @param threads  number of threads that replay the lines
+   * @return the result of the replay
+   * @throws InterruptedException     if the calling thread is interrupted while waiting for the
+   *                                  replaying threads
+   * @throws IllegalArgumentException if threads is not positive, or is more than 1 and teller is
+   *                                  not a ConcurrentBankTeller
+   * @throws NoSuchElementException   if the BankTeller does not hold one of the accounts
+   * @throws IllegalStateException    if a correctly formatted line is not applied, for example
+   *                                  because the balances were not the initial ones
+   */
+  public static TellerReplayResult replayLines(BankTeller teller, TellerWorkload workload,
+      int threads) throws InterruptedException {
+    BankAccount[] accounts = findAccounts(teller, workload, threads);
+
+    // checks that the accounts can be changed by many threads at the same time
+    if (threads > 1 && !(teller instanceof ConcurrentBankTeller)) {
+      throw new IllegalArgumentException(
+          "Replaying lines with more than one thread needs a ConcurrentBankTeller.");
+    }
+
+    int lines = workload.getLinesCount();
+    try {
+      return replay(teller, workload, threads, (thread, latencies) -> {
+        int unsampled = thread % SAMPLE_INTERVAL; // lines until the next sampled one
+        for (int i = thread; i < lines; i += threads) {
+          BankAccount account = accounts[workload.getLineAccount(i)];
+          String line = workload.getLine(i);
+          TransactionStatus status;
+          if (unsampled-- > 0) {
+            status = teller.tryAddTransaction(line, account);
+          } else {
+            long start = System.nanoTime();
+            status = teller.tryAddTransaction(line, account);
+            latencies.record(System.nanoTime() - start);
+            unsampled = SAMPLE_INTERVAL - 1;
+          }
+          if (!status.isMalformed()) {
+            BankTeller.throwUnlessApplied(status);
+          }
+        }
+      });
+    } catch (IOException e) {
+      // cannot happen since replaying lines does not read files
+      throw new IllegalStateException("Replay failed unexpectedly.", e);
+    }
+  }
+
+  /**
+   * Replays the transaction files of a workload with loadTransactions(), as described in the
+   * class comment
+   * 
+   * @param teller   a BankTeller that holds the accounts of the workload with their initial
+   *                 balances, as TellerWorkload.addAccounts() adds them
+   * @param workload the workload to replay
+   * @param files    the files TellerWorkload.writeFiles() wrote for the workload
+   * @param threads  number of threads that load the files
+   * @return the result of the replay
+   * @throws IOException              if a file cannot be read
+   * @throws InterruptedException     if the calling thread is interrupted while waiting for the
+   *                                  replaying threads
+   * @throws IllegalArgumentException if threads is not positive, or there is not one file per
+   *                                  account
+   * @throws NoSuchElementException   if the BankTeller does not hold one of the accounts
+   * @throws IllegalStateException    if a correctly formatted line is not applied
+   */
+  public static TellerReplayResult replayFiles(BankTeller teller, TellerWorkload workload,
+      File[] files, int threads) throws IOException, InterruptedException {
+    BankAccount[] accounts = findAccounts(teller, workload, threads);
+
+    // checks that every account has its file
+    if (files.length != accounts.length) {
+      throw new IllegalArgumentException("Replay needs one file per account.");
+    }
+
+    AtomicInteger nextAccount = new AtomicInteger();
+    return replay(teller, workload, threads, (thread, latencies) -> {
+      int account;
+      while ((account = nextAccount.getAndIncrement()) < files.length) {
+        long start = System.nanoTime();
+        teller.loadTransactions(files[account], accounts[account]);
+        latencies.record(System.nanoTime() - start);
+      }
+    });
+  }
+
+  /**
+   * Runs a replay on the given number of threads and collects its result
+   * 
+   * @param teller   the BankTeller the workload is replayed through
+   * @param workload the workload
+   * @param threads  number of threads
+   * @param worker   the work of one thread
+   * @return the result of the replay
+   * @throws IOException          if a thread fails to read a file
+   * @throws InterruptedException if the calling thread is interrupted while waiting for the
+   *                              replaying threads
+   */
+  private static TellerReplayResult replay(BankTeller teller, TellerWorkload workload,
+      int threads, Worker worker) throws IOException, InterruptedException {
+    LatencyHistogram[] threadLatencies = new LatencyHistogram[threads];
+    long[] threadBytes = new long[threads];
+    Exception[] failures = new Exception[threads];
+    Error[] errors = new Error[threads];
+    CountDownLatch start = new CountDownLatch(1);
+    Thread[] workers = new Thread[threads];
+    for (int t = 0; t < threads; t++) {
+      final int thread = t;
+      threadLatencies[t] = new LatencyHistogram();
+      workers[t] = new Thread(() -> {
+        try {
+          start.await();
+          long allocated = allocatedBytes();
+          try {
+            worker.run(thread, threadLatencies[thread]);
+          } finally {
+            threadBytes[thread] = allocatedBytes() - allocated;
+          }
+        } catch (IOException | InterruptedException | RuntimeException e) {
+          failures[thread] = e;
+        } catch (Error e) {
+          errors[thread] = e;
+        }
+      }, "teller-replay-" + t);
+      workers[t].start();
+    }
+
+    long startTime = System.nanoTime();
+    start.countDown();
+    for (Thread replaying : workers) {
+      replaying.join();
+    }
+    long elapsed = System.nanoTime() - startTime;
+
+    // fails with the first failure of a thread
+    for (int t = 0; t < threads; t++) {
+      if (errors[t] != null) {
+        throw errors[t];
+      } else if (failures[t] instanceof IOException) {
+        throw (IOException) failures[t];
+      } else if (failures[t] instanceof InterruptedException) {
+        throw (InterruptedException) failures[t];
+      } else if (failures[t] != null) {
+        throw (RuntimeException) failures[t];
+      }
+    }
+
+    LatencyHistogram latencies = new LatencyHistogram();
+    long bytes = 0;
+    for (int t = 0; t < threads; t++) {
+      latencies.add(threadLatencies[t]);
+      bytes += threadBytes[t];
+    }
+    return new TellerReplayResult(threads, workload.getLinesCount(), elapsed, bytes, latencies,
+        workload.checksum(teller), workload.getExpectedChecksum());
+  }
+
+  /**
+   * Creates a workload, replays it into a new ConcurrentBankTeller with each of the given numbers
+   * of threads, and prints the result of each replay. Every replay is run twice and only the
+   * second run is printed, so that the JIT compiler has compiled the replay first.
+   * 
+   * @param args the kind of replay ("lines" or "files"), the number of accounts, the number of
+   *             lines, the skew, the ratio of malformed lines, the ratio of deposits, the numbers
+   *             of threads separated by commas and the seed, which are lines, 10000, 1000000, 1,
+   *             0.01, 0.75, 1,2,4,8 and 42 if not given
+   * @throws Exception if a replay fails
+   */
+  public static void main(String[] args) throws Exception {
+    String mode = args.length > 0 ? args[0] : "lines";
+    int accounts = args.length > 1 ? Integer.parseInt(args[1]) : 10_000;
+    int transactions = args.length > 2 ? Integer.parseInt(args[2]) : 1_000_000;
+    double skew = args.length > 3 ? Double.parseDouble(args[3]) : 1;
+    double malformedRatio = args.length > 4 ? Double.parseDouble(args[4]) : 0.01;
+    double depositRatio = args.length > 5 ? Double.parseDouble(args[5]) : 0.75;
+    String[] threadCounts = (args.length > 6 ? args[6] : "1,2,4,8").split(",");
+    long seed = args.length > 7 ? Long.parseLong(args[7]) : 42;
+    if (!mode.equals("lines") && !mode.equals("files")) {
+      System.out.println("Unknown kind of replay: " + mode);
+      return;
+    }
+
+    TellerWorkload workload =
+        new TellerWorkload(accounts, transactions, skew, malformedRatio, depositRatio, seed);
+    System.out.printf("%s: accounts=%d lines=%d malformed=%d skew=%.2f seed=%d%n", mode, accounts,
+        transactions, workload.getMalformedCount(), skew, seed);
+    File directory = null;
+    File[] files = null;
+    if (mode.equals("files")) {
+      directory = Files.createTempDirectory("teller-replay").toFile();
+      files = workload.writeFiles(directory);
+    }
+
+    try {
+      for (String threadCount : threadCounts) {
+        int threads = Integer.parseInt(threadCount.trim());
+        TellerReplayResult result = null;
+        for (int run = 0; run < 2; run++) {
+          ConcurrentBankTeller teller = new ConcurrentBankTeller();
+          workload.addAccounts(teller);
+          result = files == null ? replayLines(teller, workload, threads)
+              : replayFiles(teller, workload, files, threads);
+        }
+
+        LatencyHistogram latencies = result.getLatencies();
+        System.out.printf(
+            "threads=%d: %.0f lines/s, p50=%.2f us p99=%.2f us p999=%.2f us max=%.2f us, "
+                + "%.1f MB/s (%.1f B/line) allocated, checksum %016x %s%n",
+            threads, result.getThroughput(), latencies.getPercentile(50) / 1e3,
+            latencies.getPercentile(99) / 1e3, latencies.getPercentile(99.9) / 1e3,
+            latencies.getMax() / 1e3, result.getAllocationRate() / 1e6,
+            result.getAllocatedBytesPerLine(), result.getChecksum(),
+            result.isVerified() ? "verified" : "MISMATCH");
+      }
+    } finally {
+      if (directory != null) {
+        for (File file : files) {
+          file.delete();
+        }
+        directory.delete();
+      }
+    }
+  }
+}
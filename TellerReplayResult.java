@@ -0,0 +1,169 @@
+/////////////////////////////////////////// FILE  HEADER /////////////////////////////////////////////
+//
+// Title: Exceptional Bank Teller
+// Files: BankAccount.java, BankAccountTester.java, BankTeller.java, BankTellerTester.java,
+//        BankTellerBenchmark.java, TransactionLog.java, TransactionLoadResult.java,
+//        ConcurrentTransactionLog.java, ConcurrentBankAccount.java,
+//        ConcurrentBankAccountTester.java, ConcurrentBankTeller.java,
+//        ConcurrentBankTellerTester.java, TransactionStatus.java, TransactionListener.java,
+//        TransactionJournal.java, TransactionJournalTester.java, TransactionSnapshot.java,
+//        ColdAccountStore.java, TieredAccountMap.java, TieredBankTeller.java,
+//        TieredBankTellerTester.java, TransactionBatch.java, TransactionBatchResult.java,
+//        TransactionRecord.java, TransactionEvent.java, TransactionPipeline.java,
+//        TransactionPipelineTester.java, LatencyHistogram.java, TellerMetrics.java,
+//        TellerMetricsTester.java, TransactionFile.java, TransactionFileTester.java,
+//        HighPrecisionBankAccount.java, HighPrecisionBankAccountTester.java, AccountIndex.java,
+//        AccountIndexTester.java, ReconciliationReport.java, ReconciliationTask.java,
+//        TransactionIDCache.java, TransactionIDCacheTester.java, ShardTransport.java,
+//        LocalShardTransport.java, SocketShardTransport.java, ShardServer.java,
+//        ShardedBankTeller.java, ShardedBankTellerTester.java, TransactionParser.java,
+//        TransactionParserTester.java, TellerServer.java, TellerClient.java,
+//        TellerLoadGenerator.java, TellerServerTester.java, TransactionClock.java,
+//        TransactionTimeIndex.java, TransactionHistory.java, TransactionHistoryTester.java,
+//        TellerWorkload.java, TellerReplay.java, TellerReplayResult.java, TellerReplayTester.java
+// This File: TellerReplayResult.java
+// 
+// Name: Benjamin Tarmann
+// Email: btarmann@wisc.edu
+//
+///////////////////////////////////////// 100 COLUMNS WIDE /////////////////////////////////////////
+
+/**
+ * This class reports one replay of a TellerWorkload by TellerReplay: how many threads replayed
+ * how many lines in how much time, the latencies that were recorded, how many bytes the threads
+ * allocated, and the checksum of the balances afterwards together with the checksum the workload
+ * expects, so that every run can be verified and compared with other runs.
+ * 
+ * @author Benjamin Tarmann
+ */
+public class TellerReplayResult {
+  private final int threadsCount;
+  private final long linesCount;
+  private final long elapsedNanos;
+  private final long allocatedBytes; // by the replaying threads, or 0 if it cannot be measured
+  private final LatencyHistogram latencies;
+  private final long checksum;
+  private final long expectedChecksum;
+
+  /**
+   * Creates a new result of a replay
+   * 
+   * @param threadsCount     number of threads that replayed the workload
+   * @param linesCount       number of transaction lines that were replayed
+   * @param elapsedNanos     time the replay took in nanoseconds
+   * @param allocatedBytes   bytes the replaying threads allocated
+   * @param latencies        the recorded latencies
+   * @param checksum         checksum of the balances after the replay
+   * @param expectedChecksum checksum the workload expects
+   */
+  TellerReplayResult(int threadsCount, long linesCount, long elapsedNanos, long allocatedBytes,
+      LatencyHistogram latencies, long checksum, long expectedChecksum) {
+    this.threadsCount = threadsCount;
+    this.linesCount = linesCount;
+    this.elapsedNanos = elapsedNanos;
+    this.allocatedBytes = allocatedBytes;
+    this.latencies = latencies;
+    this.checksum = checksum;
+    this.expectedChecksum = expectedChecksum;
+  }
+
+  /**
+   * Gets the number of threads that replayed the workload
+   * 
+   * @return the number of threads
+   */
+  public int getThreadsCount() {
+    return threadsCount;
+  }
+
+  /**
+   * Gets the number of transaction lines that were replayed, including the malformed ones
+   * 
+   * @return the number of lines
+   */
+  public long getLinesCount() {
+    return linesCount;
+  }
+
+  /**
+   * Gets the time the replay took, from starting the threads until the last of them finished
+   * 
+   * @return the elapsed time in nanoseconds
+   */
+  public long getElapsedNanos() {
+    return elapsedNanos;
+  }
+
+  /**
+   * Gets the number of transaction lines replayed per second
+   * 
+   * @return the throughput in lines per second
+   */
+  public double getThroughput() {
+    return elapsedNanos == 0 ? 0 : linesCount * 1e9 / elapsedNanos;
+  }
+
+  /**
+   * Gets the number of bytes the replaying threads allocated
+   * 
+   * @return the allocated bytes, or 0 if the JVM cannot measure allocations
+   */
+  public long getAllocatedBytes() {
+    return allocatedBytes;
+  }
+
+  /**
+   * Gets the number of bytes the replaying threads allocated per second
+   * 
+   * @return the allocation rate in bytes per second
+   */
+  public double getAllocationRate() {
+    return elapsedNanos == 0 ? 0 : allocatedBytes * 1e9 / elapsedNanos;
+  }
+
+  /**
+   * Gets the number of bytes the replaying threads allocated per transaction line
+   * 
+   * @return the allocated bytes per line
+   */
+  public double getAllocatedBytesPerLine() {
+    return linesCount == 0 ? 0 : (double) allocatedBytes / linesCount;
+  }
+
+  /**
+   * Gets the latencies recorded during the replay, in nanoseconds. What one latency measures
+   * depends on the kind of replay, as described in TellerReplay.
+   * 
+   * @return the histogram of the latencies
+   */
+  public LatencyHistogram getLatencies() {
+    return latencies;
+  }
+
+  /**
+   * Gets the checksum of the balances after the replay, as TellerWorkload.checksum() computes it
+   * 
+   * @return the checksum
+   */
+  public long getChecksum() {
+    return checksum;
+  }
+
+  /**
+   * Gets the checksum the balances have once every line of the workload was applied
+   * 
+   * @return the expected checksum
+   */
+  public long getExpectedChecksum() {
+    return expectedChecksum;
+  }
+
+  /**
+   * Checks whether the balances after the replay are the balances the workload expects
+   * 
+   * @return true if the checksum is the expected one, and false otherwise
+   */
+  public boolean isVerified() {
+    return checksum == expectedChecksum;
+  }
+}
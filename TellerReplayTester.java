@@ -0,0 +1,333 @@
+/////////////////////////////////////////// FILE  HEADER /////////////////////////////////////////////
+//
+// Title: Exceptional Bank Teller
+// Files: BankAccount.java, BankAccountTester.java, BankTeller.java, BankTellerTester.java,
+//        BankTellerBenchmark.java, TransactionLog.java, TransactionLoadResult.java,
+//        ConcurrentTransactionLog.java, ConcurrentBankAccount.java,
+//        ConcurrentBankAccountTester.java, ConcurrentBankTeller.java,
+//        ConcurrentBankTellerTester.java, TransactionStatus.java, TransactionListener.java,
+//        TransactionJournal.java, TransactionJournalTester.java, TransactionSnapshot.java,
+//        ColdAccountStore.java, TieredAccountMap.java, TieredBankTeller.java,
+//        TieredBankTellerTester.java, TransactionBatch.java, TransactionBatchResult.java,
+//        TransactionRecord.java, TransactionEvent.java, TransactionPipeline.java,
+//        TransactionPipelineTester.java, LatencyHistogram.java, TellerMetrics.java,
+//        TellerMetricsTester.java, TransactionFile.java, TransactionFileTester.java,
+//        HighPrecisionBankAccount.java, HighPrecisionBankAccountTester.java, AccountIndex.java,
+//        AccountIndexTester.java, ReconciliationReport.java, ReconciliationTask.java,
+//        TransactionIDCache.java, TransactionIDCacheTester.java, ShardTransport.java,
+//        LocalShardTransport.java, SocketShardTransport.java, ShardServer.java,
+//        ShardedBankTeller.java, ShardedBankTellerTester.java, TransactionParser.java,
+//        TransactionParserTester.java, TellerServer.java, TellerClient.java,
+//        TellerLoadGenerator.java, TellerServerTester.java, TransactionClock.java,
+//        TransactionTimeIndex.java, TransactionHistory.java, TransactionHistoryTester.java,
+//        TellerWorkload.java, TellerReplay.java, TellerReplayResult.java, TellerReplayTester.java
+// This File: TellerReplayTester.java
+// 
+// Name: Benjamin Tarmann
+// Email: btarmann@wisc.edu
+//
+///////////////////////////////////////// 100 COLUMNS WIDE /////////////////////////////////////////
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * This class represents a tester for the TellerWorkload and TellerReplay classes
+ * 
+ * @author Benjamin Tarmann
+ */
+public class TellerReplayTester {
+
+  /**
+   * Checks that a workload created twice from the same arguments is the same, with the same
+   * expected checksum, and that a workload created from another seed is not
+   * 
+   * @return true when this test verifies a correct functionality, and false otherwise.
+   */
+  public static boolean testTellerWorkloadDeterministic() {
+    TellerWorkload first = new TellerWorkload(50, 10_000, 1, 0.05, 0.75, 42);
+    TellerWorkload second = new TellerWorkload(50, 10_000, 1, 0.05, 0.75, 42);
+    TellerWorkload other = new TellerWorkload(50, 10_000, 1, 0.05, 0.75, 43);
+    if (first.getLinesCount() != 10_000 || first.getAccountsCount() != 50
+        || first.getExpectedChecksum() != second.getExpectedChecksum()
+        || first.getExpectedChecksum() == other.getExpectedChecksum()
+        || first.getMalformedCount() != second.getMalformedCount()) {
+      return false;
+    }
+
+    boolean differs = false;
+    for (int i = 0; i < first.getLinesCount(); i++) {
+      if (!first.getLine(i).equals(second.getLine(i))
+          || first.getLineAccount(i) != second.getLineAccount(i)) {
+        return false;
+      }
+      differs |= !first.getLine(i).equals(other.getLine(i));
+    }
+    for (int account = 0; account < 50; account++) {
+      if (first.getInitialBalance(account) != second.getInitialBalance(account)
+          || first.getExpectedBalance(account) != second.getExpectedBalance(account)) {
+        return false;
+      }
+    }
+    return differs;
+  }
+
+  /**
+   * Checks that the lines of a workload follow its skew, that the expected share of them is
+   * malformed, and that applying them one at a time gives the expected balances without
+   * rejecting a correctly formatted line
+   * 
+   * @return true when this test verifies a correct functionality, and false otherwise.
+   */
+  public static boolean testTellerWorkloadDistribution() {
+    // a skew of 1.2 over 100 accounts sends about 28% of the lines to the hottest account
+    TellerWorkload skewed = new TellerWorkload(100, 100_000, 1.2, 0.05, 0.75, 7);
+    int[] counts = new int[100];
+    for (int i = 0; i < skewed.getLinesCount(); i++) {
+      counts[skewed.getLineAccount(i)]++;
+    }
+    if (counts[0] < 25_000 || counts[0] > 31_000 || counts[1] >= counts[0]
+        || counts[10] >= counts[1] || counts[99] == 0) {
+      return false;
+    }
+
+    TellerWorkload uniform = new TellerWorkload(100, 100_000, 0, 0.05, 0.75, 7);
+    counts = new int[100];
+    for (int i = 0; i < uniform.getLinesCount(); i++) {
+      counts[uniform.getLineAccount(i)]++;
+    }
+    for (int count : counts) {
+      if (count < 800 || count > 1_200) {
+        return false;
+      }
+    }
+
+    // applies every line and checks the malformed ones and the balances
+    BankTeller teller = new BankTeller();
+    skewed.addAccounts(teller);
+    int malformed = 0;
+    int deposits = 0;
+    for (int i = 0; i < skewed.getLinesCount(); i++) {
+      BankAccount account = teller.findAccount(skewed.getAccountID(skewed.getLineAccount(i)));
+      TransactionStatus status = teller.tryAddTransaction(skewed.getLine(i), account);
+      if (status.isMalformed()) {
+        malformed++;
+      } else if (status != TransactionStatus.APPLIED) {
+        return false;
+      } else if (skewed.getLine(i).startsWith("1")) {
+        deposits++;
+      }
+    }
+    int wellFormed = skewed.getLinesCount() - malformed;
+    if (malformed != skewed.getMalformedCount() || malformed < 4_500 || malformed > 5_500
+        || Math.abs(deposits - 0.75 * wellFormed) > 0.01 * wellFormed) {
+      return false;
+    }
+    for (int account = 0; account < 100; account++) {
+      if (teller.findAccount(skewed.getAccountID(account))
+          .getBalance() != skewed.getExpectedBalance(account)) {
+        return false;
+      }
+    }
+    return skewed.checksum(teller) == skewed.getExpectedChecksum();
+  }
+
+  /**
+   * Replays the lines of a skewed workload with 1 and 4 threads, and checks that both replays end
+   * with the expected balances and record a latency for one line in TellerReplay.SAMPLE_INTERVAL
+   * 
+   * @return true when this test verifies a correct functionality, and false otherwise.
+   */
+  public static boolean testTellerReplayLines() {
+    TellerWorkload workload = new TellerWorkload(200, 50_000, 1, 0.02, 0.6, 11);
+    try {
+      BankTeller single = new BankTeller();
+      workload.addAccounts(single);
+      TellerReplayResult first = TellerReplay.replayLines(single, workload, 1);
+
+      ConcurrentBankTeller concurrent = new ConcurrentBankTeller();
+      workload.addAccounts(concurrent);
+      if (!(concurrent.findAccount(workload.getAccountID(0)) instanceof ConcurrentBankAccount)) {
+        return false;
+      }
+      TellerReplayResult second = TellerReplay.replayLines(concurrent, workload, 4);
+
+      long sampled = 50_000 / TellerReplay.SAMPLE_INTERVAL;
+      for (TellerReplayResult result : new TellerReplayResult[] {first, second}) {
+        if (!result.isVerified() || result.getLinesCount() != 50_000
+            || result.getThroughput() <= 0 || result.getAllocatedBytes() < 0
+            || result.getChecksum() != workload.getExpectedChecksum()
+            || Math.abs(result.getLatencies().getCount() - sampled) > 4) {
+          return false;
+        }
+      }
+      return first.getThreadsCount() == 1 && second.getThreadsCount() == 4;
+    } catch (InterruptedException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Writes the transaction files of a workload, replays them with 3 threads, and checks that the
+   * replay ends with the expected balances and records the latency of every file. Also checks that
+   * loadTransactionsParallel() loads the same files into the same balances.
+   * 
+   * @return true when this test verifies a correct functionality, and false otherwise.
+   */
+  public static boolean testTellerReplayFiles() {
+    File directory = null;
+    File[] files = null;
+    try {
+      directory = Files.createTempDirectory("replayTester").toFile();
+      TellerWorkload workload = new TellerWorkload(30, 20_000, 0.8, 0.05, 0.75, 5);
+      files = workload.writeFiles(directory);
+      if (files.length != 30 || !files[0].getName().equals(workload.getAccountID(0) + ".txt")) {
+        return false;
+      }
+
+      BankTeller teller = new BankTeller();
+      workload.addAccounts(teller);
+      TellerReplayResult result = TellerReplay.replayFiles(teller, workload, files, 3);
+      if (!result.isVerified() || result.getLatencies().getCount() != 30
+          || result.getLinesCount() != 20_000) {
+        return false;
+      }
+
+      BankTeller parallel = new BankTeller();
+      workload.addAccounts(parallel);
+      ExecutorService executor = Executors.newFixedThreadPool(2);
+      try {
+        parallel.loadTransactionsParallel(directory, executor);
+      } finally {
+        executor.shutdown();
+      }
+      return workload.checksum(parallel) == workload.getExpectedChecksum();
+    } catch (IOException | InterruptedException e) {
+      return false;
+    } finally {
+      if (files != null) {
+        for (File file : files) {
+          file.delete();
+        }
+      }
+      if (directory != null) {
+        directory.delete();
+      }
+    }
+  }
+
+  /**
+   * Replays a workload into accounts one of which does not start with its initial balance, and
+   * checks that the replay is not verified while a replay from the initial balances is
+   * 
+   * @return true when this test verifies a correct functionality, and false otherwise.
+   */
+  public static boolean testTellerReplayMismatch() {
+    TellerWorkload workload = new TellerWorkload(10, 1_000, 0.5, 0, 0.5, 3);
+    ConcurrentBankTeller teller = new ConcurrentBankTeller();
+    workload.addAccounts(teller);
+    ConcurrentBankTeller changed = new ConcurrentBankTeller();
+    workload.addAccounts(changed);
+    changed.findAccount(workload.getAccountID(9)).deposit(1);
+    try {
+      return TellerReplay.replayLines(teller, workload, 2).isVerified()
+          && !TellerReplay.replayLines(changed, workload, 2).isVerified();
+    } catch (InterruptedException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Checks that a workload needs a valid shape, and that a replay needs a thread, a
+   * ConcurrentBankTeller to replay lines with more than one thread, the accounts of the workload
+   * and one file per account
+   * 
+   * @return true when this test verifies a correct functionality, and false otherwise.
+   */
+  public static boolean testTellerReplayInvalidArguments() {
+    double[][] shapes = {{0, 10, 1, 0, 1}, {10, -1, 1, 0, 1}, {10, 10, -1, 0, 1},
+        {10, 10, Double.NaN, 0, 1}, {10, 10, 1, 1.5, 1}, {10, 10, 1, 0, -0.1}};
+    for (double[] shape : shapes) {
+      try {
+        new TellerWorkload((int) shape[0], (int) shape[1], shape[2], shape[3], shape[4], 1);
+        return false;
+      } catch (IllegalArgumentException e) {
+        // expected
+      }
+    }
+
+    TellerWorkload workload = new TellerWorkload(10, 100, 1, 0, 1, 1);
+    BankTeller teller = new BankTeller();
+    workload.addAccounts(teller);
+    try {
+      try {
+        TellerReplay.replayLines(teller, workload, 0);
+        return false;
+      } catch (IllegalArgumentException e) {
+        // expected
+      }
+      try {
+        TellerReplay.replayLines(teller, workload, 2);
+        return false;
+      } catch (IllegalArgumentException e) {
+        // expected: a BankTeller cannot be changed by many threads
+      }
+      try {
+        TellerReplay.replayFiles(teller, workload, new File[3], 1);
+        return false;
+      } catch (IllegalArgumentException e) {
+        // expected
+      }
+      try {
+        TellerReplay.replayLines(new BankTeller(), workload, 1);
+        return false;
+      } catch (NoSuchElementException e) {
+        // expected
+      }
+      try {
+        workload.addAccounts(teller);
+        return false;
+      } catch (IllegalStateException e) {
+        // expected: the accounts were already added
+      }
+      return workload.checksum(teller) != workload.getExpectedChecksum();
+    } catch (IOException | InterruptedException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Calls the test methods defined in this TellerReplayTester class
+   * 
+   * @param args
+   */
+  public static void main(String[] args) {
+    if (testTellerWorkloadDeterministic() == false) {
+      System.out.println("testTellerWorkloadDeterministic failed.");
+    }
+
+    if (testTellerWorkloadDistribution() == false) {
+      System.out.println("testTellerWorkloadDistribution failed.");
+    }
+
+    if (testTellerReplayLines() == false) {
+      System.out.println("testTellerReplayLines failed.");
+    }
+
+    if (testTellerReplayFiles() == false) {
+      System.out.println("testTellerReplayFiles failed.");
+    }
+
+    if (testTellerReplayMismatch() == false) {
+      System.out.println("testTellerReplayMismatch failed.");
+    }
+
+    if (testTellerReplayInvalidArguments() == false) {
+      System.out.println("testTellerReplayInvalidArguments failed.");
+    }
+  }
+}
@@ -0,0 +1,378 @@
+/////////////////////////////////////////// FILE  HEADER /////////////////////////////////////////////
+//
+// Title: Exceptional Bank Teller
+// Files: BankAccount.java, BankAccountTester.java, BankTeller.java, BankTellerTester.java,
+//        BankTellerBenchmark.java, TransactionLog.java, TransactionLoadResult.java,
+//        ConcurrentTransactionLog.java, ConcurrentBankAccount.java,
+//        ConcurrentBankAccountTester.java, ConcurrentBankTeller.java,
+//        ConcurrentBankTellerTester.java, TransactionStatus.java, TransactionListener.java,
+//        TransactionJournal.java, TransactionJournalTester.java, TransactionSnapshot.java,
+//        ColdAccountStore.java, TieredAccountMap.java, TieredBankTeller.java,
+//        TieredBankTellerTester.java, TransactionBatch.java, TransactionBatchResult.java,
+//        TransactionRecord.java, TransactionEvent.java, TransactionPipeline.java,
+//        TransactionPipelineTester.java, LatencyHistogram.java, TellerMetrics.java,
+//        TellerMetricsTester.java, TransactionFile.java, TransactionFileTester.java,
+//        HighPrecisionBankAccount.java, HighPrecisionBankAccountTester.java, AccountIndex.java,
+//        AccountIndexTester.java, ReconciliationReport.java, ReconciliationTask.java,
+//        TransactionIDCache.java, TransactionIDCacheTester.java, ShardTransport.java,
+//        LocalShardTransport.java, SocketShardTransport.java, ShardServer.java,
+//        ShardedBankTeller.java, ShardedBankTellerTester.java, TransactionParser.java,
+//        TransactionParserTester.java, TellerServer.java, TellerClient.java,
+//        TellerLoadGenerator.java, TellerServerTester.java, TransactionClock.java,
+//        TransactionTimeIndex.java, TransactionHistory.java, TransactionHistoryTester.java,
+//        TellerWorkload.java, TellerReplay.java, TellerReplayResult.java, TellerReplayTester.java
+// This File: TellerServer.java
+// 
+// Name: Benjamin Tarmann
+// Email: btarmann@wisc.edu
+//
+///////////////////////////////////////// 100 COLUMNS WIDE /////////////////////////////////////////
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * This class serves the accounts of a BankTeller over TCP, for TellerClient clients, so that other
+ * processes can find accounts, read their balances and recent transactions, and add transactions
+ * to them without holding a copy of the BankTeller. Each connection is served by a thread of its
+ * own, which reads requests and answers them in order, so a client may send many requests before
+ * reading their answers. The threads are virtual threads when the JVM has them (Java 21), so that
+ * thousands of connections cost little memory, and pooled platform threads otherwise.
+ * 
+ * A request is an operation code (1 byte) followed by its arguments: account IDs and transactions
+ * are written as by DataOutputStream.writeUTF(), and the deposit flag and amount of an APPLY
+ * request as a boolean and an int. An answer starts with OK, NOT_FOUND or FAILED (1 byte). OK is
+ * followed by the result of the operation, and FAILED by the message of the exception the
+ * BankTeller threw.
+ * 
+ * APPLY requests that arrive together are applied with a single BankTeller.applyBatch() call, which
+ * finds each account and takes its lock once for all of its records rather than once per request.
+ * The records are applied in the order they were sent, so each one is applied or rejected exactly
+ * as if it had been sent on its own.
+ * 
+ * @author Benjamin Tarmann
+ */
+public class TellerServer implements Closeable {
+  static final byte FIND_ACCOUNT = 1; // ID; answers OK and the account, or NOT_FOUND
+  static final byte GET_BALANCE = 2; // ID; answers OK and the balance (long), or NOT_FOUND
+  static final byte RECENT_TRANSACTIONS = 3; // ID; answers OK, the count and the transactions
+  static final byte ADD_TRANSACTION = 4; // ID and transaction; answers OK and the status ordinal
+  static final byte APPLY = 5; // ID, deposit flag and amount; answers OK and the status ordinal
+  static final byte OK = 0;
+  static final byte NOT_FOUND = 1;
+  static final byte FAILED = 2;
+  static final int BUFFER_SIZE = 16 * 1024;
+  static final int MAX_BATCH = 1024; // most APPLY requests applied by one applyBatch() call
+  private static final int BACKLOG = 4096; // connections waiting to be accepted
+  private static final long MAX_BACKOFF_MILLIS = 1_000; // longest wait after a failed accept
+
+  private final BankTeller teller;
+  private final ServerSocket serverSocket;
+  private final Set<Socket> connections; // open connections, closed when the server is closed
+  private final ExecutorService connectionThreads;
+  private final Thread acceptor;
+
+  /**
+   * Creates a server for a BankTeller that listens on a port of the loopback address
+   * 
+   * @param teller the BankTeller holding the accounts, which should be a ConcurrentBankTeller if
+   *               more than one client connects
+   * @param port   the port, or 0 for any free port
+   * @throws IOException              if the port cannot be listened on
+   * @throws IllegalArgumentException if teller is null
+   */
+  public TellerServer(BankTeller teller, int port) throws IOException {
+    this(teller, new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+  }
+
+  /**
+   * Creates a server for a BankTeller that listens on an address
+   * 
+   * @param teller  the BankTeller holding the accounts, which should be a ConcurrentBankTeller if
+   *                more than one client connects
+   * @param address the address and port, where a port of 0 means any free port
+   * @throws IOException              if the address cannot be listened on
+   * @throws IllegalArgumentException if teller is null
+   */
+  public TellerServer(BankTeller teller, InetSocketAddress address) throws IOException {
+    // checks that teller is not null
+    if (teller == null) {
+      throw new IllegalArgumentException("Teller is null.");
+    }
+
+    this.teller = teller;
+    serverSocket = new ServerSocket();
+    serverSocket.bind(address, BACKLOG);
+    connections = ConcurrentHashMap.newKeySet();
+    connectionThreads = newThreadPerTaskExecutor("teller-server-" + getPort() + "-connection");
+    acceptor = new Thread(this::accept, "teller-server-" + getPort());
+    acceptor.setDaemon(true);
+    acceptor.start();
+  }
+
+  /**
+   * Creates an executor that runs each task on a thread of its own: a new virtual thread if the
+   * JVM has them, or else a pooled daemon platform thread. Virtual threads are created through
+   * reflection, since Executors.newVirtualThreadPerTaskExecutor() does not exist before Java 21.
+   * 
+   * @param name name of the platform threads
+   * @return the executor
+   */
+  static ExecutorService newThreadPerTaskExecutor(String name) {
+    try {
+      Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+      return (ExecutorService) factory.invoke(null);
+    } catch (ReflectiveOperationException e) {
+      // the method does not exist, or virtual threads are a disabled preview feature (Java 19-20)
+      return Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        return thread;
+      });
+    }
+  }
+
+  /**
+   * Gets the port this server listens on
+   * 
+   * @return the port
+   */
+  public int getPort() {
+    return serverSocket.getLocalPort();
+  }
+
+  /**
+   * Gets the number of open connections
+   * 
+   * @return the number of connections that are being served
+   */
+  public int getConnectionsCount() {
+    return connections.size();
+  }
+
+  /**
+   * Accepts connections until the server is closed, and starts a thread for each of them. While
+   * accepting keeps failing, for example because the process has no file descriptors left, the
+   * thread waits before trying again, twice as long after each failure up to MAX_BACKOFF_MILLIS.
+   */
+  private void accept() {
+    long backoffMillis = 0; // time waited after the last failure, or 0 if the last accept worked
+    while (true) {
+      Socket socket;
+      try {
+        socket = serverSocket.accept();
+      } catch (IOException e) {
+        if (serverSocket.isClosed()) {
+          return;
+        }
+        backoffMillis = Math.min(Math.max(1, backoffMillis * 2), MAX_BACKOFF_MILLIS);
+        try {
+          Thread.sleep(backoffMillis);
+        } catch (InterruptedException interrupted) {
+          return;
+        }
+        continue;
+      }
+      backoffMillis = 0;
+      serveConnection(socket);
+    }
+  }
+
+  /**
+   * Starts serving an accepted connection on a thread of its own, or closes it if the server was
+   * closed while it was accepted
+   * 
+   * @param socket the accepted connection
+   */
+  private void serveConnection(Socket socket) {
+    try {
+      socket.setTcpNoDelay(true);
+      connections.add(socket);
+
+      // close() closes the connections after the server socket, so it may have missed this one
+      if (!serverSocket.isClosed()) {
+        connectionThreads.execute(() -> serve(socket));
+        return;
+      }
+    } catch (IOException | RejectedExecutionException e) {
+      // the connection failed, or the server was closed and no longer starts threads
+    }
+    connections.remove(socket);
+    try {
+      socket.close();
+    } catch (IOException e) {
+      // the connection is dropped either way
+    }
+  }
+
+  /**
+   * Answers the requests of one connection until the client closes it or the server is closed
+   * 
+   * @param socket the connection
+   */
+  private void serve(Socket socket) {
+    try (DataInputStream input =
+        new DataInputStream(new BufferedInputStream(socket.getInputStream(), BUFFER_SIZE));
+        DataOutputStream output =
+            new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), BUFFER_SIZE))) {
+      TransactionBatch batch = new TransactionBatch(MAX_BATCH);
+      while (true) {
+        // answers to pipelined requests are sent together once no request is waiting
+        if (input.available() == 0) {
+          applyBatch(batch, output);
+          output.flush();
+        }
+
+        byte operation;
+        try {
+          operation = input.readByte();
+        } catch (EOFException e) {
+          return; // the client closed the connection
+        }
+        if (operation == APPLY) {
+          batch.add(input.readUTF(), input.readBoolean(), input.readInt());
+          if (batch.size() == MAX_BATCH) {
+            applyBatch(batch, output);
+          }
+        } else {
+          applyBatch(batch, output); // the answers must stay in the order of the requests
+          answer(operation, input, output);
+        }
+      }
+    } catch (IOException e) {
+      return; // the connection failed or the server was closed
+    } finally {
+      connections.remove(socket);
+    }
+  }
+
+  /**
+   * Applies the APPLY requests collected so far and writes their answers, then clears the batch
+   * 
+   * @param batch  the records of the requests, which may be empty
+   * @param output the stream the answers are written to
+   * @throws IOException if the answers cannot be written
+   */
+  private void applyBatch(TransactionBatch batch, DataOutputStream output) throws IOException {
+    if (batch.size() == 0) {
+      return;
+    }
+    TransactionBatchResult result = teller.applyBatch(batch);
+    for (int i = 0; i < result.size(); i++) {
+      output.writeByte(OK);
+      output.writeByte(result.getStatus(i).ordinal());
+    }
+    batch.clear();
+  }
+
+  /**
+   * Reads the arguments of one request other than APPLY, applies it to the BankTeller and writes
+   * its answer
+   * 
+   * @param operation the operation code of the request
+   * @param input     the stream the arguments are read from
+   * @param output    the stream the answer is written to
+   * @throws IOException if the request cannot be read or answered, or is not a valid request
+   */
+  private void answer(byte operation, DataInputStream input, DataOutputStream output)
+      throws IOException {
+    if (operation < FIND_ACCOUNT || operation > ADD_TRANSACTION) {
+      throw new IOException("Unknown operation " + operation + ".");
+    }
+    String id = input.readUTF();
+    String transaction = operation == ADD_TRANSACTION ? input.readUTF() : null;
+    try {
+      BankAccount account;
+      try {
+        account = teller.findAccount(id);
+      } catch (NoSuchElementException e) {
+        account = null;
+      }
+
+      if (operation == ADD_TRANSACTION) {
+        TransactionStatus status = account == null ? TransactionStatus.ACCOUNT_NOT_FOUND
+            : teller.tryAddTransaction(transaction, account);
+        output.writeByte(OK);
+        output.writeByte(status.ordinal());
+      } else if (account == null) {
+        output.writeByte(NOT_FOUND);
+      } else if (operation == FIND_ACCOUNT) {
+        output.writeByte(OK);
+        TransactionSnapshot.writeAccount(output, account);
+      } else if (operation == GET_BALANCE) {
+        long balance = account.getBalance();
+        output.writeByte(OK);
+        output.writeLong(balance);
+      } else {
+        String[] recent = account.getMostRecentTransactions();
+        int count = 0;
+        while (count < recent.length && recent[count] != null) {
+          count++;
+        }
+        output.writeByte(OK);
+        output.writeByte(count);
+        for (int i = 0; i < count; i++) {
+          output.writeUTF(recent[i]);
+        }
+      }
+    } catch (RuntimeException e) {
+      // the request was read completely, so the connection can go on with the next one
+      output.writeByte(FAILED);
+      output.writeUTF(String.valueOf(e.getMessage()));
+    }
+  }
+
+  /**
+   * Stops accepting connections, closes the open ones and waits for the server thread to end.
+   * The BankTeller stays usable. Closing a closed server has no effect.
+   * 
+   * @throws IOException if the server socket cannot be closed
+   */
+  @Override
+  public void close() throws IOException {
+    serverSocket.close();
+    for (Socket socket : connections) {
+      socket.close();
+    }
+    connectionThreads.shutdown();
+    try {
+      acceptor.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Serves a ConcurrentBankTeller with a number of accounts until the process is stopped, for
+   * TellerLoadGenerator to connect to. The accounts have the IDs TellerLoadGenerator uses.
+   * 
+   * @param args the port and the number of accounts, which are 7070 and 10000 if not given
+   * @throws IOException          if the port cannot be listened on
+   * @throws InterruptedException if the main thread is interrupted
+   */
+  public static void main(String[] args) throws IOException, InterruptedException {
+    int port = args.length > 0 ? Integer.parseInt(args[0]) : 7070;
+    int accounts = args.length > 1 ? Integer.parseInt(args[1]) : 10_000;
+    ConcurrentBankTeller teller = new ConcurrentBankTeller();
+    TellerLoadGenerator.addAccounts(teller, accounts);
+    TellerServer server = new TellerServer(teller, port);
+    System.out.println("Serving " + accounts + " accounts on port " + server.getPort() + ".");
+    server.acceptor.join(); // the server threads are daemon threads
+  }
+}
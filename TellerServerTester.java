@@ -0,0 +1,309 @@
+/////////////////////////////////////////// FILE  HEADER /////////////////////////////////////////////
+//
+// Title: Exceptional Bank Teller
+// Files: BankAccount.java, BankAccountTester.java, BankTeller.java, BankTellerTester.java,
+//        BankTellerBenchmark.java, TransactionLog.java, TransactionLoadResult.java,
+//        ConcurrentTransactionLog.java, ConcurrentBankAccount.java,
+//        ConcurrentBankAccountTester.java, ConcurrentBankTeller.java,
+//        ConcurrentBankTellerTester.java, TransactionStatus.java, TransactionListener.java,
+//        TransactionJournal.java, TransactionJournalTester.java, TransactionSnapshot.java,
+//        ColdAccountStore.java, TieredAccountMap.java, TieredBankTeller.java,
+//        TieredBankTellerTester.java, TransactionBatch.java, TransactionBatchResult.java,
+//        TransactionRecord.java, TransactionEvent.java, TransactionPipeline.java,
+//        TransactionPipelineTester.java, LatencyHistogram.java, TellerMetrics.java,
+//        TellerMetricsTester.java, TransactionFile.java, TransactionFileTester.java,
+//        HighPrecisionBankAccount.java, HighPrecisionBankAccountTester.java, AccountIndex.java,
+//        AccountIndexTester.java, ReconciliationReport.java, ReconciliationTask.java,
+//        TransactionIDCache.java, TransactionIDCacheTester.java, ShardTransport.java,
+//        LocalShardTransport.java, SocketShardTransport.java, ShardServer.java,
+//        ShardedBankTeller.java, ShardedBankTellerTester.java, TransactionParser.java,
+//        TransactionParserTester.java, TellerServer.java, TellerClient.java,
+//        TellerLoadGenerator.java, TellerServerTester.java, TransactionClock.java,
+//        TransactionTimeIndex.java, TransactionHistory.java, TransactionHistoryTester.java,
+//        TellerWorkload.java, TellerReplay.java, TellerReplayResult.java, TellerReplayTester.java
+// This File: TellerServerTester.java
+// 
+// Name: Benjamin Tarmann
+// Email: btarmann@wisc.edu
+//
+///////////////////////////////////////// 100 COLUMNS WIDE /////////////////////////////////////////
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+/**
+ * This class represents a tester for the TellerServer class, its TellerClient and the
+ * TellerLoadGenerator
+ * 
+ * @author Benjamin Tarmann
+ */
+public class TellerServerTester {
+
+  /**
+   * Serves a BankTeller and checks that a client finds its accounts, reads their balances and
+   * recent transactions, and adds transactions to them as the BankTeller itself does, including
+   * the transactions and accounts it rejects
+   * 
+   * @return true when this test verifies a correct functionality, and false otherwise.
+   */
+  public static boolean testTellerServerOperations() {
+    BankTeller teller = new BankTeller();
+    teller.addBankAccount(new BankAccount("ACC1", 100));
+    teller.addBankAccount(new BankAccount("ACC2", 50));
+    try (TellerServer server = new TellerServer(teller, 0);
+        TellerClient client = new TellerClient("localhost", server.getPort())) {
+      if (client.tryAddTransaction("ACC1", "1 20") != TransactionStatus.APPLIED
+          || client.tryAddTransaction("ACC1", "0 30") != TransactionStatus.APPLIED
+          || client.tryAddTransaction("ACC1", "2 30") != TransactionStatus.INVALID_TYPE
+          || client.tryAddTransaction("ACC2", "0 100") != TransactionStatus.INSUFFICIENT_FUNDS
+          || client.tryAddTransaction("NONE", "1 10") != TransactionStatus.ACCOUNT_NOT_FOUND) {
+        return false;
+      }
+      BankAccount copy = client.findAccount("ACC1");
+      if (client.getBalance("ACC1") != 90 || copy.getBalance() != 90
+          || !copy.getID().equals("ACC1") || client.getBalance("ACC2") != 50
+          || !Arrays.equals(client.getMostRecentTransactions("ACC1"),
+              teller.findAccount("ACC1").getMostRecentTransactions())
+          || !Arrays.equals(client.getMostRecentTransactions("ACC2"),
+              new String[] {"1 50", null, null, null, null})) {
+        return false;
+      }
+
+      // every request about a missing account fails without closing the connection
+      int notFound = 0;
+      try {
+        client.findAccount("NONE");
+      } catch (NoSuchElementException e) {
+        notFound++;
+      }
+      try {
+        client.getBalance("NONE");
+      } catch (NoSuchElementException e) {
+        notFound++;
+      }
+      try {
+        client.getMostRecentTransactions("NONE");
+      } catch (NoSuchElementException e) {
+        notFound++;
+      }
+      return notFound == 3 && client.getBalance("ACC1") == 90
+          && server.getConnectionsCount() == 1;
+    } catch (IOException | NoSuchElementException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Applies a batch of 5,000 random records through a client, which pipelines them over several
+   * windows, and the same batch to a copy of the BankTeller in this JVM. Checks that every record
+   * gets the same status, including those of missing accounts and invalid amounts, and that the
+   * accounts end with the same balances.
+   * 
+   * @return true when this test verifies a correct functionality, and false otherwise.
+   */
+  public static boolean testTellerServerPipelinedBatch() {
+    BankTeller served = new ConcurrentBankTeller();
+    BankTeller local = new BankTeller();
+    for (int i = 0; i < 20; i++) {
+      served.addBankAccount(new BankAccount("ACC" + i, 100));
+      local.addBankAccount(new BankAccount("ACC" + i, 100));
+    }
+    Random random = new Random(7);
+    TransactionBatch batch = new TransactionBatch();
+    for (int i = 0; i < 5_000; i++) {
+      batch.add("ACC" + random.nextInt(22), random.nextBoolean(), random.nextInt(60) - 5);
+    }
+
+    try (TellerServer server = new TellerServer(served, 0);
+        TellerClient client = new TellerClient("localhost", server.getPort())) {
+      TransactionBatchResult remote = client.applyBatch(batch);
+      TransactionBatchResult expected = local.applyBatch(batch);
+      if (remote.size() != batch.size() || remote.getAppliedCount() != expected.getAppliedCount()
+          || remote.getAppliedCount() == 0 || remote.getRejectedCount() == 0) {
+        return false;
+      }
+      for (int i = 0; i < batch.size(); i++) {
+        if (remote.getStatus(i) != expected.getStatus(i)) {
+          return false;
+        }
+      }
+      for (int i = 0; i < 20; i++) {
+        if (client.getBalance("ACC" + i) != local.findAccount("ACC" + i).getBalance()) {
+          return false;
+        }
+      }
+      return client.applyBatch(new TransactionBatch()).size() == 0;
+    } catch (IOException | NoSuchElementException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Generates load on a server from 200 connections at once, and checks that every round trip is
+   * recorded and every transaction is applied exactly once
+   * 
+   * @return true when this test verifies a correct functionality, and false otherwise.
+   */
+  public static boolean testTellerServerLoad() {
+    ConcurrentBankTeller teller = new ConcurrentBankTeller();
+    TellerLoadGenerator.addAccounts(teller, 50);
+    try (TellerServer server = new TellerServer(teller, 0)) {
+      LatencyHistogram latencies = new LatencyHistogram();
+      double throughput = TellerLoadGenerator.run("localhost", server.getPort(), 200, 10, 8, 50,
+          42, latencies);
+      int transactions = -50; // the initial balances count as transactions
+      for (int i = 0; i < 50; i++) {
+        transactions += teller.findAccount(TellerLoadGenerator.ACCOUNT_PREFIX + i)
+            .getTransactionsCount();
+      }
+      return throughput > 0 && latencies.getCount() == 200 * 10 && transactions == 200 * 10 * 8;
+    } catch (IOException | InterruptedException | NoSuchElementException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Closes a server while clients keep connecting to it, and checks that every connection the
+   * server accepted is closed, including the ones accepted while it was being closed
+   * 
+   * @return true when this test verifies a correct functionality, and false otherwise.
+   */
+  public static boolean testTellerServerCloseWhileConnecting() {
+    final int threads = 4;
+    ArrayList<Socket> sockets = new ArrayList<Socket>();
+    try {
+      TellerServer server = new TellerServer(new BankTeller(), 0);
+      int port = server.getPort();
+      Thread[] connectors = new Thread[threads];
+      for (int t = 0; t < threads; t++) {
+        connectors[t] = new Thread(() -> {
+          for (int i = 0; i < 200; i++) {
+            try {
+              Socket socket = new Socket(InetAddress.getLoopbackAddress(), port);
+              synchronized (sockets) {
+                sockets.add(socket);
+              }
+            } catch (IOException e) {
+              return; // the server was closed
+            }
+          }
+        });
+        connectors[t].start();
+      }
+      Thread.sleep(20);
+      server.close();
+      for (Thread connector : connectors) {
+        connector.join();
+      }
+
+      // a connection the server closed or never accepted ends, one it leaked times out
+      for (Socket socket : sockets) {
+        socket.setSoTimeout(5_000);
+        try {
+          if (socket.getInputStream().read() != -1) {
+            return false;
+          }
+        } catch (SocketTimeoutException e) {
+          return false;
+        } catch (IOException e) {
+          // expected: the connection was reset
+        }
+      }
+      for (int i = 0; i < 100 && server.getConnectionsCount() > 0; i++) {
+        Thread.sleep(50); // the threads of the closed connections are still ending
+      }
+      return server.getConnectionsCount() == 0;
+    } catch (IOException | InterruptedException e) {
+      return false;
+    } finally {
+      for (Socket socket : sockets) {
+        try {
+          socket.close();
+        } catch (IOException e) {
+          // the socket is dropped either way
+        }
+      }
+    }
+  }
+
+  /**
+   * Checks that a server needs a BankTeller, that the load generator needs a positive load, and
+   * that a client fails with an UncheckedIOException once its server is closed
+   * 
+   * @return true when this test verifies a correct functionality, and false otherwise.
+   */
+  public static boolean testTellerServerInvalidArguments() {
+    try {
+      new TellerServer(null, 0).close();
+      return false;
+    } catch (IllegalArgumentException e) {
+      // expected
+    } catch (IOException e) {
+      return false;
+    }
+
+    BankTeller teller = new BankTeller();
+    teller.addBankAccount(new BankAccount("ACC1", 100));
+    try {
+      TellerServer server = new TellerServer(teller, 0);
+      try {
+        TellerLoadGenerator.run("localhost", server.getPort(), 0, 1, 1, 1, 42,
+            new LatencyHistogram());
+        return false;
+      } catch (IllegalArgumentException e) {
+        // expected
+      }
+
+      try (TellerClient client = new TellerClient("localhost", server.getPort())) {
+        if (client.getBalance("ACC1") != 100) {
+          return false;
+        }
+        server.close();
+        server.close(); // closing twice has no effect
+        try {
+          client.getBalance("ACC1");
+          return false;
+        } catch (UncheckedIOException e) {
+          // expected: the server closed the connection
+        }
+      }
+      return teller.findAccount("ACC1").getBalance() == 100;
+    } catch (IOException | InterruptedException | NoSuchElementException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Calls the test methods defined in this TellerServerTester class
+   * 
+   * @param args
+   */
+  public static void main(String[] args) {
+    if (testTellerServerOperations() == false) {
+      System.out.println("testTellerServerOperations failed.");
+    }
+
+    if (testTellerServerPipelinedBatch() == false) {
+      System.out.println("testTellerServerPipelinedBatch failed.");
+    }
+
+    if (testTellerServerLoad() == false) {
+      System.out.println("testTellerServerLoad failed.");
+    }
+
+    if (testTellerServerCloseWhileConnecting() == false) {
+      System.out.println("testTellerServerCloseWhileConnecting failed.");
+    }
+
+    if (testTellerServerInvalidArguments() == false) {
+      System.out.println("testTellerServerInvalidArguments failed.");
+    }
+  }
+}
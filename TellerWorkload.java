@@ -0,0 +1,340 @@
+/////////////////////////////////////////// FILE  HEADER /////////////////////////////////////////////
+//
+// Title: Exceptional Bank Teller
+// Files: BankAccount.java, BankAccountTester.java, BankTeller.java, BankTellerTester.java,
+//        BankTellerBenchmark.java, TransactionLog.java, TransactionLoadResult.java,
+//        ConcurrentTransactionLog.java, ConcurrentBankAccount.java,
+//        ConcurrentBankAccountTester.java, ConcurrentBankTeller.java,
+//        ConcurrentBankTellerTester.java, TransactionStatus.java, TransactionListener.java,
+//        TransactionJournal.java, TransactionJournalTester.java, TransactionSnapshot.java,
+//        ColdAccountStore.java, TieredAccountMap.java, TieredBankTeller.java,
+//        TieredBankTellerTester.java, TransactionBatch.java, TransactionBatchResult.java,
+//        TransactionRecord.java, TransactionEvent.java, TransactionPipeline.java,
+//        TransactionPipelineTester.java, LatencyHistogram.java, TellerMetrics.java,
+//        TellerMetricsTester.java, TransactionFile.java, TransactionFileTester.java,
+//        HighPrecisionBankAccount.java, HighPrecisionBankAccountTester.java, AccountIndex.java,
+//        AccountIndexTester.java, ReconciliationReport.java, ReconciliationTask.java,
+//        TransactionIDCache.java, TransactionIDCacheTester.java, ShardTransport.java,
+//        LocalShardTransport.java, SocketShardTransport.java, ShardServer.java,
+//        ShardedBankTeller.java, ShardedBankTellerTester.java, TransactionParser.java,
+//        TransactionParserTester.java, TellerServer.java, TellerClient.java,
+//        TellerLoadGenerator.java, TellerServerTester.java, TransactionClock.java,
+//        TransactionTimeIndex.java, TransactionHistory.java, TransactionHistoryTester.java,
+//        TellerWorkload.java, TellerReplay.java, TellerReplayResult.java, TellerReplayTester.java
+// This File: TellerWorkload.java
+// 
+// Name: Benjamin Tarmann
+// Email: btarmann@wisc.edu
+//
+///////////////////////////////////////// 100 COLUMNS WIDE /////////////////////////////////////////
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+/**
+ * This class models a synthetic workload for a BankTeller: a number of accounts and a sequence of
+ * transaction lines for them, created from a seed so that the same arguments always create the
+ * same workload. The account of each line is drawn from a Zipfian distribution, in which the
+ * account of rank k (counting from 1) is chosen with a probability proportional to 1 / k^skew: a
+ * skew of 0 spreads the lines evenly over the accounts, and a skew around 1 sends most of them to
+ * a few hot accounts. Account 0 is the hottest one. A given fraction of the lines is malformed in
+ * one of the ways loadTransactions() skips, and the other lines are deposits of 1 to 100 or
+ * withdrawals of 10 to 100.
+ * 
+ * Every account starts with a balance larger than all of its withdrawals together, so no line is
+ * rejected whatever order the lines are applied in, and the final balances do not depend on how
+ * many threads applied them. getExpectedChecksum() gives the checksum of the balances once every
+ * line was applied, which TellerReplay compares the replayed balances with.
+ * 
+ * @author Benjamin Tarmann
+ */
+public class TellerWorkload {
+  static final String ACCOUNT_PREFIX = "replay-"; // IDs of the accounts are this and a number
+  private static final int MINIMUM_BALANCE = 10; // smallest balance a BankAccount starts with
+  private static final long CHECKSUM_BASIS = 0xCBF29CE484222325L; // FNV-1a offset basis
+  private static final long CHECKSUM_PRIME = 0x100000001B3L; // FNV-1a prime
+
+  private final String[] lines;
+  private final int[] lineAccounts; // index of the account of each line
+  private final int[] initialBalances;
+  private final long[] expectedBalances; // balances once every line was applied
+  private final int malformedCount;
+
+  /**
+   * Creates a new workload
+   * 
+   * @param accounts       number of accounts
+   * @param transactions   number of transaction lines
+   * @param skew           exponent of the Zipfian distribution of the lines over the accounts, 0
+   *                       for an even distribution
+   * @param malformedRatio fraction of the lines that are malformed
+   * @param depositRatio   fraction of the correctly formatted lines that are deposits
+   * @param seed           seed of the random generator, so that the workload is repeatable
+   * @throws IllegalArgumentException if accounts is not positive, transactions is negative, skew
+   *                                  is negative, a ratio is not between 0 and 1, or an account
+   *                                  withdraws more than an initial balance can hold
+   */
+  public TellerWorkload(int accounts, int transactions, double skew, double malformedRatio,
+      double depositRatio, long seed) {
+    // checks that the workload has a valid shape
+    if (accounts < 1 || transactions < 0) {
+      throw new IllegalArgumentException(
+          "Workload must have at least one account and a non-negative number of transactions.");
+    }
+    if (!(skew >= 0) || Double.isInfinite(skew)) {
+      throw new IllegalArgumentException("Skew must be a non-negative number.");
+    }
+    if (!(malformedRatio >= 0 && malformedRatio <= 1 && depositRatio >= 0
+        && depositRatio <= 1)) {
+      throw new IllegalArgumentException("Ratios must be between 0 and 1.");
+    }
+
+    lines = new String[transactions];
+    lineAccounts = new int[transactions];
+    long[] deposits = new long[accounts];
+    long[] withdrawals = new long[accounts];
+    double[] distribution = zipfDistribution(accounts, skew);
+    Random random = new Random(seed);
+    int malformed = 0;
+    for (int i = 0; i < transactions; i++) {
+      int account = Arrays.binarySearch(distribution, random.nextDouble());
+      account = Math.min(account < 0 ? -account - 1 : account, accounts - 1);
+      lineAccounts[i] = account;
+
+      if (random.nextDouble() < malformedRatio) {
+        lines[i] = createMalformedLine(random);
+        malformed++;
+      } else if (random.nextDouble() < depositRatio) {
+        int amount = 1 + random.nextInt(100);
+        lines[i] = "1 " + amount;
+        deposits[account] += amount;
+      } else {
+        int amount = 10 * (1 + random.nextInt(10));
+        lines[i] = "0 " + amount;
+        withdrawals[account] += amount;
+      }
+    }
+    malformedCount = malformed;
+
+    // gives every account enough money for all of its withdrawals
+    initialBalances = new int[accounts];
+    expectedBalances = new long[accounts];
+    for (int account = 0; account < accounts; account++) {
+      if (withdrawals[account] > Integer.MAX_VALUE - MINIMUM_BALANCE) {
+        throw new IllegalArgumentException(
+            "Workload withdraws more from an account than an initial balance can hold.");
+      }
+      initialBalances[account] = MINIMUM_BALANCE + (int) withdrawals[account];
+      expectedBalances[account] = initialBalances[account] + deposits[account]
+          - withdrawals[account];
+    }
+  }
+
+  /**
+   * Creates the cumulative Zipfian distribution of the accounts
+   * 
+   * @param accounts number of accounts
+   * @param skew     exponent of the distribution
+   * @return for each account, the probability that a line goes to it or to a hotter account
+   */
+  private static double[] zipfDistribution(int accounts, double skew) {
+    double[] distribution = new double[accounts];
+    double total = 0;
+    for (int account = 0; account < accounts; account++) {
+      total += Math.pow(account + 1, -skew);
+      distribution[account] = total;
+    }
+    for (int account = 0; account < accounts; account++) {
+      distribution[account] /= total;
+    }
+    distribution[accounts - 1] = 1; // rounding must not leave a gap at the end
+    return distribution;
+  }
+
+  /**
+   * Creates a transaction line that loadTransactions() skips: an amount that is not a number, a
+   * type that is neither deposit nor withdrawal, or a withdrawal that is not a multiple of 10
+   * 
+   * @param random random generator to use
+   * @return the malformed line
+   */
+  private static String createMalformedLine(Random random) {
+    switch (random.nextInt(3)) {
+      case 0:
+        return "1 " + (1 + random.nextInt(100)) + "x";
+      case 1:
+        return "2 " + (1 + random.nextInt(100));
+      default:
+        return "0 " + (5 + 10 * random.nextInt(10));
+    }
+  }
+
+  /**
+   * Gets the number of accounts of this workload
+   * 
+   * @return the number of accounts
+   */
+  public int getAccountsCount() {
+    return initialBalances.length;
+  }
+
+  /**
+   * Gets the number of transaction lines of this workload
+   * 
+   * @return the number of lines
+   */
+  public int getLinesCount() {
+    return lines.length;
+  }
+
+  /**
+   * Gets the number of transaction lines of this workload that are malformed
+   * 
+   * @return the number of malformed lines
+   */
+  public int getMalformedCount() {
+    return malformedCount;
+  }
+
+  /**
+   * Gets the ID of an account of this workload
+   * 
+   * @param account index of the account, from 0 to getAccountsCount() - 1
+   * @return the account ID
+   */
+  public String getAccountID(int account) {
+    return ACCOUNT_PREFIX + account;
+  }
+
+  /**
+   * Gets the balance an account of this workload starts with
+   * 
+   * @param account index of the account
+   * @return the initial balance
+   */
+  public int getInitialBalance(int account) {
+    return initialBalances[account];
+  }
+
+  /**
+   * Gets the balance an account of this workload has once every line was applied
+   * 
+   * @param account index of the account
+   * @return the expected balance
+   */
+  public long getExpectedBalance(int account) {
+    return expectedBalances[account];
+  }
+
+  /**
+   * Gets a transaction line of this workload
+   * 
+   * @param index index of the line, from 0 to getLinesCount() - 1
+   * @return the transaction line
+   */
+  public String getLine(int index) {
+    return lines[index];
+  }
+
+  /**
+   * Gets the account a transaction line of this workload goes to
+   * 
+   * @param index index of the line
+   * @return index of the account
+   */
+  public int getLineAccount(int index) {
+    return lineAccounts[index];
+  }
+
+  /**
+   * Adds the accounts of this workload, with their initial balances, to a BankTeller. The accounts
+   * are ConcurrentBankAccount objects if the BankTeller is a ConcurrentBankTeller, so that many
+   * threads can replay lines into them, and BankAccount objects otherwise.
+   * 
+   * @param teller the BankTeller, which must not hold accounts with the same IDs yet
+   * @throws IllegalStateException if the BankTeller already holds one of the account IDs
+   */
+  public void addAccounts(BankTeller teller) {
+    boolean concurrent = teller instanceof ConcurrentBankTeller;
+    for (int account = 0; account < initialBalances.length; account++) {
+      String id = getAccountID(account);
+      teller.addBankAccount(concurrent ? new ConcurrentBankAccount(id, initialBalances[account])
+          : new BankAccount(id, initialBalances[account]));
+    }
+  }
+
+  /**
+   * Writes the transaction lines of this workload to one file per account, named after the
+   * account ID with a ".txt" extension, as loadTransactionsParallel() expects. Every file holds
+   * the lines of its account in the order of the workload; an account without lines gets an
+   * empty file.
+   * 
+   * @param directory existing directory the files are written to
+   * @return the written files, indexed by account
+   * @throws IOException if a file cannot be written
+   */
+  public File[] writeFiles(File directory) throws IOException {
+    // sorts the indices of the lines by account, keeping the order of each account's lines
+    int accounts = initialBalances.length;
+    int[] starts = new int[accounts + 1];
+    for (int account : lineAccounts) {
+      starts[account + 1]++;
+    }
+    for (int account = 0; account < accounts; account++) {
+      starts[account + 1] += starts[account];
+    }
+    int[] order = new int[lines.length];
+    int[] next = Arrays.copyOf(starts, accounts);
+    for (int i = 0; i < lines.length; i++) {
+      order[next[lineAccounts[i]]++] = i;
+    }
+
+    File[] files = new File[accounts];
+    for (int account = 0; account < accounts; account++) {
+      files[account] = new File(directory, getAccountID(account) + ".txt");
+      try (BufferedWriter writer = new BufferedWriter(new FileWriter(files[account]))) {
+        for (int i = starts[account]; i < starts[account + 1]; i++) {
+          writer.write(lines[order[i]]);
+          writer.newLine();
+        }
+      }
+    }
+    return files;
+  }
+
+  /**
+   * Computes the checksum of the balances of this workload's accounts in a BankTeller. The
+   * checksum is a 64-bit FNV-1a hash of the balances in the order of the accounts, so it changes
+   * if any balance does, and it equals getExpectedChecksum() once every line was applied.
+   * 
+   * @param teller the BankTeller that holds the accounts
+   * @return the checksum of the balances
+   * @throws NoSuchElementException if the BankTeller does not hold one of the accounts
+   */
+  public long checksum(BankTeller teller) {
+    long checksum = CHECKSUM_BASIS;
+    for (int account = 0; account < initialBalances.length; account++) {
+      checksum = (checksum ^ teller.findAccount(getAccountID(account)).getBalance())
+          * CHECKSUM_PRIME;
+    }
+    return checksum;
+  }
+
+  /**
+   * Gets the checksum that checksum() computes once every line of this workload was applied
+   * 
+   * @return the expected checksum of the balances
+   */
+  public long getExpectedChecksum() {
+    long checksum = CHECKSUM_BASIS;
+    for (long balance : expectedBalances) {
+      checksum = (checksum ^ balance) * CHECKSUM_PRIME;
+    }
+    return checksum;
+  }
+}
@@ -0,0 +1,389 @@
+/////////////////////////////////////////// FILE  HEADER /////////////////////////////////////////////
+//
+// Title: Exceptional Bank Teller
+// Files: BankAccount.java, BankAccountTester.java, BankTeller.java, BankTellerTester.java,
+//        BankTellerBenchmark.java, TransactionLog.java, TransactionLoadResult.java,
+//        ConcurrentTransactionLog.java, ConcurrentBankAccount.java,
+//        ConcurrentBankAccountTester.java, ConcurrentBankTeller.java,
+//        ConcurrentBankTellerTester.java, TransactionStatus.java, TransactionListener.java,
+//        TransactionJournal.java, TransactionJournalTester.java, TransactionSnapshot.java,
+//        ColdAccountStore.java, TieredAccountMap.java, TieredBankTeller.java,
+//        TieredBankTellerTester.java, TransactionBatch.java, TransactionBatchResult.java,
+//        TransactionRecord.java, TransactionEvent.java, TransactionPipeline.java,
+//        TransactionPipelineTester.java, LatencyHistogram.java, TellerMetrics.java,
+//        TellerMetricsTester.java, TransactionFile.java, TransactionFileTester.java,
+//        HighPrecisionBankAccount.java, HighPrecisionBankAccountTester.java, AccountIndex.java,
+//        AccountIndexTester.java, ReconciliationReport.java, ReconciliationTask.java,
+//        TransactionIDCache.java, TransactionIDCacheTester.java, ShardTransport.java,
+//        LocalShardTransport.java, SocketShardTransport.java, ShardServer.java,
+//        ShardedBankTeller.java, ShardedBankTellerTester.java, TransactionParser.java,
+//        TransactionParserTester.java, TellerServer.java, TellerClient.java,
+//        TellerLoadGenerator.java, TellerServerTester.java, TransactionClock.java,
+//        TransactionTimeIndex.java, TransactionHistory.java, TransactionHistoryTester.java,
+//        TellerWorkload.java, TellerReplay.java, TellerReplayResult.java, TellerReplayTester.java
+// This File: TieredAccountMap.java
+// 
+// Name: Benjamin Tarmann
+// Email: btarmann@wisc.edu
+//
+///////////////////////////////////////// 100 COLUMNS WIDE /////////////////////////////////////////
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * This class models a map of bank accounts indexed by their account ID that keeps the recently
+ * used accounts as objects on the heap (the hot tier) and the other ones in a ColdAccountStore
+ * outside of the heap (the cold tier). Once the hot tier holds its capacity, adding or using
+ * another account evicts the least recently used hot account to the cold tier, and getting a cold
+ * account promotes it back to the hot tier.
+ * 
+ * Callers may keep an account object after it was evicted. So that such a reference stays valid,
+ * an evicted object is remembered through a weak reference until it is garbage collected: getting
+ * the account again promotes that same object, and a transaction applied to it promotes it right
+ * away, since its stored copy is no longer up to date. Only accounts nobody refers to are rebuilt
+ * from the cold tier.
+ * 
+ * The map counts hits (accounts found in the hot tier), misses (accounts promoted from the cold
+ * tier) and evictions, which can be used to size the hot tier. Its methods are synchronized, so it
+ * can be used by several threads, but the accounts themselves are not made thread-safe by it.
+ * 
+ * @author Benjamin Tarmann
+ */
+public class TieredAccountMap extends AbstractMap<String, BankAccount>
+    implements TransactionListener {
+  private final int hotCapacity;
+  private final LinkedHashMap<String, BankAccount> hot; // in order of last use
+  private final ColdAccountStore cold;
+  private final HashMap<String, EvictedReference> evicted; // evicted objects not yet collected
+  private final ReferenceQueue<BankAccount> collected; // evicted objects that were collected
+  private TransactionListener listener; // listener of every account, or null
+  private long hits;
+  private long misses;
+  private long evictions;
+
+  /**
+   * A weak reference to an evicted account object, which remembers the account ID so that it can
+   * be forgotten once the object is collected
+   */
+  private static class EvictedReference extends WeakReference<BankAccount> {
+    private final String id;
+
+    /**
+     * Creates a weak reference to an evicted account
+     * 
+     * @param account   the evicted account
+     * @param collected queue the reference is added to once the account is collected
+     */
+    private EvictedReference(BankAccount account, ReferenceQueue<BankAccount> collected) {
+      super(account, collected);
+      id = account.getID();
+    }
+  }
+
+  /**
+   * Creates a new empty map with the given capacity of its hot tier
+   * 
+   * @param hotCapacity largest number of accounts kept as objects
+   * @throws IllegalArgumentException if hotCapacity is less than 1
+   */
+  public TieredAccountMap(int hotCapacity) {
+    // checks that the hot tier can hold an account
+    if (hotCapacity < 1) {
+      throw new IllegalArgumentException("Hot tier must hold at least one account.");
+    }
+
+    this.hotCapacity = hotCapacity;
+    hot = new LinkedHashMap<String, BankAccount>(16, 0.75f, true);
+    cold = new ColdAccountStore();
+    evicted = new HashMap<String, EvictedReference>();
+    collected = new ReferenceQueue<BankAccount>();
+  }
+
+  /**
+   * Gets the account with the given ID, promoting it to the hot tier if it is cold
+   * 
+   * @param key the account ID
+   * @return the account, or null if there is no account with this ID
+   */
+  @Override
+  public synchronized BankAccount get(Object key) {
+    forgetCollected();
+    BankAccount account = hot.get(key);
+    if (account != null) {
+      hits++;
+      return account;
+    }
+    if (!(key instanceof String) || !cold.contains((String) key)) {
+      return null;
+    }
+    misses++;
+    return promote((String) key);
+  }
+
+  /**
+   * Adds an account to the hot tier unless there already is an account with its ID
+   * 
+   * @param key   the account ID
+   * @param value the account
+   * @return the account that already has this ID, or null if the account was added
+   */
+  @Override
+  public synchronized BankAccount putIfAbsent(String key, BankAccount value) {
+    forgetCollected();
+    BankAccount existing = hot.get(key);
+    if (existing == null) {
+      existing = cold.get(key);
+    }
+    if (existing == null) {
+      addHot(key, value);
+    }
+    return existing;
+  }
+
+  /**
+   * Adds an account to the hot tier, replacing the account that has its ID if there is one
+   * 
+   * @param key   the account ID
+   * @param value the account
+   * @return the replaced account, or null if there was none
+   */
+  @Override
+  public synchronized BankAccount put(String key, BankAccount value) {
+    forgetCollected();
+    BankAccount existing = hot.remove(key);
+    if (existing == null) {
+      existing = cold.remove(key);
+      evicted.remove(key);
+    }
+    addHot(key, value);
+    return existing;
+  }
+
+  /**
+   * Removes the account with the given ID from whichever tier holds it. A cold account is returned
+   * as the evicted object if a caller still holds it, and otherwise rebuilt from the cold tier.
+   * 
+   * @param key the account ID
+   * @return the removed account, or null if there was none
+   */
+  @Override
+  public synchronized BankAccount remove(Object key) {
+    forgetCollected();
+    BankAccount account = hot.remove(key);
+    if (account != null || !(key instanceof String) || !cold.contains((String) key)) {
+      return account;
+    }
+    EvictedReference reference = evicted.remove(key);
+    account = reference == null ? null : reference.get();
+    BankAccount stored = cold.remove((String) key);
+    return account != null ? account : stored;
+  }
+
+  /**
+   * Checks whether there is an account with the given ID, without promoting it
+   * 
+   * @param key the account ID
+   * @return true if there is an account with this ID
+   */
+  @Override
+  public synchronized boolean containsKey(Object key) {
+    return hot.containsKey(key) || (key instanceof String && cold.contains((String) key));
+  }
+
+  /**
+   * Gets the number of accounts in both tiers
+   * 
+   * @return the number of accounts
+   */
+  @Override
+  public synchronized int size() {
+    return hot.size() + cold.size();
+  }
+
+  /**
+   * Gets the accounts of both tiers. The entries of hot accounts hold the account objects, while
+   * the entries of cold accounts hold copies rebuilt from the cold tier, which are not promoted and
+   * whose changes are lost. The set does not change when accounts are added afterwards.
+   * 
+   * @return the accounts, indexed by their account ID
+   */
+  @Override
+  public synchronized Set<Map.Entry<String, BankAccount>> entrySet() {
+    ArrayList<Map.Entry<String, BankAccount>> entries =
+        new ArrayList<Map.Entry<String, BankAccount>>(size());
+    for (Map.Entry<String, BankAccount> entry : hot.entrySet()) {
+      entries.add(new SimpleImmutableEntry<String, BankAccount>(entry));
+    }
+    for (String id : cold.getIDs()) {
+      entries.add(new SimpleImmutableEntry<String, BankAccount>(id, cold.get(id)));
+    }
+
+    return new AbstractSet<Map.Entry<String, BankAccount>>() {
+      @Override
+      public Iterator<Map.Entry<String, BankAccount>> iterator() {
+        return entries.iterator();
+      }
+
+      @Override
+      public int size() {
+        return entries.size();
+      }
+    };
+  }
+
+  /**
+   * Sets the listener of every account, including the cold ones once they are promoted
+   * 
+   * @param listener the new listener, or null to remove the current one
+   */
+  public synchronized void setTransactionListener(TransactionListener listener) {
+    this.listener = listener;
+    for (BankAccount account : hot.values()) {
+      account.setTransactionListener(listener);
+    }
+  }
+
+  /**
+   * Promotes an evicted account object that a transaction was applied to, and passes the
+   * transaction on to the listener of the accounts. This is the listener of every evicted object.
+   * 
+   * @param account the account the transaction was applied to
+   * @param deposit true for a deposit, false for a withdrawal
+   * @param amount  the transaction amount
+   */
+  @Override
+  public void transactionApplied(BankAccount account, boolean deposit, int amount) {
+    TransactionListener currentListener;
+    synchronized (this) {
+      // the stored copy of the account is out of date, so the object takes its place again
+      EvictedReference reference = evicted.get(account.getID());
+      if (reference != null && reference.get() == account) {
+        promote(account.getID());
+      }
+      currentListener = listener;
+    }
+    if (currentListener != null) {
+      currentListener.transactionApplied(account, deposit, amount);
+    }
+  }
+
+  /**
+   * Gets the number of accounts found in the hot tier
+   * 
+   * @return the number of hits
+   */
+  public synchronized long getHitCount() {
+    return hits;
+  }
+
+  /**
+   * Gets the number of accounts that were found in the cold tier and promoted
+   * 
+   * @return the number of misses
+   */
+  public synchronized long getMissCount() {
+    return misses;
+  }
+
+  /**
+   * Gets the number of accounts evicted from the hot tier
+   * 
+   * @return the number of evictions
+   */
+  public synchronized long getEvictionCount() {
+    return evictions;
+  }
+
+  /**
+   * Gets the number of accounts in the hot tier
+   * 
+   * @return the number of hot accounts
+   */
+  public synchronized int getHotCount() {
+    return hot.size();
+  }
+
+  /**
+   * Gets the number of accounts in the cold tier
+   * 
+   * @return the number of cold accounts
+   */
+  public synchronized int getColdCount() {
+    return cold.size();
+  }
+
+  /**
+   * Gets the number of bytes the cold tier allocated outside of the heap
+   * 
+   * @return the allocated bytes
+   */
+  public synchronized long getColdBytes() {
+    return cold.getAllocatedBytes();
+  }
+
+  /**
+   * Moves a cold account to the hot tier. The evicted object of the account is used if it was not
+   * collected yet; otherwise the account is rebuilt from the cold tier.
+   * 
+   * @param id the account ID, which is in the cold tier
+   * @return the promoted account
+   */
+  private BankAccount promote(String id) {
+    EvictedReference reference = evicted.remove(id);
+    BankAccount account = reference == null ? null : reference.get();
+    BankAccount stored = cold.remove(id);
+    if (account == null) {
+      account = stored;
+    }
+    account.setTransactionListener(listener);
+    addHot(id, account);
+    return account;
+  }
+
+  /**
+   * Adds an account to the hot tier, evicting the least recently used one if it is full and the
+   * cold tier can store it
+   * 
+   * @param id      the account ID
+   * @param account the account
+   */
+  private void addHot(String id, BankAccount account) {
+    hot.put(id, account);
+    if (hot.size() > hotCapacity) {
+      Iterator<BankAccount> eldest = hot.values().iterator();
+      BankAccount evictedAccount = eldest.next();
+
+      // notices transactions applied through references that callers still hold
+      evictedAccount.setTransactionListener(this);
+      try {
+        cold.put(evictedAccount);
+      } catch (IllegalArgumentException e) {
+        // an account the cold tier cannot store stays hot instead of being lost
+        evictedAccount.setTransactionListener(listener);
+        return;
+      }
+      eldest.remove();
+      evicted.put(evictedAccount.getID(), new EvictedReference(evictedAccount, collected));
+      evictions++;
+    }
+  }
+
+  /**
+   * Forgets the evicted objects that were garbage collected
+   */
+  private void forgetCollected() {
+    EvictedReference reference;
+    while ((reference = (EvictedReference) collected.poll()) != null) {
+      evicted.remove(reference.id, reference);
+    }
+  }
+}
@@ -0,0 +1,130 @@
+/////////////////////////////////////////// FILE  HEADER /////////////////////////////////////////////
+//
+// Title: Exceptional Bank Teller
+// Files: BankAccount.java, BankAccountTester.java, BankTeller.java, BankTellerTester.java,
+//        BankTellerBenchmark.java, TransactionLog.java, TransactionLoadResult.java,
+//        ConcurrentTransactionLog.java, ConcurrentBankAccount.java,
+//        ConcurrentBankAccountTester.java, ConcurrentBankTeller.java,
+//        ConcurrentBankTellerTester.java, TransactionStatus.java, TransactionListener.java,
+//        TransactionJournal.java, TransactionJournalTester.java, TransactionSnapshot.java,
+//        ColdAccountStore.java, TieredAccountMap.java, TieredBankTeller.java,
+//        TieredBankTellerTester.java, TransactionBatch.java, TransactionBatchResult.java,
+//        TransactionRecord.java, TransactionEvent.java, TransactionPipeline.java,
+//        TransactionPipelineTester.java, LatencyHistogram.java, TellerMetrics.java,
+//        TellerMetricsTester.java, TransactionFile.java, TransactionFileTester.java,
+//        HighPrecisionBankAccount.java, HighPrecisionBankAccountTester.java, AccountIndex.java,
+//        AccountIndexTester.java, ReconciliationReport.java, ReconciliationTask.java,
+//        TransactionIDCache.java, TransactionIDCacheTester.java, ShardTransport.java,
+//        LocalShardTransport.java, SocketShardTransport.java, ShardServer.java,
+//        ShardedBankTeller.java, ShardedBankTellerTester.java, TransactionParser.java,
+//        TransactionParserTester.java, TellerServer.java, TellerClient.java,
+//        TellerLoadGenerator.java, TellerServerTester.java, TransactionClock.java,
+//        TransactionTimeIndex.java, TransactionHistory.java, TransactionHistoryTester.java,
+//        TellerWorkload.java, TellerReplay.java, TellerReplayResult.java, TellerReplayTester.java
+// This File: TieredBankTeller.java
+// 
+// Name: Benjamin Tarmann
+// Email: btarmann@wisc.edu
+//
+///////////////////////////////////////// 100 COLUMNS WIDE /////////////////////////////////////////
+
+/**
+ * This class models a BankTeller for many accounts of which only some are in use at a time. The
+ * most recently used accounts are kept as objects, and the other ones are moved to compact storage
+ * outside of the heap (see TieredAccountMap), so the heap used by dormant accounts does not grow
+ * with their number. Finding a dormant account moves it back transparently; its balance,
+ * transaction count and most recent transactions are kept.
+ * 
+ * A dormant account keeps the transactions its object kept, so accounts with a small recent window
+ * take the least space. The hit, miss and eviction counts tell how well the hot capacity fits the
+ * accounts in use.
+ * 
+ * @author Benjamin Tarmann
+ */
+public class TieredBankTeller extends BankTeller {
+  private final TieredAccountMap tiers; // the accounts of this BankTeller
+
+  /**
+   * Creates a new TieredBankTeller object with an empty list of accounts
+   * 
+   * @param hotCapacity largest number of accounts kept as objects
+   * @throws IllegalArgumentException if hotCapacity is less than 1
+   */
+  public TieredBankTeller(int hotCapacity) {
+    this(new TieredAccountMap(hotCapacity));
+  }
+
+  /**
+   * Creates a new TieredBankTeller object that keeps its accounts in the given empty map
+   * 
+   * @param tiers empty map that accounts are stored in
+   */
+  private TieredBankTeller(TieredAccountMap tiers) {
+    super(tiers);
+    this.tiers = tiers;
+  }
+
+  /**
+   * Sets the listener of every account of this BankTeller, including dormant ones
+   * 
+   * @param listener the new listener, or null to remove the current one
+   */
+  @Override
+  protected void setTransactionListeners(TransactionListener listener) {
+    tiers.setTransactionListener(listener);
+  }
+
+  /**
+   * Gets the number of accounts that were found among the accounts kept as objects
+   * 
+   * @return the number of hits
+   */
+  public long getHitCount() {
+    return tiers.getHitCount();
+  }
+
+  /**
+   * Gets the number of dormant accounts that were found and moved back to the heap
+   * 
+   * @return the number of misses
+   */
+  public long getMissCount() {
+    return tiers.getMissCount();
+  }
+
+  /**
+   * Gets the number of accounts that were moved out of the heap
+   * 
+   * @return the number of evictions
+   */
+  public long getEvictionCount() {
+    return tiers.getEvictionCount();
+  }
+
+  /**
+   * Gets the number of accounts kept as objects
+   * 
+   * @return the number of hot accounts
+   */
+  public int getHotAccountsCount() {
+    return tiers.getHotCount();
+  }
+
+  /**
+   * Gets the number of dormant accounts stored outside of the heap
+   * 
+   * @return the number of cold accounts
+   */
+  public int getColdAccountsCount() {
+    return tiers.getColdCount();
+  }
+
+  /**
+   * Gets the number of bytes allocated outside of the heap for dormant accounts
+   * 
+   * @return the allocated bytes
+   */
+  public long getColdBytes() {
+    return tiers.getColdBytes();
+  }
+}
@@ -0,0 +1,295 @@
+/////////////////////////////////////////// FILE  HEADER /////////////////////////////////////////////
+//
+// Title: Exceptional Bank Teller
+// Files: BankAccount.java, BankAccountTester.java, BankTeller.java, BankTellerTester.java,
+//        BankTellerBenchmark.java, TransactionLog.java, TransactionLoadResult.java,
+//        ConcurrentTransactionLog.java, ConcurrentBankAccount.java,
+//        ConcurrentBankAccountTester.java, ConcurrentBankTeller.java,
+//        ConcurrentBankTellerTester.java, TransactionStatus.java, TransactionListener.java,
+//        TransactionJournal.java, TransactionJournalTester.java, TransactionSnapshot.java,
+//        ColdAccountStore.java, TieredAccountMap.java, TieredBankTeller.java,
+//        TieredBankTellerTester.java, TransactionBatch.java, TransactionBatchResult.java,
+//        TransactionRecord.java, TransactionEvent.java, TransactionPipeline.java,
+//        TransactionPipelineTester.java, LatencyHistogram.java, TellerMetrics.java,
+//        TellerMetricsTester.java, TransactionFile.java, TransactionFileTester.java,
+//        HighPrecisionBankAccount.java, HighPrecisionBankAccountTester.java, AccountIndex.java,
+//        AccountIndexTester.java, ReconciliationReport.java, ReconciliationTask.java,
+//        TransactionIDCache.java, TransactionIDCacheTester.java, ShardTransport.java,
+//        LocalShardTransport.java, SocketShardTransport.java, ShardServer.java,
+//        ShardedBankTeller.java, ShardedBankTellerTester.java, TransactionParser.java,
+//        TransactionParserTester.java, TellerServer.java, TellerClient.java,
+//        TellerLoadGenerator.java, TellerServerTester.java, TransactionClock.java,
+//        TransactionTimeIndex.java, TransactionHistory.java, TransactionHistoryTester.java,
+//        TellerWorkload.java, TellerReplay.java, TellerReplayResult.java, TellerReplayTester.java
+// This File: TieredBankTellerTester.java
+// 
+// Name: Benjamin Tarmann
+// Email: btarmann@wisc.edu
+//
+///////////////////////////////////////// 100 COLUMNS WIDE /////////////////////////////////////////
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+
+/**
+ * This class is a tester for TieredBankTeller, which keeps dormant accounts outside of the heap,
+ * and for the ColdAccountStore class that stores them
+ * 
+ * @author Benjamin Tarmann
+ */
+public class TieredBankTellerTester {
+
+  /**
+   * Checks whether two accounts have the same ID, balance, number of transactions and most recent
+   * transactions
+   * 
+   * @param expected the original account
+   * @param actual   the stored or promoted account
+   * @return true if the accounts match, false otherwise
+   */
+  private static boolean sameAccount(BankAccount expected, BankAccount actual) {
+    return expected.getID().equals(actual.getID()) && expected.getBalance() == actual.getBalance()
+        && expected.getTransactionsCount() == actual.getTransactionsCount()
+        && Arrays.equals(expected.getMostRecentTransactions(), actual.getMostRecentTransactions());
+  }
+
+  /**
+   * Checks whether a ColdAccountStore gives back copies of the accounts it stores, of the same
+   * class and with the same recent window, and whether it releases the memory of removed accounts
+   * 
+   * @return true when this test verifies a correct functionality, and false otherwise.
+   */
+  public static boolean testColdAccountStore() {
+    ColdAccountStore store = new ColdAccountStore();
+    BankAccount plain = new BankAccount("0001", 100);
+    plain.deposit(10);
+    plain.tryWithdraw(20);
+    BankAccount windowed = new ConcurrentBankAccount("0002", 50, 3);
+    for (int i = 1; i <= 8; i++) {
+      windowed.deposit(i);
+    }
+    store.put(plain);
+    store.put(windowed);
+
+    // checks that the stored copies match the accounts
+    BankAccount plainCopy = store.get("0001");
+    BankAccount windowedCopy = store.get("0002");
+    if (store.size() != 2 || plainCopy == plain || !sameAccount(plain, plainCopy)
+        || !sameAccount(windowed, windowedCopy) || !(windowedCopy instanceof ConcurrentBankAccount)
+        || windowedCopy.getRecentWindow() != 3 || store.get("0003") != null) {
+      return false;
+    }
+
+    // checks that storing an account again replaces its record
+    plain.deposit(5);
+    store.put(plain);
+    if (store.size() != 2 || !sameAccount(plain, store.get("0001"))) {
+      return false;
+    }
+
+    // checks that a balance beyond the range of an int is stored
+    store.put(new BankAccount("0003", Long.MAX_VALUE - 1, 0, 0));
+    if (store.remove("0003").getBalance() != Long.MAX_VALUE - 1) {
+      return false;
+    }
+
+    // checks that removing most accounts releases most of the memory
+    for (int i = 0; i < 400000; i++) {
+      store.put(new BankAccount("a" + i, 10 + i));
+    }
+    long filledBytes = store.getAllocatedBytes();
+    for (int i = 0; i < 399000; i++) {
+      store.remove("a" + i);
+    }
+    return store.size() == 1002 && store.getAllocatedBytes() < filledBytes / 4
+        && store.get("a399999").getBalance() == 400009 && sameAccount(plain, store.get("0001"))
+        && store.remove("0001") != null && !store.contains("0001");
+  }
+
+  /**
+   * Checks whether accounts beyond the hot capacity are moved to the cold tier and whether every
+   * account can still be found with its balance, number of transactions and most recent
+   * transactions
+   * 
+   * @return true when this test verifies a correct functionality, and false otherwise.
+   */
+  public static boolean testTieredBankTellerEviction() {
+    TieredBankTeller teller = new TieredBankTeller(2);
+    BankAccount[] expected = new BankAccount[5];
+    for (int i = 0; i < expected.length; i++) {
+      expected[i] = new BankAccount("000" + i, 100 * (i + 1));
+      teller.addBankAccount(new BankAccount("000" + i, 100 * (i + 1)));
+      for (int j = 1; j <= i + 3; j++) {
+        expected[i].deposit(j);
+        teller.findAccount("000" + i).deposit(j);
+      }
+    }
+    if (teller.getAccountsCount() != 5 || teller.getHotAccountsCount() != 2
+        || teller.getColdAccountsCount() != 3 || teller.getEvictionCount() != 3
+        || teller.getColdBytes() == 0) {
+      return false;
+    }
+
+    // checks that every account is found with its state, in the order of their IDs
+    for (int i = 0; i < expected.length; i++) {
+      if (!sameAccount(expected[i], teller.findAccount("000" + i))) {
+        return false;
+      }
+    }
+
+    // checks that an account that already exists in the cold tier cannot be added again
+    try {
+      teller.addBankAccount(new BankAccount("0000", 10));
+      return false;
+    } catch (IllegalStateException e) {
+      // expected
+    }
+    return teller.getAccountsCount() == 5 && teller.getHotAccountsCount() == 2;
+  }
+
+  /**
+   * Checks whether an account object that a caller kept after it was evicted is the object found
+   * again, and whether transactions applied to it while it was evicted are not lost
+   * 
+   * @return true when this test verifies a correct functionality, and false otherwise.
+   */
+  public static boolean testTieredBankTellerStaleReference() {
+    TieredBankTeller teller = new TieredBankTeller(1);
+    BankAccount kept = new BankAccount("0001", 100);
+    teller.addBankAccount(kept);
+    teller.addBankAccount(new BankAccount("0002", 100));
+    if (teller.getColdAccountsCount() != 1) {
+      return false;
+    }
+
+    // a deposit to the evicted object promotes it, since its stored copy is out of date
+    kept.deposit(50);
+    if (teller.getHotAccountsCount() != 1 || teller.getColdAccountsCount() != 1) {
+      return false;
+    }
+    BankAccount found = teller.findAccount("0001");
+    return found == kept && found.getBalance() == 150 && found.getTransactionsCount() == 2
+        && teller.findAccount("0002").getBalance() == 100
+        && teller.findAccount("0001") == kept;
+  }
+
+  /**
+   * Checks whether the hit, miss and eviction counts match the accounts that were found in and
+   * moved between the tiers
+   * 
+   * @return true when this test verifies a correct functionality, and false otherwise.
+   */
+  public static boolean testTieredBankTellerMetrics() {
+    TieredBankTeller teller = new TieredBankTeller(2);
+    teller.addBankAccount(new BankAccount("0001", 10));
+    teller.addBankAccount(new BankAccount("0002", 20));
+    teller.addBankAccount(new BankAccount("0003", 30)); // evicts 0001
+
+    teller.findAccount("0003"); // hit
+    teller.findAccount("0002"); // hit
+    teller.findAccount("0001"); // miss, evicts 0003
+    teller.findAccount("0001"); // hit
+    try {
+      teller.findAccount("0004"); // neither a hit nor a miss
+      return false;
+    } catch (Exception e) {
+      // expected
+    }
+    return teller.getHitCount() == 3 && teller.getMissCount() == 1
+        && teller.getEvictionCount() == 2 && teller.getHotAccountsCount() == 2
+        && teller.getColdAccountsCount() == 1;
+  }
+
+  /**
+   * Checks whether a journal opened for a TieredBankTeller records transactions applied to
+   * accounts that were evicted and promoted, and whether it recovers them into another
+   * TieredBankTeller
+   * 
+   * @return true when this test verifies a correct functionality, and false otherwise.
+   */
+  public static boolean testTieredBankTellerJournal() {
+    try {
+      File file = File.createTempFile("journal", ".bin");
+      file.delete();
+      file.deleteOnExit();
+      TieredBankTeller original = new TieredBankTeller(1);
+      original.openJournal(file, 1, 0);
+      BankAccount kept = new BankAccount("0001", 100);
+      original.addBankAccount(kept);
+      original.addBankAccount(new BankAccount("0002", 200));
+      kept.withdraw(30); // applied to an evicted object
+      original.addTransaction("1 40", original.findAccount("0002")); // promoted from the cold tier
+      original.transfer("0001", "0002", 10);
+      original.closeJournal();
+
+      TieredBankTeller recovered = new TieredBankTeller(1);
+      recovered.openJournal(file, 1, 0);
+      recovered.closeJournal();
+      return recovered.getAccountsCount() == 2
+          && sameAccount(original.findAccount("0001"), recovered.findAccount("0001"))
+          && sameAccount(original.findAccount("0002"), recovered.findAccount("0002"))
+          && recovered.findAccount("0001").getBalance() == 60
+          && recovered.findAccount("0002").getBalance() == 250;
+    } catch (IOException | DataFormatException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Checks whether accounts with a recent window keep their window and their recent transactions
+   * when they are moved to the cold tier and back
+   * 
+   * @return true when this test verifies a correct functionality, and false otherwise.
+   */
+  public static boolean testTieredBankTellerRecentWindow() {
+    TieredBankTeller teller = new TieredBankTeller(1);
+    BankAccount expected = new BankAccount("0001", 10, 8);
+    teller.addBankAccount(new BankAccount("0001", 10, 8));
+    for (int i = 1; i <= 20; i++) {
+      expected.deposit(i);
+      teller.findAccount("0001").deposit(i);
+    }
+    teller.addBankAccount(new BankAccount("0002", 10)); // evicts 0001
+
+    BankAccount promoted = teller.findAccount("0001");
+    int[] amounts = new int[8];
+    boolean[] deposits = new boolean[8];
+    return sameAccount(expected, promoted) && promoted.getRecentWindow() == 8
+        && promoted.getMostRecentTransactions(amounts, deposits) == 8 && amounts[0] == 20
+        && amounts[7] == 13;
+  }
+
+  /**
+   * Calls the test methods defined in this TieredBankTellerTester class
+   * 
+   * @param args
+   */
+  public static void main(String[] args) {
+    if (testColdAccountStore() == false) {
+      System.out.println("testColdAccountStore failed.");
+    }
+
+    if (testTieredBankTellerEviction() == false) {
+      System.out.println("testTieredBankTellerEviction failed.");
+    }
+
+    if (testTieredBankTellerStaleReference() == false) {
+      System.out.println("testTieredBankTellerStaleReference failed.");
+    }
+
+    if (testTieredBankTellerMetrics() == false) {
+      System.out.println("testTieredBankTellerMetrics failed.");
+    }
+
+    if (testTieredBankTellerJournal() == false) {
+      System.out.println("testTieredBankTellerJournal failed.");
+    }
+
+    if (testTieredBankTellerRecentWindow() == false) {
+      System.out.println("testTieredBankTellerRecentWindow failed.");
+    }
+  }
+
+}
@@ -0,0 +1,259 @@
+/////////////////////////////////////////// FILE  HEADER /////////////////////////////////////////////
+//
+// Title: Exceptional Bank Teller
+// Files: BankAccount.java, BankAccountTester.java, BankTeller.java, BankTellerTester.java,
+//        BankTellerBenchmark.java, TransactionLog.java, TransactionLoadResult.java,
+//        ConcurrentTransactionLog.java, ConcurrentBankAccount.java,
+//        ConcurrentBankAccountTester.java, ConcurrentBankTeller.java,
+//        ConcurrentBankTellerTester.java, TransactionStatus.java, TransactionListener.java,
+//        TransactionJournal.java, TransactionJournalTester.java, TransactionSnapshot.java,
+//        ColdAccountStore.java, TieredAccountMap.java, TieredBankTeller.java,
+//        TieredBankTellerTester.java, TransactionBatch.java, TransactionBatchResult.java,
+//        TransactionRecord.java, TransactionEvent.java, TransactionPipeline.java,
+//        TransactionPipelineTester.java, LatencyHistogram.java, TellerMetrics.java,
+//        TellerMetricsTester.java, TransactionFile.java, TransactionFileTester.java,
+//        HighPrecisionBankAccount.java, HighPrecisionBankAccountTester.java, AccountIndex.java,
+//        AccountIndexTester.java, ReconciliationReport.java, ReconciliationTask.java,
+//        TransactionIDCache.java, TransactionIDCacheTester.java, ShardTransport.java,
+//        LocalShardTransport.java, SocketShardTransport.java, ShardServer.java,
+//        ShardedBankTeller.java, ShardedBankTellerTester.java, TransactionParser.java,
+//        TransactionParserTester.java, TellerServer.java, TellerClient.java,
+//        TellerLoadGenerator.java, TellerServerTester.java, TransactionClock.java,
+//        TransactionTimeIndex.java, TransactionHistory.java, TransactionHistoryTester.java,
+//        TellerWorkload.java, TellerReplay.java, TellerReplayResult.java, TellerReplayTester.java
+// This File: TransactionBatch.java
+// 
+// Name: Benjamin Tarmann
+// Email: btarmann@wisc.edu
+//
+///////////////////////////////////////// 100 COLUMNS WIDE /////////////////////////////////////////
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * This class models a batch of transactions for BankTeller.applyBatch(). Each record names the ID
+ * of an account, whether it is a deposit or a withdrawal, and its amount. The records are kept in
+ * parallel arrays rather than as one object each, so a batch of a million records takes three
+ * arrays instead of a million objects, and can be cleared and filled again for the next part of a
+ * stream of records.
+ * 
+ * @author Benjamin Tarmann
+ */
+public class TransactionBatch {
+  private static final int DEFAULT_CAPACITY = 16;
+
+  private String[] accountIDs;
+  private boolean[] deposits;
+  private int[] amounts;
+  private int size;
+
+  /**
+   * Creates a new empty batch
+   */
+  public TransactionBatch() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  /**
+   * Creates a new empty batch that holds the given number of records before it has to grow
+   * 
+   * @param capacity expected number of records
+   * @throws IllegalArgumentException if capacity is negative
+   */
+  public TransactionBatch(int capacity) {
+    // checks that the capacity is not negative
+    if (capacity < 0) {
+      throw new IllegalArgumentException("Capacity cannot be negative.");
+    }
+
+    accountIDs = new String[capacity];
+    deposits = new boolean[capacity];
+    amounts = new int[capacity];
+    size = 0;
+  }
+
+  /**
+   * Adds a record to the end of this batch. The amount is checked when the batch is applied, the
+   * same way BankAccount.tryDeposit() and BankAccount.tryWithdraw() check it.
+   * 
+   * @param accountID ID of the account the transaction is applied to
+   * @param deposit   true for a deposit, false for a withdrawal
+   * @param amount    the transaction amount
+   * @throws NullPointerException if accountID is null
+   */
+  public void add(String accountID, boolean deposit, int amount) {
+    // checks that accountID is not null
+    if (accountID == null) {
+      throw new NullPointerException("Account ID is null.");
+    }
+
+    if (size == amounts.length) {
+      int capacity = Math.max(DEFAULT_CAPACITY, size * 2);
+      accountIDs = Arrays.copyOf(accountIDs, capacity);
+      deposits = Arrays.copyOf(deposits, capacity);
+      amounts = Arrays.copyOf(amounts, capacity);
+    }
+    accountIDs[size] = accountID;
+    deposits[size] = deposit;
+    amounts[size] = amount;
+    size++;
+  }
+
+  /**
+   * Removes every record from this batch, keeping its capacity
+   */
+  public void clear() {
+    Arrays.fill(accountIDs, 0, size, null);
+    size = 0;
+  }
+
+  /**
+   * Gets the number of records in this batch
+   * 
+   * @return the number of records
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Gets the account ID of a record
+   * 
+   * @param index index of the record
+   * @return the account ID
+   * @throws IndexOutOfBoundsException if index is negative or not less than size()
+   */
+  public String getAccountID(int index) {
+    Objects.checkIndex(index, size);
+    return accountIDs[index];
+  }
+
+  /**
+   * Checks whether a record is a deposit
+   * 
+   * @param index index of the record
+   * @return true for a deposit, false for a withdrawal
+   * @throws IndexOutOfBoundsException if index is negative or not less than size()
+   */
+  public boolean isDeposit(int index) {
+    Objects.checkIndex(index, size);
+    return deposits[index];
+  }
+
+  /**
+   * Gets the amount of a record
+   * 
+   * @param index index of the record
+   * @return the transaction amount
+   * @throws IndexOutOfBoundsException if index is negative or not less than size()
+   */
+  public int getAmount(int index) {
+    Objects.checkIndex(index, size);
+    return amounts[index];
+  }
+
+  /**
+   * Numbers the accounts of the records in the order they first appear in this batch. Runs of
+   * records of the same account, which are common in a feed, are numbered without looking their ID
+   * up again, and the IDs are looked up in an open-addressing table of ints, so numbering a record
+   * allocates nothing.
+   * 
+   * @param groupOf array of at least size() elements that the number of the account of each record
+   *                is written to
+   * @return the account IDs, indexed by their number
+   */
+  String[] groupByAccount(int[] groupOf) {
+    String[] groupIDs = new String[DEFAULT_CAPACITY];
+    int groups = 0;
+    int[] table = new int[DEFAULT_CAPACITY * 2]; // number of an account plus one, or 0 if empty
+    for (int i = 0; i < size; i++) {
+      String id = accountIDs[i];
+      if (i > 0 && sameID(id, accountIDs[i - 1])) {
+        groupOf[i] = groupOf[i - 1];
+        continue;
+      }
+
+      int mask = table.length - 1;
+      int slot = spread(id.hashCode()) & mask;
+      while (table[slot] != 0 && !sameID(groupIDs[table[slot] - 1], id)) {
+        slot = (slot + 1) & mask;
+      }
+      if (table[slot] != 0) {
+        groupOf[i] = table[slot] - 1;
+        continue;
+      }
+
+      // numbers a new account, growing the table so that at most half of it is used
+      if (groups == groupIDs.length) {
+        groupIDs = Arrays.copyOf(groupIDs, groups * 2);
+      }
+      groupIDs[groups] = id;
+      groupOf[i] = groups++;
+      table[slot] = groups;
+      if (groups * 2 > table.length) {
+        table = new int[table.length * 2];
+        mask = table.length - 1;
+        for (int group = 0; group < groups; group++) {
+          slot = spread(groupIDs[group].hashCode()) & mask;
+          while (table[slot] != 0) {
+            slot = (slot + 1) & mask;
+          }
+          table[slot] = group + 1;
+        }
+      }
+    }
+    return Arrays.copyOf(groupIDs, groups);
+  }
+
+  /**
+   * Checks whether two account IDs are equal, comparing their cached hash codes before their
+   * characters so that different IDs are told apart cheaply
+   * 
+   * @param first  an account ID
+   * @param second another account ID
+   * @return true if the IDs are equal, false otherwise
+   */
+  private static boolean sameID(String first, String second) {
+    return first == second || (first.hashCode() == second.hashCode() && first.equals(second));
+  }
+
+  /**
+   * Mixes the high bits of a hash code into its low bits, which select the slot of the table
+   * 
+   * @param hash the hash code
+   * @return the mixed hash code
+   */
+  private static int spread(int hash) {
+    hash *= 0x9E3779B9;
+    return hash ^ (hash >>> 16);
+  }
+
+  /**
+   * Applies the records of this batch in the range [from, to) in order, each to the account of its
+   * number. This is the inner loop of BankTeller.applyBatch(), which finds each account once.
+   * Records whose account was not found are rejected with ACCOUNT_NOT_FOUND.
+   * 
+   * @param groupOf       number of the account of each record
+   * @param groupAccounts the accounts, indexed by their number, or null if not found
+   * @param from          index of the first record to apply
+   * @param to            index after the last record to apply
+   * @param statuses      ordinals of the statuses of the records, indexed like the records
+   */
+  void applyRecords(int[] groupOf, BankAccount[] groupAccounts, int from, int to,
+      byte[] statuses) {
+    TellerMetrics.Recorder recorder = TellerMetrics.currentRecorder();
+    for (int i = from; i < to; i++) {
+      BankAccount account = groupAccounts[groupOf[i]];
+      TransactionStatus status;
+      if (account == null) {
+        status = TransactionStatus.ACCOUNT_NOT_FOUND;
+      } else if (deposits[i]) {
+        status = account.tryDeposit(amounts[i], recorder);
+      } else {
+        status = account.tryWithdraw(amounts[i], recorder);
+      }
+      statuses[i] = (byte) status.ordinal();
+    }
+  }
+}
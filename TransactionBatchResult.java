@@ -0,0 +1,96 @@
+/////////////////////////////////////////// FILE  HEADER /////////////////////////////////////////////
+//
+// Title: Exceptional Bank Teller
+// Files: BankAccount.java, BankAccountTester.java, BankTeller.java, BankTellerTester.java,
+//        BankTellerBenchmark.java, TransactionLog.java, TransactionLoadResult.java,
+//        ConcurrentTransactionLog.java, ConcurrentBankAccount.java,
+//        ConcurrentBankAccountTester.java, ConcurrentBankTeller.java,
+//        ConcurrentBankTellerTester.java, TransactionStatus.java, TransactionListener.java,
+//        TransactionJournal.java, TransactionJournalTester.java, TransactionSnapshot.java,
+//        ColdAccountStore.java, TieredAccountMap.java, TieredBankTeller.java,
+//        TieredBankTellerTester.java, TransactionBatch.java, TransactionBatchResult.java,
+//        TransactionRecord.java, TransactionEvent.java, TransactionPipeline.java,
+//        TransactionPipelineTester.java, LatencyHistogram.java, TellerMetrics.java,
+//        TellerMetricsTester.java, TransactionFile.java, TransactionFileTester.java,
+//        HighPrecisionBankAccount.java, HighPrecisionBankAccountTester.java, AccountIndex.java,
+//        AccountIndexTester.java, ReconciliationReport.java, ReconciliationTask.java,
+//        TransactionIDCache.java, TransactionIDCacheTester.java, ShardTransport.java,
+//        LocalShardTransport.java, SocketShardTransport.java, ShardServer.java,
+//        ShardedBankTeller.java, ShardedBankTellerTester.java, TransactionParser.java,
+//        TransactionParserTester.java, TellerServer.java, TellerClient.java,
+//        TellerLoadGenerator.java, TellerServerTester.java, TransactionClock.java,
+//        TransactionTimeIndex.java, TransactionHistory.java, TransactionHistoryTester.java,
+//        TellerWorkload.java, TellerReplay.java, TellerReplayResult.java, TellerReplayTester.java
+// This File: TransactionBatchResult.java
+// 
+// Name: Benjamin Tarmann
+// Email: btarmann@wisc.edu
+//
+///////////////////////////////////////// 100 COLUMNS WIDE /////////////////////////////////////////
+
+/**
+ * This class reports the outcome of applying a TransactionBatch: the status of every record, kept
+ * as one byte per record, and how many records were applied and rejected.
+ * 
+ * @author Benjamin Tarmann
+ */
+public class TransactionBatchResult {
+  private static final TransactionStatus[] STATUSES = TransactionStatus.values();
+
+  private final byte[] statuses; // ordinal of the status of each record
+  private final int appliedCount;
+
+  /**
+   * Creates a result from the statuses of the records of a batch
+   * 
+   * @param statuses ordinals of the statuses, indexed like the records
+   */
+  TransactionBatchResult(byte[] statuses) {
+    this.statuses = statuses;
+    int applied = 0;
+    for (byte status : statuses) {
+      if (status == TransactionStatus.APPLIED.ordinal()) {
+        applied++;
+      }
+    }
+    appliedCount = applied;
+  }
+
+  /**
+   * Gets the status of a record
+   * 
+   * @param index index of the record in the batch
+   * @return APPLIED if the record was applied, or the reason it was not
+   * @throws ArrayIndexOutOfBoundsException if index is not the index of a record
+   */
+  public TransactionStatus getStatus(int index) {
+    return STATUSES[statuses[index]];
+  }
+
+  /**
+   * Gets the number of records in the batch
+   * 
+   * @return the number of records
+   */
+  public int size() {
+    return statuses.length;
+  }
+
+  /**
+   * Gets the number of records that were applied
+   * 
+   * @return the number of applied records
+   */
+  public int getAppliedCount() {
+    return appliedCount;
+  }
+
+  /**
+   * Gets the number of records that were not applied
+   * 
+   * @return the number of rejected records
+   */
+  public int getRejectedCount() {
+    return statuses.length - appliedCount;
+  }
+}
@@ -0,0 +1,153 @@
+/////////////////////////////////////////// FILE  HEADER /////////////////////////////////////////////
+//
+// Title: Exceptional Bank Teller
+// Files: BankAccount.java, BankAccountTester.java, BankTeller.java, BankTellerTester.java,
+//        BankTellerBenchmark.java, TransactionLog.java, TransactionLoadResult.java,
+//        ConcurrentTransactionLog.java, ConcurrentBankAccount.java,
+//        ConcurrentBankAccountTester.java, ConcurrentBankTeller.java,
+//        ConcurrentBankTellerTester.java, TransactionStatus.java, TransactionListener.java,
+//        TransactionJournal.java, TransactionJournalTester.java, TransactionSnapshot.java,
+//        ColdAccountStore.java, TieredAccountMap.java, TieredBankTeller.java,
+//        TieredBankTellerTester.java, TransactionBatch.java, TransactionBatchResult.java,
+//        TransactionRecord.java, TransactionEvent.java, TransactionPipeline.java,
+//        TransactionPipelineTester.java, LatencyHistogram.java, TellerMetrics.java,
+//        TellerMetricsTester.java, TransactionFile.java, TransactionFileTester.java,
+//        HighPrecisionBankAccount.java, HighPrecisionBankAccountTester.java, AccountIndex.java,
+//        AccountIndexTester.java, ReconciliationReport.java, ReconciliationTask.java,
+//        TransactionIDCache.java, TransactionIDCacheTester.java, ShardTransport.java,
+//        LocalShardTransport.java, SocketShardTransport.java, ShardServer.java,
+//        ShardedBankTeller.java, ShardedBankTellerTester.java, TransactionParser.java,
+//        TransactionParserTester.java, TellerServer.java, TellerClient.java,
+//        TellerLoadGenerator.java, TellerServerTester.java, TransactionClock.java,
+//        TransactionTimeIndex.java, TransactionHistory.java, TransactionHistoryTester.java,
+//        TellerWorkload.java, TellerReplay.java, TellerReplayResult.java, TellerReplayTester.java
+// This File: TransactionClock.java
+// 
+// Name: Benjamin Tarmann
+// Email: btarmann@wisc.edu
+//
+///////////////////////////////////////// 100 COLUMNS WIDE /////////////////////////////////////////
+
+/**
+ * This class models the clock transactions are timestamped with, in milliseconds since the epoch
+ * like System.currentTimeMillis(). Reading the system clock costs more than applying a
+ * transaction, so a daemon thread reads it once every millisecond and every transaction reads the
+ * cached value instead, which is a single volatile read. A time is therefore up to about a
+ * millisecond behind the system clock, more if the ticking thread is not scheduled in time.
+ * 
+ * The ticking thread is started by the first read of the clock, and stops once the clock has not
+ * been read for IDLE_TICKS ticks or when stop() is called, so it only runs while transactions are
+ * applied. The next read after it stopped starts it again.
+ * 
+ * The clock never goes backwards, even when the system clock is set back or the ticking thread is
+ * restarted, so the transactions of an account have times in the order they were applied.
+ * 
+ * @author Benjamin Tarmann
+ */
+final class TransactionClock {
+  private static final long TICK_MILLIS = 1;
+  private static final int IDLE_TICKS = 1_000; // ticks without a read before the ticker stops
+  private static final long STOPPED = Long.MIN_VALUE; // value of now while no ticker runs
+
+  private static volatile long now = STOPPED; // time of the last tick
+  private static volatile boolean read; // whether the clock was read since the last tick
+  private static long last; // time of the last tick before the ticker stopped; guarded by the class
+  private static Thread ticker; // guarded by the class
+
+  /**
+   * Prevents instances, since the clock is shared by every transaction log
+   */
+  private TransactionClock() {
+  }
+
+  /**
+   * Gets the current time, starting the ticking thread if it is not running
+   * 
+   * @return the time of the last tick, in milliseconds since the epoch
+   */
+  static long now() {
+    long time = now;
+    if (time == STOPPED) {
+      return start();
+    }
+    if (!read) {
+      read = true; // only written once per tick, so readers rarely write the shared field
+    }
+    return time;
+  }
+
+  /**
+   * Starts the ticking thread if it is not running
+   * 
+   * @return the current time
+   */
+  private static synchronized long start() {
+    if (ticker == null) {
+      now = Math.max(last, System.currentTimeMillis());
+      ticker = new Thread(TransactionClock::tick, "TransactionClock ticker");
+      ticker.setDaemon(true);
+      ticker.start();
+    }
+    read = true;
+    return now;
+  }
+
+  /**
+   * Stops the ticking thread if it is running. The clock keeps working: the next read starts the
+   * thread again.
+   */
+  static synchronized void stop() {
+    if (ticker != null) {
+      ticker.interrupt();
+      stopTicking();
+    }
+  }
+
+  /**
+   * Checks whether the ticking thread is running
+   * 
+   * @return true if the thread is running, or false if the next read starts it
+   */
+  static synchronized boolean isTicking() {
+    return ticker != null;
+  }
+
+  /**
+   * Marks the ticking thread as stopped, keeping the time of its last tick so that the clock does
+   * not go backwards when it is started again. Must be called while holding the lock of the class.
+   */
+  private static void stopTicking() {
+    last = now;
+    now = STOPPED;
+    ticker = null;
+  }
+
+  /**
+   * Reads the system clock once every tick, until the clock has not been read for IDLE_TICKS ticks
+   * or another ticking thread replaced this one
+   */
+  private static void tick() {
+    int idleTicks = 0;
+    while (true) {
+      try {
+        Thread.sleep(TICK_MILLIS);
+      } catch (InterruptedException e) {
+        // stop() interrupts the thread, which is checked below
+      }
+
+      synchronized (TransactionClock.class) {
+        if (ticker != Thread.currentThread()) {
+          return;
+        }
+        if (read) {
+          read = false;
+          idleTicks = 0;
+        } else if (++idleTicks == IDLE_TICKS) {
+          stopTicking();
+          return;
+        }
+        now = Math.max(now, System.currentTimeMillis());
+      }
+    }
+  }
+}
@@ -0,0 +1,88 @@
+/////////////////////////////////////////// FILE  HEADER /////////////////////////////////////////////
+//
+// Title: Exceptional Bank Teller
+// Files: BankAccount.java, BankAccountTester.java, BankTeller.java, BankTellerTester.java,
+//        BankTellerBenchmark.java, TransactionLog.java, TransactionLoadResult.java,
+//        ConcurrentTransactionLog.java, ConcurrentBankAccount.java,
+//        ConcurrentBankAccountTester.java, ConcurrentBankTeller.java,
+//        ConcurrentBankTellerTester.java, TransactionStatus.java, TransactionListener.java,
+//        TransactionJournal.java, TransactionJournalTester.java, TransactionSnapshot.java,
+//        ColdAccountStore.java, TieredAccountMap.java, TieredBankTeller.java,
+//        TieredBankTellerTester.java, TransactionBatch.java, TransactionBatchResult.java,
+//        TransactionRecord.java, TransactionEvent.java, TransactionPipeline.java,
+//        TransactionPipelineTester.java, LatencyHistogram.java, TellerMetrics.java,
+//        TellerMetricsTester.java, TransactionFile.java, TransactionFileTester.java,
+//        HighPrecisionBankAccount.java, HighPrecisionBankAccountTester.java, AccountIndex.java,
+//        AccountIndexTester.java, ReconciliationReport.java, ReconciliationTask.java,
+//        TransactionIDCache.java, TransactionIDCacheTester.java, ShardTransport.java,
+//        LocalShardTransport.java, SocketShardTransport.java, ShardServer.java,
+//        ShardedBankTeller.java, ShardedBankTellerTester.java, TransactionParser.java,
+//        TransactionParserTester.java, TellerServer.java, TellerClient.java,
+//        TellerLoadGenerator.java, TellerServerTester.java, TransactionClock.java,
+//        TransactionTimeIndex.java, TransactionHistory.java, TransactionHistoryTester.java,
+//        TellerWorkload.java, TellerReplay.java, TellerReplayResult.java, TellerReplayTester.java
+// This File: TransactionEvent.java
+// 
+// Name: Benjamin Tarmann
+// Email: btarmann@wisc.edu
+//
+///////////////////////////////////////// 100 COLUMNS WIDE /////////////////////////////////////////
+
+/**
+ * This class models the outcome of applying one TransactionRecord in a TransactionPipeline: the
+ * record and the status it was applied or rejected with.
+ * 
+ * @author Benjamin Tarmann
+ */
+public final class TransactionEvent {
+  private final TransactionRecord record;
+  private final TransactionStatus status;
+
+  /**
+   * Creates a new event
+   * 
+   * @param record the record that was applied or rejected
+   * @param status APPLIED if the record was applied, or the reason it was not
+   */
+  TransactionEvent(TransactionRecord record, TransactionStatus status) {
+    this.record = record;
+    this.status = status;
+  }
+
+  /**
+   * Gets the record that was applied or rejected
+   * 
+   * @return the record
+   */
+  public TransactionRecord getRecord() {
+    return record;
+  }
+
+  /**
+   * Gets the status the record was applied or rejected with
+   * 
+   * @return APPLIED if the record was applied, or the reason it was not
+   */
+  public TransactionStatus getStatus() {
+    return status;
+  }
+
+  /**
+   * Checks whether the record was applied
+   * 
+   * @return true if the record was applied, false if it was rejected
+   */
+  public boolean isAccepted() {
+    return status == TransactionStatus.APPLIED;
+  }
+
+  /**
+   * Returns the record followed by its status, for example "0001 0 20 INSUFFICIENT_FUNDS"
+   * 
+   * @return a string representation of this event
+   */
+  @Override
+  public String toString() {
+    return record + " " + status;
+  }
+}
@@ -0,0 +1,494 @@
+/////////////////////////////////////////// FILE  HEADER /////////////////////////////////////////////
+//
+// Title: Exceptional Bank Teller
+// Files: BankAccount.java, BankAccountTester.java, BankTeller.java, BankTellerTester.java,
+//        BankTellerBenchmark.java, TransactionLog.java, TransactionLoadResult.java,
+//        ConcurrentTransactionLog.java, ConcurrentBankAccount.java,
+//        ConcurrentBankAccountTester.java, ConcurrentBankTeller.java,
+//        ConcurrentBankTellerTester.java, TransactionStatus.java, TransactionListener.java,
+//        TransactionJournal.java, TransactionJournalTester.java, TransactionSnapshot.java,
+//        ColdAccountStore.java, TieredAccountMap.java, TieredBankTeller.java,
+//        TieredBankTellerTester.java, TransactionBatch.java, TransactionBatchResult.java,
+//        TransactionRecord.java, TransactionEvent.java, TransactionPipeline.java,
+//        TransactionPipelineTester.java, LatencyHistogram.java, TellerMetrics.java,
+//        TellerMetricsTester.java, TransactionFile.java, TransactionFileTester.java,
+//        HighPrecisionBankAccount.java, HighPrecisionBankAccountTester.java, AccountIndex.java,
+//        AccountIndexTester.java, ReconciliationReport.java, ReconciliationTask.java,
+//        TransactionIDCache.java, TransactionIDCacheTester.java, ShardTransport.java,
+//        LocalShardTransport.java, SocketShardTransport.java, ShardServer.java,
+//        ShardedBankTeller.java, ShardedBankTellerTester.java, TransactionParser.java,
+//        TransactionParserTester.java, TellerServer.java, TellerClient.java,
+//        TellerLoadGenerator.java, TellerServerTester.java, TransactionClock.java,
+//        TransactionTimeIndex.java, TransactionHistory.java, TransactionHistoryTester.java,
+//        TellerWorkload.java, TellerReplay.java, TellerReplayResult.java, TellerReplayTester.java
+// This File: TransactionFile.java
+// 
+// Name: Benjamin Tarmann
+// Email: btarmann@wisc.edu
+//
+///////////////////////////////////////// 100 COLUMNS WIDE /////////////////////////////////////////
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.Scanner;
+import java.util.zip.CRC32;
+
+/**
+ * This class writes binary transaction files, a compact alternative to the text transaction files
+ * of BankTeller.loadTransactions(). A transaction file starts with a magic number, followed by
+ * blocks of records. Each block is made of its number of records (4 bytes), the length of its
+ * records in bytes (4 bytes), the records, and a CRC-32 checksum of everything before it in the
+ * block (4 bytes). A record is a tag written as a varint (7 bits per byte, low bits first, the
+ * high bit set on every byte but the last) holding the amount shifted left by two bits, a deposit
+ * bit and an account bit. When the account bit is set the tag is followed by the length of an
+ * account ID as a varint and the account ID in UTF-8, and the record and the records after it in
+ * the block belong to that account; an empty ID switches back to the account the file is loaded
+ * into. Every block starts with that account, so each block can be checked and decoded on its own.
+ * 
+ * A deposit of 250 takes 2 bytes instead of the 6 bytes of the line "1 250", and decoding it takes
+ * no String and no parsing of digits. Files are loaded with BankTeller.loadTransactionsBinary().
+ * 
+ * @author Benjamin Tarmann
+ */
+public class TransactionFile implements Closeable {
+  private static final int MAGIC = 0x42545831; // "BTX1"
+  private static final int DEPOSIT_BIT = 1;
+  private static final int ACCOUNT_BIT = 2;
+  private static final int BLOCK_HEADER_SIZE = 4 + 4; // number of records and their length
+  private static final int BLOCK_SIZE = 64 * 1024; // length of records after which a block ends
+  private static final int MAX_ID_LENGTH = 0xFFFF; // longest account ID a record can hold
+  private static final int MAX_RECORD_SIZE = 5 + 3 + MAX_ID_LENGTH; // tag, ID length and ID
+  private static final int MAX_BLOCK_LENGTH = BLOCK_SIZE + MAX_RECORD_SIZE; // length of records
+  private static final int BUFFER_SIZE = 4 * BLOCK_SIZE; // large enough for the longest block
+  private static final byte[] NO_ID = new byte[0];
+
+  private final FileOutputStream output;
+  private final byte[] block; // block being written, which starts with room for its header
+  private final CRC32 checksum;
+  private int length; // bytes of the block written so far, including its header
+  private int recordCount; // records in the block
+  private String accountID; // account of the last record in the block, or null for the default
+  private long totalRecords;
+  private boolean closed;
+
+  /**
+   * Creates a transaction file and writes its magic number. The records written to it are only
+   * complete once the file is closed.
+   * 
+   * @param file the transaction file, which is replaced if it exists
+   * @throws FileNotFoundException if the file cannot be created
+   * @throws IOException           if the magic number cannot be written
+   */
+  public TransactionFile(File file) throws IOException {
+    output = new FileOutputStream(file);
+    block = new byte[BLOCK_HEADER_SIZE + MAX_BLOCK_LENGTH + 4];
+    checksum = new CRC32();
+    length = BLOCK_HEADER_SIZE;
+    recordCount = 0;
+    accountID = null;
+    totalRecords = 0;
+    closed = false;
+
+    try {
+      ByteBuffer.wrap(block).putInt(0, MAGIC);
+      output.write(block, 0, 4);
+    } catch (IOException e) {
+      output.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Writes a deposit or withdrawal of the account the file is loaded into
+   * 
+   * @param deposit true for a deposit, false for a withdrawal
+   * @param amount  the transaction amount
+   * @throws IOException              if a full block cannot be written
+   * @throws IllegalArgumentException if amount is negative
+   * @throws IllegalStateException    if the file is closed
+   */
+  public void write(boolean deposit, int amount) throws IOException {
+    append(null, deposit, amount);
+  }
+
+  /**
+   * Writes a deposit or withdrawal of the account with the given ID. The ID is only written when it
+   * differs from the account of the record before, so a run of records of the same account costs
+   * no more than records without an ID.
+   * 
+   * @param id      the account ID
+   * @param deposit true for a deposit, false for a withdrawal
+   * @param amount  the transaction amount
+   * @throws IOException              if a full block cannot be written
+   * @throws IllegalArgumentException if amount is negative, or if the ID is empty or longer than
+   *                                  MAX_ID_LENGTH bytes
+   * @throws IllegalStateException    if the file is closed
+   * @throws NullPointerException     if id is null
+   */
+  public void write(String id, boolean deposit, int amount) throws IOException {
+    if (id == null) {
+      throw new NullPointerException("Account ID is null.");
+    }
+    append(id, deposit, amount);
+  }
+
+  /**
+   * Appends a record to the block, and writes the block once it is full
+   * 
+   * @param id      the account ID, or null for the account the file is loaded into
+   * @param deposit true for a deposit, false for a withdrawal
+   * @param amount  the transaction amount
+   * @throws IOException              if a full block cannot be written
+   * @throws IllegalArgumentException if amount is negative, or if the ID is empty or too long
+   * @throws IllegalStateException    if the file is closed
+   */
+  private void append(String id, boolean deposit, int amount) throws IOException {
+    // checks that the file can take the record
+    if (closed) {
+      throw new IllegalStateException("Transaction file is closed.");
+    }
+    if (amount < 0) {
+      throw new IllegalArgumentException("Transaction amount must not be negative.");
+    }
+
+    // only writes the account ID when the account changes
+    byte[] idBytes = null;
+    if (id == null ? accountID != null : !id.equals(accountID)) {
+      idBytes = id == null ? NO_ID : id.getBytes(StandardCharsets.UTF_8);
+      if (id != null && (idBytes.length == 0 || idBytes.length > MAX_ID_LENGTH)) {
+        throw new IllegalArgumentException(
+            "Account ID must be between 1 and " + MAX_ID_LENGTH + " bytes long.");
+      }
+    }
+
+    long tag = ((long) amount << 2) | (deposit ? DEPOSIT_BIT : 0)
+        | (idBytes != null ? ACCOUNT_BIT : 0);
+    length = putVarint(block, length, tag);
+    if (idBytes != null) {
+      length = putVarint(block, length, idBytes.length);
+      System.arraycopy(idBytes, 0, block, length, idBytes.length);
+      length += idBytes.length;
+      accountID = id;
+    }
+    recordCount++;
+    totalRecords++;
+
+    if (length - BLOCK_HEADER_SIZE >= BLOCK_SIZE) {
+      writeBlock();
+    }
+  }
+
+  /**
+   * Writes a varint into an array
+   * 
+   * @param bytes    the array
+   * @param position index the varint is written at
+   * @param value    the value to write, which is not negative
+   * @return the index after the varint
+   */
+  private static int putVarint(byte[] bytes, int position, long value) {
+    while (value >= 0x80) {
+      bytes[position++] = (byte) (value | 0x80);
+      value >>>= 7;
+    }
+    bytes[position++] = (byte) value;
+    return position;
+  }
+
+  /**
+   * Writes the block with its header and checksum, and starts a new empty block
+   * 
+   * @throws IOException if the block cannot be written
+   */
+  private void writeBlock() throws IOException {
+    ByteBuffer header = ByteBuffer.wrap(block);
+    header.putInt(0, recordCount);
+    header.putInt(4, length - BLOCK_HEADER_SIZE);
+    checksum.reset();
+    checksum.update(block, 0, length);
+    header.putInt(length, (int) checksum.getValue());
+    output.write(block, 0, length + 4);
+
+    length = BLOCK_HEADER_SIZE;
+    recordCount = 0;
+    accountID = null;
+  }
+
+  /**
+   * Gets the number of records written to this file
+   * 
+   * @return the number of records
+   */
+  public long getRecordCount() {
+    return totalRecords;
+  }
+
+  /**
+   * Writes the last block and closes the file. Closing a closed file has no effect.
+   * 
+   * @throws IOException if the last block cannot be written
+   */
+  @Override
+  public void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    try {
+      if (recordCount > 0) {
+        writeBlock();
+      }
+    } finally {
+      output.close();
+    }
+  }
+
+  /**
+   * Converts a text transaction file into a binary transaction file. Lines are parsed exactly as
+   * BankTeller.loadTransactions() parses them: a line that is not correctly formatted is left out
+   * of the binary file, and a line loadTransactions() would throw an exception for stops the
+   * conversion with the same exception. Loading the binary file with loadTransactionsBinary()
+   * therefore changes an account exactly as loading the text file with loadTransactions() does,
+   * except that transaction IDs are not stored in records: a BankTeller with deduplication enabled
+   * applies every record, so files that may be sent again should be loaded as text. The binary
+   * file is deleted if the conversion fails.
+   * 
+   * @param textFile   the text transaction file to convert
+   * @param binaryFile the binary transaction file to write, which is replaced if it exists
+   * @return the number of lines that were converted into records and that were left out
+   * @throws FileNotFoundException if textFile does not correspond to an actual file within the file
+   *                               system
+   * @throws IOException           if the binary file cannot be written
+   * @throws NumberFormatException if a line has no amount or an amount that does not fit into an
+   *                               int
+   */
+  public static TransactionLoadResult convert(File textFile, File binaryFile) throws IOException {
+    // checks that the file exists
+    if (!textFile.exists()) {
+      throw new FileNotFoundException(
+          "File does not correspond to an actual file within the file system.");
+    }
+
+    TransactionLoadResult result = new TransactionLoadResult();
+    try (Scanner lines = new Scanner(textFile);
+        TransactionFile records = new TransactionFile(binaryFile)) {
+      while (lines.hasNextLine()) {
+        long parsed = BankTeller.parseTransaction(lines.nextLine());
+        if (parsed >= 0) {
+          records.write((parsed & BankTeller.PARSED_DEPOSIT) != 0, (int) parsed);
+          result.lineApplied();
+        } else {
+          BankTeller.countLine(BankTeller.STATUSES[(int) (-1 - parsed)], result);
+        }
+      }
+    } catch (IOException | RuntimeException e) {
+      Files.deleteIfExists(binaryFile.toPath());
+      throw e;
+    }
+    return result;
+  }
+
+  /**
+   * Loads a transaction file into the accounts of a BankTeller, as described in
+   * BankTeller.loadTransactionsBinary(). The counts of the records applied or skipped before an
+   * exception is thrown are kept in result.
+   * 
+   * @param file    an existing transaction file
+   * @param teller  the BankTeller the accounts with an ID are found in
+   * @param account the account of the records without an account ID
+   * @param result  counts of applied and skipped records to update
+   * @throws IOException if the file cannot be read, or is not a transaction file or is damaged or
+   *                     incomplete
+   */
+  static void load(File file, BankTeller teller, BankAccount account,
+      TransactionLoadResult result) throws IOException {
+    ByteBuffer input = ByteBuffer.allocate(BUFFER_SIZE);
+    byte[] bytes = input.array();
+    CRC32 blockChecksum = new CRC32();
+    DecodedBlock decoded = new DecodedBlock();
+    long blockOffset = 4; // offset in the file of the block at the start of the buffer
+
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      // checks that the file is a transaction file
+      int read = 0;
+      while (input.position() < 4 && read >= 0) {
+        read = channel.read(input);
+      }
+      input.flip();
+      if (input.remaining() < 4 || input.getInt() != MAGIC) {
+        throw new IOException("File " + file + " is not a transaction file.");
+      }
+
+      while (true) {
+        // reads more of the file once the next block is not in the buffer
+        int start = input.position();
+        int blockLength = -1;
+        if (input.remaining() >= BLOCK_HEADER_SIZE) {
+          int recordsLength = input.getInt(start + 4);
+          if (recordsLength < 0 || recordsLength > MAX_BLOCK_LENGTH) {
+            throw new IOException("Transaction file " + file + " is damaged at byte "
+                + blockOffset + ".");
+          }
+          blockLength = BLOCK_HEADER_SIZE + recordsLength + 4;
+        }
+        if (blockLength < 0 || input.remaining() < blockLength) {
+          input.compact();
+          read = channel.read(input);
+          input.flip();
+          if (read < 0) {
+            if (input.hasRemaining()) {
+              throw new IOException("Transaction file " + file + " is incomplete.");
+            }
+            return;
+          }
+          continue;
+        }
+
+        // checks the checksum and the records of the block before any of its records is applied
+        blockChecksum.reset();
+        blockChecksum.update(bytes, start, blockLength - 4);
+        int end = start + blockLength - 4;
+        if (input.getInt(end) != (int) blockChecksum.getValue()
+            || !decodeBlock(bytes, start + BLOCK_HEADER_SIZE, end, input.getInt(start), teller,
+                account, decoded)) {
+          throw new IOException("Transaction file " + file + " is damaged at byte "
+              + blockOffset + ".");
+        }
+        decoded.apply(result);
+        input.position(start + blockLength);
+        blockOffset += blockLength;
+      }
+    }
+  }
+
+  /**
+   * Decodes the records of a block into the parallel arrays of a DecodedBlock, checking the whole
+   * block and finding the account of every record before any record is applied
+   * 
+   * @param bytes       bytes of the file
+   * @param position    index of the first record of the block
+   * @param end         index after the last record of the block
+   * @param recordCount number of records in the block
+   * @param teller      the BankTeller the accounts with an ID are found in
+   * @param account     the account of the records without an account ID
+   * @param decoded     the block the records are decoded into, which is cleared first
+   * @return true if the block holds exactly recordCount valid records, false if it is damaged
+   * @throws NoSuchElementException if a record has an account ID the teller has no account for
+   */
+  private static boolean decodeBlock(byte[] bytes, int position, int end, int recordCount,
+      BankTeller teller, BankAccount account, DecodedBlock decoded) {
+    // every record takes at least one byte
+    if (recordCount < 0 || recordCount > end - position) {
+      return false;
+    }
+    decoded.clear(recordCount);
+
+    BankAccount recordAccount = account;
+    for (int r = 0; r < recordCount; r++) {
+      // decodes the tag, which takes 5 bytes at most
+      long tag = 0;
+      int shift = 0;
+      byte b;
+      do {
+        if (position == end || shift > 28) {
+          return false;
+        }
+        b = bytes[position++];
+        tag |= (long) (b & 0x7F) << shift;
+        shift += 7;
+      } while (b < 0);
+
+      // switches to the account with the ID after the tag
+      if ((tag & ACCOUNT_BIT) != 0) {
+        int idLength = 0;
+        shift = 0;
+        do {
+          if (position == end || shift > 14) {
+            return false;
+          }
+          b = bytes[position++];
+          idLength |= (b & 0x7F) << shift;
+          shift += 7;
+        } while (b < 0);
+        if (idLength > end - position) {
+          return false;
+        }
+        recordAccount = idLength == 0 ? account
+            : teller.findAccount(new String(bytes, position, idLength, StandardCharsets.UTF_8));
+        position += idLength;
+      }
+
+      long amount = tag >>> 2;
+      if (amount > Integer.MAX_VALUE) {
+        return false;
+      }
+      decoded.add(recordAccount, (tag & DEPOSIT_BIT) != 0, (int) amount);
+    }
+    return position == end;
+  }
+
+  /**
+   * The records of one block of a transaction file, decoded into parallel arrays like the records
+   * of a TransactionBatch. The arrays are reused for every block of a file.
+   */
+  private static final class DecodedBlock {
+    private BankAccount[] accounts = new BankAccount[0];
+    private boolean[] deposits = new boolean[0];
+    private int[] amounts = new int[0];
+    private int size;
+
+    /**
+     * Removes every record, making room for the given number of records
+     * 
+     * @param capacity number of records the block will hold
+     */
+    void clear(int capacity) {
+      if (accounts.length < capacity) {
+        accounts = new BankAccount[capacity];
+        deposits = new boolean[capacity];
+        amounts = new int[capacity];
+      }
+      size = 0;
+    }
+
+    /**
+     * Adds a record after the records already decoded
+     * 
+     * @param account the account of the record
+     * @param deposit true for a deposit, false for a withdrawal
+     * @param amount  the amount of the record
+     */
+    void add(BankAccount account, boolean deposit, int amount) {
+      accounts[size] = account;
+      deposits[size] = deposit;
+      amounts[size] = amount;
+      size++;
+    }
+
+    /**
+     * Applies the records in order, each to its account
+     * 
+     * @param result counts of applied and skipped records to update
+     */
+    void apply(TransactionLoadResult result) {
+      TellerMetrics.Recorder recorder = TellerMetrics.currentRecorder();
+      for (int i = 0; i < size; i++) {
+        TransactionStatus status = deposits[i] ? accounts[i].tryDeposit(amounts[i], recorder)
+            : accounts[i].tryWithdraw(amounts[i], recorder);
+        BankTeller.countLine(status, result);
+      }
+      Arrays.fill(accounts, 0, size, null);
+      size = 0;
+    }
+  }
+}
@@ -0,0 +1,391 @@
+/////////////////////////////////////////// FILE  HEADER /////////////////////////////////////////////
+//
+// Title: Exceptional Bank Teller
+// Files: BankAccount.java, BankAccountTester.java, BankTeller.java, BankTellerTester.java,
+//        BankTellerBenchmark.java, TransactionLog.java, TransactionLoadResult.java,
+//        ConcurrentTransactionLog.java, ConcurrentBankAccount.java,
+//        ConcurrentBankAccountTester.java, ConcurrentBankTeller.java,
+//        ConcurrentBankTellerTester.java, TransactionStatus.java, TransactionListener.java,
+//        TransactionJournal.java, TransactionJournalTester.java, TransactionSnapshot.java,
+//        ColdAccountStore.java, TieredAccountMap.java, TieredBankTeller.java,
+//        TieredBankTellerTester.java, TransactionBatch.java, TransactionBatchResult.java,
+//        TransactionRecord.java, TransactionEvent.java, TransactionPipeline.java,
+//        TransactionPipelineTester.java, LatencyHistogram.java, TellerMetrics.java,
+//        TellerMetricsTester.java, TransactionFile.java, TransactionFileTester.java,
+//        HighPrecisionBankAccount.java, HighPrecisionBankAccountTester.java, AccountIndex.java,
+//        AccountIndexTester.java, ReconciliationReport.java, ReconciliationTask.java,
+//        TransactionIDCache.java, TransactionIDCacheTester.java, ShardTransport.java,
+//        LocalShardTransport.java, SocketShardTransport.java, ShardServer.java,
+//        ShardedBankTeller.java, ShardedBankTellerTester.java, TransactionParser.java,
+//        TransactionParserTester.java, TellerServer.java, TellerClient.java,
+//        TellerLoadGenerator.java, TellerServerTester.java, TransactionClock.java,
+//        TransactionTimeIndex.java, TransactionHistory.java, TransactionHistoryTester.java,
+//        TellerWorkload.java, TellerReplay.java, TellerReplayResult.java, TellerReplayTester.java
+// This File: TransactionFileTester.java
+// 
+// Name: Benjamin Tarmann
+// Email: btarmann@wisc.edu
+//
+///////////////////////////////////////// 100 COLUMNS WIDE /////////////////////////////////////////
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.zip.CRC32;
+
+/**
+ * This class is a tester for the binary transaction files of BankTeller, implemented by the
+ * TransactionFile class
+ * 
+ * @author Benjamin Tarmann
+ */
+public class TransactionFileTester {
+
+  /**
+   * Creates a new temporary file name that does not exist yet and is deleted when the JVM exits
+   * 
+   * @param suffix the suffix of the file name
+   * @return the file
+   * @throws IOException if the temporary file cannot be created
+   */
+  private static File createFile(String suffix) throws IOException {
+    File file = File.createTempFile("transactions", suffix);
+    file.delete();
+    file.deleteOnExit();
+    return file;
+  }
+
+  /**
+   * Checks whether records written to a transaction file, spanning many blocks and switching
+   * between the default account and accounts with an ID, are loaded into the right accounts in
+   * order, and whether a record of an account the BankTeller does not have is reported.
+   * 
+   * @return true when this test verifies a correct functionality, and false otherwise.
+   */
+  public static boolean testTransactionFileRoundTrip() {
+    try {
+      File file = createFile(".btx");
+      BankAccount expectedDefault = new BankAccount("0000", 1_000_000);
+      BankAccount expectedFirst = new BankAccount("0001", 1_000_000);
+      BankAccount expectedSecond = new BankAccount("0002", 1_000_000);
+
+      TransactionFile records = new TransactionFile(file);
+      for (int i = 0; i < 100_000; i++) {
+        boolean deposit = i % 3 != 0;
+        int amount = deposit ? i % 1000 : 10;
+        if (i % 7 == 0) {
+          records.write("0001", deposit, amount);
+          apply(expectedFirst, deposit, amount);
+        } else if (i % 7 == 1) {
+          records.write("0002", deposit, amount);
+          apply(expectedSecond, deposit, amount);
+        } else {
+          records.write(deposit, amount);
+          apply(expectedDefault, deposit, amount);
+        }
+      }
+      records.write(true, 1 << 30); // an amount with a tag of 5 bytes
+      apply(expectedDefault, true, 1 << 30);
+      records.close();
+      if (records.getRecordCount() != 100_001 || file.length() >= 100_001 * 4) {
+        return false;
+      }
+
+      BankTeller teller = new BankTeller();
+      BankAccount loadedDefault = new BankAccount("0000", 1_000_000);
+      teller.addBankAccount(new BankAccount("0001", 1_000_000));
+      teller.addBankAccount(new BankAccount("0002", 1_000_000));
+      TransactionLoadResult result = teller.loadTransactionsBinary(file, loadedDefault);
+      if (result.getAppliedCount() != 100_001 || result.getSkippedCount() != 0
+          || !sameAccount(expectedDefault, loadedDefault)
+          || !sameAccount(expectedFirst, teller.findAccount("0001"))
+          || !sameAccount(expectedSecond, teller.findAccount("0002"))) {
+        return false;
+      }
+
+      // checks that a record of a missing account is reported
+      records = new TransactionFile(file);
+      records.write("0003", true, 10);
+      records.close();
+      try {
+        teller.loadTransactionsBinary(file, loadedDefault);
+        return false;
+      } catch (NoSuchElementException e) {
+        return true;
+      }
+    } catch (IOException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Applies a deposit or withdrawal to an account
+   * 
+   * @param account the account
+   * @param deposit true for a deposit, false for a withdrawal
+   * @param amount  the transaction amount
+   */
+  private static void apply(BankAccount account, boolean deposit, int amount) {
+    if (deposit) {
+      account.tryDeposit(amount);
+    } else {
+      account.tryWithdraw(amount);
+    }
+  }
+
+  /**
+   * Checks whether two accounts have the same balance, number of transactions and most recent
+   * transactions
+   * 
+   * @param expected the account the transactions were applied to directly
+   * @param actual   the account the transactions were loaded into
+   * @return true if the accounts match, false otherwise
+   */
+  private static boolean sameAccount(BankAccount expected, BankAccount actual) {
+    return expected.getBalance() == actual.getBalance()
+        && expected.getTransactionsCount() == actual.getTransactionsCount()
+        && Arrays.equals(expected.getMostRecentTransactions(), actual.getMostRecentTransactions());
+  }
+
+  /**
+   * Checks whether converting a text transaction file and loading the binary file changes an
+   * account exactly as loading the text file does, including lines with extra spaces, lines that
+   * are not correctly formatted and withdrawals that are not a multiple of 10, and whether a line
+   * loadTransactions() throws an exception for stops the conversion and deletes the binary file.
+   * 
+   * @return true when this test verifies a correct functionality, and false otherwise.
+   */
+  public static boolean testTransactionFileConvert() {
+    try {
+      File text = createFile(".txt");
+      File binary = createFile(".btx");
+      FileWriter writer = new FileWriter(text);
+      writer.write("1 250\n  0 20  \r\n1 x\n2 10\n0 15\r1 0\n0 100\n1\n0 30");
+      writer.close();
+
+      BankTeller teller = new BankTeller();
+      BankAccount fromText = new BankAccount("0001", 100);
+      BankAccount fromBinary = new BankAccount("0002", 100);
+      teller.loadTransactions(text, fromText);
+      TransactionLoadResult converted = TransactionFile.convert(text, binary);
+      TransactionLoadResult loaded = teller.loadTransactionsBinary(binary, fromBinary);
+      if (converted.getAppliedCount() != 7 || converted.getSkippedCount() != 2
+          || loaded.getAppliedCount() != 6 || loaded.getSkippedCount() != 1
+          || !sameAccount(fromText, fromBinary) || fromBinary.getBalance() != 201) {
+        return false;
+      }
+
+      // checks that a line without an amount stops the conversion
+      writer = new FileWriter(text);
+      writer.write("1 250\n\n0 20\n");
+      writer.close();
+      try {
+        TransactionFile.convert(text, binary);
+        return false;
+      } catch (NumberFormatException e) {
+        return !binary.exists();
+      }
+    } catch (IOException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Checks whether a damaged block, an incomplete block and a file that is not a transaction file
+   * are reported with an IOException, and whether the records of the blocks before a damaged
+   * block stay applied while none of the damaged block are.
+   * 
+   * @return true when this test verifies a correct functionality, and false otherwise.
+   */
+  public static boolean testTransactionFileDamaged() {
+    try {
+      File file = createFile(".btx");
+      TransactionFile records = new TransactionFile(file);
+      for (int i = 0; i < 100_000; i++) {
+        records.write(true, 1);
+      }
+      records.close();
+      long blockEnd = file.length() - 1; // last byte of the last block, which is its checksum
+
+      // damages the last block
+      RandomAccessFile access = new RandomAccessFile(file, "rw");
+      access.seek(blockEnd - 100);
+      access.write(0x7F);
+      access.close();
+      BankTeller teller = new BankTeller();
+      BankAccount account = new BankAccount("0001", 10);
+      try {
+        teller.loadTransactionsBinary(file, account);
+        return false;
+      } catch (IOException e) {
+        // the first block holds 64KB of records of 1 byte, and the last block is damaged
+        if (account.getBalance() != 10 + 64 * 1024 || blockEnd + 1 > 2 * (64 * 1024 + 12) + 4) {
+          return false;
+        }
+      }
+
+      // cuts off the end of the last block
+      access = new RandomAccessFile(file, "rw");
+      access.setLength(blockEnd);
+      access.close();
+      try {
+        teller.loadTransactionsBinary(file, new BankAccount("0002", 10));
+        return false;
+      } catch (IOException e) {
+        // expected
+      }
+
+      // writes a file that is not a transaction file
+      FileWriter writer = new FileWriter(file);
+      writer.write("1 250\n");
+      writer.close();
+      try {
+        teller.loadTransactionsBinary(file, new BankAccount("0003", 10));
+        return false;
+      } catch (IOException e) {
+        return true;
+      }
+    } catch (IOException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Checks whether a block with a correct checksum but a wrong number of records, or a record of an
+   * account the teller does not have, is rejected before any of its records is applied
+   * 
+   * @return true when this test verifies a correct functionality, and false otherwise.
+   */
+  public static boolean testTransactionFileBlockCheckedFirst() {
+    try {
+      File file = createFile(".btx");
+      TransactionFile records = new TransactionFile(file);
+      for (int i = 0; i < 10; i++) {
+        records.write(true, 5);
+      }
+      records.write("0002", true, 5);
+      records.close();
+      byte[] bytes = Files.readAllBytes(file.toPath());
+      BankTeller teller = new BankTeller();
+      teller.addBankAccount(new BankAccount("0002", 10));
+
+      // claims one more and one less record than the block holds, with a correct checksum
+      for (int change : new int[] {1, -1}) {
+        ByteBuffer block = ByteBuffer.wrap(bytes.clone());
+        block.putInt(4, block.getInt(4) + change);
+        CRC32 checksum = new CRC32();
+        checksum.update(block.array(), 4, bytes.length - 8);
+        block.putInt(bytes.length - 4, (int) checksum.getValue());
+        Files.write(file.toPath(), block.array());
+        BankAccount account = new BankAccount("0001", 10);
+        try {
+          teller.loadTransactionsBinary(file, account);
+          return false;
+        } catch (IOException e) {
+          if (account.getBalance() != 10 || account.getTransactionsCount() != 1) {
+            return false;
+          }
+        }
+      }
+
+      // loads the undamaged file into a teller without the account of the last record
+      Files.write(file.toPath(), bytes);
+      BankAccount account = new BankAccount("0001", 10);
+      try {
+        new BankTeller().loadTransactionsBinary(file, account);
+        return false;
+      } catch (NoSuchElementException e) {
+        return account.getBalance() == 10
+            && teller.loadTransactionsBinary(file, account).getAppliedCount() == 11
+            && account.getBalance() == 60;
+      }
+    } catch (IOException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Checks whether a negative amount, an empty account ID and writing to a closed transaction
+   * file are rejected, and whether loading a missing file or into a null account is reported
+   * 
+   * @return true when this test verifies a correct functionality, and false otherwise.
+   */
+  public static boolean testTransactionFileInvalidArguments() {
+    try {
+      File file = createFile(".btx");
+      TransactionFile records = new TransactionFile(file);
+      try {
+        records.write(true, -1);
+        return false;
+      } catch (IllegalArgumentException e) {
+        // expected
+      }
+      try {
+        records.write("", true, 10);
+        return false;
+      } catch (IllegalArgumentException e) {
+        // expected
+      }
+      records.close();
+      records.close(); // has no effect
+      try {
+        records.write(true, 10);
+        return false;
+      } catch (IllegalStateException e) {
+        // expected
+      }
+
+      // checks that an empty transaction file loads nothing
+      BankTeller teller = new BankTeller();
+      if (teller.loadTransactionsBinary(file, new BankAccount("0001", 10)).getAppliedCount() != 0) {
+        return false;
+      }
+      try {
+        teller.loadTransactionsBinary(file, null);
+        return false;
+      } catch (NullPointerException e) {
+        // expected
+      }
+      try {
+        teller.loadTransactionsBinary(createFile(".btx"), new BankAccount("0001", 10));
+        return false;
+      } catch (IOException e) {
+        return true; // a FileNotFoundException
+      }
+    } catch (IOException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Calls the test methods defined in this TransactionFileTester class
+   * 
+   * @param args
+   */
+  public static void main(String[] args) {
+    if (testTransactionFileRoundTrip() == false) {
+      System.out.println("testTransactionFileRoundTrip failed.");
+    }
+
+    if (testTransactionFileConvert() == false) {
+      System.out.println("testTransactionFileConvert failed.");
+    }
+
+    if (testTransactionFileDamaged() == false) {
+      System.out.println("testTransactionFileDamaged failed.");
+    }
+
+    if (testTransactionFileBlockCheckedFirst() == false) {
+      System.out.println("testTransactionFileBlockCheckedFirst failed.");
+    }
+
+    if (testTransactionFileInvalidArguments() == false) {
+      System.out.println("testTransactionFileInvalidArguments failed.");
+    }
+  }
+}
@@ -0,0 +1,125 @@
+/////////////////////////////////////////// FILE  HEADER /////////////////////////////////////////////
+//
+// Title: Exceptional Bank Teller
+// Files: BankAccount.java, BankAccountTester.java, BankTeller.java, BankTellerTester.java,
+//        BankTellerBenchmark.java, TransactionLog.java, TransactionLoadResult.java,
+//        ConcurrentTransactionLog.java, ConcurrentBankAccount.java,
+//        ConcurrentBankAccountTester.java, ConcurrentBankTeller.java,
+//        ConcurrentBankTellerTester.java, TransactionStatus.java, TransactionListener.java,
+//        TransactionJournal.java, TransactionJournalTester.java, TransactionSnapshot.java,
+//        ColdAccountStore.java, TieredAccountMap.java, TieredBankTeller.java,
+//        TieredBankTellerTester.java, TransactionBatch.java, TransactionBatchResult.java,
+//        TransactionRecord.java, TransactionEvent.java, TransactionPipeline.java,
+//        TransactionPipelineTester.java, LatencyHistogram.java, TellerMetrics.java,
+//        TellerMetricsTester.java, TransactionFile.java, TransactionFileTester.java,
+//        HighPrecisionBankAccount.java, HighPrecisionBankAccountTester.java, AccountIndex.java,
+//        AccountIndexTester.java, ReconciliationReport.java, ReconciliationTask.java,
+//        TransactionIDCache.java, TransactionIDCacheTester.java, ShardTransport.java,
+//        LocalShardTransport.java, SocketShardTransport.java, ShardServer.java,
+//        ShardedBankTeller.java, ShardedBankTellerTester.java, TransactionParser.java,
+//        TransactionParserTester.java, TellerServer.java, TellerClient.java,
+//        TellerLoadGenerator.java, TellerServerTester.java, TransactionClock.java,
+//        TransactionTimeIndex.java, TransactionHistory.java, TransactionHistoryTester.java,
+//        TellerWorkload.java, TellerReplay.java, TellerReplayResult.java, TellerReplayTester.java
+// This File: TransactionHistory.java
+// 
+// Name: Benjamin Tarmann
+// Email: btarmann@wisc.edu
+//
+///////////////////////////////////////// 100 COLUMNS WIDE /////////////////////////////////////////
+
+/**
+ * This class models a cursor over a range of the transactions of a bank account, returned by
+ * BankAccount.getHistory(). Each call to nextPage() copies the next transactions of the range,
+ * with their amounts, deposit flags and times, into arrays the caller supplies and reuses, so
+ * that a statement of a million transactions is read a page at a time without allocating anything
+ * per transaction and without a copy of the whole history.
+ * 
+ * The range is fixed when the cursor is created. If the account only keeps a window of its recent
+ * transactions and new transactions push the oldest ones out of the window while the cursor is
+ * read, the transactions that are no longer kept are skipped.
+ * 
+ * @author Benjamin Tarmann
+ */
+public class TransactionHistory {
+  private final BankAccount account;
+  private final int from; // index of the oldest transaction of the range
+  private final int to; // index after the newest transaction of the range
+  private final boolean newestFirst;
+  private int next; // index of the next transaction to read
+
+  /**
+   * Creates a cursor over a range of the transactions of an account
+   * 
+   * @param account     the account
+   * @param from        index of the oldest transaction of the range
+   * @param to          index after the newest transaction of the range
+   * @param newestFirst true to read the range from its newest transaction to its oldest one
+   */
+  TransactionHistory(BankAccount account, int from, int to, boolean newestFirst) {
+    this.account = account;
+    this.from = from;
+    this.to = to;
+    this.newestFirst = newestFirst;
+    next = newestFirst ? to - 1 : from;
+  }
+
+  /**
+   * Checks whether the range may have transactions that were not read yet
+   * 
+   * @return true unless every transaction of the range was read or skipped
+   */
+  public boolean hasNext() {
+    return newestFirst ? next >= from : next < to;
+  }
+
+  /**
+   * Copies the next transactions of the range into caller-supplied arrays, as many as fit into
+   * the shortest of them
+   * 
+   * @param amounts  array the transaction amounts are copied into
+   * @param deposits array the deposit flags are copied into, true for a deposit and false for a
+   *                 withdrawal
+   * @param times    array the times the transactions were applied at are copied into, in
+   *                 milliseconds since the epoch
+   * @return the number of transactions copied, which is 0 once the whole range was read or if an
+   *         array is empty
+   * @throws NullPointerException if an array is null
+   */
+  public int nextPage(int[] amounts, boolean[] deposits, long[] times) {
+    int pageSize = Math.min(amounts.length, Math.min(deposits.length, times.length));
+    if (pageSize == 0) {
+      return 0;
+    }
+
+    while (hasNext()) {
+      int firstKept = account.getFirstKeptTransaction();
+      if (newestFirst) {
+        if (next < firstKept) {
+          break; // the rest of the range is no longer kept
+        }
+        int length = Math.min(pageSize, next - Math.max(from, firstKept) + 1);
+        int copied = account.copyTransactions(next, length, true, amounts, deposits, times);
+        next -= copied;
+        if (copied < length) {
+          next = from - 1; // the older transactions were pushed out of the window meanwhile
+        }
+        return copied;
+      }
+
+      // skips the transactions that were pushed out of the window
+      next = Math.max(next, firstKept);
+      if (next >= to) {
+        break;
+      }
+      int copied = account.copyTransactions(next, Math.min(pageSize, to - next), false, amounts,
+          deposits, times);
+      next += copied;
+      if (copied > 0) {
+        return copied;
+      }
+    }
+    next = newestFirst ? from - 1 : to;
+    return 0;
+  }
+}
@@ -0,0 +1,357 @@
+/////////////////////////////////////////// FILE  HEADER /////////////////////////////////////////////
+//
+// Title: Exceptional Bank Teller
+// Files: BankAccount.java, BankAccountTester.java, BankTeller.java, BankTellerTester.java,
+//        BankTellerBenchmark.java, TransactionLog.java, TransactionLoadResult.java,
+//        ConcurrentTransactionLog.java, ConcurrentBankAccount.java,
+//        ConcurrentBankAccountTester.java, ConcurrentBankTeller.java,
+//        ConcurrentBankTellerTester.java, TransactionStatus.java, TransactionListener.java,
+//        TransactionJournal.java, TransactionJournalTester.java, TransactionSnapshot.java,
+//        ColdAccountStore.java, TieredAccountMap.java, TieredBankTeller.java,
+//        TieredBankTellerTester.java, TransactionBatch.java, TransactionBatchResult.java,
+//        TransactionRecord.java, TransactionEvent.java, TransactionPipeline.java,
+//        TransactionPipelineTester.java, LatencyHistogram.java, TellerMetrics.java,
+//        TellerMetricsTester.java, TransactionFile.java, TransactionFileTester.java,
+//        HighPrecisionBankAccount.java, HighPrecisionBankAccountTester.java, AccountIndex.java,
+//        AccountIndexTester.java, ReconciliationReport.java, ReconciliationTask.java,
+//        TransactionIDCache.java, TransactionIDCacheTester.java, ShardTransport.java,
+//        LocalShardTransport.java, SocketShardTransport.java, ShardServer.java,
+//        ShardedBankTeller.java, ShardedBankTellerTester.java, TransactionParser.java,
+//        TransactionParserTester.java, TellerServer.java, TellerClient.java,
+//        TellerLoadGenerator.java, TellerServerTester.java, TransactionClock.java,
+//        TransactionTimeIndex.java, TransactionHistory.java, TransactionHistoryTester.java,
+//        TellerWorkload.java, TellerReplay.java, TellerReplayResult.java, TellerReplayTester.java
+// This File: TransactionHistoryTester.java
+// 
+// Name: Benjamin Tarmann
+// Email: btarmann@wisc.edu
+//
+///////////////////////////////////////// 100 COLUMNS WIDE /////////////////////////////////////////
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * This class represents a tester for the TransactionHistory class and the times of transactions
+ * 
+ * @author Benjamin Tarmann
+ */
+public class TransactionHistoryTester {
+  private static final long DAY = 24 * 60 * 60 * 1000L;
+
+  /**
+   * Reads a whole cursor with pages of a given size
+   * 
+   * @param history  the cursor
+   * @param pageSize number of transactions per page
+   * @return the amounts, deposit flags and times read, as amount (negative for a withdrawal) and
+   *         time pairs
+   */
+  private static ArrayList<long[]> readAll(TransactionHistory history, int pageSize) {
+    int[] amounts = new int[pageSize];
+    boolean[] deposits = new boolean[pageSize];
+    long[] times = new long[pageSize];
+    ArrayList<long[]> read = new ArrayList<long[]>();
+    int count;
+    while ((count = history.nextPage(amounts, deposits, times)) > 0) {
+      for (int i = 0; i < count; i++) {
+        read.add(new long[] {deposits[i] ? amounts[i] : -amounts[i], times[i]});
+      }
+    }
+    return history.hasNext() ? null : read;
+  }
+
+  /**
+   * Reads the history of an account with 1,000 transactions in pages of 7, oldest first and
+   * newest first, and checks that every transaction is read once in order, with a time between
+   * the times before and after it was applied
+   * 
+   * @return true when this test verifies a correct functionality, and false otherwise.
+   */
+  public static boolean testTransactionHistoryPages() {
+    long before = TransactionClock.now();
+    BankAccount account = new BankAccount("ACC1", 1000);
+    for (int i = 1; i <= 1000; i++) {
+      if (i % 4 == 0) {
+        account.tryWithdraw(10);
+      } else {
+        account.deposit(i);
+      }
+    }
+    long after = TransactionClock.now();
+
+    ArrayList<long[]> oldestFirst = readAll(account.getHistory(false), 7);
+    ArrayList<long[]> newestFirst = readAll(account.getHistory(true), 7);
+    if (oldestFirst == null || newestFirst == null || oldestFirst.size() != 1001
+        || newestFirst.size() != 1001 || oldestFirst.get(0)[0] != 1000) {
+      return false;
+    }
+    for (int i = 0; i < 1001; i++) {
+      long[] transaction = oldestFirst.get(i);
+      long expected = i == 0 ? 1000 : i % 4 == 0 ? -10 : i;
+      if (transaction[0] != expected || transaction[1] < before || transaction[1] > after
+          || (i > 0 && transaction[1] < oldestFirst.get(i - 1)[1])
+          || newestFirst.get(1000 - i)[0] != expected
+          || newestFirst.get(1000 - i)[1] != transaction[1]) {
+        return false;
+      }
+    }
+
+    // empty pages read nothing, and transactions applied afterwards are not part of the cursor
+    TransactionHistory history = account.getHistory(false);
+    account.deposit(5);
+    return history.nextPage(new int[0], new boolean[1], new long[1]) == 0 && history.hasNext()
+        && readAll(history, 1000).size() == 1001;
+  }
+
+  /**
+   * Restores an account with 100,000 transactions over 100 days, several in the same millisecond,
+   * and checks that random time ranges read exactly the transactions a scan of the whole history
+   * finds in them, in both orders
+   * 
+   * @return true when this test verifies a correct functionality, and false otherwise.
+   */
+  public static boolean testTransactionHistoryTimeRange() {
+    long start = 1_700_000_000_000L;
+    BankAccount account = new BankAccount("ACC1", 0, 0, 0);
+    long[] times = new long[100_000];
+    for (int i = 0; i < times.length; i++) {
+      times[i] = start + (i / 3) * (100 * DAY / (times.length / 3));
+      account.restoreTransaction(true, i + 1, times[i]);
+    }
+
+    Random random = new Random(3);
+    for (int query = 0; query < 200; query++) {
+      long from = start - DAY + (long) (random.nextDouble() * 102 * DAY);
+      long to = query % 10 == 0 ? from : from + (long) (random.nextDouble() * 30 * DAY);
+      boolean newestFirst = random.nextBoolean();
+      ArrayList<long[]> read = readAll(account.getHistory(from, to, newestFirst), 256);
+      ArrayList<Integer> expected = new ArrayList<Integer>();
+      for (int i = 0; i < times.length; i++) {
+        if (times[i] >= from && times[i] < to) {
+          expected.add(i);
+        }
+      }
+      if (read == null || read.size() != expected.size()) {
+        return false;
+      }
+      for (int k = 0; k < expected.size(); k++) {
+        int index = expected.get(newestFirst ? expected.size() - 1 - k : k);
+        if (read.get(k)[0] != index + 1 || read.get(k)[1] != times[index]) {
+          return false;
+        }
+      }
+    }
+
+    try {
+      account.getHistory(start + DAY, start, false);
+      return false;
+    } catch (IllegalArgumentException e) {
+      // expected: the range is reversed
+    }
+    return readAll(account.getHistory(0, start, false), 10).isEmpty()
+        && readAll(account.getHistory(start + 200 * DAY, Long.MAX_VALUE, true), 10).isEmpty()
+        && readAll(account.getHistory(Long.MIN_VALUE, Long.MAX_VALUE, true), 10).size() == 100_000;
+  }
+
+  /**
+   * Reads the history of accounts that keep a window of 10 transactions while new transactions
+   * push the oldest ones out, and checks that the cursors skip the transactions that are no
+   * longer kept and read the others
+   * 
+   * @return true when this test verifies a correct functionality, and false otherwise.
+   */
+  public static boolean testTransactionHistoryWindow() {
+    BankAccount[] accounts = {new BankAccount("ACC1", 100, 10),
+        new ConcurrentBankAccount("ACC2", 100, 10)};
+    int[] amounts = new int[3];
+    boolean[] deposits = new boolean[3];
+    long[] times = new long[3];
+    for (BankAccount account : accounts) {
+      for (int i = 1; i <= 50; i++) {
+        account.deposit(i); // transaction i has the amount i
+      }
+      ArrayList<long[]> kept = readAll(account.getHistory(false), 4);
+      if (kept.size() != 10 || kept.get(0)[0] != 41 || kept.get(9)[0] != 50) {
+        return false;
+      }
+
+      TransactionHistory oldestFirst = account.getHistory(false);
+      TransactionHistory newestFirst = account.getHistory(true);
+      if (oldestFirst.nextPage(amounts, deposits, times) != 3 || amounts[0] != 41
+          || newestFirst.nextPage(amounts, deposits, times) != 3 || amounts[0] != 50
+          || amounts[2] != 48) {
+        return false;
+      }
+      for (int i = 51; i <= 55; i++) {
+        account.deposit(i); // transactions 41 to 45 are no longer kept
+      }
+      ArrayList<long[]> rest = readAll(oldestFirst, 100);
+      ArrayList<long[]> older = readAll(newestFirst, 100);
+      if (rest.size() != 5 || rest.get(0)[0] != 46 || rest.get(4)[0] != 50
+          || older.size() != 2 || older.get(0)[0] != 47 || older.get(1)[0] != 46) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Deposits to a ConcurrentBankAccount from 4 threads at the same time, and checks that its
+   * history holds every deposit once, with times that never decrease
+   * 
+   * @return true when this test verifies a correct functionality, and false otherwise.
+   */
+  public static boolean testTransactionHistoryConcurrent() {
+    ConcurrentBankAccount account = new ConcurrentBankAccount("ACC1", 100);
+    Thread[] threads = new Thread[4];
+    for (int t = 0; t < threads.length; t++) {
+      threads[t] = new Thread(() -> {
+        for (int i = 0; i < 20_000; i++) {
+          account.deposit(1);
+        }
+      });
+      threads[t].start();
+    }
+    try {
+      for (Thread thread : threads) {
+        thread.join();
+      }
+    } catch (InterruptedException e) {
+      return false;
+    }
+
+    ArrayList<long[]> read = readAll(account.getHistory(false), 1000);
+    long total = 0;
+    for (int i = 0; i < read.size(); i++) {
+      total += read.get(i)[0];
+      if (i > 0 && read.get(i)[1] < read.get(i - 1)[1]) {
+        return false;
+      }
+    }
+    return read.size() == 80_001 && total == 80_100;
+  }
+
+  /**
+   * Checks that transactions keep their times when their account is moved to the cold tier and
+   * back, and when it is written to a snapshot and read again
+   * 
+   * @return true when this test verifies a correct functionality, and false otherwise.
+   */
+  public static boolean testTransactionHistoryRestored() {
+    BankAccount account = new BankAccount("ACC1", 0, 0, 0);
+    for (int i = 0; i < 20; i++) {
+      account.restoreTransaction(i % 2 == 0, 10 * (i + 1), 1_000_000L + i * DAY);
+    }
+
+    ColdAccountStore store = new ColdAccountStore();
+    store.put(account);
+    ArrayList<long[]> original = readAll(account.getHistory(false), 8);
+    ArrayList<long[]> cold = readAll(store.get("ACC1").getHistory(false), 8);
+    if (cold.size() != 20) {
+      return false;
+    }
+    for (int i = 0; i < 20; i++) {
+      if (cold.get(i)[0] != original.get(i)[0] || cold.get(i)[1] != original.get(i)[1]) {
+        return false;
+      }
+    }
+
+    try {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      TransactionSnapshot.writeAccount(new DataOutputStream(bytes), account);
+      BankAccount restored = TransactionSnapshot.readAccount(
+          new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())),
+          new byte[TransactionSnapshot.MAX_ID_LENGTH]);
+      ArrayList<long[]> last = readAll(restored.getHistory(1_000_000L + 16 * DAY,
+          Long.MAX_VALUE, true), 8);
+      return last.size() == 4 && last.get(0)[0] == -200
+          && last.get(0)[1] == 1_000_000L + 19 * DAY && last.get(3)[1] == 1_000_000L + 16 * DAY;
+    } catch (IOException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Checks whether the clock starts its ticking thread when it is read, stops it when asked to or
+   * once it is no longer read, and never goes backwards across a restart
+   * 
+   * @return true when this test verifies a correct functionality, and false otherwise.
+   */
+  public static boolean testTransactionClockStops() {
+    TransactionClock.stop();
+    if (TransactionClock.isTicking()) {
+      return false;
+    }
+    long first = TransactionClock.now();
+    if (!TransactionClock.isTicking()) {
+      return false;
+    }
+    TransactionClock.stop();
+    long second = TransactionClock.now();
+    if (second < first || !TransactionClock.isTicking()) {
+      return false;
+    }
+
+    // waits for the ticking thread to stop by itself once the clock is no longer read
+    try {
+      for (int i = 0; i < 100 && TransactionClock.isTicking(); i++) {
+        Thread.sleep(100);
+      }
+    } catch (InterruptedException e) {
+      return false;
+    }
+    if (TransactionClock.isTicking()) {
+      return false;
+    }
+    for (Thread thread : Thread.getAllStackTraces().keySet()) {
+      if (thread.getName().equals("TransactionClock ticker") && thread.isAlive()) {
+        try {
+          thread.join(1000);
+        } catch (InterruptedException e) {
+          return false;
+        }
+        if (thread.isAlive()) {
+          return false;
+        }
+      }
+    }
+    return TransactionClock.now() >= second;
+  }
+
+  /**
+   * Calls the test methods defined in this TransactionHistoryTester class
+   * 
+   * @param args
+   */
+  public static void main(String[] args) {
+    if (testTransactionHistoryPages() == false) {
+      System.out.println("testTransactionHistoryPages failed.");
+    }
+
+    if (testTransactionHistoryTimeRange() == false) {
+      System.out.println("testTransactionHistoryTimeRange failed.");
+    }
+
+    if (testTransactionHistoryWindow() == false) {
+      System.out.println("testTransactionHistoryWindow failed.");
+    }
+
+    if (testTransactionHistoryConcurrent() == false) {
+      System.out.println("testTransactionHistoryConcurrent failed.");
+    }
+
+    if (testTransactionHistoryRestored() == false) {
+      System.out.println("testTransactionHistoryRestored failed.");
+    }
+
+    if (testTransactionClockStops() == false) {
+      System.out.println("testTransactionClockStops failed.");
+    }
+  }
+}
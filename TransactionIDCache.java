@@ -0,0 +1,253 @@
+/////////////////////////////////////////// FILE  HEADER /////////////////////////////////////////////
+//
+// Title: Exceptional Bank Teller
+// Files: BankAccount.java, BankAccountTester.java, BankTeller.java, BankTellerTester.java,
+//        BankTellerBenchmark.java, TransactionLog.java, TransactionLoadResult.java,
+//        ConcurrentTransactionLog.java, ConcurrentBankAccount.java,
+//        ConcurrentBankAccountTester.java, ConcurrentBankTeller.java,
+//        ConcurrentBankTellerTester.java, TransactionStatus.java, TransactionListener.java,
+//        TransactionJournal.java, TransactionJournalTester.java, TransactionSnapshot.java,
+//        ColdAccountStore.java, TieredAccountMap.java, TieredBankTeller.java,
+//        TieredBankTellerTester.java, TransactionBatch.java, TransactionBatchResult.java,
+//        TransactionRecord.java, TransactionEvent.java, TransactionPipeline.java,
+//        TransactionPipelineTester.java, LatencyHistogram.java, TellerMetrics.java,
+//        TellerMetricsTester.java, TransactionFile.java, TransactionFileTester.java,
+//        HighPrecisionBankAccount.java, HighPrecisionBankAccountTester.java, AccountIndex.java,
+//        AccountIndexTester.java, ReconciliationReport.java, ReconciliationTask.java,
+//        TransactionIDCache.java, TransactionIDCacheTester.java, ShardTransport.java,
+//        LocalShardTransport.java, SocketShardTransport.java, ShardServer.java,
+//        ShardedBankTeller.java, ShardedBankTellerTester.java, TransactionParser.java,
+//        TransactionParserTester.java, TellerServer.java, TellerClient.java,
+//        TellerLoadGenerator.java, TellerServerTester.java, TransactionClock.java,
+//        TransactionTimeIndex.java, TransactionHistory.java, TransactionHistoryTester.java,
+//        TellerWorkload.java, TellerReplay.java, TellerReplayResult.java, TellerReplayTester.java
+// This File: TransactionIDCache.java
+// 
+// Name: Benjamin Tarmann
+// Email: btarmann@wisc.edu
+//
+///////////////////////////////////////// 100 COLUMNS WIDE /////////////////////////////////////////
+
+import java.util.Arrays;
+
+/**
+ * This class models a bounded set of transaction IDs used to reject transactions that were
+ * already applied, for example when an upstream feed is sent again. It remembers the last IDs
+ * added, up to its window, and forgets the oldest ID whenever a new one is added to a full window,
+ * so a retry is caught as long as fewer than about window other IDs arrived in between.
+ * 
+ * IDs are kept as primitive longs in open-addressing hash tables with linear probing, next to a
+ * ring of the IDs in the order they were added, which tells which ID to forget. Every array is
+ * allocated when the cache is created, so its memory stays the same however many IDs pass through
+ * it, and adding or finding an ID allocates nothing. The IDs are spread over a few segments, each
+ * with its own lock and its own share of the window, so threads adding different IDs rarely wait
+ * for each other; the oldest ID is forgotten per segment, which makes the window approximate.
+ * 
+ * @author Benjamin Tarmann
+ */
+public class TransactionIDCache {
+  private static final int MAX_SEGMENTS = 16;
+  private static final int MAX_WINDOW = 1 << 28; // keeps the tables within the largest array
+  private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L; // odd constant that spreads IDs
+
+  private final Segment[] segments;
+  private final int segmentMask;
+  private final int window;
+
+  /**
+   * The IDs whose hash selects one segment, and the lock that guards them
+   */
+  private static final class Segment {
+    // pairs of an ID and its position in ring, or -1 for an empty slot, next to each other so
+    // that a probe reads a single cache line; the ID is at the slot its hash selects or after it
+    private final long[] table;
+    private final int tableMask; // mask of a slot number, where slot s is at table[2 * s]
+    private final long[] ring; // the IDs in the order they were added
+    private int next; // position in ring of the next ID added
+    private boolean full; // whether every position in ring has been used
+    private int size; // number of IDs in the table
+
+    /**
+     * Creates an empty segment that remembers a given number of IDs
+     * 
+     * @param window number of IDs remembered by this segment
+     */
+    private Segment(int window) {
+      // at most half full, so that probe sequences stay short
+      int tableSize = Integer.highestOneBit(Math.max(2, window) * 2 - 1) << 1;
+      table = new long[2 * tableSize];
+      Arrays.fill(table, -1);
+      tableMask = tableSize - 1;
+      ring = new long[window];
+    }
+
+    /**
+     * Finds the slot of an ID in the table
+     * 
+     * @param id   the ID
+     * @param hash the spread hash of the ID
+     * @return the slot holding the ID, or the empty slot where it would be added as a negative
+     *         number -1 - slot
+     */
+    private int find(long id, long hash) {
+      int slot = (int) (hash >>> 32) & tableMask;
+      while (table[2 * slot + 1] >= 0) {
+        if (table[2 * slot] == id) {
+          return slot;
+        }
+        slot = (slot + 1) & tableMask;
+      }
+      return -1 - slot;
+    }
+
+    /**
+     * Empties a slot of the table and moves the IDs after it back into place, so that every ID
+     * stays reachable from the slot its hash selects without marking deleted slots
+     * 
+     * @param slot the slot to empty
+     */
+    private void delete(int slot) {
+      int hole = slot;
+      for (int next = (hole + 1) & tableMask; table[2 * next + 1] >= 0;
+          next = (next + 1) & tableMask) {
+        int home = (int) (spread(table[2 * next]) >>> 32) & tableMask;
+        // moves the ID into the hole unless its home slot lies cyclically after the hole
+        if (((next - home) & tableMask) >= ((next - hole) & tableMask)) {
+          table[2 * hole] = table[2 * next];
+          table[2 * hole + 1] = table[2 * next + 1];
+          hole = next;
+        }
+      }
+      table[2 * hole + 1] = -1;
+      size--;
+    }
+  }
+
+  /**
+   * Creates an empty cache that remembers a given number of the last IDs added
+   * 
+   * @param window number of IDs remembered
+   * @throws IllegalArgumentException if window is less than 1 or larger than 2^28
+   */
+  public TransactionIDCache(int window) {
+    // checks that the window is in range
+    if (window < 1 || window > MAX_WINDOW) {
+      throw new IllegalArgumentException("Window of transaction IDs is out of range.");
+    }
+
+    // gives each segment a window of at least 1024 IDs, so that small caches stay exact
+    int segmentCount = Math.min(MAX_SEGMENTS, Integer.highestOneBit(Math.max(1, window / 1024)));
+    this.window = window;
+    segments = new Segment[segmentCount];
+    for (int i = 0; i < segmentCount; i++) {
+      segments[i] = new Segment(window / segmentCount + (i < window % segmentCount ? 1 : 0));
+    }
+    segmentMask = segmentCount - 1;
+  }
+
+  /**
+   * Spreads the bits of an ID so that consecutive IDs land in different segments and slots
+   * 
+   * @param id the ID
+   * @return the spread hash
+   */
+  private static long spread(long id) {
+    long hash = id * GOLDEN_GAMMA;
+    return hash ^ (hash >>> 29);
+  }
+
+  /**
+   * Adds an ID to the cache unless it is already in it. If the window is full, the oldest ID of
+   * the segment the new ID belongs to is forgotten.
+   * 
+   * @param id the transaction ID
+   * @return true if the ID was added, false if it was already in the cache
+   */
+  public boolean add(long id) {
+    long hash = spread(id);
+    Segment segment = segments[(int) hash & segmentMask];
+    synchronized (segment) {
+      int slot = segment.find(id, hash);
+      if (slot >= 0) {
+        return false;
+      }
+
+      // forgets the ID that the new one replaces in the ring, unless it was removed or re-added
+      int age = segment.next;
+      if (segment.full) {
+        long oldest = segment.ring[age];
+        int oldestSlot = segment.find(oldest, spread(oldest));
+        if (oldestSlot >= 0 && segment.table[2 * oldestSlot + 1] == age) {
+          segment.delete(oldestSlot);
+          slot = segment.find(id, hash); // the deletion may have moved the empty slot
+        }
+      }
+
+      slot = -1 - slot;
+      segment.table[2 * slot] = id;
+      segment.table[2 * slot + 1] = age;
+      segment.ring[age] = id;
+      segment.size++;
+      if (++segment.next == segment.ring.length) {
+        segment.next = 0;
+        segment.full = true;
+      }
+      return true;
+    }
+  }
+
+  /**
+   * Checks whether an ID is in the cache
+   * 
+   * @param id the transaction ID
+   * @return true if the ID is in the cache
+   */
+  public boolean contains(long id) {
+    long hash = spread(id);
+    Segment segment = segments[(int) hash & segmentMask];
+    synchronized (segment) {
+      return segment.find(id, hash) >= 0;
+    }
+  }
+
+  /**
+   * Removes an ID from the cache, for example because the transaction that added it was rejected
+   * and may be sent again. Does nothing if the ID is not in the cache.
+   * 
+   * @param id the transaction ID
+   */
+  public void remove(long id) {
+    long hash = spread(id);
+    Segment segment = segments[(int) hash & segmentMask];
+    synchronized (segment) {
+      int slot = segment.find(id, hash);
+      if (slot >= 0) {
+        segment.delete(slot);
+      }
+    }
+  }
+
+  /**
+   * Gets the number of IDs in the cache
+   * 
+   * @return the number of IDs
+   */
+  public int size() {
+    int size = 0;
+    for (Segment segment : segments) {
+      synchronized (segment) {
+        size += segment.size;
+      }
+    }
+    return size;
+  }
+
+  /**
+   * Gets the number of IDs this cache remembers
+   * 
+   * @return the window
+   */
+  public int getWindow() {
+    return window;
+  }
+}
@@ -0,0 +1,433 @@
+/////////////////////////////////////////// FILE  HEADER /////////////////////////////////////////////
+//
+// Title: Exceptional Bank Teller
+// Files: BankAccount.java, BankAccountTester.java, BankTeller.java, BankTellerTester.java,
+//        BankTellerBenchmark.java, TransactionLog.java, TransactionLoadResult.java,
+//        ConcurrentTransactionLog.java, ConcurrentBankAccount.java,
+//        ConcurrentBankAccountTester.java, ConcurrentBankTeller.java,
+//        ConcurrentBankTellerTester.java, TransactionStatus.java, TransactionListener.java,
+//        TransactionJournal.java, TransactionJournalTester.java, TransactionSnapshot.java,
+//        ColdAccountStore.java, TieredAccountMap.java, TieredBankTeller.java,
+//        TieredBankTellerTester.java, TransactionBatch.java, TransactionBatchResult.java,
+//        TransactionRecord.java, TransactionEvent.java, TransactionPipeline.java,
+//        TransactionPipelineTester.java, LatencyHistogram.java, TellerMetrics.java,
+//        TellerMetricsTester.java, TransactionFile.java, TransactionFileTester.java,
+//        HighPrecisionBankAccount.java, HighPrecisionBankAccountTester.java, AccountIndex.java,
+//        AccountIndexTester.java, ReconciliationReport.java, ReconciliationTask.java,
+//        TransactionIDCache.java, TransactionIDCacheTester.java, ShardTransport.java,
+//        LocalShardTransport.java, SocketShardTransport.java, ShardServer.java,
+//        ShardedBankTeller.java, ShardedBankTellerTester.java, TransactionParser.java,
+//        TransactionParserTester.java, TellerServer.java, TellerClient.java,
+//        TellerLoadGenerator.java, TellerServerTester.java, TransactionClock.java,
+//        TransactionTimeIndex.java, TransactionHistory.java, TransactionHistoryTester.java,
+//        TellerWorkload.java, TellerReplay.java, TellerReplayResult.java, TellerReplayTester.java
+// This File: TransactionIDCacheTester.java
+// 
+// Name: Benjamin Tarmann
+// Email: btarmann@wisc.edu
+//
+///////////////////////////////////////// 100 COLUMNS WIDE /////////////////////////////////////////
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.HashMap;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.DataFormatException;
+
+/**
+ * This class represents a tester for the TransactionIDCache class and the deduplication of
+ * transactions by BankTeller
+ * 
+ * @author Benjamin Tarmann
+ */
+public class TransactionIDCacheTester {
+
+  /**
+   * Adds and removes random IDs in a cache small enough to have a single segment, and checks every
+   * answer against a simple model: an ID is remembered until window more IDs were added after it,
+   * unless it was removed.
+   * 
+   * @return true when this test verifies a correct functionality, and false otherwise.
+   */
+  public static boolean testTransactionIDCacheMatchesModel() {
+    final int window = 64;
+    Random random = new Random(20);
+    TransactionIDCache cache = new TransactionIDCache(window);
+    HashMap<Long, Integer> addedAt = new HashMap<Long, Integer>(); // IDs in the cache
+    long[] history = new long[100_000]; // ID added by each successful add()
+    int adds = 0;
+    for (int i = 0; i < 100_000; i++) {
+      long id = random.nextInt(200) + (random.nextBoolean() ? Long.MAX_VALUE - 200 : 0);
+      if (random.nextInt(4) == 0) {
+        cache.remove(id);
+        addedAt.remove(id);
+        continue;
+      }
+
+      boolean expected = !addedAt.containsKey(id);
+      if (cache.add(id) != expected) {
+        return false;
+      }
+      if (expected) {
+        // forgets the ID added window adds ago, unless it was removed or added again since
+        if (adds >= window && addedAt.getOrDefault(history[adds - window], -1) == adds - window) {
+          addedAt.remove(history[adds - window]);
+        }
+        history[adds] = id;
+        addedAt.put(id, adds++);
+      }
+      if (cache.size() != addedAt.size() || cache.contains(id) == false) {
+        return false;
+      }
+    }
+    return cache.getWindow() == window;
+  }
+
+  /**
+   * Streams a million distinct IDs through a cache with a window of 100,000 IDs, which spreads
+   * them over several segments. Checks that the cache never holds more than its window, and that
+   * the last IDs added are still remembered while the first ones are forgotten.
+   * 
+   * @return true when this test verifies a correct functionality, and false otherwise.
+   */
+  public static boolean testTransactionIDCacheWindow() {
+    final int window = 100_000;
+    TransactionIDCache cache = new TransactionIDCache(window);
+    for (long id = 0; id < 1_000_000; id++) {
+      if (!cache.add(id * 7919)) {
+        return false;
+      }
+    }
+    if (cache.size() > window || cache.size() < window - 16) {
+      return false;
+    }
+    for (long id = 1_000_000 - window / 2; id < 1_000_000; id++) {
+      if (!cache.contains(id * 7919)) {
+        return false;
+      }
+    }
+    for (long id = 0; id < 1_000_000 - 2 * window; id++) {
+      if (cache.contains(id * 7919)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Checks whether a BankTeller with deduplication applies a transaction with an ID only once,
+   * lets a rejected transaction be sent again, rejects malformed IDs, and ignores IDs without
+   * deduplication
+   * 
+   * @return true when this test verifies a correct functionality, and false otherwise.
+   */
+  public static boolean testBankTellerDeduplication() {
+    BankTeller plain = new BankTeller();
+    BankAccount plainAccount = new BankAccount("0001", 100);
+    plain.addBankAccount(plainAccount);
+    if (plain.tryAddTransaction("1 #5 10", plainAccount) != TransactionStatus.APPLIED
+        || plain.tryAddTransaction("1 #5 10", plainAccount) != TransactionStatus.APPLIED
+        || plainAccount.getBalance() != 120) {
+      return false;
+    }
+
+    BankTeller teller = new BankTeller();
+    teller.enableDeduplication(100);
+    BankAccount account = new BankAccount("0001", 100);
+    teller.addBankAccount(account);
+    try {
+      teller.addTransaction("1 #5 10", account);
+      teller.addTransaction(" 1 #5 10 ", account); // a retry does nothing
+      teller.addTransaction("1 10", account); // transactions without an ID are always applied
+      teller.addTransaction("1 10", account);
+    } catch (DataFormatException e) {
+      return false;
+    }
+    if (account.getBalance() != 130 || teller.tryAddTransaction("0 #5 10", account)
+        != TransactionStatus.DUPLICATE_TRANSACTION) {
+      return false;
+    }
+
+    // a rejected transaction does not use up its ID
+    if (teller.tryAddTransaction("0 #6 500", account) != TransactionStatus.INSUFFICIENT_FUNDS
+        || teller.tryAddTransaction("1 #7 400", account) != TransactionStatus.APPLIED
+        || teller.tryAddTransaction("0 #6 500", account) != TransactionStatus.APPLIED
+        || account.getBalance() != 30) {
+      return false;
+    }
+
+    // malformed IDs are rejected like other malformed transactions
+    String[] malformed = {"1 # 10", "1 #x 10", "1 #5#6 10", "1 #-5 10",
+        "1 #99999999999999999999 10", "1 #9223372036854775808 10"};
+    for (String transaction : malformed) {
+      if (teller.tryAddTransaction(transaction, account)
+          != TransactionStatus.INVALID_TRANSACTION_ID) {
+        return false;
+      }
+    }
+    return teller.tryAddTransaction("1 #9223372036854775807 10", account)
+        == TransactionStatus.APPLIED
+        && teller.tryAddTransaction("1 #5 #6 10", account) // the ID is the word before the amount
+            == TransactionStatus.DUPLICATE_TRANSACTION
+        && teller.tryAddTransaction("# 10", account) == TransactionStatus.INVALID_TYPE
+        && teller.tryAddTransaction("1 10#", account) == TransactionStatus.INVALID_AMOUNT;
+  }
+
+  /**
+   * Checks whether only a word of "#" and digits before the amount is an ID, and whether a line
+   * with a "#" that is not a valid ID is applied as it was before there were IDs unless
+   * deduplication is enabled, when the String and the mapped file parsers must reject it
+   * 
+   * @return true when this test verifies a correct functionality, and false otherwise.
+   */
+  public static boolean testBankTellerTransactionIDFormat() {
+    String[] notIDs = {"1 #abc 20", "1 abc#5 20", "1 # 20", "1 #5x 20", "1#5 20"};
+    BankTeller plain = new BankTeller();
+    BankAccount plainAccount = new BankAccount("0001", 100);
+    plain.addBankAccount(plainAccount);
+    for (String transaction : notIDs) {
+      if (plain.tryAddTransaction(transaction, plainAccount) != TransactionStatus.APPLIED) {
+        return false;
+      }
+    }
+    if (plainAccount.getBalance() != 100 + 20 * notIDs.length) {
+      return false;
+    }
+
+    // with deduplication, a "#" inside a word is still not an ID, but an invalid ID word is
+    BankTeller teller = new BankTeller();
+    teller.enableDeduplication(100);
+    BankAccount account = new BankAccount("0001", 100);
+    teller.addBankAccount(account);
+    if (teller.tryAddTransaction("1 abc#5 20", account) != TransactionStatus.APPLIED
+        || teller.tryAddTransaction("1 abc#5 20", account) != TransactionStatus.APPLIED
+        || teller.tryAddTransaction("1#5 20", account) != TransactionStatus.APPLIED
+        || teller.tryAddTransaction("1 #abc 20", account)
+            != TransactionStatus.INVALID_TRANSACTION_ID
+        || teller.tryAddTransaction("1 #5x 20", account)
+            != TransactionStatus.INVALID_TRANSACTION_ID
+        || account.getBalance() != 160) {
+      return false;
+    }
+
+    // the mapped file parser flags the same lines
+    try {
+      File file = File.createTempFile("transactions", ".txt");
+      file.deleteOnExit();
+      PrintWriter writer = new PrintWriter(file);
+      for (String transaction : notIDs) {
+        writer.println(transaction);
+      }
+      writer.close();
+      BankAccount plainMapped = new BankAccount("0002", 100);
+      BankAccount dedupedMapped = new BankAccount("0003", 100);
+      TransactionLoadResult plainResult = plain.loadTransactionsMapped(file, plainMapped);
+      TransactionLoadResult dedupedResult = teller.loadTransactionsMapped(file, dedupedMapped);
+      return plainResult.getAppliedCount() == notIDs.length
+          && plainMapped.getBalance() == 100 + 20 * notIDs.length
+          && dedupedResult.getAppliedCount() == 2 && dedupedResult.getSkippedCount() == 3
+          && dedupedMapped.getBalance() == 140;
+    } catch (IOException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Loads a transaction file with transaction IDs twice with loadTransactions() and
+   * loadTransactionsMapped(), as a feed that is sent again. Checks that the second load of each
+   * applies nothing and counts every line with an ID as a duplicate.
+   * 
+   * @return true when this test verifies a correct functionality, and false otherwise.
+   */
+  public static boolean testBankTellerDeduplicationLoad() {
+    try {
+      File file = File.createTempFile("transactions", ".txt");
+      file.deleteOnExit();
+      PrintWriter writer = new PrintWriter(file);
+      for (int i = 0; i < 1000; i++) {
+        writer.println((i % 3 == 0 ? "0 #" : "1 #") + i + " " + (10 * (i % 5)));
+      }
+      writer.println("1 #x 10"); // skipped as malformed
+      writer.close();
+
+      BankTeller teller = new BankTeller();
+      teller.enableDeduplication(10_000);
+      BankAccount account = new BankAccount("0001", 100_000);
+      teller.addBankAccount(account);
+      teller.loadTransactions(file, account);
+      long balance = account.getBalance();
+      teller.loadTransactions(file, account);
+      TransactionLoadResult mapped = teller.loadTransactionsMapped(file, account);
+      if (account.getBalance() != balance || mapped.getAppliedCount() != 0
+          || mapped.getDuplicateCount() != 1000 || mapped.getSkippedCount() != 1) {
+        return false;
+      }
+
+      // the mapped loader applies the same lines as loadTransactions() the first time
+      BankTeller other = new BankTeller();
+      other.enableDeduplication(10_000);
+      BankAccount otherAccount = new BankAccount("0001", 100_000);
+      other.addBankAccount(otherAccount);
+      TransactionLoadResult first = other.loadTransactionsMapped(file, otherAccount);
+      return otherAccount.getBalance() == balance && first.getDuplicateCount() == 0
+          && first.getAppliedCount() == 1000;
+    } catch (IOException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Sends every transaction of a feed from 8 threads at the same time to a ConcurrentBankTeller
+   * with deduplication, and checks that each transaction is applied exactly once
+   * 
+   * @return true when this test verifies a correct functionality, and false otherwise.
+   */
+  public static boolean testBankTellerDeduplicationConcurrent() {
+    ConcurrentBankTeller teller = new ConcurrentBankTeller();
+    teller.enableDeduplication(100_000);
+    BankAccount account = new ConcurrentBankAccount("0001", 10);
+    teller.addBankAccount(account);
+    AtomicInteger applied = new AtomicInteger();
+
+    Thread[] threads = new Thread[8];
+    for (int t = 0; t < threads.length; t++) {
+      threads[t] = new Thread(() -> {
+        for (int id = 0; id < 10_000; id++) {
+          if (teller.tryAddTransaction("1 #" + id + " 10", account) == TransactionStatus.APPLIED) {
+            applied.incrementAndGet();
+          }
+        }
+      });
+      threads[t].start();
+    }
+    try {
+      for (Thread thread : threads) {
+        thread.join();
+      }
+    } catch (InterruptedException e) {
+      return false;
+    }
+    return applied.get() == 10_000 && account.getBalance() == 10 + 10 * 10_000;
+  }
+
+  /**
+   * Sends a transaction with an ID to a ConcurrentBankTeller and sends it again from another
+   * thread while the first attempt is still being applied. Checks that the retry waits for the
+   * first attempt instead of being reported as a duplicate, so that it is applied if the first
+   * attempt was rejected, and that the same ID sent to another account at that time is reported as
+   * a duplicate
+   * 
+   * @return true when this test verifies a correct functionality, and false otherwise.
+   */
+  public static boolean testBankTellerDeduplicationRetryInFlight() {
+    ConcurrentBankTeller teller = new ConcurrentBankTeller();
+    teller.enableDeduplication(100);
+    CountDownLatch entered = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    // an account whose withdrawals wait until they are released, so an attempt stays in flight
+    BankAccount account = new BankAccount("0001", 10) {
+      @Override
+      protected TransactionStatus applyWithdrawal(int withdrawAmount) {
+        entered.countDown();
+        try {
+          release.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        return super.applyWithdrawal(withdrawAmount);
+      }
+    };
+    teller.addBankAccount(account);
+    teller.addBankAccount(new BankAccount("0002", 10));
+
+    TransactionStatus[] statuses = new TransactionStatus[2];
+    Thread first = new Thread(() -> statuses[0] = teller.tryAddTransaction("0 #7 100", account));
+    Thread retry = new Thread(() -> statuses[1] = teller.tryAddTransaction("0 #7 100", account));
+    try {
+      first.start();
+      entered.await();
+      retry.start();
+      while (retry.getState() != Thread.State.BLOCKED && retry.isAlive()) {
+        Thread.yield(); // waits until the retry waits for the lock of the account
+      }
+      TransactionStatus otherAccount =
+          teller.tryAddTransaction("1 #7 10", teller.findAccount("0002"));
+      release.countDown();
+      first.join();
+      retry.join();
+
+      // both attempts were rejected, so the ID can still be applied once the account can pay it
+      return otherAccount == TransactionStatus.DUPLICATE_TRANSACTION
+          && statuses[0] == TransactionStatus.INSUFFICIENT_FUNDS
+          && statuses[1] == TransactionStatus.INSUFFICIENT_FUNDS
+          && teller.tryAddTransaction("1 100", account) == TransactionStatus.APPLIED
+          && teller.tryAddTransaction("0 #7 100", account) == TransactionStatus.APPLIED
+          && teller.tryAddTransaction("0 #7 100", account)
+              == TransactionStatus.DUPLICATE_TRANSACTION
+          && account.getBalance() == 10;
+    } catch (InterruptedException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Checks whether the constructor rejects a window that is out of range
+   * 
+   * @return true when this test verifies a correct functionality, and false otherwise.
+   */
+  public static boolean testTransactionIDCacheInvalidWindow() {
+    for (int window : new int[] {0, -1, (1 << 28) + 1}) {
+      try {
+        new TransactionIDCache(window);
+        return false;
+      } catch (IllegalArgumentException e) {
+        // expected: the window is out of range
+      }
+    }
+    TransactionIDCache single = new TransactionIDCache(1);
+    return single.add(1) && single.add(2) && !single.contains(1) && !single.add(2);
+  }
+
+  /**
+   * Calls the test methods defined in this TransactionIDCacheTester class
+   * 
+   * @param args
+   */
+  public static void main(String[] args) {
+    if (testTransactionIDCacheMatchesModel() == false) {
+      System.out.println("testTransactionIDCacheMatchesModel failed.");
+    }
+
+    if (testTransactionIDCacheWindow() == false) {
+      System.out.println("testTransactionIDCacheWindow failed.");
+    }
+
+    if (testBankTellerDeduplication() == false) {
+      System.out.println("testBankTellerDeduplication failed.");
+    }
+
+    if (testBankTellerTransactionIDFormat() == false) {
+      System.out.println("testBankTellerTransactionIDFormat failed.");
+    }
+
+    if (testBankTellerDeduplicationLoad() == false) {
+      System.out.println("testBankTellerDeduplicationLoad failed.");
+    }
+
+    if (testBankTellerDeduplicationConcurrent() == false) {
+      System.out.println("testBankTellerDeduplicationConcurrent failed.");
+    }
+
+    if (testBankTellerDeduplicationRetryInFlight() == false) {
+      System.out.println("testBankTellerDeduplicationRetryInFlight failed.");
+    }
+
+    if (testTransactionIDCacheInvalidWindow() == false) {
+      System.out.println("testTransactionIDCacheInvalidWindow failed.");
+    }
+  }
+
+}
@@ -0,0 +1,607 @@
+/////////////////////////////////////////// FILE  HEADER /////////////////////////////////////////////
+//
+// Title: Exceptional Bank Teller
+// Files: BankAccount.java, BankAccountTester.java, BankTeller.java, BankTellerTester.java,
+//        BankTellerBenchmark.java, TransactionLog.java, TransactionLoadResult.java,
+//        ConcurrentTransactionLog.java, ConcurrentBankAccount.java,
+//        ConcurrentBankAccountTester.java, ConcurrentBankTeller.java,
+//        ConcurrentBankTellerTester.java, TransactionStatus.java, TransactionListener.java,
+//        TransactionJournal.java, TransactionJournalTester.java, TransactionSnapshot.java,
+//        ColdAccountStore.java, TieredAccountMap.java, TieredBankTeller.java,
+//        TieredBankTellerTester.java, TransactionBatch.java, TransactionBatchResult.java,
+//        TransactionRecord.java, TransactionEvent.java, TransactionPipeline.java,
+//        TransactionPipelineTester.java, LatencyHistogram.java, TellerMetrics.java,
+//        TellerMetricsTester.java, TransactionFile.java, TransactionFileTester.java,
+//        HighPrecisionBankAccount.java, HighPrecisionBankAccountTester.java, AccountIndex.java,
+//        AccountIndexTester.java, ReconciliationReport.java, ReconciliationTask.java,
+//        TransactionIDCache.java, TransactionIDCacheTester.java, ShardTransport.java,
+//        LocalShardTransport.java, SocketShardTransport.java, ShardServer.java,
+//        ShardedBankTeller.java, ShardedBankTellerTester.java, TransactionParser.java,
+//        TransactionParserTester.java, TellerServer.java, TellerClient.java,
+//        TellerLoadGenerator.java, TellerServerTester.java, TransactionClock.java,
+//        TransactionTimeIndex.java, TransactionHistory.java, TransactionHistoryTester.java,
+//        TellerWorkload.java, TellerReplay.java, TellerReplayResult.java, TellerReplayTester.java
+// This File: TransactionJournal.java
+// 
+// Name: Benjamin Tarmann
+// Email: btarmann@wisc.edu
+//
+///////////////////////////////////////// 100 COLUMNS WIDE /////////////////////////////////////////
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * This class models an append-only write-ahead journal of bank accounts and their transactions.
+ * The journal is a binary file of records, each made of a record kind (1 byte), the length of an
+ * account ID (2 bytes), the account ID in UTF-8, an amount (4 bytes) and a CRC-32 checksum of the
+ * record (4 bytes). An "account added" record holds the initial balance of a new account, and a
+ * deposit or withdrawal record holds the transaction amount. An account that only keeps a window
+ * of its recent transactions is preceded by a "recent window" record holding the window. A
+ * ConcurrentBankAccount and a HighPrecisionBankAccount each have their own kind of "account added"
+ * record, so replaying it restores the same class. Records do not hold the times of the
+ * transactions, so a replayed transaction gets the time it is replayed at.
+ * 
+ * Records are collected in a buffer and synced to disk in groups: once a given number of records
+ * are waiting, or once a given time has passed since the last sync. This way the throughput is not
+ * limited by the latency of a single disk sync, at the cost of losing at most the last unsynced
+ * group of records if the machine crashes. Replaying the journal stops at the first incomplete or
+ * damaged record, which is where a crash during a write leaves the journal.
+ * 
+ * So that the journal does not grow without bound, it is split into generations that are folded
+ * into a snapshot (see TransactionSnapshot). Every journal file starts with a "segment" record
+ * holding its generation. Taking a snapshot renames the journal file to a sealed file and starts
+ * the next generation in a new journal file, which only blocks appends for that moment. The sealed
+ * file is then replayed on top of the previous snapshot into a scratch BankTeller, without
+ * touching the live accounts, and the result is written as the new snapshot before the sealed
+ * file is deleted. Recovery loads the snapshot and replays only the journal files of the
+ * generations it does not include yet, so a crash at any step loses nothing and applies nothing
+ * twice.
+ * 
+ * A journal is opened for a BankTeller with BankTeller.openJournal().
+ * 
+ * @author Benjamin Tarmann
+ */
+public class TransactionJournal implements TransactionListener, Closeable {
+  private static final byte ACCOUNT_ADDED = 1;
+  private static final byte CONCURRENT_ACCOUNT_ADDED = 2;
+  private static final byte DEPOSIT = 3;
+  private static final byte WITHDRAWAL = 4;
+  private static final byte SEGMENT = 5;
+  private static final byte RECENT_WINDOW = 6;
+  private static final byte HIGH_PRECISION_ACCOUNT_ADDED = 7;
+  private static final int MAX_ID_LENGTH = 0xFFFF; // largest length that fits into 2 bytes
+  private static final int RECORD_OVERHEAD = 1 + 2 + 4 + 4; // bytes of a record besides its ID
+  private static final int BUFFER_SIZE = 128 * 1024; // large enough for the longest record
+
+  private final File file;
+  private final File sealedFile; // journal file of the previous generation while it is folded
+  private final File snapshotFile;
+  private FileChannel channel;
+  private int generation; // generation of the current journal file
+  private final ByteBuffer buffer;
+  private final CRC32 checksum;
+  private final int syncEveryRecords;
+  private final ScheduledExecutorService timer; // null if nothing is done in the background
+  private final Object snapshotLock; // held while a snapshot is taken
+  private int unsyncedRecords;
+  private String lastID; // account ID of the last record and its UTF-8 bytes, which most records
+  private byte[] lastIDBytes; // share with the record before them
+  private IOException syncFailure; // failure of the last timed sync, reported by the next append
+  private IOException snapshotFailure; // failure of the last timed snapshot, reported by close()
+  private boolean closed;
+
+  /**
+   * Opens a journal file for appending, cutting off anything after its valid records. A journal
+   * file without valid records is started with a segment record of the given generation.
+   * 
+   * @param file                   the journal file, which is created if it does not exist
+   * @param validLength            length of the valid records at the start of the file
+   * @param generation             generation of the journal file
+   * @param syncEveryRecords       number of records after which the journal is synced to disk
+   * @param syncIntervalMillis     longest time in milliseconds a record waits to be synced to disk,
+   *                               or 0 to only sync by the number of records
+   * @param snapshotIntervalMillis time in milliseconds between snapshots, or 0 to only take them
+   *                               when snapshot() is called
+   * @throws IOException if the file cannot be opened
+   */
+  private TransactionJournal(File file, long validLength, int generation, int syncEveryRecords,
+      long syncIntervalMillis, long snapshotIntervalMillis) throws IOException {
+    this.file = file;
+    sealedFile = sealedFile(file);
+    snapshotFile = snapshotFile(file);
+    channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+    channel.truncate(validLength);
+    channel.position(validLength);
+    this.generation = generation;
+    buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    checksum = new CRC32();
+    this.syncEveryRecords = syncEveryRecords;
+    snapshotLock = new Object();
+    unsyncedRecords = 0;
+    closed = false;
+
+    if (validLength == 0) {
+      append(SEGMENT, "", generation);
+      sync();
+    }
+
+    // syncs waiting records so that none waits longer than the interval, and takes snapshots
+    if (syncIntervalMillis > 0 || snapshotIntervalMillis > 0) {
+      timer = Executors.newScheduledThreadPool(2, runnable -> {
+        Thread thread = new Thread(runnable, "TransactionJournal timer");
+        thread.setDaemon(true);
+        return thread;
+      });
+      if (syncIntervalMillis > 0) {
+        timer.scheduleAtFixedRate(this::timedSync, syncIntervalMillis, syncIntervalMillis,
+            TimeUnit.MILLISECONDS);
+      }
+      if (snapshotIntervalMillis > 0) {
+        timer.scheduleWithFixedDelay(this::timedSnapshot, snapshotIntervalMillis,
+            snapshotIntervalMillis, TimeUnit.MILLISECONDS);
+      }
+    } else {
+      timer = null;
+    }
+  }
+
+  /**
+   * Gets the sealed file of a journal file, which holds the previous generation while a snapshot
+   * is taken
+   * 
+   * @param file the journal file
+   * @return the sealed file
+   */
+  private static File sealedFile(File file) {
+    return new File(file.getPath() + ".sealed");
+  }
+
+  /**
+   * Gets the snapshot file of a journal file
+   * 
+   * @param file the journal file
+   * @return the snapshot file
+   */
+  private static File snapshotFile(File file) {
+    return new File(file.getPath() + ".snapshot");
+  }
+
+  /**
+   * Recovers the accounts of a BankTeller from a journal and opens the journal for appending. The
+   * snapshot of the journal is loaded first, if there is one, and then the journal files of the
+   * generations the snapshot does not include are replayed.
+   * 
+   * @param file                   the journal file, which is created if it does not exist
+   * @param teller                 the BankTeller the accounts are added to
+   * @param syncEveryRecords       number of records after which the journal is synced to disk, 1
+   *                               to sync every record
+   * @param syncIntervalMillis     longest time in milliseconds a record waits to be synced to disk,
+   *                               or 0 to only sync by the number of records
+   * @param snapshotIntervalMillis time in milliseconds between snapshots, or 0 to only take them
+   *                               when snapshot() is called
+   * @return the opened journal
+   * @throws IOException              if the journal or its snapshot cannot be read or opened, or
+   *                                  if they do not fit each other
+   * @throws IllegalArgumentException if syncEveryRecords is less than 1, or if syncIntervalMillis
+   *                                  or snapshotIntervalMillis is negative
+   */
+  static TransactionJournal open(File file, BankTeller teller, int syncEveryRecords,
+      long syncIntervalMillis, long snapshotIntervalMillis) throws IOException {
+    // checks the group commit and snapshot settings
+    if (syncEveryRecords < 1 || syncIntervalMillis < 0 || snapshotIntervalMillis < 0) {
+      throw new IllegalArgumentException("Records must be synced every 1 or more records and "
+          + "every 0 or more milliseconds, and snapshots taken every 0 or more milliseconds.");
+    }
+
+    int snapshotGeneration = TransactionSnapshot.read(snapshotFile(file), teller);
+    int nextGeneration = snapshotGeneration;
+
+    // replays the previous generation if a crash stopped a snapshot before it was included
+    File sealed = sealedFile(file);
+    if (sealed.exists()) {
+      int sealedGeneration = readGeneration(sealed);
+      if (sealedGeneration >= snapshotGeneration) {
+        replay(sealed, teller);
+        nextGeneration = sealedGeneration + 1;
+      } else {
+        Files.delete(sealed.toPath());
+      }
+    }
+
+    long validLength = 0;
+    int fileGeneration = readGeneration(file);
+    if (fileGeneration >= 0) {
+      // checks that the snapshot does not already include the journal file
+      if (fileGeneration < nextGeneration) {
+        throw new IOException("Journal " + file + " is older than its snapshot.");
+      }
+      validLength = replay(file, teller);
+      nextGeneration = fileGeneration;
+    }
+
+    return new TransactionJournal(file, validLength, nextGeneration, syncEveryRecords,
+        syncIntervalMillis, snapshotIntervalMillis);
+  }
+
+  /**
+   * Reads the generation of a journal file from its segment record
+   * 
+   * @param file the journal file
+   * @return the generation of the file, 0 if the file was written before journals had
+   *         generations, or -1 if the file does not exist or has no valid first record
+   * @throws IOException if the file cannot be read
+   */
+  private static int readGeneration(File file) throws IOException {
+    if (!file.exists()) {
+      return -1;
+    }
+
+    byte[] bytes;
+    try (FileInputStream input = new FileInputStream(file)) {
+      bytes = input.readNBytes(RECORD_OVERHEAD);
+    }
+    if (bytes.length < RECORD_OVERHEAD) {
+      return -1;
+    }
+    ByteBuffer record = ByteBuffer.wrap(bytes);
+
+    // a journal written before generations starts with an account instead
+    if (record.get(0) != SEGMENT) {
+      return 0;
+    }
+    CRC32 recordChecksum = new CRC32();
+    recordChecksum.update(bytes, 0, RECORD_OVERHEAD - 4);
+    if (record.getShort(1) != 0 || record.getInt(7) != (int) recordChecksum.getValue()) {
+      return -1;
+    }
+    return record.getInt(3);
+  }
+
+  /**
+   * Replays the records of a journal file into a BankTeller: every added account is added to the
+   * teller and every deposit and withdrawal is applied to its account. Replaying stops at the end
+   * of the file or at the first incomplete or damaged record.
+   * 
+   * @param file   the journal file, which may not exist yet
+   * @param teller the BankTeller the accounts are added to
+   * @return the length of the valid records at the start of the file
+   * @throws IOException if the file cannot be read, or if a valid record does not fit the accounts
+   *                     added so far
+   */
+  static long replay(File file, BankTeller teller) throws IOException {
+    if (!file.exists()) {
+      return 0;
+    }
+
+    long validLength = 0;
+    ByteBuffer input = ByteBuffer.allocate(BUFFER_SIZE);
+    byte[] record = input.array();
+    CRC32 recordChecksum = new CRC32();
+    // most records belong to the same account as the record before them
+    byte[] lastID = new byte[MAX_ID_LENGTH];
+    int lastIDLength = -1;
+    String id = null;
+    BankAccount lastAccount = null;
+    int window = 0; // window of the next added account
+
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      input.flip();
+      while (true) {
+        // reads more of the file once the next record is not in the buffer, stopping at the end
+        // of the file or at an incomplete record
+        int start = input.position();
+        int idLength = input.remaining() < 3 ? -1
+            : ((record[start + 1] & 0xFF) << 8) | (record[start + 2] & 0xFF);
+        if (idLength < 0 || input.remaining() < RECORD_OVERHEAD + idLength) {
+          input.compact();
+          int read = channel.read(input);
+          input.flip();
+          if (read < 0) {
+            break;
+          }
+          continue;
+        }
+
+        // checks the checksum of the record, stopping at a damaged record
+        recordChecksum.reset();
+        recordChecksum.update(record, start, 3 + idLength + 4);
+        int amount = input.getInt(start + 3 + idLength);
+        if (input.getInt(start + 3 + idLength + 4) != (int) recordChecksum.getValue()) {
+          break;
+        }
+        input.position(start + RECORD_OVERHEAD + idLength);
+
+        // only decodes the account ID when it differs from the ID of the record before
+        if (idLength != lastIDLength
+            || !Arrays.equals(record, start + 3, start + 3 + idLength, lastID, 0, idLength)) {
+          id = new String(record, start + 3, idLength, StandardCharsets.UTF_8);
+          lastAccount = null;
+          System.arraycopy(record, start + 3, lastID, 0, idLength);
+          lastIDLength = idLength;
+        }
+
+        try {
+          byte kind = record[start];
+          if (kind == ACCOUNT_ADDED || kind == CONCURRENT_ACCOUNT_ADDED
+              || kind == HIGH_PRECISION_ACCOUNT_ADDED) {
+            if (kind == ACCOUNT_ADDED) {
+              lastAccount = new BankAccount(id, amount, window);
+            } else if (kind == CONCURRENT_ACCOUNT_ADDED) {
+              lastAccount = new ConcurrentBankAccount(id, amount, window);
+            } else {
+              lastAccount = new HighPrecisionBankAccount(id, amount, window);
+            }
+            teller.addBankAccount(lastAccount);
+            window = 0;
+          } else if (kind == RECENT_WINDOW) {
+            window = amount;
+          } else if (kind == DEPOSIT || kind == WITHDRAWAL) {
+            if (lastAccount == null) {
+              lastAccount = teller.findAccount(id);
+            }
+            TransactionStatus status = kind == DEPOSIT ? lastAccount.tryDeposit(amount)
+                : lastAccount.tryWithdraw(amount);
+            if (status != TransactionStatus.APPLIED) {
+              throw new IllegalStateException(status.getMessage());
+            }
+          } else if (kind == SEGMENT) {
+            lastAccount = null; // only marks the generation of the file, which open() reads
+          } else {
+            break; // a record kind this version does not know can only come from a damaged file
+          }
+        } catch (NoSuchElementException | IllegalStateException | IllegalArgumentException e) {
+          throw new IOException("Journal record at byte " + validLength + " does not fit the "
+              + "accounts added before it.", e);
+        }
+        validLength += RECORD_OVERHEAD + idLength;
+      }
+    }
+    return validLength;
+  }
+
+  /**
+   * Appends records for an account that was just added to a BankTeller: an "account added" record
+   * with its initial deposit, after its window if it has one, followed by a record for each of its
+   * later transactions, so that replaying the journal rebuilds the account exactly
+   * 
+   * @param account the added account
+   * @throws UncheckedIOException  if the records cannot be written
+   * @throws IllegalStateException if the journal is closed
+   */
+  synchronized void accountAdded(BankAccount account) {
+    if (account.getRecentWindow() > 0) {
+      append(RECENT_WINDOW, account.getID(), account.getRecentWindow());
+    }
+    byte kind = ACCOUNT_ADDED;
+    if (account instanceof ConcurrentBankAccount) {
+      kind = CONCURRENT_ACCOUNT_ADDED;
+    } else if (account instanceof HighPrecisionBankAccount) {
+      kind = HIGH_PRECISION_ACCOUNT_ADDED;
+    }
+    append(kind, account.getID(), account.getTransactionAmount(0));
+    for (int i = 1; i < account.getTransactionsCount(); i++) {
+      append(account.isDepositTransaction(i) ? DEPOSIT : WITHDRAWAL, account.getID(),
+          account.getTransactionAmount(i));
+    }
+  }
+
+  /**
+   * Appends a record for a deposit or withdrawal applied to an account. This is called by the
+   * accounts of the BankTeller the journal was opened for.
+   * 
+   * @param account the account the transaction was applied to
+   * @param deposit true for a deposit, false for a withdrawal
+   * @param amount  the transaction amount
+   * @throws UncheckedIOException  if the record cannot be written; the transaction stays applied
+   * @throws IllegalStateException if the journal is closed
+   */
+  @Override
+  public synchronized void transactionApplied(BankAccount account, boolean deposit, int amount) {
+    append(deposit ? DEPOSIT : WITHDRAWAL, account.getID(), amount);
+  }
+
+  /**
+   * Appends a record to the buffer, and syncs the journal if enough records are waiting
+   * 
+   * @param kind   the record kind
+   * @param id     the account ID
+   * @param amount the amount of the record
+   * @throws UncheckedIOException     if the record cannot be written
+   * @throws IllegalStateException    if the journal is closed
+   * @throws IllegalArgumentException if the account ID is longer than MAX_ID_LENGTH bytes
+   */
+  private void append(byte kind, String id, int amount) {
+    // checks that the journal can take the record
+    if (closed) {
+      throw new IllegalStateException("Journal is closed.");
+    }
+    if (syncFailure != null) {
+      throw new UncheckedIOException("Journal could not be synced.", syncFailure);
+    }
+    if (!id.equals(lastID)) {
+      lastIDBytes = id.getBytes(StandardCharsets.UTF_8);
+      lastID = id;
+    }
+    byte[] idBytes = lastIDBytes;
+    if (idBytes.length > MAX_ID_LENGTH) {
+      throw new IllegalArgumentException("Account ID is too long to be journaled.");
+    }
+
+    try {
+      if (buffer.remaining() < RECORD_OVERHEAD + idBytes.length) {
+        writeBuffer();
+      }
+
+      int start = buffer.position();
+      buffer.put(kind).putShort((short) idBytes.length).put(idBytes).putInt(amount);
+      checksum.reset();
+      checksum.update(buffer.array(), start, buffer.position() - start);
+      buffer.putInt((int) checksum.getValue());
+
+      unsyncedRecords++;
+      if (unsyncedRecords >= syncEveryRecords) {
+        sync();
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException("Journal record could not be written.", e);
+    }
+  }
+
+  /**
+   * Writes the records in the buffer to the journal file, without syncing them to disk
+   * 
+   * @throws IOException if the records cannot be written
+   */
+  private void writeBuffer() throws IOException {
+    buffer.flip();
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+    buffer.clear();
+  }
+
+  /**
+   * Writes every waiting record to the journal file and syncs it to disk, so that the records
+   * survive a crash
+   * 
+   * @throws IOException           if the records cannot be written or synced
+   * @throws IllegalStateException if the journal is closed
+   */
+  public synchronized void sync() throws IOException {
+    if (closed) {
+      throw new IllegalStateException("Journal is closed.");
+    }
+    writeBuffer();
+    channel.force(false);
+    unsyncedRecords = 0;
+  }
+
+  /**
+   * Syncs the waiting records when the sync interval has passed. A failure is kept and reported by
+   * the next append, since there is no caller to report it to.
+   */
+  private synchronized void timedSync() {
+    if (closed || unsyncedRecords == 0) {
+      return;
+    }
+    try {
+      sync();
+    } catch (IOException e) {
+      syncFailure = e;
+    }
+  }
+
+  /**
+   * Takes a snapshot of the accounts and deletes the journal records it includes. Appends are only
+   * blocked while the journal file is renamed and the next one is started; the snapshot itself is
+   * built from the sealed journal file and the previous snapshot, without reading or locking the
+   * live accounts. Only one snapshot is taken at a time.
+   * 
+   * @throws IOException           if the journal files cannot be renamed, read or written, or if
+   *                               the snapshot cannot be written
+   * @throws IllegalStateException if the journal is closed
+   */
+  public void snapshot() throws IOException {
+    synchronized (snapshotLock) {
+      // starts the next generation, unless a crash left a sealed file that still has to be folded
+      int sealedGeneration;
+      synchronized (this) {
+        if (closed) {
+          throw new IllegalStateException("Journal is closed.");
+        }
+        if (!sealedFile.exists()) {
+          startNextGeneration();
+        }
+        sealedGeneration = generation - 1;
+      }
+
+      // folds the sealed generation into the previous snapshot
+      BankTeller scratch = new BankTeller();
+      int snapshotGeneration = TransactionSnapshot.read(snapshotFile, scratch);
+      if (sealedGeneration >= snapshotGeneration) {
+        replay(sealedFile, scratch);
+      }
+      TransactionSnapshot.write(snapshotFile, sealedGeneration + 1, scratch.getAccounts());
+      Files.delete(sealedFile.toPath());
+    }
+  }
+
+  /**
+   * Syncs the journal file, renames it to the sealed file and starts a journal file of the next
+   * generation
+   * 
+   * @throws IOException if the journal file cannot be synced, renamed or created
+   */
+  private void startNextGeneration() throws IOException {
+    sync();
+    channel.close();
+    Files.move(file.toPath(), sealedFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+    channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE_NEW,
+        StandardOpenOption.WRITE);
+    generation++;
+    append(SEGMENT, "", generation);
+    sync();
+  }
+
+  /**
+   * Takes a snapshot when the snapshot interval has passed. A failure is kept and reported by
+   * close(), since there is no caller to report it to; the journal itself stays complete.
+   */
+  private void timedSnapshot() {
+    try {
+      snapshot();
+    } catch (IOException e) {
+      snapshotFailure = e;
+    } catch (IllegalStateException e) {
+      // the journal was closed in the meantime
+    }
+  }
+
+  /**
+   * Syncs every waiting record to disk and closes the journal file. Waits for a snapshot that is
+   * being taken to finish.
+   * 
+   * @throws IOException if the records cannot be written or the file cannot be closed, or if a
+   *                     snapshot taken in the background failed
+   */
+  @Override
+  public void close() throws IOException {
+    synchronized (this) {
+      if (closed) {
+        return;
+      }
+      try {
+        sync();
+      } finally {
+        closed = true;
+        if (timer != null) {
+          timer.shutdown();
+        }
+        channel.close();
+      }
+    }
+
+    // waits for a snapshot being taken, which needs the journal lock released to finish
+    synchronized (snapshotLock) {
+      if (snapshotFailure != null) {
+        throw new IOException("Snapshot could not be taken.", snapshotFailure);
+      }
+    }
+  }
+}
@@ -0,0 +1,587 @@
+/////////////////////////////////////////// FILE  HEADER /////////////////////////////////////////////
+//
+// Title: Exceptional Bank Teller
+// Files: BankAccount.java, BankAccountTester.java, BankTeller.java, BankTellerTester.java,
+//        BankTellerBenchmark.java, TransactionLog.java, TransactionLoadResult.java,
+//        ConcurrentTransactionLog.java, ConcurrentBankAccount.java,
+//        ConcurrentBankAccountTester.java, ConcurrentBankTeller.java,
+//        ConcurrentBankTellerTester.java, TransactionStatus.java, TransactionListener.java,
+//        TransactionJournal.java, TransactionJournalTester.java, TransactionSnapshot.java,
+//        ColdAccountStore.java, TieredAccountMap.java, TieredBankTeller.java,
+//        TieredBankTellerTester.java, TransactionBatch.java, TransactionBatchResult.java,
+//        TransactionRecord.java, TransactionEvent.java, TransactionPipeline.java,
+//        TransactionPipelineTester.java, LatencyHistogram.java, TellerMetrics.java,
+//        TellerMetricsTester.java, TransactionFile.java, TransactionFileTester.java,
+//        HighPrecisionBankAccount.java, HighPrecisionBankAccountTester.java, AccountIndex.java,
+//        AccountIndexTester.java, ReconciliationReport.java, ReconciliationTask.java,
+//        TransactionIDCache.java, TransactionIDCacheTester.java, ShardTransport.java,
+//        LocalShardTransport.java, SocketShardTransport.java, ShardServer.java,
+//        ShardedBankTeller.java, ShardedBankTellerTester.java, TransactionParser.java,
+//        TransactionParserTester.java, TellerServer.java, TellerClient.java,
+//        TellerLoadGenerator.java, TellerServerTester.java, TransactionClock.java,
+//        TransactionTimeIndex.java, TransactionHistory.java, TransactionHistoryTester.java,
+//        TellerWorkload.java, TellerReplay.java, TellerReplayResult.java, TellerReplayTester.java
+// This File: TransactionJournalTester.java
+// 
+// Name: Benjamin Tarmann
+// Email: btarmann@wisc.edu
+//
+///////////////////////////////////////// 100 COLUMNS WIDE /////////////////////////////////////////
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.zip.DataFormatException;
+
+/**
+ * This class is a tester for the write-ahead journal of BankTeller, implemented by the
+ * TransactionJournal class
+ * 
+ * @author Benjamin Tarmann
+ */
+public class TransactionJournalTester {
+
+  /**
+   * Creates a new temporary journal file name that does not exist yet and is deleted when the JVM
+   * exits
+   * 
+   * @return the journal file
+   * @throws IOException if the temporary file cannot be created
+   */
+  private static File createJournalFile() throws IOException {
+    File file = File.createTempFile("journal", ".bin");
+    file.delete();
+    file.deleteOnExit();
+    return file;
+  }
+
+  /**
+   * Checks whether two accounts have the same ID, balance, number of transactions and most recent
+   * transactions
+   * 
+   * @param expected the original account
+   * @param actual   the recovered account
+   * @return true if the accounts match, false otherwise
+   */
+  private static boolean sameAccount(BankAccount expected, BankAccount actual) {
+    return expected.getID().equals(actual.getID()) && expected.getBalance() == actual.getBalance()
+        && expected.getTransactionsCount() == actual.getTransactionsCount()
+        && Arrays.equals(expected.getMostRecentTransactions(), actual.getMostRecentTransactions());
+  }
+
+  /**
+   * Checks whether a BankTeller that opens the journal of another BankTeller recovers the same
+   * accounts, including transactions applied to an account before it was added, transactions
+   * added through BankTeller and BankAccount methods, and transfers. Also checks that a recovered
+   * BankTeller keeps appending to the journal.
+   * 
+   * @return true when this test verifies a correct functionality, and false otherwise.
+   */
+  public static boolean testTransactionJournalRecovery() {
+    try {
+      File file = createJournalFile();
+      BankTeller original = new BankTeller();
+      original.openJournal(file, 1, 0);
+
+      BankAccount first = new BankAccount("0001", 100);
+      first.deposit(25); // applied before the account is added to the teller
+      original.addBankAccount(first);
+      BankAccount second = new ConcurrentBankAccount("0002", 50);
+      original.addBankAccount(second);
+      original.addTransaction("0 20", first);
+      original.tryAddTransaction("1 x", first); // not applied, so not journaled
+      second.withdraw(30);
+      original.transfer("0001", "0002", 100);
+      original.closeJournal();
+
+      // checks that a new teller recovers the same accounts
+      BankTeller recovered = new BankTeller();
+      recovered.openJournal(file, 1, 0);
+      if (recovered.getAccountsCount() != 2 || !sameAccount(first, recovered.findAccount("0001"))
+          || !sameAccount(second, recovered.findAccount("0002"))
+          || !(recovered.findAccount("0002") instanceof ConcurrentBankAccount)) {
+        return false;
+      }
+
+      // checks that the recovered teller keeps journaling
+      recovered.findAccount("0002").deposit(7);
+      recovered.closeJournal();
+      BankTeller recoveredAgain = new BankTeller();
+      recoveredAgain.openJournal(file, 1, 0);
+      recoveredAgain.closeJournal();
+      return recoveredAgain.findAccount("0002").getBalance() == 127
+          && sameAccount(recovered.findAccount("0002"), recoveredAgain.findAccount("0002"));
+    } catch (IOException | DataFormatException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Checks whether opening a journal whose last record was only partly written, as a crash during
+   * a write leaves it, recovers every complete record and appends new records right after them.
+   * 
+   * @return true when this test verifies a correct functionality, and false otherwise.
+   */
+  public static boolean testTransactionJournalTornRecord() {
+    try {
+      File file = createJournalFile();
+      BankTeller original = new BankTeller();
+      original.openJournal(file, 1, 0);
+      original.addBankAccount(new BankAccount("0001", 100));
+      original.findAccount("0001").deposit(10);
+      original.closeJournal();
+
+      // adds the first bytes of a deposit record
+      FileOutputStream output = new FileOutputStream(file, true);
+      output.write(new byte[] {3, 0, 4, '0', '0'});
+      output.close();
+
+      BankTeller recovered = new BankTeller();
+      recovered.openJournal(file, 1, 0);
+      if (recovered.findAccount("0001").getBalance() != 110) {
+        return false;
+      }
+      recovered.findAccount("0001").deposit(5);
+      recovered.closeJournal();
+
+      BankTeller recoveredAgain = new BankTeller();
+      recoveredAgain.openJournal(file, 1, 0);
+      recoveredAgain.closeJournal();
+      return recoveredAgain.findAccount("0001").getBalance() == 115
+          && recoveredAgain.findAccount("0001").getTransactionsCount() == 3;
+    } catch (IOException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Checks whether records are only synced to the journal file once the configured number of
+   * records are waiting or BankTeller.syncJournal() is called.
+   * 
+   * @return true when this test verifies a correct functionality, and false otherwise.
+   */
+  public static boolean testTransactionJournalGroupCommit() {
+    try {
+      File file = createJournalFile();
+      BankTeller teller = new BankTeller();
+      teller.openJournal(file, 100, 0);
+      long openedLength = file.length();
+      teller.addBankAccount(new BankAccount("0001", 100));
+      for (int i = 0; i < 10; i++) {
+        teller.findAccount("0001").deposit(1);
+      }
+
+      // checks that the 11 records are still waiting in the buffer
+      if (file.length() != openedLength) {
+        return false;
+      }
+      teller.syncJournal();
+      long recordsLength = file.length() - openedLength;
+
+      // checks that 100 more records are synced as one group without calling syncJournal()
+      for (int i = 0; i < 100; i++) {
+        teller.findAccount("0001").deposit(1);
+      }
+      boolean groupSynced = file.length() == openedLength + recordsLength * 111 / 11;
+      teller.closeJournal();
+      return recordsLength > 0 && groupSynced;
+    } catch (IOException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Checks whether a BankTeller recovers the same accounts from a snapshot and the journal records
+   * written after it, whether the snapshot shrinks the journal, and whether a later snapshot
+   * includes the accounts of the earlier one
+   * 
+   * @return true when this test verifies a correct functionality, and false otherwise.
+   */
+  public static boolean testTransactionJournalSnapshot() {
+    try {
+      File file = createJournalFile();
+      File snapshotFile = new File(file.getPath() + ".snapshot");
+      snapshotFile.deleteOnExit();
+      BankTeller original = new BankTeller();
+      original.openJournal(file, 1, 0);
+      BankAccount first = new BankAccount("0001", 1000);
+      original.addBankAccount(first);
+      BankAccount second = new ConcurrentBankAccount("0002", 1000);
+      original.addBankAccount(second);
+      for (int i = 1; i <= 100; i++) {
+        first.deposit(i);
+        second.withdraw(10);
+      }
+      long journalLength = file.length();
+      original.snapshotJournal();
+
+      // checks that the snapshot took the place of the journal records
+      if (!snapshotFile.exists() || file.length() >= journalLength
+          || new File(file.getPath() + ".sealed").exists()) {
+        return false;
+      }
+      first.deposit(7);
+      original.addBankAccount(new BankAccount("0003", 10));
+      original.closeJournal();
+
+      // checks that a new teller recovers the same accounts from the snapshot and the journal
+      BankTeller recovered = new BankTeller();
+      recovered.openJournal(file, 1, 0);
+      if (recovered.getAccountsCount() != 3 || !sameAccount(first, recovered.findAccount("0001"))
+          || !sameAccount(second, recovered.findAccount("0002"))
+          || !(recovered.findAccount("0002") instanceof ConcurrentBankAccount)) {
+        return false;
+      }
+
+      // checks that a snapshot of recovered accounts includes them
+      recovered.findAccount("0002").deposit(5);
+      recovered.snapshotJournal();
+      recovered.closeJournal();
+      BankTeller recoveredAgain = new BankTeller();
+      recoveredAgain.openJournal(file, 1, 0);
+      recoveredAgain.closeJournal();
+      return sameAccount(first, recoveredAgain.findAccount("0001"))
+          && sameAccount(recovered.findAccount("0002"), recoveredAgain.findAccount("0002"))
+          && recoveredAgain.findAccount("0003").getBalance() == 10;
+    } catch (IOException | DataFormatException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Checks whether recovery works when a crash stopped a snapshot after the journal file was
+   * sealed but before the snapshot was written, which leaves a sealed file and no journal file
+   * 
+   * @return true when this test verifies a correct functionality, and false otherwise.
+   */
+  public static boolean testTransactionJournalSnapshotCrash() {
+    try {
+      File file = createJournalFile();
+      File sealedFile = new File(file.getPath() + ".sealed");
+      new File(file.getPath() + ".snapshot").deleteOnExit();
+      BankTeller original = new BankTeller();
+      original.openJournal(file, 1, 0);
+      BankAccount account = new BankAccount("0001", 100);
+      original.addBankAccount(account);
+      account.deposit(1);
+      original.snapshotJournal();
+      account.deposit(2);
+      original.closeJournal();
+
+      // seals the journal file like a snapshot does before the crash
+      file.renameTo(sealedFile);
+
+      BankTeller recovered = new BankTeller();
+      recovered.openJournal(file, 1, 0);
+      if (!sameAccount(account, recovered.findAccount("0001")) || !sealedFile.exists()) {
+        return false;
+      }
+
+      // checks that the next snapshot includes the sealed file exactly once
+      recovered.findAccount("0001").deposit(3);
+      recovered.snapshotJournal();
+      recovered.closeJournal();
+      BankTeller recoveredAgain = new BankTeller();
+      recoveredAgain.openJournal(file, 1, 0);
+      recoveredAgain.closeJournal();
+      return !sealedFile.exists() && recoveredAgain.findAccount("0001").getBalance() == 106
+          && recoveredAgain.findAccount("0001").getTransactionsCount() == 4;
+    } catch (IOException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Checks whether snapshots taken in the background while 4 threads apply transactions to a
+   * ConcurrentBankTeller lose or repeat no transaction
+   * 
+   * @return true when this test verifies a correct functionality, and false otherwise.
+   */
+  public static boolean testTransactionJournalBackgroundSnapshot() {
+    try {
+      File file = createJournalFile();
+      File snapshotFile = new File(file.getPath() + ".snapshot");
+      snapshotFile.deleteOnExit();
+      ConcurrentBankTeller original = new ConcurrentBankTeller();
+      original.openJournal(file, 1000, 5, 1);
+      for (int t = 0; t < 4; t++) {
+        original.addBankAccount(new ConcurrentBankAccount("000" + t, 10));
+      }
+
+      Thread[] threads = new Thread[4];
+      for (int t = 0; t < threads.length; t++) {
+        BankAccount account = original.findAccount("000" + t);
+        threads[t] = new Thread(() -> {
+          for (int i = 0; i < 50_000; i++) {
+            account.deposit(1);
+          }
+        });
+        threads[t].start();
+      }
+      for (Thread thread : threads) {
+        thread.join();
+      }
+      original.closeJournal();
+
+      BankTeller recovered = new BankTeller();
+      recovered.openJournal(file, 1, 0);
+      recovered.closeJournal();
+      for (int t = 0; t < 4; t++) {
+        if (!sameAccount(original.findAccount("000" + t), recovered.findAccount("000" + t))) {
+          return false;
+        }
+      }
+      return snapshotFile.exists();
+    } catch (IOException | InterruptedException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Checks whether accounts that keep a window of their recent transactions are recovered with the
+   * same window from the journal and from a snapshot, and whether an account that already lost
+   * older transactions cannot be added to a BankTeller with a journal
+   * 
+   * @return true when this test verifies a correct functionality, and false otherwise.
+   */
+  public static boolean testTransactionJournalRecentWindow() {
+    try {
+      File file = createJournalFile();
+      new File(file.getPath() + ".snapshot").deleteOnExit();
+      BankTeller original = new BankTeller();
+      original.openJournal(file, 1, 0);
+      BankAccount first = new BankAccount("0001", 100, 3);
+      original.addBankAccount(first);
+      BankAccount second = new ConcurrentBankAccount("0002", 100, 2);
+      original.addBankAccount(second);
+      for (int i = 1; i <= 10; i++) {
+        first.deposit(i);
+        second.deposit(i);
+      }
+
+      // checks that an account without its older transactions cannot be journaled
+      BankAccount windowed = new BankAccount("0003", 100, 1);
+      windowed.deposit(1);
+      try {
+        original.addBankAccount(windowed);
+        return false;
+      } catch (IllegalArgumentException e) {
+        // expected
+      }
+      original.closeJournal();
+
+      // checks the accounts recovered from the journal, and then from a snapshot
+      for (int recovery = 0; recovery < 2; recovery++) {
+        BankTeller recovered = new BankTeller();
+        recovered.openJournal(file, 1, 0);
+        if (recovery == 0) {
+          recovered.snapshotJournal();
+        }
+        recovered.closeJournal();
+        if (recovered.getAccountsCount() != 2 || !sameAccount(first, recovered.findAccount("0001"))
+            || !sameAccount(second, recovered.findAccount("0002"))
+            || recovered.findAccount("0001").getRecentWindow() != 3
+            || recovered.findAccount("0002").getRecentWindow() != 2) {
+          return false;
+        }
+      }
+      return true;
+    } catch (IOException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Checks whether an account whose balance grew past the largest int is recovered with the same
+   * balance, both by replaying the journal and from a snapshot
+   * 
+   * @return true when this test verifies a correct functionality, and false otherwise.
+   */
+  public static boolean testTransactionJournalLargeBalance() {
+    try {
+      File file = createJournalFile();
+      new File(file.getPath() + ".snapshot").deleteOnExit();
+      BankTeller original = new BankTeller();
+      original.openJournal(file, 1, 0);
+      BankAccount large = new BankAccount("0001", Integer.MAX_VALUE);
+      original.addBankAccount(large);
+      large.deposit(Integer.MAX_VALUE);
+      large.deposit(Integer.MAX_VALUE);
+      original.closeJournal();
+
+      // checks that replaying the journal adds the amounts up in a long
+      BankTeller replayed = new BankTeller();
+      replayed.openJournal(file, 1, 0);
+      if (replayed.findAccount("0001").getBalance() != 3L * Integer.MAX_VALUE) {
+        return false;
+      }
+      replayed.snapshotJournal();
+      replayed.closeJournal();
+
+      // checks that the snapshot keeps the whole balance
+      BankTeller recovered = new BankTeller();
+      recovered.openJournal(file, 1, 0);
+      recovered.closeJournal();
+      return sameAccount(large, recovered.findAccount("0001"));
+    } catch (IOException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Checks whether a journaled ConcurrentBankAccount that four threads deposit into and withdraw
+   * from at the same time is recovered with the same balance and transactions, which needs the
+   * journal to hold every withdrawal after the deposits that paid for it. Repeats the check 20
+   * times, since the threads interleave differently every time.
+   * 
+   * @return true when this test verifies a correct functionality, and false otherwise.
+   */
+  public static boolean testTransactionJournalConcurrentRecovery() {
+    try {
+      for (int round = 0; round < 20; round++) {
+        File file = createJournalFile();
+        BankTeller original = new ConcurrentBankTeller();
+        original.openJournal(file, 1_000, 0);
+        BankAccount account = new ConcurrentBankAccount("0001", 10);
+        original.addBankAccount(account);
+
+        // even threads deposit and odd threads withdraw everything the deposits put in
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+          boolean deposit = t % 2 == 0;
+          threads[t] = new Thread(() -> {
+            for (int i = 0; i < 2_000; i++) {
+              if (deposit) {
+                account.tryDeposit(10);
+              } else {
+                account.tryWithdraw(10);
+              }
+            }
+          });
+          threads[t].start();
+        }
+        for (Thread thread : threads) {
+          thread.join();
+        }
+        original.closeJournal();
+
+        BankTeller recovered = new BankTeller();
+        recovered.openJournal(file, 1, 0);
+        recovered.closeJournal();
+        if (!sameAccount(account, recovered.findAccount("0001"))) {
+          return false;
+        }
+      }
+      return true;
+    } catch (IOException | InterruptedException | RuntimeException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Checks whether transactions that another thread applies through a journaled and indexed
+   * ConcurrentBankTeller as soon as it finds a newly added account are all journaled and indexed,
+   * which needs the account to be copied into the journal and the index before any transaction of
+   * the teller can reach it. Repeats the check 10 times, since the threads interleave differently
+   * every time.
+   * 
+   * @return true when this test verifies a correct functionality, and false otherwise.
+   */
+  public static boolean testTransactionJournalConcurrentAdd() {
+    try {
+      for (int round = 0; round < 10; round++) {
+        File file = createJournalFile();
+        BankTeller original = new ConcurrentBankTeller();
+        original.openJournal(file, 1_000, 0);
+        original.createIndexes();
+
+        // one thread adds the accounts while another deposits into each one as soon as it is found
+        int accountCount = 1_000;
+        Thread depositor = new Thread(() -> {
+          for (int i = 0; i < accountCount; i++) {
+            BankAccount account = null;
+            while (account == null) {
+              try {
+                account = original.findAccount("a" + i);
+              } catch (NoSuchElementException e) {
+                Thread.yield();
+              }
+            }
+            original.tryAddTransaction("1 10", account);
+          }
+        });
+        depositor.start();
+        for (int i = 0; i < accountCount; i++) {
+          original.addBankAccount(new ConcurrentBankAccount("a" + i, 10));
+        }
+        depositor.join();
+        original.closeJournal();
+
+        // checks that the index and the recovered accounts hold every deposit
+        if (original.getAccountIDsByBalance(20, 20, accountCount).size() != accountCount) {
+          return false;
+        }
+        BankTeller recovered = new BankTeller();
+        recovered.openJournal(file, 1, 0);
+        recovered.closeJournal();
+        for (int i = 0; i < accountCount; i++) {
+          if (!sameAccount(original.findAccount("a" + i), recovered.findAccount("a" + i))) {
+            return false;
+          }
+        }
+      }
+      return true;
+    } catch (IOException | InterruptedException | RuntimeException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Calls the test methods defined in this TransactionJournalTester class
+   * 
+   * @param args
+   */
+  public static void main(String[] args) {
+    if (testTransactionJournalRecovery() == false) {
+      System.out.println("testTransactionJournalRecovery failed.");
+    }
+
+    if (testTransactionJournalTornRecord() == false) {
+      System.out.println("testTransactionJournalTornRecord failed.");
+    }
+
+    if (testTransactionJournalGroupCommit() == false) {
+      System.out.println("testTransactionJournalGroupCommit failed.");
+    }
+
+    if (testTransactionJournalSnapshot() == false) {
+      System.out.println("testTransactionJournalSnapshot failed.");
+    }
+
+    if (testTransactionJournalSnapshotCrash() == false) {
+      System.out.println("testTransactionJournalSnapshotCrash failed.");
+    }
+
+    if (testTransactionJournalBackgroundSnapshot() == false) {
+      System.out.println("testTransactionJournalBackgroundSnapshot failed.");
+    }
+
+    if (testTransactionJournalRecentWindow() == false) {
+      System.out.println("testTransactionJournalRecentWindow failed.");
+    }
+
+    if (testTransactionJournalLargeBalance() == false) {
+      System.out.println("testTransactionJournalLargeBalance failed.");
+    }
+
+    if (testTransactionJournalConcurrentRecovery() == false) {
+      System.out.println("testTransactionJournalConcurrentRecovery failed.");
+    }
+
+    if (testTransactionJournalConcurrentAdd() == false) {
+      System.out.println("testTransactionJournalConcurrentAdd failed.");
+    }
+  }
+}
@@ -0,0 +1,142 @@
+/////////////////////////////////////////// FILE  HEADER /////////////////////////////////////////////
+//
+// Title: Exceptional Bank Teller
+// Files: BankAccount.java, BankAccountTester.java, BankTeller.java, BankTellerTester.java,
+//        BankTellerBenchmark.java, TransactionLog.java, TransactionLoadResult.java,
+//        ConcurrentTransactionLog.java, ConcurrentBankAccount.java,
+//        ConcurrentBankAccountTester.java, ConcurrentBankTeller.java,
+//        ConcurrentBankTellerTester.java, TransactionStatus.java, TransactionListener.java,
+//        TransactionJournal.java, TransactionJournalTester.java, TransactionSnapshot.java,
+//        ColdAccountStore.java, TieredAccountMap.java, TieredBankTeller.java,
+//        TieredBankTellerTester.java, TransactionBatch.java, TransactionBatchResult.java,
+//        TransactionRecord.java, TransactionEvent.java, TransactionPipeline.java,
+//        TransactionPipelineTester.java, LatencyHistogram.java, TellerMetrics.java,
+//        TellerMetricsTester.java, TransactionFile.java, TransactionFileTester.java,
+//        HighPrecisionBankAccount.java, HighPrecisionBankAccountTester.java, AccountIndex.java,
+//        AccountIndexTester.java, ReconciliationReport.java, ReconciliationTask.java,
+//        TransactionIDCache.java, TransactionIDCacheTester.java, ShardTransport.java,
+//        LocalShardTransport.java, SocketShardTransport.java, ShardServer.java,
+//        ShardedBankTeller.java, ShardedBankTellerTester.java, TransactionParser.java,
+//        TransactionParserTester.java, TellerServer.java, TellerClient.java,
+//        TellerLoadGenerator.java, TellerServerTester.java, TransactionClock.java,
+//        TransactionTimeIndex.java, TransactionHistory.java, TransactionHistoryTester.java,
+//        TellerWorkload.java, TellerReplay.java, TellerReplayResult.java, TellerReplayTester.java
+// This File: TransactionLoadResult.java
+// 
+// Name: Benjamin Tarmann
+// Email: btarmann@wisc.edu
+//
+///////////////////////////////////////// 100 COLUMNS WIDE /////////////////////////////////////////
+
+import java.io.File;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * This class reports the outcome of loading transaction lines into bank accounts: how many lines
+ * were applied to an account, how many were skipped because they were not correctly formatted, how
+ * many were not applied because their transaction ID already was, and which files could not be
+ * loaded completely.
+ * 
+ * @author Benjamin Tarmann
+ */
+public class TransactionLoadResult {
+  private long appliedCount;
+  private long skippedCount;
+  private long duplicateCount;
+  private LinkedHashMap<File, Exception> failures; // files that failed and what they failed with
+
+  /**
+   * Creates a new result with no applied or skipped lines and no failed files
+   */
+  public TransactionLoadResult() {
+    appliedCount = 0;
+    skippedCount = 0;
+    duplicateCount = 0;
+    failures = new LinkedHashMap<File, Exception>();
+  }
+
+  /**
+   * Counts one more line that was applied to an account
+   */
+  void lineApplied() {
+    appliedCount++;
+  }
+
+  /**
+   * Counts one more line that was skipped because it was not correctly formatted
+   */
+  void lineSkipped() {
+    skippedCount++;
+  }
+
+  /**
+   * Counts one more line that was not applied because a line with the same transaction ID already
+   * was
+   */
+  void lineDuplicated() {
+    duplicateCount++;
+  }
+
+  /**
+   * Records a file that could not be loaded completely. The lines of the file that were applied or
+   * skipped before it failed stay counted.
+   * 
+   * @param file    the file that failed
+   * @param failure the exception the file failed with
+   */
+  void fileFailed(File file, Exception failure) {
+    failures.put(file, failure);
+  }
+
+  /**
+   * Adds the counts and failed files of another result to this one
+   * 
+   * @param other result to add to this one
+   */
+  void add(TransactionLoadResult other) {
+    appliedCount += other.appliedCount;
+    skippedCount += other.skippedCount;
+    duplicateCount += other.duplicateCount;
+    failures.putAll(other.failures);
+  }
+
+  /**
+   * Gets the number of lines that were applied to an account
+   * 
+   * @return the number of applied lines
+   */
+  public long getAppliedCount() {
+    return appliedCount;
+  }
+
+  /**
+   * Gets the number of lines that were skipped because they were not correctly formatted
+   * 
+   * @return the number of skipped lines
+   */
+  public long getSkippedCount() {
+    return skippedCount;
+  }
+
+  /**
+   * Gets the number of lines that were not applied because their transaction ID was already
+   * applied
+   * 
+   * @return the number of duplicate lines
+   */
+  public long getDuplicateCount() {
+    return duplicateCount;
+  }
+
+  /**
+   * Gets the files that could not be loaded completely, in the order they were given, each with
+   * the exception it failed with
+   * 
+   * @return an unmodifiable map from each failed file to its exception
+   */
+  public Map<File, Exception> getFailures() {
+    return Collections.unmodifiableMap(failures);
+  }
+}
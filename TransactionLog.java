@@ -0,0 +1,385 @@
+/////////////////////////////////////////// FILE  HEADER /////////////////////////////////////////////
+//
+// Title: Exceptional Bank Teller
+// Files: BankAccount.java, BankAccountTester.java, BankTeller.java, BankTellerTester.java,
+//        BankTellerBenchmark.java, TransactionLog.java, TransactionLoadResult.java,
+//        ConcurrentTransactionLog.java, ConcurrentBankAccount.java,
+//        ConcurrentBankAccountTester.java, ConcurrentBankTeller.java,
+//        ConcurrentBankTellerTester.java, TransactionStatus.java, TransactionListener.java,
+//        TransactionJournal.java, TransactionJournalTester.java, TransactionSnapshot.java,
+//        ColdAccountStore.java, TieredAccountMap.java, TieredBankTeller.java,
+//        TieredBankTellerTester.java, TransactionBatch.java, TransactionBatchResult.java,
+//        TransactionRecord.java, TransactionEvent.java, TransactionPipeline.java,
+//        TransactionPipelineTester.java, LatencyHistogram.java, TellerMetrics.java,
+//        TellerMetricsTester.java, TransactionFile.java, TransactionFileTester.java,
+//        HighPrecisionBankAccount.java, HighPrecisionBankAccountTester.java, AccountIndex.java,
+//        AccountIndexTester.java, ReconciliationReport.java, ReconciliationTask.java,
+//        TransactionIDCache.java, TransactionIDCacheTester.java, ShardTransport.java,
+//        LocalShardTransport.java, SocketShardTransport.java, ShardServer.java,
+//        ShardedBankTeller.java, ShardedBankTellerTester.java, TransactionParser.java,
+//        TransactionParserTester.java, TellerServer.java, TellerClient.java,
+//        TellerLoadGenerator.java, TellerServerTester.java, TransactionClock.java,
+//        TransactionTimeIndex.java, TransactionHistory.java, TransactionHistoryTester.java,
+//        TellerWorkload.java, TellerReplay.java, TellerReplayResult.java, TellerReplayTester.java
+// This File: TransactionLog.java
+// 
+// Name: Benjamin Tarmann
+// Email: btarmann@wisc.edu
+//
+///////////////////////////////////////// 100 COLUMNS WIDE /////////////////////////////////////////
+/**
+ * This class models the list of transactions of a bank account. Each transaction is packed into a
+ * single long (the transaction amount in the low 32 bits and a deposit flag above it), and the
+ * longs are stored in fixed-size chunks so that the log grows without copying old transactions.
+ * Transactions are only rendered as "0 amount" or "1 amount" strings when they are read. Every
+ * transaction also has the time it was appended at, which is kept in a TransactionTimeIndex beside
+ * the packed transactions rather than in them, with one entry per millisecond in which any were
+ * appended.
+ * 
+ * A log can also keep only a window of its most recent transactions. It then stores them in a ring
+ * buffer that is allocated once, so its memory stays the same however many transactions are
+ * appended, and the older transactions can no longer be read.
+ * 
+ * @author Benjamin Tarmann
+ */
+public class TransactionLog {
+  private static final int CHUNK_BITS = 8;
+  private static final int CHUNK_SIZE = 1 << CHUNK_BITS; // transactions per full chunk
+  private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+  private static final int INITIAL_CAPACITY = 4; // capacity of the first chunk when created
+  private static final int MAX_WINDOW = 1 << 30; // largest window that fits into a ring
+  private static final long AMOUNT_MASK = 0xFFFFFFFFL;
+  private static final long DEPOSIT_FLAG = 1L << 32;
+
+  private final int firstIndex; // index of the first transaction appended to this log
+  private final int window; // number of recent transactions kept, or 0 to keep all of them
+  private final long[] ring; // the kept transactions if there is a window, or null
+  private long[][] chunks; // the kept transactions if there is no window, or null
+  private final TransactionTimeIndex timeIndex;
+  private int size; // number of transactions, including the ones not kept
+
+  /**
+   * Creates a new empty transaction log
+   */
+  public TransactionLog() {
+    this(0, 0);
+  }
+
+  /**
+   * Creates a new empty transaction log for an account whose older transactions are not kept, such
+   * as an account restored from a snapshot. The first transaction appended gets the given index,
+   * and the transactions before it cannot be read.
+   * 
+   * @param firstIndex index of the first transaction appended to this log
+   * @throws IllegalArgumentException if firstIndex is negative
+   */
+  public TransactionLog(int firstIndex) {
+    this(firstIndex, 0);
+  }
+
+  /**
+   * Creates a new empty transaction log that starts at a given index, like TransactionLog(int)
+   * does, and only keeps a given number of its most recent transactions
+   * 
+   * @param firstIndex index of the first transaction appended to this log
+   * @param window     number of recent transactions kept, or 0 to keep all of them
+   * @throws IllegalArgumentException if firstIndex is negative, or if window is negative or larger
+   *                                  than 2^30
+   */
+  public TransactionLog(int firstIndex, int window) {
+    // checks that the first index and the window are in range
+    if (firstIndex < 0) {
+      throw new IllegalArgumentException("Index of the first transaction cannot be negative.");
+    }
+    if (window < 0 || window > MAX_WINDOW) {
+      throw new IllegalArgumentException("Window of recent transactions is out of range.");
+    }
+
+    this.firstIndex = firstIndex;
+    this.window = window;
+    if (window > 0) {
+      // rounds the ring up to a power of two so that an index is turned into a slot with a mask
+      ring = new long[Math.max(1, Integer.highestOneBit(window - 1) << 1)];
+      chunks = null;
+    } else {
+      ring = null;
+      chunks = new long[1][];
+      chunks[0] = new long[INITIAL_CAPACITY];
+    }
+    timeIndex = new TransactionTimeIndex();
+    size = firstIndex;
+  }
+
+  /**
+   * Adds a transaction to the end of this log, at the current time of TransactionClock. No objects
+   * are allocated unless a new chunk is needed, which happens at most once every CHUNK_SIZE
+   * transactions and never if the log has a window, or the time index needs more room.
+   * 
+   * @param deposit true for a deposit transaction, false for a withdrawal
+   * @param amount  the transaction amount
+   */
+  public void append(boolean deposit, int amount) {
+    append(deposit, amount, TransactionClock.now());
+  }
+
+  /**
+   * Adds a transaction that was applied at a given time to the end of this log. The time should
+   * not be earlier than the time of the last transaction, or the transaction gets that time.
+   * 
+   * @param deposit true for a deposit transaction, false for a withdrawal
+   * @param amount  the transaction amount
+   * @param time    the time the transaction was applied at, in milliseconds since the epoch
+   */
+  public void append(boolean deposit, int amount, long time) {
+    long transaction = (amount & AMOUNT_MASK) | (deposit ? DEPOSIT_FLAG : 0L);
+
+    // overwrites the oldest kept transaction once the ring is full
+    if (ring != null) {
+      ring[size & (ring.length - 1)] = transaction;
+    } else {
+      int position = size - firstIndex;
+      int chunkIndex = position >>> CHUNK_BITS;
+      int offset = position & CHUNK_MASK;
+
+      // makes room for the transaction if the current chunk is full
+      if (chunkIndex == chunks.length || chunks[chunkIndex] == null
+          || offset == chunks[chunkIndex].length) {
+        grow(chunkIndex);
+      }
+      chunks[chunkIndex][offset] = transaction;
+    }
+    size++;
+    timeIndex.record(size - 1, time, getFirstIndex());
+  }
+
+  /**
+   * Makes room in the chunk with the given index. The first chunk starts small and doubles until
+   * it reaches CHUNK_SIZE so that accounts with few transactions stay small; every later chunk is
+   * allocated at full size and never copied.
+   * 
+   * @param chunkIndex index of the chunk the next transaction is stored in
+   */
+  private void grow(int chunkIndex) {
+    if (chunkIndex == 0) {
+      long[] first = new long[Math.min(chunks[0].length * 2, CHUNK_SIZE)];
+      System.arraycopy(chunks[0], 0, first, 0, chunks[0].length);
+      chunks[0] = first;
+      return;
+    }
+
+    // doubles the chunk directory if it is full, which only copies the chunk references
+    if (chunkIndex == chunks.length) {
+      long[][] newChunks = new long[chunks.length * 2][];
+      System.arraycopy(chunks, 0, newChunks, 0, chunks.length);
+      chunks = newChunks;
+    }
+    chunks[chunkIndex] = new long[CHUNK_SIZE];
+  }
+
+  /**
+   * Gets the packed transaction at the given index
+   * 
+   * @param index index of the transaction, 0 being the oldest one
+   * @return the packed transaction
+   * @throws IndexOutOfBoundsException if index is less than getFirstIndex() or not less than
+   *                                   size()
+   */
+  private long get(int index) {
+    if (index < getFirstIndex() || index >= size) {
+      throw new IndexOutOfBoundsException("Transaction index " + index + " is out of bounds.");
+    }
+    if (ring != null) {
+      return ring[index & (ring.length - 1)];
+    }
+    int position = index - firstIndex;
+    return chunks[position >>> CHUNK_BITS][position & CHUNK_MASK];
+  }
+
+  /**
+   * Checks whether the transaction at the given index is a deposit
+   * 
+   * @param index index of the transaction, 0 being the oldest one
+   * @return true if the transaction is a deposit, false if it is a withdrawal
+   * @throws IndexOutOfBoundsException if index is less than getFirstIndex() or not less than
+   *                                   size()
+   */
+  public boolean isDeposit(int index) {
+    return (get(index) & DEPOSIT_FLAG) != 0;
+  }
+
+  /**
+   * Gets the amount of the transaction at the given index
+   * 
+   * @param index index of the transaction, 0 being the oldest one
+   * @return the transaction amount
+   * @throws IndexOutOfBoundsException if index is less than getFirstIndex() or not less than
+   *                                   size()
+   */
+  public int getAmount(int index) {
+    return (int) (get(index) & AMOUNT_MASK);
+  }
+
+  /**
+   * Renders the transaction at the given index the way it is written in a transaction file, "1 "
+   * followed by the amount for a deposit or "0 " followed by the amount for a withdrawal
+   * 
+   * @param index index of the transaction, 0 being the oldest one
+   * @return the transaction as a string
+   * @throws IndexOutOfBoundsException if index is less than getFirstIndex() or not less than
+   *                                   size()
+   */
+  public String toString(int index) {
+    long transaction = get(index);
+    return render((transaction & DEPOSIT_FLAG) != 0, (int) (transaction & AMOUNT_MASK));
+  }
+
+  /**
+   * Renders a transaction the way it is written in a transaction file
+   * 
+   * @param deposit true for a deposit, false for a withdrawal
+   * @param amount  the transaction amount
+   * @return the transaction as a string
+   */
+  static String render(boolean deposit, int amount) {
+    return (deposit ? "1 " : "0 ") + Integer.toString(amount);
+  }
+
+  /**
+   * Copies the most recent transactions of this log into caller-supplied arrays, the most recent
+   * one first, without allocating anything
+   * 
+   * @param amounts  array the transaction amounts are copied into
+   * @param deposits array the deposit flags are copied into
+   * @return the number of transactions copied, which is the length of the shorter array or the
+   *         number of kept transactions, whichever is smaller
+   */
+  public int copyRecent(int[] amounts, boolean[] deposits) {
+    int count = Math.min(Math.min(amounts.length, deposits.length), size - getFirstIndex());
+    for (int i = 0; i < count; i++) {
+      long transaction = get(size - i - 1);
+      amounts[i] = (int) (transaction & AMOUNT_MASK);
+      deposits[i] = (transaction & DEPOSIT_FLAG) != 0;
+    }
+    return count;
+  }
+
+  /**
+   * Gets the time the transaction at the given index was appended at
+   * 
+   * @param index index of the transaction, 0 being the oldest one
+   * @return the time of the transaction, in milliseconds since the epoch
+   * @throws IndexOutOfBoundsException if index is less than getFirstIndex() or not less than
+   *                                   size()
+   */
+  public long getTime(int index) {
+    get(index); // checks the index
+    return timeIndex.getTime(index);
+  }
+
+  /**
+   * Finds the first kept transaction appended at or after a given time, with a binary search of
+   * the time index
+   * 
+   * @param time the time, in milliseconds since the epoch
+   * @return the index of the first such transaction, or size() if every kept transaction is older
+   */
+  public int findIndex(long time) {
+    return Math.max(getFirstIndex(), Math.min(size, timeIndex.findIndex(time)));
+  }
+
+  /**
+   * Copies a run of consecutive transactions of this log and their times into caller-supplied
+   * arrays, without allocating anything
+   * 
+   * @param start       index of the first transaction copied
+   * @param length      number of transactions copied, which must fit into every array
+   * @param newestFirst true to copy start, start - 1, ... down to older transactions, false to
+   *                    copy start, start + 1, ... up to newer ones
+   * @param amounts     array the transaction amounts are copied into
+   * @param deposits    array the deposit flags are copied into
+   * @param times       array the times are copied into
+   * @return the number of transactions copied, which is length
+   * @throws IndexOutOfBoundsException if one of the transactions is not kept, or if length does
+   *                                   not fit into an array
+   */
+  int copyRun(int start, int length, boolean newestFirst, int[] amounts, boolean[] deposits,
+      long[] times) {
+    for (int i = 0; i < length; i++) {
+      long transaction = get(newestFirst ? start - i : start + i);
+      amounts[i] = (int) (transaction & AMOUNT_MASK);
+      deposits[i] = (transaction & DEPOSIT_FLAG) != 0;
+    }
+    timeIndex.copyTimes(start, length, newestFirst, times);
+    return length;
+  }
+
+  /**
+   * Adds up the amounts of the deposits and of the withdrawals kept in this log from a given index
+   * on, in one pass over the packed transactions without rendering them
+   * 
+   * @param fromIndex index of the first transaction added up
+   * @param sums      array whose element 0 the deposits are added to, and whose element 1 the
+   *                  withdrawals are added to
+   * @throws IndexOutOfBoundsException if fromIndex is less than getFirstIndex() or greater than
+   *                                   size()
+   */
+  void sumAmounts(int fromIndex, long[] sums) {
+    if (fromIndex < getFirstIndex() || fromIndex > size) {
+      throw new IndexOutOfBoundsException("Transaction index " + fromIndex + " is out of bounds.");
+    }
+
+    long total = 0;
+    long deposits = 0;
+    if (ring != null) {
+      for (int index = fromIndex; index < size; index++) {
+        long transaction = ring[index & (ring.length - 1)];
+        total += transaction & AMOUNT_MASK;
+        // the deposit flag is the only bit above the amount, so this masks withdrawals to 0
+        deposits += transaction & AMOUNT_MASK & -(transaction >>> 32);
+      }
+    } else {
+      int end = size - firstIndex;
+      for (int position = fromIndex - firstIndex; position < end;) {
+        long[] chunk = chunks[position >>> CHUNK_BITS];
+        int offset = position & CHUNK_MASK;
+        int stop = Math.min(chunk.length, offset + end - position);
+        for (int k = offset; k < stop; k++) {
+          long transaction = chunk[k];
+          total += transaction & AMOUNT_MASK;
+          deposits += transaction & AMOUNT_MASK & -(transaction >>> 32);
+        }
+        position += stop - offset;
+      }
+    }
+    sums[0] += deposits;
+    sums[1] += total - deposits;
+  }
+
+  /**
+   * Gets the index of the oldest transaction kept in this log, which is 0 unless the log was
+   * created without the older transactions or only keeps a window of them
+   * 
+   * @return the index of the oldest kept transaction
+   */
+  public int getFirstIndex() {
+    return window == 0 ? firstIndex : Math.max(firstIndex, size - window);
+  }
+
+  /**
+   * Gets the number of most recent transactions this log keeps
+   * 
+   * @return the window of kept transactions, or 0 if all of them are kept
+   */
+  public int getWindow() {
+    return window;
+  }
+
+  /**
+   * Gets the number of transactions in this log, including the older ones that are not kept
+   * 
+   * @return the number of transactions
+   */
+  public int size() {
+    return size;
+  }
+}
@@ -0,0 +1,395 @@
+/////////////////////////////////////////// FILE  HEADER /////////////////////////////////////////////
+//
+// Title: Exceptional Bank Teller
+// Files: BankAccount.java, BankAccountTester.java, BankTeller.java, BankTellerTester.java,
+//        BankTellerBenchmark.java, TransactionLog.java, TransactionLoadResult.java,
+//        ConcurrentTransactionLog.java, ConcurrentBankAccount.java,
+//        ConcurrentBankAccountTester.java, ConcurrentBankTeller.java,
+//        ConcurrentBankTellerTester.java, TransactionStatus.java, TransactionListener.java,
+//        TransactionJournal.java, TransactionJournalTester.java, TransactionSnapshot.java,
+//        ColdAccountStore.java, TieredAccountMap.java, TieredBankTeller.java,
+//        TieredBankTellerTester.java, TransactionBatch.java, TransactionBatchResult.java,
+//        TransactionRecord.java, TransactionEvent.java, TransactionPipeline.java,
+//        TransactionPipelineTester.java, LatencyHistogram.java, TellerMetrics.java,
+//        TellerMetricsTester.java, TransactionFile.java, TransactionFileTester.java,
+//        HighPrecisionBankAccount.java, HighPrecisionBankAccountTester.java, AccountIndex.java,
+//        AccountIndexTester.java, ReconciliationReport.java, ReconciliationTask.java,
+//        TransactionIDCache.java, TransactionIDCacheTester.java, ShardTransport.java,
+//        LocalShardTransport.java, SocketShardTransport.java, ShardServer.java,
+//        ShardedBankTeller.java, ShardedBankTellerTester.java, TransactionParser.java,
+//        TransactionParserTester.java, TellerServer.java, TellerClient.java,
+//        TellerLoadGenerator.java, TellerServerTester.java, TransactionClock.java,
+//        TransactionTimeIndex.java, TransactionHistory.java, TransactionHistoryTester.java,
+//        TellerWorkload.java, TellerReplay.java, TellerReplayResult.java, TellerReplayTester.java
+// This File: TransactionParser.java
+// 
+// Name: Benjamin Tarmann
+// Email: btarmann@wisc.edu
+//
+///////////////////////////////////////// 100 COLUMNS WIDE /////////////////////////////////////////
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * This class parses the transaction lines of a byte buffer in bulk, for the memory-mapped loaders
+ * of BankTeller. Each call parses up to a fixed number of lines into arrays that are reused by the
+ * next call: the bounds of every line, and its transaction in the form BankTeller.
+ * parseTransaction() returns for the same line as a String, which is the deposit flag and amount
+ * that BankAccount needs, or the status the line is rejected with.
+ * 
+ * The parser reads the buffer eight bytes at a time as a long and tests all eight bytes with a few
+ * arithmetic operations (SWAR, SIMD within a register). Line terminators are found a word at a
+ * time, and a line of the usual form, a type, a space and up to eight digits, has its digits
+ * checked and converted to an int with three multiplications instead of a loop. Every other line
+ * is parsed a byte at a time, with the same rules, so each line is rejected exactly when
+ * addTransaction() rejects it. Lines with bytes outside of ASCII are not parsed but marked with
+ * DECODE, since they must be decoded to know whether they hold Unicode digits or line separators.
+ * 
+ * @author Benjamin Tarmann
+ */
+final class TransactionParser {
+  static final long DECODE = Long.MIN_VALUE; // parsed value of a line that must be decoded first
+  private static final long ONES = 0x0101010101010101L;
+  private static final long LOW_BITS = 0x7F7F7F7F7F7F7F7FL;
+  private static final long HIGH_NIBBLES = 0xF0F0F0F0F0F0F0F0L;
+  private static final long NEWLINES = '\n' * ONES;
+  private static final long RETURNS = '\r' * ONES;
+  private static final long ZEROS = '0' * ONES;
+  private static final long AMOUNT_OUT_OF_RANGE =
+      -1 - TransactionStatus.AMOUNT_OUT_OF_RANGE.ordinal();
+  private static final long INVALID_AMOUNT = -1 - TransactionStatus.INVALID_AMOUNT.ordinal();
+  private static final long INVALID_TYPE = -1 - TransactionStatus.INVALID_TYPE.ordinal();
+
+  private final long[] parsed; // parsed value of each line, or DECODE
+  private final int[] lineStarts; // index of the first byte of each line
+  private final int[] lineEnds; // index after the last byte of each line, before its terminator
+  private int lineCount;
+
+  /**
+   * Creates a parser that parses up to the given number of lines per call
+   * 
+   * @param capacity number of lines parsed per call
+   * @throws IllegalArgumentException if capacity is less than 1
+   */
+  TransactionParser(int capacity) {
+    // checks that a call can parse a line
+    if (capacity < 1) {
+      throw new IllegalArgumentException("Parser must hold at least one line.");
+    }
+
+    parsed = new long[capacity];
+    lineStarts = new int[capacity];
+    lineEnds = new int[capacity + Long.BYTES]; // a word may end more lines than are left
+  }
+
+  /**
+   * Parses the complete lines of a range of a buffer, up to the capacity of this parser. Lines end
+   * with "\n", "\r" or "\r\n", like the lines returned by java.util.Scanner.nextLine(); the last
+   * line of the input does not need a line terminator.
+   * 
+   * The lines are parsed in two passes. The first finds the terminators of all lines, a word at a
+   * time, and the second parses each line on its own. Unlike finding one line after the other,
+   * neither pass waits for the end of a line to be found before it can start on the next line.
+   * 
+   * @param buffer     the buffer, whose position, limit and byte order are not used or changed
+   * @param from       index of the first byte to parse, which starts a line
+   * @param to         index after the last byte to parse
+   * @param endOfInput true if the input ends at to, so that a last line without a terminator is
+   *                   complete
+   * @return the index after the terminator of the last line parsed, where the next call starts
+   */
+  int parse(ByteBuffer buffer, int from, int to, boolean endOfInput) {
+    ByteBuffer words = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+    int count = findLineEnds(words, from, to);
+
+    // stops at a "\r" ending the range, since the input may go on with its "\n"
+    if (count > 0 && lineEnds[count - 1] == to - 1 && !endOfInput
+        && words.get(to - 1) == '\r') {
+      count--;
+    }
+
+    int lineStart = from;
+    for (int line = 0; line < count; line++) {
+      int lineEnd = lineEnds[line];
+      // skips the "\n" of a "\r\n" terminator, which is not the end of a line of its own
+      if (lineStart < lineEnd && words.get(lineStart) == '\n') {
+        lineStart++;
+      }
+      lineStarts[line] = lineStart;
+      parsed[line] = parseLine(words, lineStart, lineEnd, to);
+      lineStart = lineEnd + 1;
+    }
+    if (lineStart < to && words.get(lineStart) == '\n' && count > 0
+        && words.get(lineStart - 1) == '\r') {
+      lineStart++;
+    }
+
+    // a last line without a terminator is only complete at the end of the input
+    if (endOfInput && lineStart < to && count < parsed.length) {
+      lineStarts[count] = lineStart;
+      lineEnds[count] = to;
+      parsed[count++] = parseLine(words, lineStart, to, to);
+      lineStart = to;
+    }
+    lineCount = count;
+    return lineStart;
+  }
+
+  /**
+   * Finds the terminators of the lines of a range, up to the capacity of this parser, and stores
+   * their indices in lineEnds. A "\n" right after a "\r" is not a terminator of its own.
+   * 
+   * @param words the little-endian buffer
+   * @param from  index of the first byte to search, which starts a line
+   * @param to    index after the last byte to search
+   * @return the number of terminators found
+   */
+  private int findLineEnds(ByteBuffer words, int from, int to) {
+    int capacity = parsed.length;
+    int count = 0;
+    int i = from;
+    long previousReturns = 0; // the "\r"s of the previous word
+    while (i + Long.BYTES <= to && count < capacity) {
+      long word = words.getLong(i);
+      long returns = zeroBytes(word ^ RETURNS);
+      // a "\n" after a "\r" in this word, or after one in the last byte of the previous word
+      long newlines = zeroBytes(word ^ NEWLINES) & ~((returns << 8) | (previousReturns >>> 56));
+      long terminators = returns | newlines;
+
+      // stores the first two terminators without branching on how many there are, which is
+      // enough for lines of four bytes or more; lineEnds has room for the extra entries
+      int found = Long.bitCount(terminators);
+      lineEnds[count] = i + (Long.numberOfTrailingZeros(terminators) >>> 3);
+      terminators &= terminators - 1;
+      lineEnds[count + 1] = i + (Long.numberOfTrailingZeros(terminators) >>> 3);
+      terminators &= terminators - 1;
+      for (int extra = count + 2; terminators != 0; extra++) {
+        lineEnds[extra] = i + (Long.numberOfTrailingZeros(terminators) >>> 3);
+        terminators &= terminators - 1;
+      }
+      count += found;
+      previousReturns = returns;
+      i += Long.BYTES;
+    }
+
+    // searches the last bytes that do not fill a word one at a time
+    for (; i < to && count < capacity; i++) {
+      byte b = words.get(i);
+      if (b == '\r' || (b == '\n' && (i == from || words.get(i - 1) != '\r'))) {
+        lineEnds[count++] = i;
+      }
+    }
+    return Math.min(count, capacity);
+  }
+
+  /**
+   * Gets the number of lines parsed by the last call to parse()
+   * 
+   * @return the number of lines
+   */
+  int getLineCount() {
+    return lineCount;
+  }
+
+  /**
+   * Gets the parsed value of a line, as BankTeller.parseTransaction() returns it for the line
+   * 
+   * @param line number of the line in the last call to parse()
+   * @return the amount with PARSED_DEPOSIT set for a deposit, PARSED_ID set if the line has a
+   *         transaction ID and PARSED_INVALID_ID set if it has a word that starts with "#" but is
+   *         not a valid ID, -1 - the ordinal of the status the line is rejected with, or DECODE if
+   *         the line has bytes outside of ASCII
+   */
+  long getParsed(int line) {
+    return parsed[line];
+  }
+
+  /**
+   * Gets the index of the first byte of a line
+   * 
+   * @param line number of the line in the last call to parse()
+   * @return the index in the buffer
+   */
+  int getLineStart(int line) {
+    return lineStarts[line];
+  }
+
+  /**
+   * Gets the index after the last byte of a line, excluding its terminator
+   * 
+   * @param line number of the line in the last call to parse()
+   * @return the index in the buffer
+   */
+  int getLineEnd(int line) {
+    return lineEnds[line];
+  }
+
+  /**
+   * Marks the bytes of a word that are zero
+   * 
+   * @param word eight bytes
+   * @return a word with the high bit of every zero byte set, and every other bit clear
+   */
+  private static long zeroBytes(long word) {
+    // adding 0x7F to the low seven bits sets the high bit of every byte but zero, without carrying
+    // into the next byte
+    return ~(((word & LOW_BITS) + LOW_BITS) | word | LOW_BITS);
+  }
+
+  /**
+   * Parses a line that consists of "0" or "1", a space and one to eight digits with a single
+   * word, or any other line a byte at a time
+   * 
+   * @param words the little-endian buffer
+   * @param start index of the first byte of the line
+   * @param end   index after the last byte of the line, excluding its terminator
+   * @param limit index after the last byte that may be read
+   * @return the parsed value of the line, as described in getParsed()
+   */
+  private static long parseLine(ByteBuffer words, int start, int end, int limit) {
+    int length = end - start;
+    if (length < Long.BYTES && start + Long.BYTES <= limit) {
+      long value = parseShortLine(words.getLong(start), length);
+      return value != DECODE ? value : parseLineBytes(words, start, end);
+    }
+
+    int digits = length - 2;
+    byte type = words.get(start);
+    if (digits < 1 || digits > Long.BYTES || end < Long.BYTES || words.get(start + 1) != ' '
+        || (type != '0' && type != '1')) {
+      return parseLineBytes(words, start, end);
+    }
+
+    // reads the word that ends with the digits
+    long value = parseDigits(words.getLong(end - Long.BYTES), digits);
+    if (value < 0) {
+      return parseLineBytes(words, start, end);
+    }
+    return type == '1' ? value | BankTeller.PARSED_DEPOSIT : value;
+  }
+
+  /**
+   * Parses a line of up to seven bytes held in the low bytes of a word that consists of "0" or
+   * "1", a space and up to five digits
+   * 
+   * @param word   the word whose lowest byte is the first byte of the line
+   * @param length number of bytes of the line, from 0 to 7
+   * @return the parsed value of the line, or DECODE if the line has another form
+   */
+  private static long parseShortLine(long word, int length) {
+    int type = ((int) word & 0xFFFF) ^ ('0' | ' ' << 8); // 0 for a withdrawal, 1 for a deposit
+    if (length < 3 || (type & ~1) != 0) {
+      return DECODE;
+    }
+
+    // moves the line to the high bytes of the word, where the digits of parseDigits() go
+    long value = parseDigits(word << ((Long.BYTES - length) * Byte.SIZE), length - 2);
+    if (value < 0) {
+      return DECODE;
+    }
+    return value | type * BankTeller.PARSED_DEPOSIT; // no branch on the type of the transaction
+  }
+
+  /**
+   * Converts the digits in the high bytes of a word to their value
+   * 
+   * @param word   the word, whose last bytes in memory, which are its highest bytes, are the
+   *               digits
+   * @param digits number of digits, from 1 to 8
+   * @return the value of the digits, or -1 if one of them is not a digit
+   */
+  private static long parseDigits(long word, int digits) {
+    // replaces the bytes before the digits with "0"s, which makes them leading zeros
+    long mask = -1L << ((Long.BYTES - digits) * Byte.SIZE);
+    word = (word & mask) | (ZEROS & ~mask);
+
+    // checks that every byte is a digit: its high nibble is 3, and stays 3 when 6 is added
+    if ((((word & HIGH_NIBBLES) | (((word + 0x0606060606060606L) & HIGH_NIBBLES) >>> 4))
+        != 0x3333333333333333L)) {
+      return -1;
+    }
+
+    // combines the eight digits pairwise into four numbers of two digits, then two of four
+    // digits, and finally one of eight digits
+    long value = word - ZEROS;
+    value = value * 10 + (value >>> 8);
+    return (((value & 0x000000FF000000FFL) * (100 + (1000000L << 32)))
+        + (((value >>> 16) & 0x000000FF000000FFL) * (1 + (10000L << 32)))) >>> 32;
+  }
+
+  /**
+   * Parses a line a byte at a time, checking it in the same order as BankTeller.parseTransaction()
+   * checks a String
+   * 
+   * @param words the buffer
+   * @param start index of the first byte of the line
+   * @param end   index after the last byte of the line, excluding its terminator
+   * @return the parsed value of the line, as described in getParsed()
+   */
+  private static long parseLineBytes(ByteBuffer words, int start, int end) {
+    // trims the line the same way String.trim() does
+    while (start < end && (words.get(start) & 0xFF) <= ' ') {
+      start++;
+    }
+    while (end > start && (words.get(end - 1) & 0xFF) <= ' ') {
+      end--;
+    }
+
+    // finds the start of the transaction amount, which follows the last space of the line, and
+    // of the word before it
+    int amountStart = start;
+    int wordStart = start;
+    for (int i = start; i < end; i++) {
+      byte b = words.get(i);
+      if (b < 0) {
+        return DECODE; // non-ASCII characters may be Unicode digits or line separators
+      }
+      if (b == ' ') {
+        wordStart = amountStart;
+        amountStart = i + 1;
+      }
+    }
+
+    // checks that the transaction amount consists of numbers only and parses it
+    long amount = 0;
+    for (int i = amountStart; i < end; i++) {
+      int digit = words.get(i) - '0';
+      if (digit < 0 || digit > 9) {
+        return INVALID_AMOUNT;
+      }
+      if (amount <= Integer.MAX_VALUE) {
+        amount = amount * 10 + digit; // stops growing once it is too large
+      }
+    }
+
+    // checks that there is an amount and that it fits into an int
+    if (start == end || amount > Integer.MAX_VALUE) {
+      return AMOUNT_OUT_OF_RANGE;
+    }
+
+    // checks whether the transaction is a withdrawal or deposit
+    byte type = words.get(start);
+    if (type == '1') {
+      amount |= BankTeller.PARSED_DEPOSIT;
+    } else if (type != '0') {
+      return INVALID_TYPE;
+    }
+
+    // flags the transaction ID like BankTeller.parseTransactionID() parses it: the word before the
+    // amount, if it starts with "#", followed by digits that fit into a long
+    int idEnd = amountStart - 1;
+    if (amountStart > start && wordStart < idEnd && words.get(wordStart) == '#') {
+      long id = 0;
+      boolean valid = wordStart + 1 < idEnd;
+      for (int i = wordStart + 1; i < idEnd && valid; i++) {
+        int digit = words.get(i) - '0';
+        valid = digit >= 0 && digit <= 9 && id <= Long.MAX_VALUE / 10;
+        id = id * 10 + digit;
+        valid &= id >= 0;
+      }
+      amount |= valid ? BankTeller.PARSED_ID : BankTeller.PARSED_INVALID_ID;
+    }
+    return amount;
+  }
+}
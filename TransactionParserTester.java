@@ -0,0 +1,209 @@
+/////////////////////////////////////////// FILE  HEADER /////////////////////////////////////////////
+//
+// Title: Exceptional Bank Teller
+// Files: BankAccount.java, BankAccountTester.java, BankTeller.java, BankTellerTester.java,
+//        BankTellerBenchmark.java, TransactionLog.java, TransactionLoadResult.java,
+//        ConcurrentTransactionLog.java, ConcurrentBankAccount.java,
+//        ConcurrentBankAccountTester.java, ConcurrentBankTeller.java,
+//        ConcurrentBankTellerTester.java, TransactionStatus.java, TransactionListener.java,
+//        TransactionJournal.java, TransactionJournalTester.java, TransactionSnapshot.java,
+//        ColdAccountStore.java, TieredAccountMap.java, TieredBankTeller.java,
+//        TieredBankTellerTester.java, TransactionBatch.java, TransactionBatchResult.java,
+//        TransactionRecord.java, TransactionEvent.java, TransactionPipeline.java,
+//        TransactionPipelineTester.java, LatencyHistogram.java, TellerMetrics.java,
+//        TellerMetricsTester.java, TransactionFile.java, TransactionFileTester.java,
+//        HighPrecisionBankAccount.java, HighPrecisionBankAccountTester.java, AccountIndex.java,
+//        AccountIndexTester.java, ReconciliationReport.java, ReconciliationTask.java,
+//        TransactionIDCache.java, TransactionIDCacheTester.java, ShardTransport.java,
+//        LocalShardTransport.java, SocketShardTransport.java, ShardServer.java,
+//        ShardedBankTeller.java, ShardedBankTellerTester.java, TransactionParser.java,
+//        TransactionParserTester.java, TellerServer.java, TellerClient.java,
+//        TellerLoadGenerator.java, TellerServerTester.java, TransactionClock.java,
+//        TransactionTimeIndex.java, TransactionHistory.java, TransactionHistoryTester.java,
+//        TellerWorkload.java, TellerReplay.java, TellerReplayResult.java, TellerReplayTester.java
+// This File: TransactionParserTester.java
+// 
+// Name: Benjamin Tarmann
+// Email: btarmann@wisc.edu
+//
+///////////////////////////////////////// 100 COLUMNS WIDE /////////////////////////////////////////
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * This class represents a tester for the TransactionParser class
+ * 
+ * @author Benjamin Tarmann
+ */
+public class TransactionParserTester {
+
+  /**
+   * Joins lines with the given terminators, parses them with a parser of the given capacity, and
+   * checks that every line is found and parsed as BankTeller.parseTransaction() parses it
+   * 
+   * @param lines       the lines, which are ASCII and have no line terminators
+   * @param terminators the terminator after each line; the last one may be empty
+   * @param capacity    number of lines the parser parses per call
+   * @return true if every line is parsed like parseTransaction() parses it
+   */
+  private static boolean parsesLikeParseTransaction(String[] lines, String[] terminators,
+      int capacity) {
+    StringBuilder text = new StringBuilder();
+    for (int i = 0; i < lines.length; i++) {
+      text.append(lines[i]).append(terminators[i]);
+    }
+    // starts the lines a few bytes into the buffer, as in a window of a larger file
+    byte[] bytes = ("xyz" + text).getBytes(StandardCharsets.US_ASCII);
+    ByteBuffer buffer = ByteBuffer.wrap(bytes);
+
+    TransactionParser parser = new TransactionParser(capacity);
+    int line = 0;
+    int position = 3;
+    while (position < bytes.length) {
+      int next = parser.parse(buffer, position, bytes.length, true);
+      for (int i = 0; i < parser.getLineCount(); i++, line++) {
+        String parsedLine = new String(bytes, parser.getLineStart(i),
+            parser.getLineEnd(i) - parser.getLineStart(i), StandardCharsets.US_ASCII);
+        if (!parsedLine.equals(lines[line])
+            || parser.getParsed(i) != BankTeller.parseTransaction(lines[line])) {
+          return false;
+        }
+      }
+      if (next == position) {
+        return false; // every line is complete at the end of the input
+      }
+      position = next;
+    }
+    return line == lines.length;
+  }
+
+  /**
+   * Checks whether lines of the usual form and lines at the edges of every rule are parsed as
+   * BankTeller.parseTransaction() parses them
+   * 
+   * @return true when this test verifies a correct functionality, and false otherwise.
+   */
+  public static boolean testTransactionParserEdgeCases() {
+    String[] lines = {"1 5", "0 10", "1 12345678", "0 00000000", "1 99999999", "1 123456789",
+        "1 2147483647", "1 2147483648", "1 00000000002147483647", "0 99999999999", "", " ", "1",
+        "15", "1 ", " 1 5 ", "\t1 5\u000B", "1  5", "1 5 6", "2 5", "x 5", "1 5x", "1 x5", "1 -5",
+        "1 +5", "10 5", "1\t5", "1 #5 10", "0 #0 10", "1 #5#6 10", "1 #5 #6 10", "1 # 10",
+        "1 #x 10", "1 #9223372036854775807 10", "1 #9223372036854775808 10", "1 10#", "# 10",
+        "1 abc#5 10", "1#5 10", "1 #5x 10", "1 #99999999999999999999 10", "1  #5 10", "1 #5  10",
+        "1 :", "1 /", "1 5:", "1 /5", "0 1234567/", "1 1234567:"};
+    String[] terminators = new String[lines.length];
+    for (int i = 0; i < lines.length; i++) {
+      terminators[i] = i % 3 == 0 ? "\r\n" : (i % 3 == 1 ? "\n" : "\r");
+    }
+    terminators[lines.length - 1] = "";
+    return parsesLikeParseTransaction(lines, terminators, 1)
+        && parsesLikeParseTransaction(lines, terminators, 1000);
+  }
+
+  /**
+   * Parses 100,000 random lines made of digits, spaces and a few other characters, with random
+   * line terminators, and checks that each is parsed as BankTeller.parseTransaction() parses it
+   * 
+   * @return true when this test verifies a correct functionality, and false otherwise.
+   */
+  public static boolean testTransactionParserRandomLines() {
+    Random random = new Random(22);
+    final String alphabet = "0123456789011 1 0 #x\t\u000B\u0000:/";
+    String[] lines = new String[100_000];
+    String[] terminators = new String[lines.length];
+    for (int i = 0; i < lines.length; i++) {
+      StringBuilder line = new StringBuilder();
+      if (random.nextBoolean()) {
+        // a line of the usual form, which is parsed in a single word
+        line.append(random.nextInt(3)).append(' ').append(random.nextInt(1 << random.nextInt(31)));
+      }
+      for (int length = random.nextInt(random.nextBoolean() ? 3 : 14); length > 0; length--) {
+        line.append(alphabet.charAt(random.nextInt(alphabet.length())));
+      }
+      lines[i] = line.toString();
+      terminators[i] = new String[] {"\n", "\r", "\r\n"}[random.nextInt(3)];
+
+      // "\r" before an empty line that ends with "\n" would make a single "\r\n" terminator
+      if (i > 0 && lines[i].isEmpty() && terminators[i].equals("\n")
+          && terminators[i - 1].equals("\r")) {
+        terminators[i - 1] = "\r\n";
+      }
+    }
+    return parsesLikeParseTransaction(lines, terminators, 777);
+  }
+
+  /**
+   * Checks whether a line that may go on after the end of the parsed range is left for the next
+   * call, and whether a line with bytes outside of ASCII is marked to be decoded
+   * 
+   * @return true when this test verifies a correct functionality, and false otherwise.
+   */
+  public static boolean testTransactionParserRangeEnd() {
+    byte[] bytes = "1 10\n0 20\r1 5".getBytes(StandardCharsets.US_ASCII);
+    ByteBuffer buffer = ByteBuffer.wrap(bytes);
+    TransactionParser parser = new TransactionParser(10);
+
+    // without the end of the input, the last line and a "\r" ending the range are incomplete
+    if (parser.parse(buffer, 0, bytes.length, false) != 10 || parser.getLineCount() != 2
+        || parser.getParsed(1) != 20 || parser.parse(buffer, 0, 10, false) != 5
+        || parser.getLineCount() != 1
+        || parser.getParsed(0) != (10 | BankTeller.PARSED_DEPOSIT)) {
+      return false;
+    }
+    if (parser.parse(buffer, 10, bytes.length, true) != bytes.length
+        || parser.getLineCount() != 1 || parser.getParsed(0) != (5 | BankTeller.PARSED_DEPOSIT)) {
+      return false;
+    }
+
+    // U+0661 is an Arabic-Indic digit, which only parseTransaction() can tell from a symbol
+    byte[] unicode = "1 5\n1 \u0661\n0 10\n".getBytes(StandardCharsets.UTF_8);
+    ArrayList<Long> parsed = new ArrayList<Long>();
+    parser.parse(ByteBuffer.wrap(unicode), 0, unicode.length, true);
+    for (int i = 0; i < parser.getLineCount(); i++) {
+      parsed.add(parser.getParsed(i));
+    }
+    return parsed.size() == 3 && parsed.get(1) == TransactionParser.DECODE
+        && parsed.get(2) == 10;
+  }
+
+  /**
+   * Checks whether the constructor rejects a capacity of no lines
+   * 
+   * @return true when this test verifies a correct functionality, and false otherwise.
+   */
+  public static boolean testTransactionParserInvalidCapacity() {
+    try {
+      new TransactionParser(0);
+      return false;
+    } catch (IllegalArgumentException e) {
+      return true; // expected: a parser must hold a line
+    }
+  }
+
+  /**
+   * Calls the test methods defined in this TransactionParserTester class
+   * 
+   * @param args
+   */
+  public static void main(String[] args) {
+    if (testTransactionParserEdgeCases() == false) {
+      System.out.println("testTransactionParserEdgeCases failed.");
+    }
+
+    if (testTransactionParserRandomLines() == false) {
+      System.out.println("testTransactionParserRandomLines failed.");
+    }
+
+    if (testTransactionParserRangeEnd() == false) {
+      System.out.println("testTransactionParserRangeEnd failed.");
+    }
+
+    if (testTransactionParserInvalidCapacity() == false) {
+      System.out.println("testTransactionParserInvalidCapacity failed.");
+    }
+  }
+
+}
@@ -0,0 +1,331 @@
+/////////////////////////////////////////// FILE  HEADER /////////////////////////////////////////////
+//
+// Title: Exceptional Bank Teller
+// Files: BankAccount.java, BankAccountTester.java, BankTeller.java, BankTellerTester.java,
+//        BankTellerBenchmark.java, TransactionLog.java, TransactionLoadResult.java,
+//        ConcurrentTransactionLog.java, ConcurrentBankAccount.java,
+//        ConcurrentBankAccountTester.java, ConcurrentBankTeller.java,
+//        ConcurrentBankTellerTester.java, TransactionStatus.java, TransactionListener.java,
+//        TransactionJournal.java, TransactionJournalTester.java, TransactionSnapshot.java,
+//        ColdAccountStore.java, TieredAccountMap.java, TieredBankTeller.java,
+//        TieredBankTellerTester.java, TransactionBatch.java, TransactionBatchResult.java,
+//        TransactionRecord.java, TransactionEvent.java, TransactionPipeline.java,
+//        TransactionPipelineTester.java, LatencyHistogram.java, TellerMetrics.java,
+//        TellerMetricsTester.java, TransactionFile.java, TransactionFileTester.java,
+//        HighPrecisionBankAccount.java, HighPrecisionBankAccountTester.java, AccountIndex.java,
+//        AccountIndexTester.java, ReconciliationReport.java, ReconciliationTask.java,
+//        TransactionIDCache.java, TransactionIDCacheTester.java, ShardTransport.java,
+//        LocalShardTransport.java, SocketShardTransport.java, ShardServer.java,
+//        ShardedBankTeller.java, ShardedBankTellerTester.java, TransactionParser.java,
+//        TransactionParserTester.java, TellerServer.java, TellerClient.java,
+//        TellerLoadGenerator.java, TellerServerTester.java, TransactionClock.java,
+//        TransactionTimeIndex.java, TransactionHistory.java, TransactionHistoryTester.java,
+//        TellerWorkload.java, TellerReplay.java, TellerReplayResult.java, TellerReplayTester.java
+// This File: TransactionPipeline.java
+// 
+// Name: Benjamin Tarmann
+// Email: btarmann@wisc.edu
+//
+///////////////////////////////////////// 100 COLUMNS WIDE /////////////////////////////////////////
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class models a streaming stage that applies the transaction records of a Flow.Publisher to
+ * the accounts of a BankTeller and publishes the outcome of every record as a TransactionEvent.
+ * 
+ * Records are spread over a fixed number of lanes by the hash of their account ID. Each lane
+ * applies its records one batch at a time with BankTeller.applyBatch(), in the order they arrived,
+ * so the records of an account are applied one after another in order while different lanes run
+ * at the same time on the executor. The records of one lane are never applied by two threads at
+ * once, so accounts that are only changed through the pipeline do not need to be thread-safe;
+ * accounts that are added or changed elsewhere at the same time need a ConcurrentBankTeller.
+ * 
+ * Buffers are bounded on both sides. The pipeline never requests more records from its publisher
+ * than bufferSize minus the records it has received but not applied yet, and each subscriber of
+ * the events has a buffer of bufferSize events. A lane waits while a subscriber's buffer is full,
+ * which stops the records it takes from being requested, so a slow subscriber slows down the
+ * publisher instead of filling memory. Events of one account reach a subscriber in the order of
+ * their records; events of different accounts may be interleaved in any order.
+ * 
+ * Subscribers should subscribe before the publisher starts sending records, since events are
+ * only delivered to the subscribers that already subscribed. The events are closed once the
+ * publisher completes and every record has been applied. If the publisher fails, the events are
+ * closed exceptionally with its error once the records received before it are applied; like
+ * SubmissionPublisher.closeExceptionally(), this may drop events a subscriber has not taken yet.
+ * 
+ * If applying a batch fails, for example because the journal of the BankTeller cannot be written,
+ * the pipeline stops applying records. The records of that batch whose events were not published
+ * yet, and every record received afterwards, are published with the FAILED status without being
+ * applied; the record that failed may have changed its account. The subscription to the publisher
+ * is cancelled, and the events are closed exceptionally with the failure once every received
+ * record has its event.
+ * 
+ * @author Benjamin Tarmann
+ */
+public class TransactionPipeline
+    implements Flow.Processor<TransactionRecord, TransactionEvent> {
+  private static final int MAX_BATCH = 256; // most records a lane applies in one batch
+
+  private final BankTeller teller;
+  private final Lane[] lanes;
+  private final int bufferSize;
+  private final Executor executor;
+  private final SubmissionPublisher<TransactionEvent> events;
+  private final AtomicLong pending; // records received but not applied yet
+  private final AtomicBoolean closed;
+  private volatile Flow.Subscription upstream;
+  private volatile boolean upstreamDone;
+  private volatile Throwable failure; // error of the publisher or of a lane, or null
+  private volatile boolean failed; // set once a lane failed, after which no record is applied
+
+  /**
+   * A lane of records whose account IDs hash to it. The records are applied by one task on the
+   * executor at a time, which is scheduled when records arrive and the lane is idle.
+   */
+  private class Lane implements Runnable {
+    private final ConcurrentLinkedQueue<TransactionRecord> queue;
+    private final AtomicBoolean scheduled;
+    private final TransactionBatch batch;
+    private final TransactionRecord[] records; // records of batch
+
+    /**
+     * Creates a new empty and idle lane
+     */
+    private Lane() {
+      queue = new ConcurrentLinkedQueue<TransactionRecord>();
+      scheduled = new AtomicBoolean();
+      batch = new TransactionBatch(MAX_BATCH);
+      records = new TransactionRecord[MAX_BATCH];
+    }
+
+    /**
+     * Adds a record to this lane and schedules the lane unless it is already scheduled
+     * 
+     * @param record the record to add
+     */
+    private void add(TransactionRecord record) {
+      queue.add(record);
+      if (scheduled.compareAndSet(false, true)) {
+        executor.execute(this);
+      }
+    }
+
+    /**
+     * Applies one batch of the records of this lane and publishes their events, then schedules the
+     * lane again if more records arrived, so that the lanes take turns on the executor. The lane is
+     * left idle even if applying the batch fails, so it is scheduled again for later records.
+     */
+    @Override
+    public void run() {
+      try {
+        applyNextBatch();
+      } finally {
+        // a record added after the queue was found empty scheduled nothing, so it is checked again
+        scheduled.set(false);
+        if (!queue.isEmpty() && scheduled.compareAndSet(false, true)) {
+          executor.execute(this);
+        }
+      }
+    }
+
+    /**
+     * Applies up to MAX_BATCH records of this lane and publishes their events. If applying them
+     * fails, or a lane failed before, the records whose events were not published are published
+     * as FAILED. Every taken record is counted as applied either way.
+     */
+    private void applyNextBatch() {
+      batch.clear();
+      int count = 0;
+      TransactionRecord record;
+      while (count < MAX_BATCH && (record = queue.poll()) != null) {
+        records[count++] = record;
+        batch.add(record.getAccountID(), record.isDeposit(), record.getAmount());
+      }
+      if (count == 0) {
+        return;
+      }
+
+      int published = 0;
+      try {
+        if (!failed) {
+          TransactionBatchResult result = teller.applyBatch(batch);
+          while (published < count) {
+            // waits while a subscriber's buffer is full
+            events.submit(new TransactionEvent(records[published], result.getStatus(published)));
+            published++;
+          }
+        }
+      } catch (RuntimeException | Error e) {
+        laneFailed(e);
+      } finally {
+        try {
+          for (; published < count; published++) {
+            events.submit(new TransactionEvent(records[published], TransactionStatus.FAILED));
+          }
+        } catch (IllegalStateException e) {
+          // the events were already closed, so there is no one left to report the records to
+        }
+        Arrays.fill(records, 0, count, null);
+        recordsApplied(count);
+      }
+    }
+  }
+
+  /**
+   * Creates a new pipeline that applies records to the accounts of teller
+   * 
+   * @param teller     the BankTeller whose accounts the records are applied to
+   * @param laneCount  number of lanes that apply records at the same time
+   * @param bufferSize most records received but not applied yet, and most events buffered for each
+   *                   subscriber
+   * @param executor   executor that runs the lanes, which waits while a subscriber's buffer is
+   *                   full, so it should not be the executor that delivers the events
+   *                   (ForkJoinPool.commonPool())
+   * @throws IllegalArgumentException if laneCount or bufferSize is less than 1
+   * @throws NullPointerException     if teller or executor is null
+   */
+  public TransactionPipeline(BankTeller teller, int laneCount, int bufferSize,
+      Executor executor) {
+    // checks that there is at least one lane and room for at least one record
+    if (laneCount < 1 || bufferSize < 1) {
+      throw new IllegalArgumentException("Lane count and buffer size must be at least 1.");
+    }
+    // checks that teller and executor are not null
+    if (teller == null || executor == null) {
+      throw new NullPointerException("Teller or executor is null.");
+    }
+
+    this.teller = teller;
+    this.bufferSize = bufferSize;
+    this.executor = executor;
+    lanes = new Lane[laneCount];
+    for (int i = 0; i < laneCount; i++) {
+      lanes[i] = new Lane();
+    }
+    events = new SubmissionPublisher<TransactionEvent>(
+        ForkJoinPool.commonPool(), bufferSize);
+    pending = new AtomicLong();
+    closed = new AtomicBoolean();
+  }
+
+  /**
+   * Subscribes to the publisher of the records. Only the first subscription is used; later ones
+   * are cancelled.
+   * 
+   * @param subscription the subscription to the publisher of the records
+   */
+  @Override
+  public void onSubscribe(Flow.Subscription subscription) {
+    if (upstream != null) {
+      subscription.cancel();
+      return;
+    }
+    upstream = subscription;
+    subscription.request(bufferSize);
+  }
+
+  /**
+   * Adds a record to the lane of its account
+   * 
+   * @param record the next record of the publisher
+   */
+  @Override
+  public void onNext(TransactionRecord record) {
+    pending.incrementAndGet();
+    int hash = record.getAccountID().hashCode();
+    lanes[Math.floorMod(hash ^ (hash >>> 16), lanes.length)].add(record);
+  }
+
+  /**
+   * Closes the events exceptionally with the error of the publisher once the records received
+   * before it are applied
+   * 
+   * @param throwable the error of the publisher
+   */
+  @Override
+  public void onError(Throwable throwable) {
+    if (failure == null) {
+      failure = throwable;
+    }
+    upstreamDone = true;
+    closeIfFinished();
+  }
+
+  /**
+   * Closes the events once every record of the publisher is applied
+   */
+  @Override
+  public void onComplete() {
+    upstreamDone = true;
+    closeIfFinished();
+  }
+
+  /**
+   * Subscribes to the events of the records applied from now on
+   * 
+   * @param subscriber the subscriber of the events
+   */
+  @Override
+  public void subscribe(Flow.Subscriber<? super TransactionEvent> subscriber) {
+    events.subscribe(subscriber);
+  }
+
+  /**
+   * Gets the number of records received from the publisher that were not applied yet
+   * 
+   * @return the number of pending records
+   */
+  public long getPendingCount() {
+    return pending.get();
+  }
+
+  /**
+   * Counts records as applied, and requests as many new records from the publisher
+   * 
+   * @param count number of records that were applied
+   */
+  private void recordsApplied(int count) {
+    pending.addAndGet(-count);
+    if (!upstreamDone) {
+      upstream.request(count);
+    }
+    closeIfFinished();
+  }
+
+  /**
+   * Stops applying records after a lane failed to apply a batch, and cancels the subscription to
+   * the publisher, so that the events are closed exceptionally once the received records are
+   * reported
+   * 
+   * @param throwable what the lane failed with
+   */
+  private void laneFailed(Throwable throwable) {
+    if (failure == null) {
+      failure = throwable;
+    }
+    failed = true;
+    upstreamDone = true;
+    upstream.cancel();
+  }
+
+  /**
+   * Closes the events if the publisher is done and every record it sent is applied
+   */
+  private void closeIfFinished() {
+    if (upstreamDone && pending.get() == 0 && closed.compareAndSet(false, true)) {
+      if (failure != null) {
+        events.closeExceptionally(failure);
+      } else {
+        events.close();
+      }
+    }
+  }
+}
@@ -0,0 +1,423 @@
+/////////////////////////////////////////// FILE  HEADER /////////////////////////////////////////////
+//
+// Title: Exceptional Bank Teller
+// Files: BankAccount.java, BankAccountTester.java, BankTeller.java, BankTellerTester.java,
+//        BankTellerBenchmark.java, TransactionLog.java, TransactionLoadResult.java,
+//        ConcurrentTransactionLog.java, ConcurrentBankAccount.java,
+//        ConcurrentBankAccountTester.java, ConcurrentBankTeller.java,
+//        ConcurrentBankTellerTester.java, TransactionStatus.java, TransactionListener.java,
+//        TransactionJournal.java, TransactionJournalTester.java, TransactionSnapshot.java,
+//        ColdAccountStore.java, TieredAccountMap.java, TieredBankTeller.java,
+//        TieredBankTellerTester.java, TransactionBatch.java, TransactionBatchResult.java,
+//        TransactionRecord.java, TransactionEvent.java, TransactionPipeline.java,
+//        TransactionPipelineTester.java, LatencyHistogram.java, TellerMetrics.java,
+//        TellerMetricsTester.java, TransactionFile.java, TransactionFileTester.java,
+//        HighPrecisionBankAccount.java, HighPrecisionBankAccountTester.java, AccountIndex.java,
+//        AccountIndexTester.java, ReconciliationReport.java, ReconciliationTask.java,
+//        TransactionIDCache.java, TransactionIDCacheTester.java, ShardTransport.java,
+//        LocalShardTransport.java, SocketShardTransport.java, ShardServer.java,
+//        ShardedBankTeller.java, ShardedBankTellerTester.java, TransactionParser.java,
+//        TransactionParserTester.java, TellerServer.java, TellerClient.java,
+//        TellerLoadGenerator.java, TellerServerTester.java, TransactionClock.java,
+//        TransactionTimeIndex.java, TransactionHistory.java, TransactionHistoryTester.java,
+//        TellerWorkload.java, TellerReplay.java, TellerReplayResult.java, TellerReplayTester.java
+// This File: TransactionPipelineTester.java
+// 
+// Name: Benjamin Tarmann
+// Email: btarmann@wisc.edu
+//
+///////////////////////////////////////// 100 COLUMNS WIDE /////////////////////////////////////////
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class is a tester for the TransactionPipeline class, which applies a stream of transaction
+ * records to the accounts of a BankTeller
+ * 
+ * @author Benjamin Tarmann
+ */
+public class TransactionPipelineTester {
+
+  /**
+   * A subscriber that collects the events of a pipeline. It requests every event at once unless it
+   * is created paused, in which case it requests none until resume() is called.
+   */
+  private static class EventCollector implements Flow.Subscriber<TransactionEvent> {
+    private final List<TransactionEvent> events = new ArrayList<TransactionEvent>();
+    private final CountDownLatch done = new CountDownLatch(1);
+    private final boolean paused;
+    private volatile Flow.Subscription subscription;
+    private volatile Throwable error;
+
+    /**
+     * Creates a new collector
+     * 
+     * @param paused true to request no events until resume() is called
+     */
+    private EventCollector(boolean paused) {
+      this.paused = paused;
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+      this.subscription = subscription;
+      if (!paused) {
+        subscription.request(Long.MAX_VALUE);
+      }
+    }
+
+    @Override
+    public void onNext(TransactionEvent event) {
+      synchronized (events) {
+        events.add(event);
+      }
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+      error = throwable;
+      done.countDown();
+    }
+
+    @Override
+    public void onComplete() {
+      done.countDown();
+    }
+
+    /**
+     * Requests every event after the collector was created paused
+     */
+    private void resume() {
+      subscription.request(Long.MAX_VALUE);
+    }
+
+    /**
+     * Waits until the events are closed
+     * 
+     * @return true if the events were closed within ten seconds, false otherwise
+     * @throws InterruptedException if the waiting thread is interrupted
+     */
+    private boolean await() throws InterruptedException {
+      return done.await(10, TimeUnit.SECONDS);
+    }
+  }
+
+  /**
+   * Creates random deposits and withdrawals for the given number of accounts, including
+   * withdrawals that are larger than the balance, amounts that are not multiples of 10 and
+   * records of an account that does not exist
+   * 
+   * @param count    number of records to create
+   * @param accounts number of accounts, with the IDs "ACC0", "ACC1" and so on
+   * @return the records
+   */
+  private static TransactionRecord[] createRecords(int count, int accounts) {
+    Random random = new Random(7);
+    TransactionRecord[] records = new TransactionRecord[count];
+    for (int i = 0; i < count; i++) {
+      String id = "ACC" + random.nextInt(accounts + 1); // "ACC" + accounts does not exist
+      boolean deposit = random.nextBoolean();
+      int amount = deposit ? random.nextInt(50) : 5 * random.nextInt(20);
+      records[i] = new TransactionRecord(id, deposit, amount);
+    }
+    return records;
+  }
+
+  /**
+   * Checks whether a pipeline applies every record of a publisher with the same status and in the
+   * same order per account as applying the records one at a time, and publishes one event per
+   * record before completing.
+   * 
+   * @return true when this test verifies a correct functionality, and false otherwise.
+   */
+  public static boolean testTransactionPipelineOrder() {
+    final int accounts = 16;
+    TransactionRecord[] records = createRecords(20_000, accounts);
+    BankTeller expectedTeller = new BankTeller();
+    ConcurrentBankTeller testTeller = new ConcurrentBankTeller();
+    for (int i = 0; i < accounts; i++) {
+      expectedTeller.addBankAccount(new BankAccount("ACC" + i, 100));
+      testTeller.addBankAccount(new BankAccount("ACC" + i, 100));
+    }
+
+    // applies the records one at a time to find their expected statuses
+    TransactionBatch batch = new TransactionBatch();
+    for (TransactionRecord record : records) {
+      batch.add(record.getAccountID(), record.isDeposit(), record.getAmount());
+    }
+    TransactionBatchResult expected = expectedTeller.applyBatch(batch);
+    HashMap<TransactionRecord, Integer> indices = new HashMap<TransactionRecord, Integer>();
+    for (int i = 0; i < records.length; i++) {
+      indices.put(records[i], i);
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      TransactionPipeline pipeline = new TransactionPipeline(testTeller, 4, 64, executor);
+      EventCollector collector = new EventCollector(false);
+      pipeline.subscribe(collector);
+      SubmissionPublisher<TransactionRecord> publisher =
+          new SubmissionPublisher<TransactionRecord>();
+      publisher.subscribe(pipeline);
+      for (TransactionRecord record : records) {
+        publisher.submit(record);
+      }
+      publisher.close();
+      if (!collector.await() || collector.error != null
+          || collector.events.size() != records.length) {
+        return false;
+      }
+
+      // checks the status of every record and the order of the records of every account
+      HashMap<String, Integer> lastIndex = new HashMap<String, Integer>();
+      for (TransactionEvent event : collector.events) {
+        int index = indices.get(event.getRecord());
+        Integer last = lastIndex.put(event.getRecord().getAccountID(), index);
+        if (event.getStatus() != expected.getStatus(index) || (last != null && last > index)) {
+          return false;
+        }
+      }
+      for (int i = 0; i < accounts; i++) {
+        if (testTeller.findAccount("ACC" + i).getBalance()
+            != expectedTeller.findAccount("ACC" + i).getBalance()) {
+          return false;
+        }
+      }
+      return pipeline.getPendingCount() == 0;
+    } catch (InterruptedException e) {
+      return false;
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  /**
+   * Checks whether a pipeline whose subscriber requests no events stops requesting records from
+   * its publisher once its buffers are full, and applies the remaining records once the
+   * subscriber requests events again.
+   * 
+   * @return true when this test verifies a correct functionality, and false otherwise.
+   */
+  public static boolean testTransactionPipelineBackpressure() {
+    final int bufferSize = 16;
+    final int laneCount = 2;
+    final int count = 10_000;
+    BankTeller testTeller = new BankTeller();
+    testTeller.addBankAccount(new BankAccount("ACC0", 10));
+    testTeller.addBankAccount(new BankAccount("ACC1", 10));
+    AtomicLong requested = new AtomicLong();
+    AtomicLong sent = new AtomicLong();
+
+    // a publisher that sends records only as they are requested, on the requesting thread
+    Flow.Publisher<TransactionRecord> publisher = subscriber -> {
+      subscriber.onSubscribe(new Flow.Subscription() {
+        private boolean sending;
+
+        @Override
+        public synchronized void request(long n) {
+          requested.addAndGet(n);
+          if (sending) {
+            return; // the records are sent by the outer call
+          }
+          sending = true;
+          while (sent.get() < Math.min(requested.get(), count)) {
+            long index = sent.getAndIncrement();
+            subscriber.onNext(new TransactionRecord("ACC" + (index % 2), true, 1));
+          }
+          if (sent.get() == count) {
+            subscriber.onComplete();
+          }
+          sending = false;
+        }
+
+        @Override
+        public void cancel() {
+          // nothing to release
+        }
+      });
+    };
+
+    ExecutorService executor = Executors.newFixedThreadPool(laneCount);
+    try {
+      TransactionPipeline pipeline =
+          new TransactionPipeline(testTeller, laneCount, bufferSize, executor);
+      EventCollector collector = new EventCollector(true);
+      pipeline.subscribe(collector);
+      publisher.subscribe(pipeline);
+
+      // the records in flight are bounded by the input buffer, the event buffer and one blocked
+      // batch per lane
+      Thread.sleep(200);
+      if (requested.get() > 2 * bufferSize + laneCount * bufferSize || sent.get() >= count) {
+        return false;
+      }
+
+      collector.resume();
+      return collector.await() && collector.error == null && collector.events.size() == count
+          && testTeller.findAccount("ACC0").getBalance() == 10 + count / 2;
+    } catch (InterruptedException e) {
+      return false;
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  /**
+   * Checks whether a pipeline passes the error of its publisher on to its subscribers after the
+   * records received before the error are applied. A SubmissionPublisher may drop the records it
+   * still buffers when it is closed exceptionally, so only the records that reached the pipeline
+   * are applied.
+   * 
+   * @return true when this test verifies a correct functionality, and false otherwise.
+   */
+  public static boolean testTransactionPipelineError() {
+    BankTeller testTeller = new BankTeller();
+    testTeller.addBankAccount(new BankAccount("ACC0", 10));
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      TransactionPipeline pipeline = new TransactionPipeline(testTeller, 1, 8, executor);
+      EventCollector collector = new EventCollector(false);
+      pipeline.subscribe(collector);
+      SubmissionPublisher<TransactionRecord> publisher =
+          new SubmissionPublisher<TransactionRecord>();
+      publisher.subscribe(pipeline);
+      for (int i = 0; i < 100; i++) {
+        publisher.submit(new TransactionRecord("ACC0", true, 1));
+      }
+      IllegalStateException failure = new IllegalStateException("Feed failed.");
+      publisher.closeExceptionally(failure);
+
+      if (!collector.await()) {
+        return false;
+      }
+      long applied = testTeller.findAccount("ACC0").getBalance() - 10;
+      return collector.error == failure && applied <= 100 && collector.events.size() <= applied
+          && pipeline.getPendingCount() == 0;
+    } catch (InterruptedException e) {
+      return false;
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  /**
+   * Checks whether a pipeline whose BankTeller fails while applying a record, as a journal that
+   * cannot be written does, stops applying records, reports the records it did not apply as
+   * FAILED, and closes its events exceptionally with the failure instead of leaving its
+   * subscribers waiting. Also checks that a pipeline whose lanes are scheduled again after the
+   * failure takes every remaining record.
+   * 
+   * @return true when this test verifies a correct functionality, and false otherwise.
+   */
+  public static boolean testTransactionPipelineLaneFailure() {
+    BankTeller testTeller = new BankTeller();
+    BankAccount account = new BankAccount("ACC0", 10);
+    testTeller.addBankAccount(account);
+    UncheckedIOException failure =
+        new UncheckedIOException("Journal failed.", new IOException("Disk full."));
+    AtomicLong told = new AtomicLong();
+    account.setTransactionListener((changed, deposit, amount) -> {
+      if (told.incrementAndGet() == 6) {
+        throw failure; // thrown after the sixth deposit changed the balance
+      }
+    });
+
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      TransactionPipeline pipeline = new TransactionPipeline(testTeller, 2, 1_000, executor);
+      EventCollector collector = new EventCollector(false);
+      pipeline.subscribe(collector);
+      SubmissionPublisher<TransactionRecord> publisher =
+          new SubmissionPublisher<TransactionRecord>();
+      publisher.subscribe(pipeline);
+      for (int i = 0; i < 100; i++) {
+        publisher.submit(new TransactionRecord("ACC0", true, 1));
+      }
+      publisher.close();
+
+      if (!collector.await() || collector.error != failure || pipeline.getPendingCount() != 0
+          || account.getBalance() != 16) {
+        return false;
+      }
+      int appliedEvents = 0;
+      synchronized (collector.events) {
+        for (TransactionEvent event : collector.events) {
+          if (event.getStatus() == TransactionStatus.APPLIED) {
+            appliedEvents++;
+          } else if (event.getStatus() != TransactionStatus.FAILED) {
+            return false;
+          }
+        }
+      }
+      return appliedEvents <= 5;
+    } catch (InterruptedException e) {
+      return false;
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  /**
+   * Checks whether the constructor rejects pipelines without lanes or buffer space
+   * 
+   * @return true when this test verifies a correct functionality, and false otherwise.
+   */
+  public static boolean testTransactionPipelineConstructor() {
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      new TransactionPipeline(new BankTeller(), 0, 8, executor);
+      return false;
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+    try {
+      new TransactionPipeline(new BankTeller(), 1, 0, executor);
+      return false;
+    } catch (IllegalArgumentException e) {
+      // expected
+    } finally {
+      executor.shutdown();
+    }
+    return true;
+  }
+
+  /**
+   * Calls the test methods defined in this TransactionPipelineTester class
+   * 
+   * @param args
+   */
+  public static void main(String[] args) {
+    if (testTransactionPipelineLaneFailure() == false) {
+      System.out.println("testTransactionPipelineLaneFailure failed.");
+    }
+
+    if (testTransactionPipelineConstructor() == false) {
+      System.out.println("testTransactionPipelineConstructor failed.");
+    }
+
+    if (testTransactionPipelineOrder() == false) {
+      System.out.println("testTransactionPipelineOrder failed.");
+    }
+
+    if (testTransactionPipelineBackpressure() == false) {
+      System.out.println("testTransactionPipelineBackpressure failed.");
+    }
+
+    if (testTransactionPipelineError() == false) {
+      System.out.println("testTransactionPipelineError failed.");
+    }
+  }
+
+}
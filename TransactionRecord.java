@@ -0,0 +1,100 @@
+/////////////////////////////////////////// FILE  HEADER /////////////////////////////////////////////
+//
+// Title: Exceptional Bank Teller
+// Files: BankAccount.java, BankAccountTester.java, BankTeller.java, BankTellerTester.java,
+//        BankTellerBenchmark.java, TransactionLog.java, TransactionLoadResult.java,
+//        ConcurrentTransactionLog.java, ConcurrentBankAccount.java,
+//        ConcurrentBankAccountTester.java, ConcurrentBankTeller.java,
+//        ConcurrentBankTellerTester.java, TransactionStatus.java, TransactionListener.java,
+//        TransactionJournal.java, TransactionJournalTester.java, TransactionSnapshot.java,
+//        ColdAccountStore.java, TieredAccountMap.java, TieredBankTeller.java,
+//        TieredBankTellerTester.java, TransactionBatch.java, TransactionBatchResult.java,
+//        TransactionRecord.java, TransactionEvent.java, TransactionPipeline.java,
+//        TransactionPipelineTester.java, LatencyHistogram.java, TellerMetrics.java,
+//        TellerMetricsTester.java, TransactionFile.java, TransactionFileTester.java,
+//        HighPrecisionBankAccount.java, HighPrecisionBankAccountTester.java, AccountIndex.java,
+//        AccountIndexTester.java, ReconciliationReport.java, ReconciliationTask.java,
+//        TransactionIDCache.java, TransactionIDCacheTester.java, ShardTransport.java,
+//        LocalShardTransport.java, SocketShardTransport.java, ShardServer.java,
+//        ShardedBankTeller.java, ShardedBankTellerTester.java, TransactionParser.java,
+//        TransactionParserTester.java, TellerServer.java, TellerClient.java,
+//        TellerLoadGenerator.java, TellerServerTester.java, TransactionClock.java,
+//        TransactionTimeIndex.java, TransactionHistory.java, TransactionHistoryTester.java,
+//        TellerWorkload.java, TellerReplay.java, TellerReplayResult.java, TellerReplayTester.java
+// This File: TransactionRecord.java
+// 
+// Name: Benjamin Tarmann
+// Email: btarmann@wisc.edu
+//
+///////////////////////////////////////// 100 COLUMNS WIDE /////////////////////////////////////////
+
+/**
+ * This class models one transaction of a stream of transactions for a TransactionPipeline: the ID
+ * of the account it is applied to, whether it is a deposit or a withdrawal, and its amount.
+ * Records are immutable, so they can be handed from thread to thread without copying.
+ * 
+ * @author Benjamin Tarmann
+ */
+public final class TransactionRecord {
+  private final String accountID;
+  private final boolean deposit;
+  private final int amount;
+
+  /**
+   * Creates a new transaction record. The amount is checked when the record is applied, the same
+   * way BankAccount.tryDeposit() and BankAccount.tryWithdraw() check it.
+   * 
+   * @param accountID ID of the account the transaction is applied to
+   * @param deposit   true for a deposit, false for a withdrawal
+   * @param amount    the transaction amount
+   * @throws NullPointerException if accountID is null
+   */
+  public TransactionRecord(String accountID, boolean deposit, int amount) {
+    // checks that accountID is not null
+    if (accountID == null) {
+      throw new NullPointerException("Account ID is null.");
+    }
+
+    this.accountID = accountID;
+    this.deposit = deposit;
+    this.amount = amount;
+  }
+
+  /**
+   * Gets the ID of the account this transaction is applied to
+   * 
+   * @return the account ID
+   */
+  public String getAccountID() {
+    return accountID;
+  }
+
+  /**
+   * Checks whether this transaction is a deposit
+   * 
+   * @return true for a deposit, false for a withdrawal
+   */
+  public boolean isDeposit() {
+    return deposit;
+  }
+
+  /**
+   * Gets the amount of this transaction
+   * 
+   * @return the transaction amount
+   */
+  public int getAmount() {
+    return amount;
+  }
+
+  /**
+   * Returns the account ID followed by the transaction in the format of a transaction line, for
+   * example "0001 1 20" for a deposit of 20 to the account "0001"
+   * 
+   * @return a string representation of this record
+   */
+  @Override
+  public String toString() {
+    return accountID + " " + TransactionLog.render(deposit, amount);
+  }
+}
@@ -0,0 +1,286 @@
+/////////////////////////////////////////// FILE  HEADER /////////////////////////////////////////////
+//
+// Title: Exceptional Bank Teller
+// Files: BankAccount.java, BankAccountTester.java, BankTeller.java, BankTellerTester.java,
+//        BankTellerBenchmark.java, TransactionLog.java, TransactionLoadResult.java,
+//        ConcurrentTransactionLog.java, ConcurrentBankAccount.java,
+//        ConcurrentBankAccountTester.java, ConcurrentBankTeller.java,
+//        ConcurrentBankTellerTester.java, TransactionStatus.java, TransactionListener.java,
+//        TransactionJournal.java, TransactionJournalTester.java, TransactionSnapshot.java,
+//        ColdAccountStore.java, TieredAccountMap.java, TieredBankTeller.java,
+//        TieredBankTellerTester.java, TransactionBatch.java, TransactionBatchResult.java,
+//        TransactionRecord.java, TransactionEvent.java, TransactionPipeline.java,
+//        TransactionPipelineTester.java, LatencyHistogram.java, TellerMetrics.java,
+//        TellerMetricsTester.java, TransactionFile.java, TransactionFileTester.java,
+//        HighPrecisionBankAccount.java, HighPrecisionBankAccountTester.java, AccountIndex.java,
+//        AccountIndexTester.java, ReconciliationReport.java, ReconciliationTask.java,
+//        TransactionIDCache.java, TransactionIDCacheTester.java, ShardTransport.java,
+//        LocalShardTransport.java, SocketShardTransport.java, ShardServer.java,
+//        ShardedBankTeller.java, ShardedBankTellerTester.java, TransactionParser.java,
+//        TransactionParserTester.java, TellerServer.java, TellerClient.java,
+//        TellerLoadGenerator.java, TellerServerTester.java, TransactionClock.java,
+//        TransactionTimeIndex.java, TransactionHistory.java, TransactionHistoryTester.java,
+//        TellerWorkload.java, TellerReplay.java, TellerReplayResult.java, TellerReplayTester.java
+// This File: TransactionSnapshot.java
+// 
+// Name: Benjamin Tarmann
+// Email: btarmann@wisc.edu
+//
+///////////////////////////////////////// 100 COLUMNS WIDE /////////////////////////////////////////
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * This class reads and writes snapshots of the accounts of a BankTeller. A snapshot keeps, for
+ * every account, its ID, its balance, its number of transactions and its last five transactions,
+ * which is everything getMostRecentTransactions() needs, so loading it takes time proportional to
+ * the number of accounts and not to the length of their history.
+ * 
+ * A snapshot file starts with a magic number, the journal generation the snapshot was taken at and
+ * the number of accounts, followed by the accounts and a CRC-32 checksum of everything before it.
+ * Each account is made of its kind (1 byte), the length of its ID (2 bytes), the ID in UTF-8, its
+ * balance (8 bytes), number of transactions and window of recent transactions (4 bytes each), the
+ * number of transactions kept (1 byte) and for each kept transaction a deposit flag (1 byte), its
+ * amount (4 bytes) and its time (8 bytes). Snapshots written before transactions had times have
+ * no time fields, and their transactions are restored with a time of 0. Snapshots written before
+ * balances were longs also have a balance of 4 bytes, and snapshots written before accounts had a
+ * window also have no window field. Each of these versions starts with an older magic number.
+ * 
+ * A HighPrecisionBankAccount has its own kind, whose balance field is replaced by the scale of its
+ * exact balance (4 bytes), the length of the unscaled value (2 bytes) and the unscaled value as a
+ * big-endian two's-complement number, so a balance larger than any long is kept exactly.
+ * 
+ * Snapshots are taken by TransactionJournal, which also decides which journal records a snapshot
+ * already includes.
+ * 
+ * @author Benjamin Tarmann
+ */
+public class TransactionSnapshot {
+  private static final int MAGIC = 0x534E5034; // "SNP4"
+  private static final int MAGIC_WITHOUT_TIMES = 0x534E5033; // "SNP3"
+  private static final int MAGIC_INT_BALANCE = 0x534E5032; // "SNP2"
+  private static final int MAGIC_WITHOUT_WINDOW = 0x534E4150; // "SNAP"
+  private static final byte ACCOUNT = 1;
+  private static final byte CONCURRENT_ACCOUNT = 2;
+  private static final byte HIGH_PRECISION_ACCOUNT = 3;
+  private static final int KEPT_TRANSACTIONS = 5; // transactions getMostRecentTransactions() shows
+  static final int MAX_ID_LENGTH = 0xFFFF; // largest length that fits into 2 bytes
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  /**
+   * Reads a snapshot file and adds the accounts it holds to a BankTeller. The accounts are restored
+   * with their balance, their number of transactions and their last five transactions; their older
+   * transactions are not kept.
+   * 
+   * @param file   the snapshot file, which may not exist
+   * @param teller the BankTeller the accounts are added to
+   * @return the journal generation the snapshot was taken at, or 0 if the file does not exist
+   * @throws IOException if the file cannot be read or is damaged, or if an account cannot be added
+   */
+  static int read(File file, BankTeller teller) throws IOException {
+    if (!file.exists()) {
+      return 0;
+    }
+
+    try (CheckedInputStream checked = new CheckedInputStream(
+        new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE), new CRC32());
+        DataInputStream input = new DataInputStream(checked)) {
+      // checks that the file is a snapshot
+      int magic = input.readInt();
+      if (magic != MAGIC && magic != MAGIC_WITHOUT_TIMES && magic != MAGIC_INT_BALANCE
+          && magic != MAGIC_WITHOUT_WINDOW) {
+        throw new IOException("File " + file + " is not a snapshot.");
+      }
+      int generation = input.readInt();
+      int accountCount = input.readInt();
+
+      byte[] id = new byte[MAX_ID_LENGTH];
+      for (int i = 0; i < accountCount; i++) {
+        BankAccount account = readAccount(input, magic, id);
+        if (account == null) {
+          throw new IOException("Snapshot " + file + " is damaged.");
+        }
+        try {
+          teller.addBankAccount(account);
+        } catch (IllegalStateException e) {
+          throw new IOException(
+              "Snapshot " + file + " holds account " + account.getID() + " twice.", e);
+        }
+      }
+
+      // checks the checksum of everything read so far
+      int expectedChecksum = (int) checked.getChecksum().getValue();
+      if (input.readInt() != expectedChecksum) {
+        throw new IOException("Snapshot " + file + " is damaged.");
+      }
+      return generation;
+    } catch (EOFException e) {
+      throw new IOException("Snapshot " + file + " is incomplete.", e);
+    }
+  }
+
+  /**
+   * Writes a snapshot of accounts. The snapshot is written to a temporary file, synced to disk and
+   * then renamed over the snapshot file, so the snapshot file always holds a complete snapshot even
+   * if the machine crashes while a new one is written.
+   * 
+   * @param file       the snapshot file, which is replaced if it exists
+   * @param generation the journal generation the snapshot is taken at
+   * @param accounts   the accounts to write, which are not changed while they are written
+   * @throws IOException              if the snapshot cannot be written
+   * @throws IllegalArgumentException if an account ID is longer than MAX_ID_LENGTH bytes
+   */
+  static void write(File file, int generation, Collection<BankAccount> accounts)
+      throws IOException {
+    File temporary = new File(file.getPath() + ".tmp");
+    FileOutputStream fileOutput = new FileOutputStream(temporary);
+    try (CheckedOutputStream checked = new CheckedOutputStream(
+        new BufferedOutputStream(fileOutput, BUFFER_SIZE), new CRC32());
+        DataOutputStream output = new DataOutputStream(checked)) {
+      output.writeInt(MAGIC);
+      output.writeInt(generation);
+      output.writeInt(accounts.size());
+
+      for (BankAccount account : accounts) {
+        writeAccount(output, account);
+      }
+
+      output.writeInt((int) checked.getChecksum().getValue());
+      output.flush();
+      fileOutput.getFD().sync();
+    }
+
+    Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE,
+        StandardCopyOption.REPLACE_EXISTING);
+  }
+
+  /**
+   * Reads one account written by writeAccount(), or by an older version of it
+   * 
+   * @param input the stream the account is read from
+   * @param magic the magic number of the snapshot, which tells the version of the account
+   * @param id    buffer of MAX_ID_LENGTH bytes the account ID is read into
+   * @return the restored account with its last transactions, or null if the account is damaged
+   * @throws IOException if the account cannot be read
+   */
+  static BankAccount readAccount(DataInputStream input, int magic, byte[] id) throws IOException {
+    byte kind = input.readByte();
+    int idLength = input.readUnsignedShort();
+    input.readFully(id, 0, idLength);
+    String accountID = new String(id, 0, idLength, StandardCharsets.UTF_8);
+    long balance = 0;
+    BigDecimal exactBalance = null;
+    if (kind == HIGH_PRECISION_ACCOUNT) {
+      int scale = input.readInt();
+      byte[] unscaled = new byte[input.readUnsignedShort()];
+      input.readFully(unscaled);
+      if (unscaled.length > 0) {
+        exactBalance = new BigDecimal(new BigInteger(unscaled), scale);
+      }
+    } else {
+      balance = magic == MAGIC || magic == MAGIC_WITHOUT_TIMES ? input.readLong() : input.readInt();
+    }
+    int transactionsCount = input.readInt();
+    int window = magic != MAGIC_WITHOUT_WINDOW ? input.readInt() : 0;
+    int kept = input.readUnsignedByte();
+
+    // checks that the account is one this version can restore
+    if ((kind != ACCOUNT && kind != CONCURRENT_ACCOUNT && kind != HIGH_PRECISION_ACCOUNT)
+        || (kind == HIGH_PRECISION_ACCOUNT && exactBalance == null) || kept > KEPT_TRANSACTIONS
+        || kept > transactionsCount || window < 0) {
+      return null;
+    }
+
+    int firstTransaction = transactionsCount - kept;
+    BankAccount account;
+    if (kind == ACCOUNT) {
+      account = new BankAccount(accountID, balance, firstTransaction, window);
+    } else if (kind == CONCURRENT_ACCOUNT) {
+      account = new ConcurrentBankAccount(accountID, balance, firstTransaction, window);
+    } else {
+      account = new HighPrecisionBankAccount(accountID, exactBalance, firstTransaction, window);
+    }
+    for (int k = 0; k < kept; k++) {
+      boolean deposit = input.readBoolean();
+      int amount = input.readInt();
+      account.restoreTransaction(deposit, amount, magic == MAGIC ? input.readLong() : 0);
+    }
+    return account;
+  }
+
+  /**
+   * Reads one account written by writeAccount() in the current version
+   * 
+   * @param input the stream the account is read from
+   * @param id    buffer of MAX_ID_LENGTH bytes the account ID is read into
+   * @return the restored account with its last transactions, or null if the account is damaged
+   * @throws IOException if the account cannot be read
+   */
+  static BankAccount readAccount(DataInputStream input, byte[] id) throws IOException {
+    return readAccount(input, MAGIC, id);
+  }
+
+  /**
+   * Writes the ID, balance, number of transactions, window and last five transactions of an
+   * account with their times, in the layout described in the class comment
+   * 
+   * @param output  the stream the account is written to
+   * @param account the account, which is not changed while it is written
+   * @throws IOException              if the account cannot be written
+   * @throws IllegalArgumentException if the account ID is longer than MAX_ID_LENGTH bytes
+   */
+  static void writeAccount(DataOutputStream output, BankAccount account) throws IOException {
+    byte[] id = account.getID().getBytes(StandardCharsets.UTF_8);
+    if (id.length > MAX_ID_LENGTH) {
+      throw new IllegalArgumentException("Account ID is too long to be written to a snapshot.");
+    }
+    int transactionsCount = account.getTransactionsCount();
+    int window = account.getRecentWindow();
+    int kept = Math.min(transactionsCount, KEPT_TRANSACTIONS);
+    if (window > 0) {
+      kept = Math.min(kept, window);
+    }
+
+    if (account instanceof HighPrecisionBankAccount) {
+      // the exact balance may not fit into a long, so it is written as its unscaled value
+      BigDecimal exactBalance = account.getExactBalance();
+      byte[] unscaled = exactBalance.unscaledValue().toByteArray();
+      output.writeByte(HIGH_PRECISION_ACCOUNT);
+      output.writeShort(id.length);
+      output.write(id);
+      output.writeInt(exactBalance.scale());
+      output.writeShort(unscaled.length);
+      output.write(unscaled);
+    } else {
+      output.writeByte(account instanceof ConcurrentBankAccount ? CONCURRENT_ACCOUNT : ACCOUNT);
+      output.writeShort(id.length);
+      output.write(id);
+      output.writeLong(account.getBalance());
+    }
+    output.writeInt(transactionsCount);
+    output.writeInt(window);
+    output.writeByte(kept);
+    for (int index = transactionsCount - kept; index < transactionsCount; index++) {
+      output.writeBoolean(account.isDepositTransaction(index));
+      output.writeInt(account.getTransactionAmount(index));
+      output.writeLong(account.getTransactionTime(index));
+    }
+  }
+}
@@ -0,0 +1,85 @@
+/////////////////////////////////////////// FILE  HEADER /////////////////////////////////////////////
+//
+// Title: Exceptional Bank Teller
+// Files: BankAccount.java, BankAccountTester.java, BankTeller.java, BankTellerTester.java,
+//        BankTellerBenchmark.java, TransactionLog.java, TransactionLoadResult.java,
+//        ConcurrentTransactionLog.java, ConcurrentBankAccount.java,
+//        ConcurrentBankAccountTester.java, ConcurrentBankTeller.java,
+//        ConcurrentBankTellerTester.java, TransactionStatus.java, TransactionListener.java,
+//        TransactionJournal.java, TransactionJournalTester.java, TransactionSnapshot.java,
+//        ColdAccountStore.java, TieredAccountMap.java, TieredBankTeller.java,
+//        TieredBankTellerTester.java, TransactionBatch.java, TransactionBatchResult.java,
+//        TransactionRecord.java, TransactionEvent.java, TransactionPipeline.java,
+//        TransactionPipelineTester.java, LatencyHistogram.java, TellerMetrics.java,
+//        TellerMetricsTester.java, TransactionFile.java, TransactionFileTester.java,
+//        HighPrecisionBankAccount.java, HighPrecisionBankAccountTester.java, AccountIndex.java,
+//        AccountIndexTester.java, ReconciliationReport.java, ReconciliationTask.java,
+//        TransactionIDCache.java, TransactionIDCacheTester.java, ShardTransport.java,
+//        LocalShardTransport.java, SocketShardTransport.java, ShardServer.java,
+//        ShardedBankTeller.java, ShardedBankTellerTester.java, TransactionParser.java,
+//        TransactionParserTester.java, TellerServer.java, TellerClient.java,
+//        TellerLoadGenerator.java, TellerServerTester.java, TransactionClock.java,
+//        TransactionTimeIndex.java, TransactionHistory.java, TransactionHistoryTester.java,
+//        TellerWorkload.java, TellerReplay.java, TellerReplayResult.java, TellerReplayTester.java
+// This File: TransactionStatus.java
+// 
+// Name: Benjamin Tarmann
+// Email: btarmann@wisc.edu
+//
+
+/**
+ * This enum lists the outcomes of applying a transaction to a bank account. The methods that
+ * report a TransactionStatus, such as BankAccount.tryWithdraw() and BankTeller.tryAddTransaction(),
+ * do not throw exceptions for incorrect transactions, which makes them much cheaper than the
+ * methods that do when many transactions are rejected.
+ * 
+ * @author Benjamin Tarmann
+ */
+public enum TransactionStatus {
+  APPLIED("Transaction was applied.", false),
+  NEGATIVE_DEPOSIT("Deposit amount must be positive.", false),
+  INVALID_WITHDRAW_AMOUNT("Withdraw amount must be positive and a multiple of 10.", true),
+  INSUFFICIENT_FUNDS("Withdraw amount must be less than account balance.", false),
+  INVALID_AMOUNT("Transaction amount should consist of numbers only.", true),
+  AMOUNT_OUT_OF_RANGE("Transaction amount is empty or too large.", false),
+  INVALID_TYPE("Transaction does not correctly indicate deposit or withdrawal.", true),
+  ACCOUNT_NOT_FOUND("Account with the given ID was not found.", false),
+  BALANCE_OVERFLOW("Deposit amount would make the balance too large.", false),
+  INVALID_TRANSACTION_ID("Transaction ID should consist of numbers only and fit into a long.",
+      true),
+  DUPLICATE_TRANSACTION("Transaction with the same ID was already applied.", false),
+  FAILED("Transaction failed while it was applied, and may or may not have been.", false);
+
+  private final String message;
+  private final boolean malformed;
+
+  /**
+   * Creates a transaction status
+   * 
+   * @param message   error message of the exception the throwing methods report this status with
+   * @param malformed true if the throwing methods report this status with a DataFormatException
+   */
+  private TransactionStatus(String message, boolean malformed) {
+    this.message = message;
+    this.malformed = malformed;
+  }
+
+  /**
+   * Gets the error message of the exception the throwing methods report this status with
+   * 
+   * @return the error message
+   */
+  public String getMessage() {
+    return message;
+  }
+
+  /**
+   * Checks whether this status means that the transaction is not correctly formatted, which is
+   * when the throwing methods report it with a DataFormatException and loadTransactions() skips it
+   * 
+   * @return true if the transaction is not correctly formatted, false otherwise
+   */
+  public boolean isMalformed() {
+    return malformed;
+  }
+}
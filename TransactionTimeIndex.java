@@ -0,0 +1,213 @@
+/////////////////////////////////////////// FILE  HEADER /////////////////////////////////////////////
+//
+// Title: Exceptional Bank Teller
+// Files: BankAccount.java, BankAccountTester.java, BankTeller.java, BankTellerTester.java,
+//        BankTellerBenchmark.java, TransactionLog.java, TransactionLoadResult.java,
+//        ConcurrentTransactionLog.java, ConcurrentBankAccount.java,
+//        ConcurrentBankAccountTester.java, ConcurrentBankTeller.java,
+//        ConcurrentBankTellerTester.java, TransactionStatus.java, TransactionListener.java,
+//        TransactionJournal.java, TransactionJournalTester.java, TransactionSnapshot.java,
+//        ColdAccountStore.java, TieredAccountMap.java, TieredBankTeller.java,
+//        TieredBankTellerTester.java, TransactionBatch.java, TransactionBatchResult.java,
+//        TransactionRecord.java, TransactionEvent.java, TransactionPipeline.java,
+//        TransactionPipelineTester.java, LatencyHistogram.java, TellerMetrics.java,
+//        TellerMetricsTester.java, TransactionFile.java, TransactionFileTester.java,
+//        HighPrecisionBankAccount.java, HighPrecisionBankAccountTester.java, AccountIndex.java,
+//        AccountIndexTester.java, ReconciliationReport.java, ReconciliationTask.java,
+//        TransactionIDCache.java, TransactionIDCacheTester.java, ShardTransport.java,
+//        LocalShardTransport.java, SocketShardTransport.java, ShardServer.java,
+//        ShardedBankTeller.java, ShardedBankTellerTester.java, TransactionParser.java,
+//        TransactionParserTester.java, TellerServer.java, TellerClient.java,
+//        TellerLoadGenerator.java, TellerServerTester.java, TransactionClock.java,
+//        TransactionTimeIndex.java, TransactionHistory.java, TransactionHistoryTester.java,
+//        TellerWorkload.java, TellerReplay.java, TellerReplayResult.java, TellerReplayTester.java
+// This File: TransactionTimeIndex.java
+// 
+// Name: Benjamin Tarmann
+// Email: btarmann@wisc.edu
+//
+///////////////////////////////////////// 100 COLUMNS WIDE /////////////////////////////////////////
+
+import java.util.Arrays;
+
+/**
+ * This class models an index of the times of the transactions of a log, which is sparse when
+ * transactions come in bursts. Transactions are appended in the order of their times, so every
+ * transaction has the time of the last one before it unless the clock ticked in between. The index
+ * therefore keeps one entry per tick in which transactions were appended rather than one per
+ * transaction: the index of the first transaction appended in that tick and the time of the tick.
+ * TransactionClock ticks every millisecond, so an entry stands for the transactions of one busy
+ * millisecond: an account that takes a million transactions in ten busy seconds has up to 10,000
+ * entries, and an account whose transactions are more than a millisecond apart has one entry per
+ * transaction. The number of entries is bounded by both the number of transactions and the number
+ * of milliseconds in which any were appended. At worst an entry takes 16 bytes per transaction,
+ * twice the 8 bytes a transaction is packed into in the log, and the array may have as much room
+ * again unused after it doubles. The index of a log with a window only keeps the entries of the
+ * transactions the log still keeps.
+ * 
+ * Finding the time of a transaction, or the first transaction at or after a time, is a binary
+ * search over the entries, so a time-range query costs the logarithm of the number of entries
+ * before the matching transactions are read. Entries are kept in one array of pairs of longs, like
+ * TransactionIDCache keeps its table, and the entries of transactions that a log with a window no
+ * longer keeps are dropped when the array is full.
+ * 
+ * The index can be updated by many threads at the same time. A transaction appended while another
+ * thread appends may get the time of a neighbouring transaction, which is at most a tick or two
+ * away from its own.
+ * 
+ * @author Benjamin Tarmann
+ */
+final class TransactionTimeIndex {
+  private long[] entries; // pairs of the index of the first transaction of a tick and its time
+  private int count; // number of entries
+  private volatile long lastTime; // time of the last entry, read without taking the lock
+
+  /**
+   * Creates a new empty index
+   */
+  TransactionTimeIndex() {
+    entries = new long[2];
+    count = 0;
+    lastTime = Long.MIN_VALUE;
+  }
+
+  /**
+   * Records the time of a transaction that was just appended. This only takes a lock when the
+   * time is later than the time of the last entry, which is at most once per tick.
+   * 
+   * @param index     index of the transaction
+   * @param time      time of the transaction
+   * @param firstKept index of the oldest transaction the log still keeps
+   */
+  void record(int index, long time, int firstKept) {
+    if (time > lastTime) {
+      addEntry(index, time, firstKept);
+    }
+  }
+
+  /**
+   * Adds an entry for a transaction whose time is later than the time of the last entry, unless
+   * a transaction appended after it already added one
+   * 
+   * @param index     index of the transaction
+   * @param time      time of the transaction
+   * @param firstKept index of the oldest transaction the log still keeps
+   */
+  private synchronized void addEntry(int index, long time, int firstKept) {
+    if (time <= lastTime || (count > 0 && index <= entries[2 * count - 2])) {
+      return; // the entries must stay in the order of both their indices and their times
+    }
+
+    if (2 * count == entries.length) {
+      makeRoom(firstKept);
+    }
+    entries[2 * count] = index;
+    entries[2 * count + 1] = time;
+    count++;
+    lastTime = time;
+  }
+
+  /**
+   * Makes room for an entry by dropping the entries of transactions that are no longer kept, or
+   * by doubling the array if that frees nothing
+   * 
+   * @param firstKept index of the oldest transaction the log still keeps
+   */
+  private void makeRoom(int firstKept) {
+    // keeps the entry the oldest kept transaction belongs to and every later one
+    int first = 0;
+    while (first + 1 < count && entries[2 * (first + 1)] <= firstKept) {
+      first++;
+    }
+    if (first > 0) {
+      System.arraycopy(entries, 2 * first, entries, 0, 2 * (count - first));
+      count -= first;
+    } else {
+      long[] newEntries = new long[entries.length * 2];
+      System.arraycopy(entries, 0, newEntries, 0, entries.length);
+      entries = newEntries;
+    }
+  }
+
+  /**
+   * Finds the entry a transaction belongs to, which is the last entry starting at or before it
+   * 
+   * @param index index of the transaction
+   * @return the number of the entry, or 0 if the transaction is older than every entry
+   */
+  private int findEntry(int index) {
+    int low = 0;
+    int high = count - 1;
+    while (low < high) {
+      int middle = (low + high + 1) >>> 1;
+      if (entries[2 * middle] <= index) {
+        low = middle;
+      } else {
+        high = middle - 1;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * Gets the time of a transaction
+   * 
+   * @param index index of the transaction
+   * @return the time of the transaction, or Long.MIN_VALUE if no time was recorded yet
+   */
+  synchronized long getTime(int index) {
+    return count == 0 ? Long.MIN_VALUE : entries[2 * findEntry(index) + 1];
+  }
+
+  /**
+   * Copies the times of a run of consecutive transactions, with one binary search for the first
+   * of them
+   * 
+   * @param start       index of the first transaction
+   * @param length      number of transactions
+   * @param newestFirst true if the run goes from start down to older transactions, false if it
+   *                    goes up to newer ones
+   * @param times       array the times are copied into, from index 0 on
+   */
+  synchronized void copyTimes(int start, int length, boolean newestFirst, long[] times) {
+    if (count == 0) {
+      Arrays.fill(times, 0, length, Long.MIN_VALUE);
+      return;
+    }
+    int entry = findEntry(start);
+    for (int i = 0; i < length; i++) {
+      int index = newestFirst ? start - i : start + i;
+      if (newestFirst) {
+        while (entry > 0 && entries[2 * entry] > index) {
+          entry--;
+        }
+      } else {
+        while (entry + 1 < count && entries[2 * (entry + 1)] <= index) {
+          entry++;
+        }
+      }
+      times[i] = entries[2 * entry + 1];
+    }
+  }
+
+  /**
+   * Finds the first transaction whose time is at or after a given time
+   * 
+   * @param time the time
+   * @return the index of the first transaction of the first entry at or after the time, or
+   *         Integer.MAX_VALUE if every entry is earlier
+   */
+  synchronized int findIndex(long time) {
+    int low = 0;
+    int high = count; // the answer is the first entry whose time is at or after the time
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      if (entries[2 * middle + 1] < time) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+    return low == count ? Integer.MAX_VALUE : (int) entries[2 * low];
+  }
+}